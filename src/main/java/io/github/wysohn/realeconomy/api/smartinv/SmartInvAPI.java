@@ -8,6 +8,7 @@ import io.github.wysohn.rapidframework3.core.language.ManagerLanguage;
 import io.github.wysohn.rapidframework3.core.main.PluginMain;
 import io.github.wysohn.realeconomy.api.smartinv.gui.AssetTransferGUI;
 import io.github.wysohn.realeconomy.inject.annotation.NamespaceKeyAssetSerialized;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
 import io.github.wysohn.realeconomy.manager.banking.TransactionManager;
 import io.github.wysohn.realeconomy.manager.banking.bank.AbstractBank;
@@ -28,6 +29,8 @@ public class SmartInvAPI extends ExternalAPI {
     @Inject
     private TradeMediator tradeMediator;
     @Inject
+    private AssetSignaturePool signaturePool;
+    @Inject
     @NamespaceKeyAssetSerialized
     private NamespacedKey serializedKey;
     @Inject
@@ -63,7 +66,7 @@ public class SmartInvAPI extends ExternalAPI {
 
         SmartInventory.builder()
                 .id("Assets")
-                .provider(new AssetTransferGUI(lang, tradeMediator, player -> Optional.of(player)
+                .provider(new AssetTransferGUI(lang, tradeMediator, signaturePool, player -> Optional.of(player)
                         .map(BukkitWrapper::sender)
                         .orElse(null),
                         storageWrapper,
@@ -18,6 +18,7 @@ import io.github.wysohn.realeconomy.interfaces.banking.IAssetHolder;
 import io.github.wysohn.realeconomy.main.RealEconomyLangs;
 import io.github.wysohn.realeconomy.manager.CustomTypeAdapters;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
 import io.github.wysohn.realeconomy.mediator.TradeMediator;
 import org.bukkit.ChatColor;
@@ -45,6 +46,7 @@ public class AssetTransferGUI implements InventoryProvider {
 
     private final ManagerLanguage lang;
     private final TradeMediator tradeMediator;
+    private final AssetSignaturePool signaturePool;
     private final Function<Player, ICommandSender> commandSenderFn;
     private final IAssetHolder assetStore;
     private final IFinancialEntity targetToSendAsset;
@@ -70,6 +72,7 @@ public class AssetTransferGUI implements InventoryProvider {
      *
      * @param lang
      * @param tradeMediator
+     * @param signaturePool
      * @param commandSenderFn
      * @param assetStore        the storage to take assets from
      * @param targetToSendAsset target financial entity to send asset for
@@ -80,12 +83,14 @@ public class AssetTransferGUI implements InventoryProvider {
      */
     public AssetTransferGUI(ManagerLanguage lang,
                             TradeMediator tradeMediator,
+                            AssetSignaturePool signaturePool,
                             Function<Player, ICommandSender> commandSenderFn,
                             IAssetHolder assetStore,
                             IFinancialEntity targetToSendAsset,
                             Predicate<Player> playerPredicate) {
         this.lang = lang;
         this.tradeMediator = tradeMediator;
+        this.signaturePool = signaturePool;
         this.commandSenderFn = commandSenderFn;
         this.assetStore = assetStore;
         this.targetToSendAsset = targetToSendAsset;
@@ -182,7 +187,7 @@ public class AssetTransferGUI implements InventoryProvider {
                 event.setCurrentItem(null);
             } else {
                 // cursor -> asset store
-                ItemStackSignature signature = new ItemStackSignature(cursor);
+                ItemStackSignature signature = signaturePool.itemStack(cursor);
                 Asset asset = signature.asset((double) cursor.getAmount());
                 assetStore.addAsset(asset);
             }
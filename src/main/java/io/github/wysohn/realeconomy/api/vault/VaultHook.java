@@ -131,7 +131,7 @@ public class VaultHook extends ExternalAPI {
         public double getBalance(String playerName) {
             return userManager.get(playerName)
                     .map(Reference::get)
-                    .map(user -> user.balance(VisitingBankManager.getServerBank().getBaseCurrency()).doubleValue())
+                    .map(user -> user.balanceAsDouble(VisitingBankManager.getServerBank().getBaseCurrency()))
                     .orElse(0.0);
         }
 
@@ -139,7 +139,7 @@ public class VaultHook extends ExternalAPI {
         public double getBalance(OfflinePlayer player) {
             return userManager.get(player.getUniqueId())
                     .map(Reference::get)
-                    .map(user -> user.balance(VisitingBankManager.getServerBank().getBaseCurrency()).doubleValue())
+                    .map(user -> user.balanceAsDouble(VisitingBankManager.getServerBank().getBaseCurrency()))
                     .orElse(0.0);
         }
 
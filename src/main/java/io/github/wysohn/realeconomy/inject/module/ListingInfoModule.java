@@ -5,10 +5,8 @@ import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import io.github.wysohn.realeconomy.interfaces.listing.IListingInfoProvider;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
-import io.github.wysohn.realeconomy.manager.listing.AssetListing;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
 
-import java.lang.ref.Reference;
 import java.util.UUID;
 
 public class ListingInfoModule extends AbstractModule {
@@ -28,10 +26,7 @@ public class ListingInfoModule extends AbstractModule {
 
             @Override
             public AssetSignature uuidToSignature(UUID uuid) {
-                return assetListingManager.get(uuid)
-                        .map(Reference::get)
-                        .map(AssetListing::getSignature)
-                        .orElse(null);
+                return assetListingManager.uuidToSignature(uuid);
             }
         };
     }
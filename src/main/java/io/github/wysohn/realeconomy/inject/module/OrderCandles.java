@@ -0,0 +1,377 @@
+package io.github.wysohn.realeconomy.inject.module;
+
+import io.github.wysohn.rapidframework3.interfaces.io.IPluginResourceProvider;
+import io.github.wysohn.rapidframework3.utils.sql.SQLSession;
+import io.github.wysohn.realeconomy.inject.module.OrderSQLModule.UuidStorage;
+import io.github.wysohn.realeconomy.main.Metrics;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Open/high/low/close/volume of the trades aggregated by day, so the price trends can be read from
+ * a few rows instead of scanning the trade logs. The candles are updated along with the trade log in the
+ * same transaction.
+ * <p>
+ * The high and low only count the trades between different users, just like the trade log queries
+ * used to do, and they refer to the trade log row that made the price, so it can be shown as a
+ * {@link io.github.wysohn.realeconomy.manager.listing.PricePoint}.
+ */
+class OrderCandles {
+    static final String BACKFILL_TABLE = "candles_backfill";
+
+    private final SQLSession session;
+    private final UuidStorage uuidStorage;
+    private final ZoneId zone;
+
+    private final String SELECT_CANDLE;
+    private final String INSERT_CANDLE;
+    private final String UPDATE_CANDLE;
+    private final String UPDATE_CANDLE_EXTREMES;
+    private final String SELECT_TRADE_LOGS_BATCH;
+    private final String SELECT_BACKFILL;
+    private final String INSERT_BACKFILL;
+    private final String UPDATE_BACKFILL;
+
+    OrderCandles(SQLSession session,
+                 UuidStorage uuidStorage,
+                 ZoneId zone,
+                 IPluginResourceProvider resourceProvider) throws IOException {
+        this.session = session;
+        this.uuidStorage = uuidStorage;
+        this.zone = zone;
+
+        SELECT_CANDLE = Metrics.resourceToString(resourceProvider, "select_candle.sql");
+        INSERT_CANDLE = Metrics.resourceToString(resourceProvider, "insert_candle.sql");
+        UPDATE_CANDLE = Metrics.resourceToString(resourceProvider, "update_candle.sql");
+        UPDATE_CANDLE_EXTREMES = Metrics.resourceToString(resourceProvider, "update_candle_extremes.sql");
+        SELECT_TRADE_LOGS_BATCH = Metrics.resourceToString(resourceProvider, "select_trade_logs_batch.sql");
+        SELECT_BACKFILL = Metrics.resourceToString(resourceProvider, "select_candles_backfill.sql");
+        INSERT_BACKFILL = Metrics.resourceToString(resourceProvider, "insert_candles_backfill.sql");
+        UPDATE_BACKFILL = Metrics.resourceToString(resourceProvider, "update_candles_backfill.sql");
+    }
+
+    /**
+     * Add the trade to its day candle. Trades must be added in the order they were made.
+     * The caller is responsible for the commit.
+     *
+     * @param tradeId   order_id of the trade log row
+     * @param timestamp time of the trade
+     */
+    void update(int tradeId,
+                UUID listingUuid,
+                UUID currencyUuid,
+                UUID seller,
+                UUID buyer,
+                double price,
+                int amount,
+                long timestamp) {
+        boolean extremes = !Objects.equals(seller, buyer);
+
+        for (Resolution resolution : Resolution.values()) {
+            long bucket = resolution.bucket(timestamp, zone);
+
+            Integer candleId = session.query(String.format(SELECT_CANDLE, resolution.getTable()), pstmt -> {
+                try {
+                    uuidStorage.set(pstmt, 1, listingUuid);
+                    uuidStorage.set(pstmt, 2, currencyUuid);
+                    pstmt.setLong(3, bucket);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, rs -> {
+                try {
+                    return rs.getInt("id");
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                    return null;
+                }
+            }).stream().filter(Objects::nonNull).findFirst().orElse(null);
+
+            if (candleId == null) {
+                session.execute(String.format(INSERT_CANDLE, resolution.getTable()), pstmt -> {
+                    try {
+                        uuidStorage.set(pstmt, 1, listingUuid);
+                        uuidStorage.set(pstmt, 2, currencyUuid);
+                        pstmt.setLong(3, bucket);
+                        pstmt.setDouble(4, price);
+                        if (extremes) {
+                            pstmt.setDouble(5, price);
+                            pstmt.setDouble(6, price);
+                        } else {
+                            pstmt.setNull(5, Types.DOUBLE);
+                            pstmt.setNull(6, Types.DOUBLE);
+                        }
+                        pstmt.setDouble(7, price);
+                        pstmt.setLong(8, amount);
+                        pstmt.setDouble(9, price * amount);
+                        pstmt.setDouble(10, price);
+                        if (extremes) {
+                            pstmt.setInt(11, tradeId);
+                            pstmt.setInt(12, tradeId);
+                        } else {
+                            pstmt.setNull(11, Types.INTEGER);
+                            pstmt.setNull(12, Types.INTEGER);
+                        }
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                    }
+                }, key -> {
+                });
+                continue;
+            }
+
+            session.execute(String.format(UPDATE_CANDLE, resolution.getTable()), pstmt -> {
+                try {
+                    pstmt.setDouble(1, price);
+                    pstmt.setLong(2, amount);
+                    pstmt.setDouble(3, price * amount);
+                    pstmt.setDouble(4, price);
+                    pstmt.setInt(5, candleId);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, key -> {
+            });
+
+            if (!extremes)
+                continue;
+
+            session.execute(String.format(UPDATE_CANDLE_EXTREMES, resolution.getTable()), pstmt -> {
+                try {
+                    pstmt.setDouble(1, price);
+                    pstmt.setInt(2, tradeId);
+                    pstmt.setDouble(3, price);
+                    pstmt.setDouble(4, price);
+                    pstmt.setDouble(5, price);
+                    pstmt.setInt(6, tradeId);
+                    pstmt.setDouble(7, price);
+                    pstmt.setDouble(8, price);
+                    pstmt.setInt(9, candleId);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, key -> {
+            });
+        }
+    }
+
+    /**
+     * Build the candles from the existing trade logs. This is for the databases that have trade logs
+     * recorded before the candles existed, so the trades logged after the backfill began are left to
+     * {@link #update(int, UUID, UUID, UUID, UUID, double, int, long)}.
+     * <p>
+     * The trade logs are read in batches by their ids, and each batch is committed along with the progress,
+     * so only one batch is in memory or in the transaction at a time. If it stops in the middle, the next
+     * backfill continues after the last batch committed.
+     *
+     * @param batchSize maximum number of trades read at once
+     * @return number of trades added to the candles
+     */
+    int backfill(int batchSize) throws SQLException {
+        int[] progress = session.query(SELECT_BACKFILL, pstmt -> {
+        }, rs -> {
+            try {
+                return new int[]{rs.getInt("last_trade_id"), rs.getInt("until_trade_id")};
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }).stream().filter(Objects::nonNull).findFirst().orElse(null);
+
+        if (progress == null) {
+            // the candles built before the progress was recorded are complete, since that backfill was
+            // all or nothing
+            progress = new int[]{0, hasCandles() ? 0 : lastTradeId()};
+            insertProgress(progress[0], progress[1]);
+            session.commit();
+        }
+
+        int count = 0;
+        int lastTradeId = progress[0];
+        int untilTradeId = progress[1];
+        while (lastTradeId < untilTradeId) {
+            int from = lastTradeId;
+            List<TradeRow> trades = session.query(SELECT_TRADE_LOGS_BATCH, pstmt -> {
+                try {
+                    pstmt.setInt(1, from);
+                    pstmt.setInt(2, untilTradeId);
+                    pstmt.setInt(3, batchSize);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, rs -> {
+                try {
+                    return new TradeRow(rs.getInt(OrderSQLModule.ORDER_ID),
+                            uuidStorage.get(rs, OrderSQLModule.LISTING_UUID),
+                            uuidStorage.get(rs, "currency_uuid"),
+                            uuidStorage.get(rs, "seller"),
+                            uuidStorage.get(rs, "buyer"),
+                            rs.getDouble("price"),
+                            rs.getInt("amount"),
+                            rs.getTimestamp("timestamp").getTime());
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                    return null;
+                }
+            });
+            trades.removeIf(Objects::isNull);
+
+            for (TradeRow trade : trades) {
+                update(trade.tradeId,
+                        trade.listingUuid,
+                        trade.currencyUuid,
+                        trade.seller,
+                        trade.buyer,
+                        trade.price,
+                        trade.amount,
+                        trade.timestamp);
+            }
+            count += trades.size();
+            // nothing left up to the end, even if some ids in between were deleted
+            lastTradeId = trades.isEmpty() ? untilTradeId : trades.get(trades.size() - 1).tradeId;
+
+            updateProgress(lastTradeId);
+            session.commit();
+        }
+
+        return count;
+    }
+
+    private boolean hasCandles() {
+        return session.query("SELECT COUNT(*) AS candles FROM " + Resolution.DAY.getTable() + ";",
+                pstmt -> {
+                }, rs -> {
+                    try {
+                        return rs.getInt("candles");
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                        return null;
+                    }
+                }).stream()
+                .filter(Objects::nonNull)
+                .anyMatch(count -> count > 0);
+    }
+
+    private int lastTradeId() {
+        return session.query("SELECT MAX(" + OrderSQLModule.ORDER_ID + ") AS last_trade_id FROM trade_logs;",
+                pstmt -> {
+                }, rs -> {
+                    try {
+                        // 0 if there is no trade log at all
+                        return rs.getInt("last_trade_id");
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                        return null;
+                    }
+                }).stream()
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(0);
+    }
+
+    private void insertProgress(int lastTradeId, int untilTradeId) {
+        session.execute(INSERT_BACKFILL, pstmt -> {
+            try {
+                pstmt.setInt(1, lastTradeId);
+                pstmt.setInt(2, untilTradeId);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+    }
+
+    private void updateProgress(int lastTradeId) {
+        session.execute(UPDATE_BACKFILL, pstmt -> {
+            try {
+                pstmt.setInt(1, lastTradeId);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+    }
+
+    /**
+     * @param daysPeriod number of days including today
+     * @return the bucket of the first day of the period
+     */
+    long firstDayBucket(int daysPeriod) {
+        return ZonedDateTime.now(zone)
+                .truncatedTo(ChronoUnit.DAYS)
+                .minusDays(Math.max(0, daysPeriod - 1))
+                .toInstant()
+                .toEpochMilli();
+    }
+
+    private static class TradeRow {
+        private final int tradeId;
+        private final UUID listingUuid;
+        private final UUID currencyUuid;
+        private final UUID seller;
+        private final UUID buyer;
+        private final double price;
+        private final int amount;
+        private final long timestamp;
+
+        private TradeRow(int tradeId,
+                         UUID listingUuid,
+                         UUID currencyUuid,
+                         UUID seller,
+                         UUID buyer,
+                         double price,
+                         int amount,
+                         long timestamp) {
+            this.tradeId = tradeId;
+            this.listingUuid = listingUuid;
+            this.currencyUuid = currencyUuid;
+            this.seller = seller;
+            this.buyer = buyer;
+            this.price = price;
+            this.amount = amount;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Only the day candles are kept, since the price trends are all by day.
+     */
+    enum Resolution {
+        DAY("candles_day", ChronoUnit.DAYS);
+
+        private final String table;
+        private final ChronoUnit unit;
+
+        Resolution(String table, ChronoUnit unit) {
+            this.table = table;
+            this.unit = unit;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * @param timestamp epoch millis
+         * @param zone      the zone that decides where the day begins
+         * @return epoch millis at the beginning of the period the timestamp belongs to
+         */
+        long bucket(long timestamp, ZoneId zone) {
+            return Instant.ofEpochMilli(timestamp)
+                    .atZone(zone)
+                    .truncatedTo(unit)
+                    .toInstant()
+                    .toEpochMilli();
+        }
+    }
+}
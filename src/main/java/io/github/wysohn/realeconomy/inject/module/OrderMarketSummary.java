@@ -0,0 +1,243 @@
+package io.github.wysohn.realeconomy.inject.module;
+
+import io.github.wysohn.rapidframework3.interfaces.io.IPluginResourceProvider;
+import io.github.wysohn.rapidframework3.utils.sql.SQLSession;
+import io.github.wysohn.realeconomy.inject.module.OrderSQLModule.UuidStorage;
+import io.github.wysohn.realeconomy.main.Metrics;
+import io.github.wysohn.realeconomy.manager.listing.ListingSummary;
+import io.github.wysohn.realeconomy.manager.listing.MarketKey;
+import io.github.wysohn.realeconomy.manager.listing.OrderBookRegistry;
+import io.github.wysohn.realeconomy.manager.listing.OrderInfo;
+import io.github.wysohn.realeconomy.manager.listing.OrderType;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * The best order, depth, and number of orders of each listing, kept in a table so the listing pages can
+ * be read in the order of the sort key without grouping the orders every time. The number of listings
+ * per category is kept in a separate table, so counting the rows of a page is a single row lookup.
+ * <p>
+ * The rows are updated along with the orders in the same transaction, from the summary of the
+ * {@link OrderBookRegistry}, so they revert together on rollback.
+ */
+class OrderMarketSummary {
+    static final String TABLE = "market_summary";
+    static final String COUNTS_TABLE = "market_summary_counts";
+
+    // the uuid is appended to the reversed name, so the key is unique and still fits in varchar(255)
+    private static final int NAME_LENGTH = 200;
+
+    private final SQLSession session;
+    private final UuidStorage uuidStorage;
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+
+    private final String SELECT_SUMMARY;
+    private final String UPSERT_SUMMARY;
+    private final String DELETE_SUMMARY;
+    private final String UPDATE_SORT_KEY;
+    private final String UPSERT_COUNT;
+    private final String SELECT_LISTING_NAMES;
+
+    OrderMarketSummary(SQLSession session,
+                       UuidStorage uuidStorage,
+                       IPluginResourceProvider resourceProvider) throws IOException {
+        this.session = session;
+        this.uuidStorage = uuidStorage;
+
+        SELECT_SUMMARY = Metrics.resourceToString(resourceProvider, "select_market_summary.sql");
+        UPSERT_SUMMARY = Metrics.resourceToString(resourceProvider, "upsert_market_summary.sql");
+        DELETE_SUMMARY = Metrics.resourceToString(resourceProvider, "delete_market_summary.sql");
+        UPDATE_SORT_KEY = Metrics.resourceToString(resourceProvider, "update_market_summary_sort_key.sql");
+        UPSERT_COUNT = Metrics.resourceToString(resourceProvider, "upsert_market_summary_count.sql");
+        SELECT_LISTING_NAMES = Metrics.resourceToString(resourceProvider, "select_listing_names.sql");
+    }
+
+    /**
+     * Drop all rows and fill them again from the current state of the books. The names of the listings
+     * are loaded as well.
+     *
+     * @param registry the books
+     * @return number of rows inserted
+     */
+    int rebuild(OrderBookRegistry registry) throws SQLException {
+        session.query(SELECT_LISTING_NAMES, pstmt -> {
+        }, rs -> {
+            try {
+                UUID listingUuid = uuidStorage.get(rs, OrderSQLModule.LISTING_UUID);
+                String name = rs.getString("name");
+                if (listingUuid != null && name != null)
+                    names.put(listingUuid, name);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+            return null;
+        });
+
+        session.execute("DELETE FROM " + TABLE + ";", pstmt -> {
+        }, key -> {
+        });
+        session.execute("DELETE FROM " + COUNTS_TABLE + ";", pstmt -> {
+        }, key -> {
+        });
+
+        Set<UUID> listingUuids = registry.markets().stream()
+                .map(MarketKey::getListingUuid)
+                .collect(Collectors.toSet());
+
+        int count = 0;
+        for (OrderType type : OrderType.values()) {
+            // counted once per category, after all the rows are in
+            Set<Integer> categories = new HashSet<>();
+            for (UUID listingUuid : listingUuids) {
+                ListingSummary summary = registry.summary(type, listingUuid);
+                if (summary == null)
+                    continue;
+
+                upsert(type, listingUuid, summary);
+                categories.add(summary.getBest().getCategoryId());
+                count++;
+            }
+            categories.forEach(categoryId -> recount(type, categoryId));
+        }
+        session.commit();
+
+        return count;
+    }
+
+    /**
+     * Replace the summary of the listing. The caller is responsible for the commit.
+     * <p>
+     * Both the row and the count are written as a whole rather than read and modified, so the callers
+     * updating the same listing at once cannot break the unique key of the listing or the counts.
+     *
+     * @param type        order type
+     * @param listingUuid uuid of listing
+     * @param summary     the current summary; null if the listing has no order of the type anymore
+     */
+    void update(OrderType type, UUID listingUuid, ListingSummary summary) {
+        Integer previousCategory = session.query(SELECT_SUMMARY, pstmt -> {
+            try {
+                pstmt.setInt(1, type.ordinal());
+                uuidStorage.set(pstmt, 2, listingUuid);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, rs -> {
+            try {
+                return rs.getInt(OrderSQLModule.CATEGORY_ID);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }).stream().filter(Objects::nonNull).findFirst().orElse(null);
+
+        if (summary == null) {
+            session.execute(DELETE_SUMMARY, pstmt -> {
+                try {
+                    pstmt.setInt(1, type.ordinal());
+                    uuidStorage.set(pstmt, 2, listingUuid);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, key -> {
+            });
+            if (previousCategory != null)
+                recount(type, previousCategory);
+            return;
+        }
+
+        upsert(type, listingUuid, summary);
+
+        // the count changes only if the listing is new to the category
+        int categoryId = summary.getBest().getCategoryId();
+        if (previousCategory == null || previousCategory != categoryId) {
+            recount(type, categoryId);
+            if (previousCategory != null)
+                recount(type, previousCategory);
+        }
+    }
+
+    /**
+     * Change the name the listing is sorted by. Nothing happens if the name is the same.
+     * The caller is responsible for the commit.
+     *
+     * @param listingUuid uuid of listing
+     * @param name        name of listing
+     */
+    void setName(UUID listingUuid, String name) {
+        if (name.equals(names.put(listingUuid, name)))
+            return;
+
+        String sortKey = sortKey(name, listingUuid);
+        for (OrderType type : OrderType.values()) {
+            session.execute(UPDATE_SORT_KEY, pstmt -> {
+                try {
+                    pstmt.setString(1, sortKey);
+                    pstmt.setInt(2, type.ordinal());
+                    uuidStorage.set(pstmt, 3, listingUuid);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, key -> {
+            });
+        }
+    }
+
+    private void upsert(OrderType type, UUID listingUuid, ListingSummary summary) {
+        OrderInfo best = summary.getBest();
+        String sortKey = sortKey(names.get(listingUuid), listingUuid);
+        session.execute(UPSERT_SUMMARY, pstmt -> {
+            try {
+                pstmt.setInt(1, type.ordinal());
+                uuidStorage.set(pstmt, 2, listingUuid);
+                pstmt.setInt(3, best.getCategoryId());
+                pstmt.setString(4, sortKey);
+                pstmt.setInt(5, best.getOrderId());
+                uuidStorage.set(pstmt, 6, best.getIssuer());
+                pstmt.setDouble(7, best.getPrice());
+                uuidStorage.set(pstmt, 8, best.getCurrencyUuid());
+                pstmt.setInt(9, best.getAmount());
+                pstmt.setInt(10, best.getMax());
+                pstmt.setLong(11, summary.getDepth());
+                pstmt.setInt(12, summary.getOrders());
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+    }
+
+    private void recount(OrderType type, int categoryId) {
+        session.execute(UPSERT_COUNT, pstmt -> {
+            try {
+                pstmt.setInt(1, type.ordinal());
+                pstmt.setInt(2, categoryId);
+                pstmt.setInt(3, type.ordinal());
+                pstmt.setInt(4, categoryId);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+    }
+
+    /**
+     * The pages used to be sorted by the reversed name, so the listings of the same kind, which share
+     * the suffix, stay together. The uuid breaks the tie, so the page can seek right after the last row.
+     *
+     * @param name        name of listing; null if unknown
+     * @param listingUuid uuid of listing
+     * @return the key
+     */
+    static String sortKey(String name, UUID listingUuid) {
+        String reversed = name == null ? "" : new StringBuilder(name).reverse().toString();
+        if (reversed.length() > NAME_LENGTH)
+            reversed = reversed.substring(0, NAME_LENGTH);
+
+        return reversed + "#" + listingUuid;
+    }
+}
@@ -3,6 +3,8 @@ package io.github.wysohn.realeconomy.inject.module;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import io.github.wysohn.rapidframework3.core.inject.annotations.PluginDirectory;
+import io.github.wysohn.rapidframework3.core.main.ManagerConfig;
 import io.github.wysohn.rapidframework3.core.paging.DataProviderProxy;
 import io.github.wysohn.rapidframework3.core.paging.Range;
 import io.github.wysohn.rapidframework3.interfaces.io.IPluginResourceProvider;
@@ -16,26 +18,42 @@ import io.github.wysohn.realeconomy.interfaces.banking.IOrderIssuer;
 import io.github.wysohn.realeconomy.interfaces.trade.IOrderQueryModule;
 import io.github.wysohn.realeconomy.main.Metrics;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
-import io.github.wysohn.realeconomy.manager.listing.OrderInfo;
-import io.github.wysohn.realeconomy.manager.listing.OrderType;
-import io.github.wysohn.realeconomy.manager.listing.PricePoint;
-import io.github.wysohn.realeconomy.manager.listing.TradeInfo;
+import io.github.wysohn.realeconomy.manager.listing.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class OrderQueryModule extends AbstractModule {
+    public static final String TRADE_LOGS_HOT_DAYS = "database.tradeLogs.hotDays";
+    static final int DEFAULT_TRADE_LOGS_HOT_DAYS = 90;
+    static final int TRADE_ARCHIVE_BATCH = 10000;
+    static final int CANDLE_BACKFILL_BATCH = 10000;
+    // rows of one multi-row INSERT, which keeps it under the 999 variables of older SQLite
+    static final int INSERT_ORDERS_CHUNK = 100;
+    static final int INSERT_ORDER_COLUMNS = 9;
+    static final String TRADE_ARCHIVE_FOLDER = "trade_archives";
+
     @Provides
     @Singleton
     IOrderQueryModule orderPlacementHandle(@OrderSQL SQLSession orderSql,
-                                           IPluginResourceProvider resourceProvider)
+                                           OrderReadSessions readSessions,
+                                           IPluginResourceProvider resourceProvider,
+                                           OrderSQLModule.UuidStorage uuidStorage,
+                                           @PluginDirectory File pluginDir,
+                                           ManagerConfig config)
             throws IOException {
-        OrderQueryModuleImpl orderPlacementHandler = new OrderQueryModuleImpl(orderSql);
+        OrderQueryModuleImpl orderPlacementHandler = new OrderQueryModuleImpl(orderSql, readSessions, uuidStorage);
         orderPlacementHandler.INSERT_BUY = Metrics.resourceToString(resourceProvider, "insert_buy_order.sql");
         orderPlacementHandler.INSERT_SELL = Metrics.resourceToString(resourceProvider, "insert_sell_order.sql");
         orderPlacementHandler.INSERT_CATEGORY = Metrics.resourceToString(resourceProvider, "insert_category.sql");
@@ -48,19 +66,28 @@ public class OrderQueryModule extends AbstractModule {
         orderPlacementHandler.DELETE_BUY_TEMPS = Metrics.resourceToString(resourceProvider, "delete_buy_temp_orders.sql");
         orderPlacementHandler.DELETE_SELL = Metrics.resourceToString(resourceProvider, "delete_sell_order.sql");
         orderPlacementHandler.DELETE_SELL_TEMPS = Metrics.resourceToString(resourceProvider, "delete_sell_temp_orders.sql");
-        orderPlacementHandler.SELECT_BY_BUY_ID = Metrics.resourceToString(resourceProvider, "select_buy_order_by_id.sql");
-        orderPlacementHandler.SELECT_BY_SELL_ID = Metrics.resourceToString(resourceProvider, "select_sell_order_by_id.sql");
         orderPlacementHandler.SELECT_CATEGORIES = Metrics.resourceToString(resourceProvider, "select_categories.sql");
-        orderPlacementHandler.SELECT_MATCH_ORDERS
-                = Metrics.resourceToString(resourceProvider, "select_match_orders.sql");
-        orderPlacementHandler.SELECT_BUY_ORDERS
-                = Metrics.resourceToString(resourceProvider, "select_buy_orders.sql");
-        orderPlacementHandler.SELECT_BUY_ORDERS_ALL
-                = Metrics.resourceToString(resourceProvider, "select_buy_orders_all.sql");
-        orderPlacementHandler.SELECT_SELL_ORDERS
-                = Metrics.resourceToString(resourceProvider, "select_sell_orders.sql");
-        orderPlacementHandler.SELECT_SELL_ORDERS_ALL
-                = Metrics.resourceToString(resourceProvider, "select_sell_orders_all.sql");
+        orderPlacementHandler.SAVEPOINT = Metrics.resourceToString(resourceProvider, "savepoint_orders.sql");
+        orderPlacementHandler.RELEASE_SAVEPOINT
+                = Metrics.resourceToString(resourceProvider, "release_savepoint_orders.sql");
+        orderPlacementHandler.ROLLBACK_SAVEPOINT
+                = Metrics.resourceToString(resourceProvider, "rollback_savepoint_orders.sql");
+        orderPlacementHandler.SELECT_BUY_ORDERS_BOOK
+                = Metrics.resourceToString(resourceProvider, "select_buy_orders_book.sql");
+        orderPlacementHandler.SELECT_SELL_ORDERS_BOOK
+                = Metrics.resourceToString(resourceProvider, "select_sell_orders_book.sql");
+        orderPlacementHandler.SELECT_SUMMARY_PAGE
+                = Metrics.resourceToString(resourceProvider, "select_market_summary_page.sql");
+        orderPlacementHandler.SELECT_SUMMARY_PAGE_ALL
+                = Metrics.resourceToString(resourceProvider, "select_market_summary_page_all.sql");
+        orderPlacementHandler.SELECT_SUMMARY_OFFSET
+                = Metrics.resourceToString(resourceProvider, "select_market_summary_offset.sql");
+        orderPlacementHandler.SELECT_SUMMARY_OFFSET_ALL
+                = Metrics.resourceToString(resourceProvider, "select_market_summary_offset_all.sql");
+        orderPlacementHandler.SELECT_SUMMARY_ROWS
+                = Metrics.resourceToString(resourceProvider, "select_market_summary_rows.sql");
+        orderPlacementHandler.SELECT_SUMMARY_ROWS_ALL
+                = Metrics.resourceToString(resourceProvider, "select_market_summary_rows_all.sql");
         orderPlacementHandler.SELECT_PRICE_TREND
                 = Metrics.resourceToString(resourceProvider, "select_price_trend.sql");
         orderPlacementHandler.SELECT_PRICE_TREND_HIGHEST
@@ -71,10 +98,10 @@ public class OrderQueryModule extends AbstractModule {
                 = Metrics.resourceToString(resourceProvider, "select_price_trend_last.sql");
         orderPlacementHandler.SELECT_PRICE_TREND_AVG
                 = Metrics.resourceToString(resourceProvider, "select_price_trend_avg.sql");
-        orderPlacementHandler.SELECT_BUY_ORDER_HIGHEST
-                = Metrics.resourceToString(resourceProvider, "select_buy_order_highest.sql");
-        orderPlacementHandler.SELECT_SELL_ORDER_LOWEST
-                = Metrics.resourceToString(resourceProvider, "select_sell_order_lowest.sql");
+        orderPlacementHandler.SELECT_TRADE_ARCHIVES
+                = Metrics.resourceToString(resourceProvider, "select_trade_archives.sql");
+        orderPlacementHandler.SELECT_TRADE_HISTORY
+                = Metrics.resourceToString(resourceProvider, "select_trade_logs_history.sql");
 
         List<Pair<String, Integer>> list = orderSql.query(orderPlacementHandler.SELECT_CATEGORIES, pstmt -> {
         }, rs -> {
@@ -95,6 +122,47 @@ public class OrderQueryModule extends AbstractModule {
                     orderPlacementHandler.categoryTrie.insert(pair.key);
                 });
 
+        orderPlacementHandler.loadOrderBook(OrderType.BUY, orderPlacementHandler.SELECT_BUY_ORDERS_BOOK);
+        orderPlacementHandler.loadOrderBook(OrderType.SELL, orderPlacementHandler.SELECT_SELL_ORDERS_BOOK);
+
+        orderPlacementHandler.candles = new OrderCandles(orderSql, uuidStorage, ZoneId.systemDefault(), resourceProvider);
+        try {
+            orderPlacementHandler.candles.backfill(CANDLE_BACKFILL_BATCH);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+
+        if (!config.get(TRADE_LOGS_HOT_DAYS).isPresent()) {
+            config.put(TRADE_LOGS_HOT_DAYS, DEFAULT_TRADE_LOGS_HOT_DAYS);
+        }
+        int hotDays = config.get(TRADE_LOGS_HOT_DAYS)
+                .filter(Number.class::isInstance)
+                .map(Number.class::cast)
+                .map(Number::intValue)
+                .orElse(DEFAULT_TRADE_LOGS_HOT_DAYS);
+
+        // after the backfill, since the candles are built from the trade logs
+        orderPlacementHandler.archive = new OrderTradeArchive(orderSql,
+                uuidStorage,
+                ZoneId.systemDefault(),
+                new File(pluginDir, TRADE_ARCHIVE_FOLDER),
+                resourceProvider);
+        if (hotDays > 0) {
+            try {
+                orderPlacementHandler.archive.archive(orderPlacementHandler.candles.firstDayBucket(hotDays),
+                        TRADE_ARCHIVE_BATCH);
+            } catch (SQLException | IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        orderPlacementHandler.summary = new OrderMarketSummary(orderSql, uuidStorage, resourceProvider);
+        try {
+            orderPlacementHandler.summary.rebuild(orderPlacementHandler.orderBook);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+
         return orderPlacementHandler;
     }
 
@@ -103,6 +171,15 @@ public class OrderQueryModule extends AbstractModule {
         private final StringListTrie categoryTrie = new StringListTrie();
 
         private final SQLSession ordersSession;
+        private final OrderReadSessions readSessions;
+        private final OrderSQLModule.UuidStorage uuidStorage;
+        private final OrderBookRegistry orderBook = new OrderBookRegistry();
+        private OrderCandles candles;
+        private OrderMarketSummary summary;
+        private OrderTradeArchive archive;
+        private boolean marked = false;
+        // fair, so the requests of the users are not starved by the broker rounds
+        private final ReentrantLock transactionLock = new ReentrantLock(true);
         private final Map<Integer, Map<OrderType, DataProvider<OrderInfo>>> dataProviderMap = new HashMap<>();
 
         private String INSERT_BUY;
@@ -117,27 +194,50 @@ public class OrderQueryModule extends AbstractModule {
         private String DELETE_BUY_TEMPS;
         private String DELETE_SELL;
         private String DELETE_SELL_TEMPS;
-        private String SELECT_BY_BUY_ID;
-        private String SELECT_BY_SELL_ID;
         private String SELECT_CATEGORIES;
-        private String SELECT_MATCH_ORDERS;
-        private String SELECT_BUY_ORDERS;
-        private String SELECT_BUY_ORDERS_ALL;
-        private String SELECT_SELL_ORDERS;
-        private String SELECT_SELL_ORDERS_ALL;
+        private String SAVEPOINT;
+        private String RELEASE_SAVEPOINT;
+        private String ROLLBACK_SAVEPOINT;
+        private String SELECT_BUY_ORDERS_BOOK;
+        private String SELECT_SELL_ORDERS_BOOK;
+        private String SELECT_SUMMARY_PAGE;
+        private String SELECT_SUMMARY_PAGE_ALL;
+        private String SELECT_SUMMARY_OFFSET;
+        private String SELECT_SUMMARY_OFFSET_ALL;
+        private String SELECT_SUMMARY_ROWS;
+        private String SELECT_SUMMARY_ROWS_ALL;
         private String SELECT_PRICE_TREND;
         private String SELECT_PRICE_TREND_HIGHEST;
         private String SELECT_PRICE_TREND_LOWEST;
         private String SELECT_PRICE_TREND_LAST;
         private String SELECT_PRICE_TREND_AVG;
-        private String SELECT_BUY_ORDER_HIGHEST;
-        private String SELECT_SELL_ORDER_LOWEST;
+        private String SELECT_TRADE_ARCHIVES;
+        private String SELECT_TRADE_HISTORY;
 
-        public OrderQueryModuleImpl(SQLSession ordersSession) {
+        public OrderQueryModuleImpl(SQLSession ordersSession,
+                                    OrderReadSessions readSessions,
+                                    OrderSQLModule.UuidStorage uuidStorage) {
             this.ordersSession = ordersSession;
+            this.readSessions = readSessions;
+            this.uuidStorage = uuidStorage;
         }
 
-        public int getCategoryId(String category) {
+        private void loadOrderBook(OrderType type, String sql) {
+            ordersSession.query(sql, pstmt -> {
+            }, resultSet -> {
+                try {
+                    OrderInfo info = OrderInfo.read(resultSet, uuidStorage);
+                    if (info != null)
+                        orderBook.add(type, info, resultSet.getBoolean("temp"));
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+                return null;
+            });
+            orderBook.commit();
+        }
+
+        public synchronized int getCategoryId(String category) {
             if (!categoryIdMap.containsKey(category)) {
                 ordersSession.execute(INSERT_CATEGORY, pstmt -> {
                     try {
@@ -155,71 +255,241 @@ public class OrderQueryModule extends AbstractModule {
         }
 
         @Override
-        public void addOrder(UUID listingUuid,
-                             String category,
-                             OrderType type,
-                             IOrderIssuer issuer,
-                             double price,
-                             Currency currency,
-                             int stock,
-                             boolean temp) throws SQLException {
-            String sql;
-            if (type == OrderType.BUY) {
-                sql = INSERT_BUY;
-            } else if (type == OrderType.SELL) {
-                sql = INSERT_SELL;
-            } else {
-                throw new RuntimeException("Unknown order type " + type);
+        public synchronized int addOrder(UUID listingUuid,
+                            String category,
+                            OrderType type,
+                            IOrderIssuer issuer,
+                            double price,
+                            Currency currency,
+                            int stock,
+                            boolean temp) throws SQLException {
+            int orderId = insertOrder(listingUuid,
+                    getCategoryId(category),
+                    type,
+                    issuer,
+                    price,
+                    currency,
+                    stock,
+                    temp,
+                    new Timestamp(System.currentTimeMillis()));
+            updateSummary(type, listingUuid);
+            return orderId;
+        }
+
+        @Override
+        public synchronized void addOrders(Collection<OrderRequest> requests) throws SQLException {
+            // all orders of the same batch are issued at the same time
+            Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+            Map<OrderType, List<OrderRequest>> byType = new EnumMap<>(OrderType.class);
+            for (OrderRequest request : requests) {
+                byType.computeIfAbsent(request.getType(), type -> new ArrayList<>()).add(request);
             }
 
-            int categoryId = getCategoryId(category);
-            ordersSession.execute(sql, pstmt -> {
+            for (Map.Entry<OrderType, List<OrderRequest>> entry : byType.entrySet()) {
+                OrderType type = entry.getKey();
+                List<OrderRequest> typed = entry.getValue();
+                for (int from = 0; from < typed.size(); from += INSERT_ORDERS_CHUNK) {
+                    insertOrders(type, typed.subList(from, Math.min(typed.size(), from + INSERT_ORDERS_CHUNK)),
+                            timestamp);
+                }
+
+                // once per listing, no matter how many orders of the batch went into it
+                typed.stream()
+                        .map(OrderRequest::getListingUuid)
+                        .distinct()
+                        .forEach(listingUuid -> updateSummary(type, listingUuid));
+            }
+        }
+
+        /**
+         * Insert the orders with a single multi-row INSERT. The rows of one statement get ascending ids after
+         * all the existing rows, and this is the only connection writing the orders, so the new ids are
+         * read back as the ids after the last one before the insert.
+         */
+        private void insertOrders(OrderType type, List<OrderRequest> requests, Timestamp timestamp)
+                throws SQLException {
+            String table = orderTable(type);
+            String sql = multiRowInsert(insertSql(type), requests.size());
+
+            // before the insert, as a new category is inserted too
+            int[] categoryIds = new int[requests.size()];
+            for (int i = 0; i < requests.size(); i++) {
+                categoryIds[i] = getCategoryId(requests.get(i).getCategory());
+            }
+
+            int lastId = ordersSession.query("SELECT MAX(" + OrderSQLModule.ORDER_ID + ") AS last_id FROM "
+                    + table + ";", pstmt -> {
+            }, rs -> {
                 try {
-                    pstmt.setString(1, listingUuid.toString());
-                    pstmt.setInt(2, categoryId);
-                    pstmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
-                    pstmt.setString(4, issuer.getUuid().toString());
-                    pstmt.setDouble(5, price);
-                    pstmt.setString(6, currency.getKey().toString());
-                    pstmt.setInt(7, stock);
-                    pstmt.setInt(8, stock);
-                    pstmt.setBoolean(9, temp);
+                    // 0 if there is no order at all
+                    return rs.getInt("last_id");
                 } catch (SQLException ex) {
                     ex.printStackTrace();
+                    return null;
                 }
-            }, index -> issuer.addOrderId(type, index.intValue()));
-        }
+            }).stream().filter(Objects::nonNull).findFirst().orElse(0);
 
-        @Override
-        public OrderInfo getInfo(int orderId, OrderType type) throws SQLException {
-            String sql;
-            if (type == OrderType.BUY) {
-                sql = SELECT_BY_BUY_ID;
-            } else if (type == OrderType.SELL) {
-                sql = SELECT_BY_SELL_ID;
-            } else {
-                throw new RuntimeException("Unknown order type " + type);
-            }
+            ordersSession.execute(sql, pstmt -> {
+                try {
+                    for (int i = 0; i < requests.size(); i++) {
+                        OrderRequest request = requests.get(i);
+                        setOrder(pstmt, i * INSERT_ORDER_COLUMNS, request.getListingUuid(), categoryIds[i], timestamp,
+                                request.getIssuer(), request.getPrice(), request.getCurrency(), request.getStock(),
+                                request.isTemp());
+                    }
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, key -> {
+            });
 
-            return ordersSession.query(sql, pstmt -> {
+            List<Integer> orderIds = ordersSession.query("SELECT " + OrderSQLModule.ORDER_ID + " FROM " + table
+                    + " WHERE " + OrderSQLModule.ORDER_ID + " > ? ORDER BY " + OrderSQLModule.ORDER_ID + ";", pstmt -> {
                 try {
-                    pstmt.setInt(1, orderId);
+                    pstmt.setInt(1, lastId);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
-            }, resultSet -> {
+            }, rs -> {
                 try {
-                    return OrderInfo.read(resultSet);
+                    return rs.getInt(OrderSQLModule.ORDER_ID);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
+                    return null;
                 }
+            });
+            if (orderIds.size() != requests.size() || orderIds.contains(null))
+                throw new SQLException("Expected " + requests.size() + " new orders in " + table + ", but found "
+                        + orderIds.size() + ".");
+
+            for (int i = 0; i < requests.size(); i++) {
+                OrderRequest request = requests.get(i);
+                int orderId = orderIds.get(i);
+                orderBook.add(type, OrderInfo.create(orderId,
+                        request.getListingUuid(),
+                        categoryIds[i],
+                        request.getIssuer().getUuid(),
+                        request.getPrice(),
+                        request.getCurrency().getKey(),
+                        request.getStock(),
+                        request.getStock()), request.isTemp());
+                request.getIssuer().addOrderId(type, orderId);
+            }
+        }
 
-                return null;
-            }).stream().filter(Objects::nonNull).findFirst().orElse(null);
+        private void updateSummary(OrderType type, UUID listingUuid) {
+            summary.update(type, listingUuid, orderBook.summary(type, listingUuid));
+        }
+
+        private int insertOrder(UUID listingUuid,
+                                int categoryId,
+                                OrderType type,
+                                IOrderIssuer issuer,
+                                double price,
+                                Currency currency,
+                                int stock,
+                                boolean temp,
+                                Timestamp timestamp) {
+            String sql = insertSql(type);
+
+            AtomicInteger orderId = new AtomicInteger();
+            ordersSession.execute(sql, pstmt -> {
+                try {
+                    setOrder(pstmt, 0, listingUuid, categoryId, timestamp, issuer, price, currency, stock, temp);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, index -> {
+                orderBook.add(type, OrderInfo.create(index.intValue(),
+                        listingUuid,
+                        categoryId,
+                        issuer.getUuid(),
+                        price,
+                        currency.getKey(),
+                        stock,
+                        stock), temp);
+                issuer.addOrderId(type, index.intValue());
+                orderId.set(index.intValue());
+            });
+            return orderId.get();
+        }
+
+        /**
+         * Set the parameters of one row of insert_buy_order.sql or insert_sell_order.sql.
+         *
+         * @param offset number of parameters of the rows before this one
+         */
+        private void setOrder(PreparedStatement pstmt,
+                              int offset,
+                              UUID listingUuid,
+                              int categoryId,
+                              Timestamp timestamp,
+                              IOrderIssuer issuer,
+                              double price,
+                              Currency currency,
+                              int stock,
+                              boolean temp) throws SQLException {
+            uuidStorage.set(pstmt, offset + 1, listingUuid);
+            pstmt.setInt(offset + 2, categoryId);
+            pstmt.setTimestamp(offset + 3, timestamp);
+            uuidStorage.set(pstmt, offset + 4, issuer.getUuid());
+            pstmt.setDouble(offset + 5, price);
+            uuidStorage.set(pstmt, offset + 6, currency.getKey());
+            pstmt.setInt(offset + 7, stock);
+            pstmt.setInt(offset + 8, stock);
+            pstmt.setBoolean(offset + 9, temp);
+        }
+
+        private String insertSql(OrderType type) {
+            if (type == OrderType.BUY) {
+                return INSERT_BUY;
+            } else if (type == OrderType.SELL) {
+                return INSERT_SELL;
+            } else {
+                throw new RuntimeException("Unknown order type " + type);
+            }
+        }
+
+        /**
+         * Repeat the row of the single-row INSERT, such as insert_buy_order.sql, for the given number of rows.
+         */
+        private static String multiRowInsert(String sql, int rows) {
+            String statement = sql.trim();
+            if (statement.endsWith(";"))
+                statement = statement.substring(0, statement.length() - 1);
+
+            int values = statement.toUpperCase().lastIndexOf("VALUES");
+            String row = statement.substring(values + "VALUES".length()).trim();
+            return statement.substring(0, values) + "VALUES " + String.join(", ", Collections.nCopies(rows, row)) + ";";
+        }
+
+        private String orderTable(OrderType type) {
+            if (type == OrderType.BUY) {
+                return "buy_orders";
+            } else if (type == OrderType.SELL) {
+                return "sell_orders";
+            } else {
+                throw new RuntimeException("Unknown order type " + type);
+            }
         }
 
         @Override
-        public void editOrder(int orderId, OrderType type, int newAmount) throws SQLException {
+        public OrderInfo getInfo(int orderId, OrderType type) throws SQLException {
+            Validation.assertNotNull(type);
+
+            return orderBook.get(type, orderId);
+        }
+
+        @Override
+        public List<OrderInfo> getInfos(Collection<Integer> orderIds, OrderType type) throws SQLException {
+            Validation.assertNotNull(orderIds);
+            Validation.assertNotNull(type);
+
+            return orderBook.getAll(type, orderIds);
+        }
+
+        @Override
+        public synchronized void editOrder(int orderId, OrderType type, int newAmount) throws SQLException {
             String sql;
             if (type == OrderType.BUY) {
                 sql = UPDATE_BUY;
@@ -238,10 +508,13 @@ public class OrderQueryModule extends AbstractModule {
                 }
             }, index -> {
             });
+            OrderInfo edited = orderBook.edit(type, orderId, newAmount);
+            if (edited != null)
+                updateSummary(type, edited.getListingUuid());
         }
 
         @Override
-        public void logOrder(UUID listingUuid,
+        public synchronized void logOrder(UUID listingUuid,
                              int categoryId,
                              UUID seller,
                              UUID buyer,
@@ -249,26 +522,30 @@ public class OrderQueryModule extends AbstractModule {
                              UUID currency,
                              int amount) throws SQLException {
             String sql = INSERT_LOG;
+            long timestamp = System.currentTimeMillis();
+            AtomicInteger tradeId = new AtomicInteger();
 
             ordersSession.execute(sql, pstmt -> {
                 try {
-                    pstmt.setString(1, listingUuid.toString());
+                    uuidStorage.set(pstmt, 1, listingUuid);
                     pstmt.setInt(2, categoryId);
-                    pstmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
-                    pstmt.setString(4, seller.toString());
-                    pstmt.setString(5, buyer.toString());
+                    pstmt.setTimestamp(3, new Timestamp(timestamp));
+                    uuidStorage.set(pstmt, 4, seller);
+                    uuidStorage.set(pstmt, 5, buyer);
                     pstmt.setDouble(6, price);
-                    pstmt.setString(7, currency.toString());
+                    uuidStorage.set(pstmt, 7, currency);
                     pstmt.setInt(8, amount);
                 } catch (SQLException throwables) {
                     throwables.printStackTrace();
                 }
-            }, index -> {
-            });
+            }, index -> tradeId.set(index.intValue()));
+
+            if (tradeId.get() > 0)
+                candles.update(tradeId.get(), listingUuid, currency, seller, buyer, price, amount, timestamp);
         }
 
         @Override
-        public void cancelOrder(int orderId, OrderType type, Consumer<Integer> callback) throws SQLException {
+        public synchronized void cancelOrder(int orderId, OrderType type, Consumer<Integer> callback) throws SQLException {
             String sql;
             if (type == OrderType.BUY) {
                 sql = DELETE_BUY;
@@ -285,55 +562,128 @@ public class OrderQueryModule extends AbstractModule {
                     ex.printStackTrace();
                 }
             }, index -> {
-                if (index > 0)
-                    callback.accept(orderId);
-                else
-                    callback.accept(0);
             });
+
+            OrderInfo removed = orderBook.remove(type, orderId);
+            if (removed != null) {
+                updateSummary(type, removed.getListingUuid());
+                callback.accept(orderId);
+            } else {
+                callback.accept(0);
+            }
         }
 
         @Override
-        public void clearTemporaryBuyOrders() throws SQLException {
+        public synchronized void clearTemporaryBuyOrders() throws SQLException {
             String sql = DELETE_BUY_TEMPS;
 
             ordersSession.execute(sql, (pstmt) -> {
             }, index -> {
             });
+            orderBook.removeTemporary(OrderType.BUY).stream()
+                    .map(OrderInfo::getListingUuid)
+                    .distinct()
+                    .forEach(listingUuid -> updateSummary(OrderType.BUY, listingUuid));
         }
 
         @Override
-        public void clearTemporarySellOrders() throws SQLException {
+        public synchronized void clearTemporarySellOrders() throws SQLException {
             String sql = DELETE_SELL_TEMPS;
 
             ordersSession.execute(sql, (pstmt) -> {
             }, index -> {
             });
+            orderBook.removeTemporary(OrderType.SELL).stream()
+                    .map(OrderInfo::getListingUuid)
+                    .distinct()
+                    .forEach(listingUuid -> updateSummary(OrderType.SELL, listingUuid));
+        }
+
+        @Override
+        public <T> T withOrderTransaction(Callable<T> task) throws Exception {
+            Validation.assertNotNull(task);
+
+            transactionLock.lock();
+            try {
+                return task.call();
+            } finally {
+                transactionLock.unlock();
+            }
+        }
+
+        @Override
+        public void closeReadSessions() {
+            readSessions.close();
         }
 
         @Override
-        public void commitOrders() throws SQLException {
+        public synchronized void commitOrders() throws SQLException {
             ordersSession.commit();
+            orderBook.commit();
+            marked = false;
         }
 
         @Override
-        public void rollbackOrders() throws SQLException {
+        public synchronized void rollbackOrders() throws SQLException {
             ordersSession.rollback();
+            orderBook.rollback();
+            marked = false;
+        }
+
+        @Override
+        public synchronized void markOrders() throws SQLException {
+            if (marked)
+                releaseOrdersMark();
+
+            ordersSession.execute(SAVEPOINT, pstmt -> {
+            }, index -> {
+            });
+            orderBook.mark();
+            marked = true;
+        }
+
+        @Override
+        public synchronized void releaseOrdersMark() throws SQLException {
+            if (!marked)
+                return;
+
+            ordersSession.execute(RELEASE_SAVEPOINT, pstmt -> {
+            }, index -> {
+            });
+            orderBook.releaseMark();
+            marked = false;
+        }
+
+        @Override
+        public synchronized void rollbackOrdersToMark() throws SQLException {
+            // the savepoint is already gone if the transaction was finalized after the mark
+            if (!marked)
+                return;
+
+            ordersSession.execute(ROLLBACK_SAVEPOINT, pstmt -> {
+            }, index -> {
+            });
+            ordersSession.execute(RELEASE_SAVEPOINT, pstmt -> {
+            }, index -> {
+            });
+            orderBook.rollbackToMark();
+            marked = false;
         }
 
         @Override
         public PricePoint getLastTradingPrice(int daysPeriod, UUID currencyUuid, UUID listingUuid) {
             String sql = SELECT_PRICE_TREND_LAST;
 
-            List<PricePoint> points = ordersSession.query(sql, pstmt -> {
+            List<PricePoint> points = readSessions.query(sql, pstmt -> {
                 try {
-                    pstmt.setString(1, currencyUuid.toString());
-                    pstmt.setString(2, listingUuid.toString());
+                    uuidStorage.set(pstmt, 1, currencyUuid);
+                    uuidStorage.set(pstmt, 2, listingUuid);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
             }, resultSet -> {
                 try {
-                    return PricePoint.read(resultSet);
+                    return PricePoint.read(resultSet, uuidStorage);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                     return null;
@@ -346,12 +696,13 @@ public class OrderQueryModule extends AbstractModule {
         @Override
         public double getLastTradingAverage(int daysPeriod, UUID currencyUuid, UUID listingUuid) {
             String sql = SELECT_PRICE_TREND_AVG;
+            long firstDay = candles.firstDayBucket(daysPeriod);
 
-            List<Double> average = ordersSession.query(sql, pstmt -> {
+            List<Double> average = readSessions.query(sql, pstmt -> {
                 try {
-                    pstmt.setInt(1, daysPeriod);
-                    pstmt.setString(2, currencyUuid.toString());
-                    pstmt.setString(3, listingUuid.toString());
+                    pstmt.setLong(1, firstDay);
+                    uuidStorage.set(pstmt, 2, currencyUuid);
+                    uuidStorage.set(pstmt, 3, listingUuid);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
@@ -371,116 +722,136 @@ public class OrderQueryModule extends AbstractModule {
 
         @Override
         public OrderInfo getLowestAsk(UUID currencyUuid, UUID listingUuid) {
-            String sql = SELECT_SELL_ORDER_LOWEST;
+            return orderBook.best(OrderType.SELL, currencyUuid, listingUuid);
+        }
+
+        @Override
+        public OrderInfo getHighestBid(UUID currencyUuid, UUID listingUuid) {
+            return orderBook.best(OrderType.BUY, currencyUuid, listingUuid);
+        }
+
+        @Override
+        public PricePoint getHighestPoint(int daysPeriod, UUID currencyUuid, UUID listingUuid) {
+            String sql = SELECT_PRICE_TREND_HIGHEST;
+            long firstDay = candles.firstDayBucket(daysPeriod);
 
-            List<OrderInfo> orderInfos = ordersSession.query(sql, pstmt -> {
+            List<PricePoint> points = readSessions.query(sql, pstmt -> {
                 try {
-                    pstmt.setString(1, currencyUuid.toString());
-                    pstmt.setString(2, listingUuid.toString());
+                    pstmt.setLong(1, firstDay);
+                    uuidStorage.set(pstmt, 2, currencyUuid);
+                    uuidStorage.set(pstmt, 3, listingUuid);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
             }, resultSet -> {
                 try {
-                    return OrderInfo.read(resultSet);
+                    return PricePoint.read(resultSet, uuidStorage);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                     return null;
                 }
             });
 
-            return orderInfos.stream().findFirst().orElse(null);
+            return points.stream().filter(Objects::nonNull).findFirst().orElse(null);
         }
 
         @Override
-        public OrderInfo getHighestBid(UUID currencyUuid, UUID listingUuid) {
-            String sql = SELECT_BUY_ORDER_HIGHEST;
+        public PricePoint getLowestPoint(int daysPeriod, UUID currencyUuid, UUID listingUuid) {
+            String sql = SELECT_PRICE_TREND_LOWEST;
+            long firstDay = candles.firstDayBucket(daysPeriod);
 
-            List<OrderInfo> orderInfos = ordersSession.query(sql, pstmt -> {
+            List<PricePoint> points = readSessions.query(sql, pstmt -> {
                 try {
-                    pstmt.setString(1, currencyUuid.toString());
-                    pstmt.setString(2, listingUuid.toString());
+                    pstmt.setLong(1, firstDay);
+                    uuidStorage.set(pstmt, 2, currencyUuid);
+                    uuidStorage.set(pstmt, 3, listingUuid);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
             }, resultSet -> {
                 try {
-                    return OrderInfo.read(resultSet);
+                    return PricePoint.read(resultSet, uuidStorage);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                     return null;
                 }
             });
 
-            return orderInfos.stream().findFirst().orElse(null);
+            return points.stream().filter(Objects::nonNull).findFirst().orElse(null);
         }
 
         @Override
-        public PricePoint getHighestPoint(int daysPeriod, UUID currencyUuid, UUID listingUuid) {
-            String sql = SELECT_PRICE_TREND_HIGHEST;
+        public List<PricePoint> getTradeHistory(UUID currencyUuid, UUID listingUuid, long from, long to) {
+            Validation.assertNotNull(currencyUuid);
+            Validation.assertNotNull(listingUuid);
 
-            List<PricePoint> points = ordersSession.query(sql, pstmt -> {
+            List<String> files = readSessions.query(SELECT_TRADE_ARCHIVES, pstmt -> {
                 try {
-                    pstmt.setInt(1, daysPeriod);
-                    pstmt.setString(2, currencyUuid.toString());
-                    pstmt.setString(3, listingUuid.toString());
+                    pstmt.setLong(1, from);
+                    pstmt.setLong(2, to);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
             }, resultSet -> {
                 try {
-                    return PricePoint.read(resultSet);
+                    return resultSet.getString("file");
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                     return null;
                 }
             });
+            files.removeIf(Objects::isNull);
 
-            return points.stream().filter(Objects::nonNull).findFirst().orElse(null);
-        }
-
-        @Override
-        public PricePoint getLowestPoint(int daysPeriod, UUID currencyUuid, UUID listingUuid) {
-            String sql = SELECT_PRICE_TREND_LOWEST;
+            List<PricePoint> trades = new ArrayList<>();
+            try {
+                trades.addAll(archive.read(files, trade -> listingUuid.equals(trade.getListingUuid())
+                        && currencyUuid.equals(trade.getCurrencyUuid())
+                        && trade.getTimestamp().getTime() >= from
+                        && trade.getTimestamp().getTime() < to));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
 
-            List<PricePoint> points = ordersSession.query(sql, pstmt -> {
+            trades.addAll(readSessions.query(SELECT_TRADE_HISTORY, pstmt -> {
                 try {
-                    pstmt.setInt(1, daysPeriod);
-                    pstmt.setString(2, currencyUuid.toString());
-                    pstmt.setString(3, listingUuid.toString());
+                    uuidStorage.set(pstmt, 1, listingUuid);
+                    uuidStorage.set(pstmt, 2, currencyUuid);
+                    pstmt.setTimestamp(3, new Timestamp(from));
+                    pstmt.setTimestamp(4, new Timestamp(to));
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
             }, resultSet -> {
                 try {
-                    return PricePoint.read(resultSet);
+                    return PricePoint.read(resultSet, uuidStorage);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                     return null;
                 }
-            });
+            }));
+            trades.removeIf(Objects::isNull);
 
-            return points.stream().filter(Objects::nonNull).findFirst().orElse(null);
+            return trades;
         }
 
         @Override
         public void peekMatchingOrders(Consumer<TradeInfo> consumer) {
-            String sql = SELECT_MATCH_ORDERS;
+            consumer.accept(orderBook.peekMatch());
+        }
 
-            List<TradeInfo> infos = ordersSession.query(sql, pstmt -> {
-            }, resultSet -> {
-                try {
-                    return TradeInfo.read(resultSet);
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                    return null;
-                }
-            });
+        @Override
+        public void peekMatchingOrders(MarketKey market, Consumer<TradeInfo> consumer) {
+            consumer.accept(orderBook.peekMatch(market));
+        }
+
+        @Override
+        public Set<MarketKey> getMarkets() {
+            return orderBook.markets();
+        }
 
-            consumer.accept(infos.stream()
-                    .filter(Objects::nonNull)
-                    .findFirst()
-                    .orElse(null));
+        @Override
+        public Set<MarketKey> getMarkets(Collection<UUID> listingUuids) {
+            return orderBook.markets(listingUuids);
         }
 
         public Collection<String> categoryNames() {
@@ -493,7 +864,7 @@ public class OrderQueryModule extends AbstractModule {
         }
 
         @Override
-        public void setListingName(UUID listingUuid, String name) {
+        public synchronized void setListingName(UUID listingUuid, String name) {
             Validation.assertNotNull(listingUuid);
             Validation.assertNotNull(name);
 
@@ -501,17 +872,18 @@ public class OrderQueryModule extends AbstractModule {
 
             ordersSession.execute(sql, (pstmt) -> {
                 try {
-                    pstmt.setString(1, listingUuid.toString());
+                    uuidStorage.set(pstmt, 1, listingUuid);
                     pstmt.setString(2, name);
                 } catch (SQLException ex) {
                     ex.printStackTrace();
                 }
             }, index -> {
             });
+            summary.setName(listingUuid, name);
         }
 
         @Override
-        public void setCurrencyName(UUID currencyUuid, String full, String shorter) {
+        public synchronized void setCurrencyName(UUID currencyUuid, String full, String shorter) {
             Validation.assertNotNull(currencyUuid);
             Validation.assertNotNull(full);
             Validation.assertNotNull(shorter);
@@ -520,7 +892,7 @@ public class OrderQueryModule extends AbstractModule {
 
             ordersSession.execute(sql, (pstmt) -> {
                 try {
-                    pstmt.setString(1, currencyUuid.toString());
+                    uuidStorage.set(pstmt, 1, currencyUuid);
                     pstmt.setString(2, full);
                     pstmt.setString(3, shorter);
                 } catch (SQLException ex) {
@@ -547,19 +919,9 @@ public class OrderQueryModule extends AbstractModule {
                     c -> new EnumMap<>(OrderType.class));
             switch (type) {
                 case BUY:
-                    return typeMap.computeIfAbsent(type, t -> {
-                        OrderDataProvider orderDataProvider = new OrderDataProvider("buy_orders",
-                                SELECT_BUY_ORDERS_ALL,
-                                SELECT_BUY_ORDERS,
-                                categoryId, finalQueryAll);
-                        return new DataProviderProxy<>(orderDataProvider, orderDataProvider);
-                    });
                 case SELL:
                     return typeMap.computeIfAbsent(type, t -> {
-                        OrderDataProvider orderDataProvider = new OrderDataProvider("sell_orders",
-                                SELECT_SELL_ORDERS_ALL,
-                                SELECT_SELL_ORDERS,
-                                categoryId, finalQueryAll);
+                        OrderDataProvider orderDataProvider = new OrderDataProvider(type, categoryId, finalQueryAll);
                         return new DataProviderProxy<>(orderDataProvider, orderDataProvider);
                     });
                 default:
@@ -567,35 +929,39 @@ public class OrderQueryModule extends AbstractModule {
             }
         }
 
+        /**
+         * Pages of the market summary. A page that comes right after the one already read seeks from the
+         * sort key of its last row, so reading the next page costs the same no matter how deep it is.
+         * Pages reached in any other way fall back to the offset.
+         */
         private class OrderDataProvider implements Function<Range, List<OrderInfo>>, Supplier<Integer> {
             private static final String COLUMN_COUNT = "rows_count";
+            private static final int MAX_CURSORS = 64;
 
-            private final String tableName;
-            private final String queryAll;
-            private final String querySome;
+            private final OrderType type;
             private final int categoryId;
             private final boolean all;
+            // index of row -> sort key of the row
+            private final Map<Integer, String> cursors = new LinkedHashMap<Integer, String>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                    return size() > MAX_CURSORS;
+                }
+            };
 
-            public OrderDataProvider(String tableName, String queryAll, String querySome, int categoryId, boolean all) {
-                this.queryAll = queryAll;
-                this.querySome = querySome;
-                this.tableName = tableName;
+            public OrderDataProvider(OrderType type, int categoryId, boolean all) {
+                this.type = type;
                 this.categoryId = categoryId;
                 this.all = all;
             }
 
             @Override
             public Integer get() {
-                List<Integer> out = ordersSession.query("SELECT COUNT(" + OrderSQLModule.LISTING_UUID + ") as " + COLUMN_COUNT +
-                        " FROM (" +
-                        " SELECT " + OrderSQLModule.LISTING_UUID +
-                        " FROM " + tableName +
-                        (all ? "" : " WHERE " + OrderSQLModule.CATEGORY_ID + " = ?") +
-                        " GROUP BY " + OrderSQLModule.LISTING_UUID +
-                        ") tbl", pstmt -> {
+                List<Integer> out = readSessions.query(all ? SELECT_SUMMARY_ROWS_ALL : SELECT_SUMMARY_ROWS, pstmt -> {
                     try {
+                        pstmt.setInt(1, type.ordinal());
                         if (!all)
-                            pstmt.setInt(1, categoryId);
+                            pstmt.setInt(2, categoryId);
                     } catch (SQLException ex) {
                         ex.printStackTrace();
                     }
@@ -613,26 +979,57 @@ public class OrderQueryModule extends AbstractModule {
 
             @Override
             public List<OrderInfo> apply(Range range) {
-                String sql = all ? queryAll : querySome;
+                String cursor;
+                synchronized (cursors) {
+                    cursor = range.index == 0 ? "" : cursors.get(range.index - 1);
+                }
+
+                String sql;
+                if (cursor != null) {
+                    sql = all ? SELECT_SUMMARY_PAGE_ALL : SELECT_SUMMARY_PAGE;
+                } else {
+                    sql = all ? SELECT_SUMMARY_OFFSET_ALL : SELECT_SUMMARY_OFFSET;
+                }
 
-                return ordersSession.query(sql, pstmt -> {
+                List<Pair<String, OrderInfo>> rows = readSessions.query(sql, pstmt -> {
                     try {
                         int i = 1;
+                        pstmt.setInt(i++, type.ordinal());
                         if (!all)
                             pstmt.setInt(i++, categoryId);
-                        pstmt.setInt(i++, range.index);
+                        if (cursor != null) {
+                            pstmt.setString(i++, cursor);
+                        } else {
+                            pstmt.setInt(i++, range.index);
+                        }
                         pstmt.setInt(i++, range.size);
                     } catch (SQLException ex) {
                         ex.printStackTrace();
                     }
                 }, resultSet -> {
                     try {
-                        return OrderInfo.read(resultSet);
+                        return Pair.of(resultSet.getString("sort_key"), OrderInfo.read(resultSet, uuidStorage));
                     } catch (SQLException ex) {
                         ex.printStackTrace();
                         return null;
                     }
                 });
+
+                List<OrderInfo> page = new ArrayList<>();
+                for (Pair<String, OrderInfo> row : rows) {
+                    if (row == null || row.value == null)
+                        continue;
+
+                    page.add(row.value);
+                }
+
+                if (!rows.isEmpty() && rows.get(rows.size() - 1) != null) {
+                    synchronized (cursors) {
+                        cursors.put(range.index + rows.size() - 1, rows.get(rows.size() - 1).key);
+                    }
+                }
+
+                return page;
             }
         }
     }
@@ -0,0 +1,125 @@
+package io.github.wysohn.realeconomy.inject.module;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Connections of the order database used only for reading. The price and browse queries run here, so they
+ * neither wait for nor hold up the transaction of the {@link io.github.wysohn.realeconomy.inject.annotation.OrderSQL}
+ * session, which is used by the trade broker.
+ * <p>
+ * The connections are in auto-commit mode, so each query is its own transaction. It always sees the latest
+ * committed state of the tables and never the uncommitted changes of the writer.
+ */
+public class OrderReadSessions {
+    // how long closing waits for the queries in progress
+    private static final long CLOSE_TIMEOUT_SECONDS = 10L;
+
+    private final BlockingQueue<Connection> connections;
+    private final int size;
+    private volatile boolean closed = false;
+
+    public OrderReadSessions(Collection<Connection> connections) {
+        Validation.assertNotNull(connections);
+        Validation.validate(connections.size(), size -> size > 0, "At least one connection is required.");
+
+        this.connections = new ArrayBlockingQueue<>(connections.size(), false, connections);
+        this.size = connections.size();
+    }
+
+    /**
+     * Run the query on the first idle connection. Blocks if all connections are in use.
+     *
+     * @param sql    the query
+     * @param fn     sets the parameters of the query
+     * @param mapper maps each row of the result
+     * @return the mapped rows; empty if failed, interrupted while waiting for a connection, or already closed
+     */
+    public <T> List<T> query(String sql, Consumer<PreparedStatement> fn, Function<ResultSet, T> mapper) {
+        List<T> result = new ArrayList<>();
+        if (closed)
+            return result;
+
+        Connection connection;
+        try {
+            connection = connections.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return result;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            fn.accept(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(mapper.apply(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        } finally {
+            release(connection);
+        }
+        return result;
+    }
+
+    /**
+     * Close all connections. The queries in progress are waited for a while, and the queries made after
+     * this return nothing.
+     */
+    public void close() {
+        closed = true;
+
+        for (int i = 0; i < size; i++) {
+            Connection connection;
+            try {
+                connection = connections.poll(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // still in use; it's closed when released
+            if (connection == null)
+                return;
+
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * @return number of connections
+     */
+    public int size() {
+        return size;
+    }
+
+    private void release(Connection connection) {
+        // the pool might have been closed while the query was running
+        if (closed) {
+            closeQuietly(connection);
+        } else {
+            connections.offer(connection);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
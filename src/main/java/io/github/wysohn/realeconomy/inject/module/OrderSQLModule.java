@@ -4,89 +4,141 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import io.github.wysohn.rapidframework3.core.inject.annotations.PluginDirectory;
+import io.github.wysohn.rapidframework3.core.inject.annotations.PluginLogger;
 import io.github.wysohn.rapidframework3.core.main.ManagerConfig;
 import io.github.wysohn.rapidframework3.interfaces.io.IPluginResourceProvider;
-import io.github.wysohn.rapidframework3.interfaces.plugin.IShutdownHandle;
+import io.github.wysohn.rapidframework3.utils.Validation;
 import io.github.wysohn.rapidframework3.utils.sql.SQLSession;
 import io.github.wysohn.realeconomy.inject.annotation.OrderSQL;
+import io.github.wysohn.realeconomy.main.Metrics;
 
 import java.io.File;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class OrderSQLModule extends AbstractModule {
     public static final String ORDER_ID = "order_id";
     public static final String CATEGORY_ID = "category_id";
     public static final String LISTING_UUID = "listing_uuid";
+    public static final String UUID_STORAGE = "database.uuidStorage";
+    public static final String READ_CONNECTIONS = "database.readConnections";
+    static final int DEFAULT_READ_CONNECTIONS = 2;
+    static final String ORDERS_DB = "orders.db";
+
+    /**
+     * Schema changes applied on top of the tables created in {@link #sqlSession(File, IPluginResourceProvider,
+     * Logger, ManagerConfig, UuidStorage)}. The n-th script upgrades the schema to the version n, and each script
+     * runs only once per database. Never edit or reorder the scripts already released; append a new one instead.
+     */
+    static final List<String> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            "migration_v1_indexes.sql",
+            "migration_v2_candles.sql",
+            "migration_v3_market_summary.sql"
+    ));
+
+    @Provides
+    @Singleton
+    UuidStorage uuidStorage(ManagerConfig config) {
+        if (!config.get(UUID_STORAGE).isPresent()) {
+            config.put(UUID_STORAGE, UuidStorage.BINARY.name().toLowerCase());
+        }
+
+        return config.get(UUID_STORAGE)
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .map(String::toUpperCase)
+                .map(UuidStorage::valueOf)
+                .orElse(UuidStorage.BINARY);
+    }
 
     @Provides
     @Singleton
     @OrderSQL
     SQLSession sqlSession(@PluginDirectory File pluginDir,
                           IPluginResourceProvider resourceProvider,
-                          IShutdownHandle shutdownHandle,
-                          ManagerConfig config) throws SQLException {
-        SQLSession.Builder builder = null;
-        try {
-            if (config.get("database.type")
-                    .filter(String.class::isInstance)
-                    .map(String.class::cast)
-                    .map("mysql"::equals)
-                    .orElse(false)) {
-                builder = SQLSession.Builder.mysql(config.get("database.host")
-                                .filter(String.class::isInstance)
-                                .map(String.class::cast)
-                                .orElseThrow(RuntimeException::new),
-                        config.get("database.name")
-                                .filter(String.class::isInstance)
-                                .map(String.class::cast)
-                                .orElseThrow(RuntimeException::new),
-                        config.get("database.user")
-                                .filter(String.class::isInstance)
-                                .map(String.class::cast)
-                                .orElseThrow(RuntimeException::new),
-                        config.get("database.password")
-                                .filter(String.class::isInstance)
-                                .map(String.class::cast)
-                                .orElseThrow(RuntimeException::new));
-            } else {
-                config.put("database.type", "sqlite");
-                config.put("database.host", "127.0.0.1");
-                config.put("database.name", "realeconomy");
-                config.put("database.user", "re");
-                config.put("database.password", "re");
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        } finally {
-            if (builder == null)
-                builder = SQLSession.Builder.sqlite(new File(pluginDir, "orders.db"));
+                          @PluginLogger Logger logger,
+                          ManagerConfig config,
+                          UuidStorage uuidStorage) throws SQLException, IOException {
+        boolean mysql = isMysql(config);
+        SQLSession.Builder builder = newBuilder(pluginDir, config);
+        if (!mysql)
+            enableWriteAheadLog(new File(pluginDir, ORDERS_DB), logger);
+
+        String uuidType = uuidStorage.getColumnType();
+        for (OrderCandles.Resolution resolution : OrderCandles.Resolution.values()) {
+            builder = builder.createTable(resolution.getTable(), tableInitializer -> tableInitializer.ifNotExist()
+                    .field("id", "integer",
+                            SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
+                    .field(LISTING_UUID, uuidType, SQLSession.Attribute.NOT_NULL)
+                    .field("currency_uuid", uuidType, SQLSession.Attribute.NOT_NULL)
+                    .field("bucket", "bigint", SQLSession.Attribute.NOT_NULL)
+                    .field("open", "double precision", SQLSession.Attribute.NOT_NULL)
+                    .field("high", "double precision")
+                    .field("low", "double precision")
+                    .field("close", "double precision", SQLSession.Attribute.NOT_NULL)
+                    .field("volume", "bigint", SQLSession.Attribute.NOT_NULL)
+                    .field("turnover", "double precision", SQLSession.Attribute.NOT_NULL)
+                    .field("price_sum", "double precision", SQLSession.Attribute.NOT_NULL)
+                    .field("trades", "integer", SQLSession.Attribute.NOT_NULL)
+                    .field("high_trade_id", "integer")
+                    .field("low_trade_id", "integer"));
         }
+        builder = builder.createTable(OrderCandles.BACKFILL_TABLE, tableInitializer -> tableInitializer.ifNotExist()
+                .field("id", "integer",
+                        SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
+                .field("last_trade_id", "integer", SQLSession.Attribute.NOT_NULL)
+                .field("until_trade_id", "integer", SQLSession.Attribute.NOT_NULL));
 
-        return builder
+        SQLSession session = builder
                 .createTable("buy_orders", tableInitializer -> tableInitializer.ifNotExist()
                         .field(ORDER_ID, "integer",
                                 SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
-                        .field(LISTING_UUID, "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field(LISTING_UUID, uuidType, SQLSession.Attribute.NOT_NULL)
                         .field(CATEGORY_ID, "integer")
                         .field("timestamp", "datetime", SQLSession.Attribute.NOT_NULL)
-                        .field("issuer", "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field("issuer", uuidType, SQLSession.Attribute.NOT_NULL)
                         .field("price", "double precision", SQLSession.Attribute.NOT_NULL)
-                        .field("currency_uuid", "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field("currency_uuid", uuidType, SQLSession.Attribute.NOT_NULL)
                         .field("amount", "integer", SQLSession.Attribute.NOT_NULL)
                         .field("maximum", "integer", SQLSession.Attribute.NOT_NULL)
                         .field("temp", "boolean"))
                 .createTable("sell_orders", tableInitializer -> tableInitializer.ifNotExist()
                         .field(ORDER_ID, "integer",
                                 SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
-                        .field(LISTING_UUID, "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field(LISTING_UUID, uuidType, SQLSession.Attribute.NOT_NULL)
                         .field(CATEGORY_ID, "integer")
                         .field("timestamp", "datetime", SQLSession.Attribute.NOT_NULL)
-                        .field("issuer", "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field("issuer", uuidType, SQLSession.Attribute.NOT_NULL)
                         .field("price", "double precision", SQLSession.Attribute.NOT_NULL)
-                        .field("currency_uuid", "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field("currency_uuid", uuidType, SQLSession.Attribute.NOT_NULL)
                         .field("amount", "integer", SQLSession.Attribute.NOT_NULL)
                         .field("maximum", "integer", SQLSession.Attribute.NOT_NULL)
                         .field("temp", "boolean"))
+                .createTable(OrderMarketSummary.TABLE, tableInitializer -> tableInitializer.ifNotExist()
+                        .field("id", "integer",
+                                SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
+                        .field("order_type", "integer", SQLSession.Attribute.NOT_NULL)
+                        .field(LISTING_UUID, uuidType, SQLSession.Attribute.NOT_NULL)
+                        .field(CATEGORY_ID, "integer", SQLSession.Attribute.NOT_NULL)
+                        .field("sort_key", "varchar(255)", SQLSession.Attribute.NOT_NULL)
+                        .field(ORDER_ID, "integer", SQLSession.Attribute.NOT_NULL)
+                        .field("issuer", uuidType, SQLSession.Attribute.NOT_NULL)
+                        .field("price", "double precision", SQLSession.Attribute.NOT_NULL)
+                        .field("currency_uuid", uuidType, SQLSession.Attribute.NOT_NULL)
+                        .field("amount", "integer", SQLSession.Attribute.NOT_NULL)
+                        .field("maximum", "integer", SQLSession.Attribute.NOT_NULL)
+                        .field("depth", "bigint", SQLSession.Attribute.NOT_NULL)
+                        .field("orders", "integer", SQLSession.Attribute.NOT_NULL))
+                .createTable(OrderMarketSummary.COUNTS_TABLE, tableInitializer -> tableInitializer.ifNotExist()
+                        .field("id", "integer",
+                                SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
+                        .field("order_type", "integer", SQLSession.Attribute.NOT_NULL)
+                        .field(CATEGORY_ID, "integer", SQLSession.Attribute.NOT_NULL)
+                        .field("listings", "integer", SQLSession.Attribute.NOT_NULL))
                 .createTable("category", tableInitializer -> tableInitializer.ifNotExist()
                         .field(CATEGORY_ID, "integer",
                                 SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
@@ -94,25 +146,301 @@ public class OrderSQLModule extends AbstractModule {
                 .createTable("trade_logs", tableInitializer -> tableInitializer.ifNotExist()
                         .field(ORDER_ID, "integer",
                                 SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
-                        .field(LISTING_UUID, "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field(LISTING_UUID, uuidType, SQLSession.Attribute.NOT_NULL)
                         .field("category_id", "integer", SQLSession.Attribute.NOT_NULL)
                         .field("timestamp", "datetime", SQLSession.Attribute.NOT_NULL)
-                        .field("seller", "char(36)", SQLSession.Attribute.NOT_NULL)
-                        .field("buyer", "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field("seller", uuidType, SQLSession.Attribute.NOT_NULL)
+                        .field("buyer", uuidType, SQLSession.Attribute.NOT_NULL)
                         .field("price", "double precision", SQLSession.Attribute.NOT_NULL)
-                        .field("currency_uuid", "char(36)", SQLSession.Attribute.NOT_NULL)
+                        .field("currency_uuid", uuidType, SQLSession.Attribute.NOT_NULL)
                         .field("amount", "integer", SQLSession.Attribute.NOT_NULL))
+                .createTable(OrderTradeArchive.TABLE, tableInitializer -> tableInitializer.ifNotExist()
+                        .field("id", "integer",
+                                SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
+                        .field("file", "varchar(255)", SQLSession.Attribute.NOT_NULL)
+                        .field("first_trade_id", "integer", SQLSession.Attribute.NOT_NULL)
+                        .field("last_trade_id", "integer", SQLSession.Attribute.NOT_NULL)
+                        .field("first_timestamp", "bigint", SQLSession.Attribute.NOT_NULL)
+                        .field("last_timestamp", "bigint", SQLSession.Attribute.NOT_NULL)
+                        .field("trades", "integer", SQLSession.Attribute.NOT_NULL))
                 .createTable("listing_names", tableInitializer -> tableInitializer.ifNotExist()
                         .field("id", "integer",
                                 SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
-                        .field(LISTING_UUID, "char(36)", SQLSession.Attribute.NOT_NULL, SQLSession.Attribute.UNIQUE)
+                        .field(LISTING_UUID, uuidType, SQLSession.Attribute.NOT_NULL, SQLSession.Attribute.UNIQUE)
                         .field("name", "text", SQLSession.Attribute.NOT_NULL))
                 .createTable("currency_names", tableInitializer -> tableInitializer.ifNotExist()
                         .field("id", "integer",
                                 SQLSession.Attribute.PRIMARY_KEY, SQLSession.Attribute.AUTO_INCREMENT)
-                        .field("currency_uuid", "char(36)", SQLSession.Attribute.NOT_NULL, SQLSession.Attribute.UNIQUE)
+                        .field("currency_uuid", uuidType, SQLSession.Attribute.NOT_NULL, SQLSession.Attribute.UNIQUE)
                         .field("full", "text", SQLSession.Attribute.NOT_NULL)
                         .field("short", "text", SQLSession.Attribute.NOT_NULL))
+                .createTable("schema_version", tableInitializer -> tableInitializer.ifNotExist()
+                        .field("version", "integer", SQLSession.Attribute.PRIMARY_KEY)
+                        .field("applied", "datetime", SQLSession.Attribute.NOT_NULL))
                 .build();
+
+        migrate(session, resourceProvider);
+        OrderUuidConverter.convert(session, mysql, uuidStorage);
+        return session;
+    }
+
+    @Provides
+    @Singleton
+    OrderReadSessions readSessions(@PluginDirectory File pluginDir,
+                                   ManagerConfig config,
+                                   @OrderSQL SQLSession writeSession) throws SQLException {
+        if (!config.get(READ_CONNECTIONS).isPresent()) {
+            config.put(READ_CONNECTIONS, DEFAULT_READ_CONNECTIONS);
+        }
+
+        int connections = config.get(READ_CONNECTIONS)
+                .filter(Number.class::isInstance)
+                .map(Number.class::cast)
+                .map(Number::intValue)
+                .filter(val -> val > 0)
+                .orElse(DEFAULT_READ_CONNECTIONS);
+
+        // writeSession is required only to make sure that the tables exist before reading them
+        List<Connection> readConnections = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Connection connection = newConnection(pluginDir, config);
+                connection.setReadOnly(true);
+                readConnections.add(connection);
+            }
+        } catch (SQLException ex) {
+            for (Connection connection : readConnections) {
+                try {
+                    connection.close();
+                } catch (SQLException ex2) {
+                    ex.addSuppressed(ex2);
+                }
+            }
+            throw ex;
+        }
+        return new OrderReadSessions(readConnections);
+    }
+
+    private static boolean isMysql(ManagerConfig config) {
+        return config.get("database.type")
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .map("mysql"::equals)
+                .orElse(false)
+                && Arrays.stream(new String[]{"database.host", "database.name", "database.user", "database.password"})
+                .map(config::get)
+                .allMatch(value -> value.filter(String.class::isInstance).isPresent());
+    }
+
+    private static SQLSession.Builder newBuilder(File pluginDir, ManagerConfig config) {
+        if (isMysql(config)) {
+            return SQLSession.Builder.mysql(config.get("database.host")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new),
+                    config.get("database.name")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new),
+                    config.get("database.user")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new),
+                    config.get("database.password")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new));
+        }
+
+        config.put("database.type", "sqlite");
+        config.put("database.host", "127.0.0.1");
+        config.put("database.name", "realeconomy");
+        config.put("database.user", "re");
+        config.put("database.password", "re");
+        return SQLSession.Builder.sqlite(new File(pluginDir, ORDERS_DB));
+    }
+
+    /**
+     * Plain connection to the same database as {@link #newBuilder(File, ManagerConfig)}, so the caller can
+     * close it when done.
+     */
+    private static Connection newConnection(File pluginDir, ManagerConfig config) throws SQLException {
+        if (isMysql(config)) {
+            return DriverManager.getConnection("jdbc:mysql://" + config.get("database.host")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new) + "/" + config.get("database.name")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new),
+                    config.get("database.user")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new),
+                    config.get("database.password")
+                            .map(String.class::cast)
+                            .orElseThrow(RuntimeException::new));
+        }
+
+        return DriverManager.getConnection("jdbc:sqlite:" + new File(pluginDir, ORDERS_DB).getAbsolutePath());
+    }
+
+    /**
+     * In the write-ahead log mode, the readers see the last committed state without waiting for the writer,
+     * and the writer does not wait for the readers either. The mode is saved in the database file, so this
+     * only has to succeed once. The session keeps its transaction open all the time, which is not allowed
+     * when changing the journal mode, so it's done with a separate connection in auto-commit mode.
+     */
+    static void enableWriteAheadLog(File dbFile, Logger logger) {
+        dbFile.getParentFile().mkdirs();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA journal_mode=WAL;")) {
+            if (rs.next() && !"wal".equalsIgnoreCase(rs.getString(1)))
+                logger.warning("Could not enable write-ahead log for " + dbFile + ". Mode: " + rs.getString(1));
+        } catch (SQLException ex) {
+            logger.log(Level.WARNING, "Could not enable write-ahead log for " + dbFile + ".", ex);
+        }
+    }
+
+    /**
+     * Apply the migrations that are not yet applied to the database.
+     *
+     * @param session          the session
+     * @param resourceProvider provider of the migration scripts
+     * @return the schema version after migration
+     */
+    static int migrate(SQLSession session, IPluginResourceProvider resourceProvider) throws SQLException, IOException {
+        int current = session.query(Metrics.resourceToString(resourceProvider, "select_schema_version.sql"),
+                pstmt -> {
+                }, rs -> {
+                    try {
+                        return rs.getInt("version");
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                        return null;
+                    }
+                }).stream()
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(0);
+
+        String insertVersion = Metrics.resourceToString(resourceProvider, "insert_schema_version.sql");
+        for (int version = current + 1; version <= MIGRATIONS.size(); version++) {
+            for (String statement : statements(Metrics.resourceToString(resourceProvider,
+                    MIGRATIONS.get(version - 1)))) {
+                session.execute(statement, pstmt -> {
+                }, key -> {
+                });
+            }
+
+            int applied = version;
+            session.execute(insertVersion, pstmt -> {
+                try {
+                    pstmt.setInt(1, applied);
+                    pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, key -> {
+            });
+
+            // each version is applied atomically where the database supports transactional DDL
+            session.commit();
+            current = version;
+        }
+
+        return current;
+    }
+
+    /**
+     * Split the script into statements. Line comments are removed, and the statements are separated by ';'.
+     *
+     * @param script the script
+     * @return the statements in order
+     */
+    static List<String> statements(String script) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : script.split("\n")) {
+            int comment = line.indexOf("--");
+            builder.append(comment < 0 ? line : line.substring(0, comment));
+            builder.append('\n');
+        }
+
+        List<String> statements = new ArrayList<>();
+        for (String statement : builder.toString().split(";")) {
+            if (!statement.trim().isEmpty())
+                statements.add(statement.trim() + ";");
+        }
+        return statements;
+    }
+
+    /**
+     * How the UUID columns are stored in the order database.
+     */
+    public enum UuidStorage {
+        /**
+         * 36 characters of the canonical form. Only for the databases that must be readable by hand.
+         */
+        TEXT("char(36)") {
+            @Override
+            public void set(PreparedStatement pstmt, int index, UUID uuid) throws SQLException {
+                pstmt.setString(index, uuid.toString());
+            }
+
+            @Override
+            public UUID get(ResultSet rs, String column) throws SQLException {
+                String value = rs.getString(column);
+                return value == null ? null : UUID.fromString(value);
+            }
+        },
+        /**
+         * 16 bytes of the most significant bits followed by the least significant bits. Rows and indexes are
+         * less than half the size of {@link #TEXT}, and reading it does not involve any string parsing.
+         */
+        BINARY("binary(16)") {
+            @Override
+            public void set(PreparedStatement pstmt, int index, UUID uuid) throws SQLException {
+                pstmt.setBytes(index, toBytes(uuid));
+            }
+
+            @Override
+            public UUID get(ResultSet rs, String column) throws SQLException {
+                return fromBytes(rs.getBytes(column));
+            }
+        };
+
+        private final String columnType;
+
+        UuidStorage(String columnType) {
+            this.columnType = columnType;
+        }
+
+        public String getColumnType() {
+            return columnType;
+        }
+
+        public abstract void set(PreparedStatement pstmt, int index, UUID uuid) throws SQLException;
+
+        /**
+         * @param rs     the result set
+         * @param column column name
+         * @return the uuid; null if the value is null
+         */
+        public abstract UUID get(ResultSet rs, String column) throws SQLException;
+
+        static byte[] toBytes(UUID uuid) {
+            return ByteBuffer.allocate(16)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+        }
+
+        static UUID fromBytes(byte[] bytes) {
+            if (bytes == null)
+                return null;
+
+            Validation.validate(bytes.length, length -> length == 16, "Invalid uuid length.");
+            long msb = 0L;
+            long lsb = 0L;
+            for (int i = 0; i < 8; i++) {
+                msb = (msb << 8) | (bytes[i] & 0xFF);
+                lsb = (lsb << 8) | (bytes[i + 8] & 0xFF);
+            }
+            return new UUID(msb, lsb);
+        }
     }
 }
@@ -0,0 +1,329 @@
+package io.github.wysohn.realeconomy.inject.module;
+
+import io.github.wysohn.rapidframework3.interfaces.io.IPluginResourceProvider;
+import io.github.wysohn.rapidframework3.utils.sql.SQLSession;
+import io.github.wysohn.realeconomy.inject.module.OrderSQLModule.UuidStorage;
+import io.github.wysohn.realeconomy.main.Metrics;
+import io.github.wysohn.realeconomy.manager.listing.PricePoint;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves the trade logs older than the hot window out of the database into compressed files, so the
+ * trade_logs table only grows with the recent trades. Each file holds the trades of a single month, in the
+ * order of their ids, and the files are listed in the trade_archives table along with the range they cover.
+ * The range of the time is from the earliest to the latest trade in the file, as the ids don't always follow
+ * the time the trades were made.
+ * <p>
+ * The rows the price queries still look up, which are the highest and the lowest trade of each day candle
+ * and the last trade of each market, are archived as well but kept in the table. The price trends are
+ * read from the candles, so they are not affected by the archive at all.
+ */
+class OrderTradeArchive {
+    static final String TABLE = "trade_archives";
+
+    private static final int MAGIC = 0x52455441; // RETA
+    private static final int VERSION = 1;
+
+    private final SQLSession session;
+    private final UuidStorage uuidStorage;
+    private final ZoneId zone;
+    private final File folder;
+
+    private final String SELECT_ARCHIVABLE;
+    private final String DELETE_ARCHIVED;
+    private final String INSERT_ARCHIVE;
+
+    OrderTradeArchive(SQLSession session,
+                      UuidStorage uuidStorage,
+                      ZoneId zone,
+                      File folder,
+                      IPluginResourceProvider resourceProvider) throws IOException {
+        this.session = session;
+        this.uuidStorage = uuidStorage;
+        this.zone = zone;
+        this.folder = folder;
+
+        SELECT_ARCHIVABLE = Metrics.resourceToString(resourceProvider, "select_trade_logs_archivable.sql");
+        DELETE_ARCHIVED = Metrics.resourceToString(resourceProvider, "delete_trade_logs_archived.sql");
+        INSERT_ARCHIVE = Metrics.resourceToString(resourceProvider, "insert_trade_archive.sql");
+    }
+
+    /**
+     * Archive all the trades made before the given time. The file of each batch is written before the batch
+     * is committed, so a batch interrupted in the middle is simply archived again next time.
+     * <p>
+     * Trades are archived strictly in the order of their ids, and it stops at the first trade within the
+     * hot window, so every trade up to the last archived id is in some file.
+     *
+     * @param before    epoch millis; trades made before this are archived
+     * @param batchSize maximum number of trades in a file
+     * @return number of trades archived
+     */
+    int archive(long before, int batchSize) throws SQLException, IOException {
+        long lastArchived = lastArchivedId();
+
+        int count = 0;
+        while (true) {
+            long from = lastArchived;
+            List<PricePoint> trades = session.query(SELECT_ARCHIVABLE, pstmt -> {
+                try {
+                    pstmt.setLong(1, from);
+                    pstmt.setInt(2, batchSize);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, rs -> {
+                try {
+                    return fromRow(rs);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                    return null;
+                }
+            });
+            trades.removeIf(Objects::isNull);
+            if (trades.isEmpty() || trades.get(0).getTimestamp().getTime() >= before)
+                break;
+
+            // a file never spans two months
+            YearMonth month = month(trades.get(0));
+            int end = 1;
+            while (end < trades.size()
+                    && trades.get(end).getTimestamp().getTime() < before
+                    && month.equals(month(trades.get(end))))
+                end++;
+            List<PricePoint> partition = trades.subList(0, end);
+
+            PricePoint first = partition.get(0);
+            PricePoint last = partition.get(partition.size() - 1);
+            String fileName = "trades-" + month + "-" + first.getOrderId() + ".gz";
+            write(new File(folder, fileName), partition);
+
+            // the first and the last trade by id don't always have the earliest and the latest time, such as
+            // when the clock went back, so the range is taken from all of them
+            LongSummaryStatistics times = partition.stream()
+                    .mapToLong(trade -> trade.getTimestamp().getTime())
+                    .summaryStatistics();
+
+            session.execute(INSERT_ARCHIVE, pstmt -> {
+                try {
+                    pstmt.setString(1, fileName);
+                    pstmt.setLong(2, first.getOrderId());
+                    pstmt.setLong(3, last.getOrderId());
+                    pstmt.setLong(4, times.getMin());
+                    pstmt.setLong(5, times.getMax());
+                    pstmt.setInt(6, partition.size());
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, key -> {
+            });
+            session.commit();
+
+            lastArchived = last.getOrderId();
+            count += partition.size();
+        }
+
+        long archived = lastArchived;
+        session.execute(DELETE_ARCHIVED, pstmt -> {
+            try {
+                pstmt.setLong(1, archived);
+                pstmt.setTimestamp(2, new Timestamp(before));
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+        session.commit();
+
+        return count;
+    }
+
+    /**
+     * @return order_id of the last archived trade; 0 if nothing is archived yet
+     */
+    long lastArchivedId() {
+        return session.query("SELECT MAX(last_trade_id) AS last_trade_id FROM " + TABLE + ";", pstmt -> {
+        }, rs -> {
+            try {
+                return rs.getLong("last_trade_id");
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }).stream().filter(Objects::nonNull).findFirst().orElse(0L);
+    }
+
+    /**
+     * Read the archived trades that pass the filter, in the order they were made.
+     *
+     * @param fileNames files listed in the trade_archives table
+     * @param filter    which trades to keep
+     * @return the trades
+     */
+    List<PricePoint> read(Collection<String> fileNames, Predicate<PricePoint> filter) throws IOException {
+        List<PricePoint> trades = new ArrayList<>();
+        for (String fileName : fileNames) {
+            for (PricePoint trade : read(new File(folder, fileName))) {
+                if (filter.test(trade))
+                    trades.add(trade);
+            }
+        }
+        return trades;
+    }
+
+    private PricePoint fromRow(ResultSet rs) throws SQLException {
+        return PricePoint.create(rs.getInt(OrderSQLModule.ORDER_ID),
+                uuidStorage.get(rs, OrderSQLModule.LISTING_UUID),
+                rs.getInt(OrderSQLModule.CATEGORY_ID),
+                new Date(rs.getTimestamp("timestamp").getTime()),
+                uuidStorage.get(rs, "seller"),
+                uuidStorage.get(rs, "buyer"),
+                BigDecimal.valueOf(rs.getDouble("price")),
+                uuidStorage.get(rs, "currency_uuid"),
+                rs.getInt("amount"));
+    }
+
+    private YearMonth month(PricePoint trade) {
+        return YearMonth.from(Instant.ofEpochMilli(trade.getTimestamp().getTime()).atZone(zone));
+    }
+
+    /**
+     * The uuids are written once per file and referred by their index. The ids and the timestamps are
+     * written as the difference from the previous trade, which is small most of the time, so they take
+     * only a byte or two before the compression.
+     */
+    static void write(File file, List<PricePoint> trades) throws IOException {
+        file.getParentFile().mkdirs();
+
+        Map<UUID, Integer> uuids = new LinkedHashMap<>();
+        for (PricePoint trade : trades) {
+            uuids.putIfAbsent(trade.getListingUuid(), uuids.size());
+            uuids.putIfAbsent(trade.getCurrencyUuid(), uuids.size());
+            uuids.putIfAbsent(trade.getSeller(), uuids.size());
+            uuids.putIfAbsent(trade.getBuyer(), uuids.size());
+        }
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(fos));
+            DataOutputStream out = new DataOutputStream(gzip);
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(uuids.size());
+            for (UUID uuid : uuids.keySet()) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+
+            out.writeInt(trades.size());
+            long previousId = 0L;
+            long previousTime = 0L;
+            for (PricePoint trade : trades) {
+                writeVarLong(out, trade.getOrderId() - previousId);
+                writeVarLong(out, zigZag(trade.getTimestamp().getTime() - previousTime));
+                writeVarLong(out, uuids.get(trade.getListingUuid()));
+                writeVarLong(out, uuids.get(trade.getCurrencyUuid()));
+                writeVarLong(out, uuids.get(trade.getSeller()));
+                writeVarLong(out, uuids.get(trade.getBuyer()));
+                writeVarLong(out, trade.getCategoryId());
+                out.writeDouble(trade.getPrice().doubleValue());
+                writeVarLong(out, trade.getAmount());
+
+                previousId = trade.getOrderId();
+                previousTime = trade.getTimestamp().getTime();
+            }
+
+            gzip.finish();
+            out.flush();
+            // the rows are deleted once the file is listed, so it must be on the disk by then
+            fos.getFD().sync();
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static List<PricePoint> read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a trade archive.");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unknown version " + version + " of " + file);
+
+            UUID[] uuids = new UUID[in.readInt()];
+            for (int i = 0; i < uuids.length; i++) {
+                uuids[i] = new UUID(in.readLong(), in.readLong());
+            }
+
+            int size = in.readInt();
+            List<PricePoint> trades = new ArrayList<>(size);
+            long id = 0L;
+            long time = 0L;
+            for (int i = 0; i < size; i++) {
+                id += readVarLong(in);
+                time += unZigZag(readVarLong(in));
+                UUID listingUuid = uuids[(int) readVarLong(in)];
+                UUID currencyUuid = uuids[(int) readVarLong(in)];
+                UUID seller = uuids[(int) readVarLong(in)];
+                UUID buyer = uuids[(int) readVarLong(in)];
+                int categoryId = (int) readVarLong(in);
+                double price = in.readDouble();
+                int amount = (int) readVarLong(in);
+
+                trades.add(PricePoint.create((int) id,
+                        listingUuid,
+                        categoryId,
+                        new Date(time),
+                        seller,
+                        buyer,
+                        BigDecimal.valueOf(price),
+                        currencyUuid,
+                        amount));
+            }
+            return trades;
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0L) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length number.");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.wysohn.realeconomy.inject.module;
+
+import io.github.wysohn.rapidframework3.utils.Pair;
+import io.github.wysohn.rapidframework3.utils.sql.SQLSession;
+import io.github.wysohn.realeconomy.inject.module.OrderSQLModule.UuidStorage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Converts the UUID columns of the existing order database to the configured {@link UuidStorage}.
+ * The tables created before the storage option existed are all {@link UuidStorage#TEXT}, so this runs
+ * once when such database is opened for the first time with {@link UuidStorage#BINARY}, and does nothing
+ * afterwards. Converting back to {@link UuidStorage#TEXT} works the same way.
+ */
+class OrderUuidConverter {
+    // table -> primary key, uuid columns
+    private static final Map<String, List<String>> UUID_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        UUID_COLUMNS.put("buy_orders", Arrays.asList(OrderSQLModule.ORDER_ID,
+                OrderSQLModule.LISTING_UUID, "issuer", "currency_uuid"));
+        UUID_COLUMNS.put("sell_orders", Arrays.asList(OrderSQLModule.ORDER_ID,
+                OrderSQLModule.LISTING_UUID, "issuer", "currency_uuid"));
+        UUID_COLUMNS.put("trade_logs", Arrays.asList(OrderSQLModule.ORDER_ID,
+                OrderSQLModule.LISTING_UUID, "seller", "buyer", "currency_uuid"));
+        UUID_COLUMNS.put("listing_names", Arrays.asList("id",
+                OrderSQLModule.LISTING_UUID));
+        UUID_COLUMNS.put("currency_names", Arrays.asList("id",
+                "currency_uuid"));
+        UUID_COLUMNS.put(OrderMarketSummary.TABLE, Arrays.asList("id",
+                OrderSQLModule.LISTING_UUID, "issuer", "currency_uuid"));
+        for (OrderCandles.Resolution resolution : OrderCandles.Resolution.values()) {
+            UUID_COLUMNS.put(resolution.getTable(), Arrays.asList("id",
+                    OrderSQLModule.LISTING_UUID, "currency_uuid"));
+        }
+    }
+
+    private OrderUuidConverter() {
+    }
+
+    /**
+     * @param session the session
+     * @param mysql   true if the session is MySQL; false if SQLite
+     * @param target  the storage to convert to
+     * @return number of converted tables
+     */
+    static int convert(SQLSession session, boolean mysql, UuidStorage target) throws SQLException {
+        int converted = 0;
+        for (Map.Entry<String, List<String>> entry : UUID_COLUMNS.entrySet()) {
+            String table = entry.getKey();
+            String primaryKey = entry.getValue().get(0);
+            List<String> columns = entry.getValue().subList(1, entry.getValue().size());
+
+            boolean changed = mysql
+                    ? convertMysql(session, table, columns, target)
+                    : convertSqlite(session, table, primaryKey, columns, target);
+            if (changed) {
+                session.commit();
+                converted++;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * The column type of MySQL decides the storage, so the column is widened to varbinary, the values are
+     * converted in place, and then the column is narrowed to the target type. The indexes are kept as is.
+     * <p>
+     * MySQL commits on every ALTER TABLE, so the conversion can stop halfway with the column left as
+     * varbinary. Only the values still in the length of the other storage are converted, so running it
+     * again picks up from there instead of converting the same value twice.
+     */
+    private static boolean convertMysql(SQLSession session,
+                                        String table,
+                                        List<String> columns,
+                                        UuidStorage target) {
+        boolean changed = false;
+        for (String column : columns) {
+            String dataType = session.query("SELECT DATA_TYPE AS data_type FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?;", pstmt -> {
+                try {
+                    pstmt.setString(1, table);
+                    pstmt.setString(2, column);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }, rs -> {
+                try {
+                    return rs.getString("data_type");
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                    return null;
+                }
+            }).stream().filter(Objects::nonNull).findFirst().orElse(null);
+
+            // column does not exist, or already in the target type
+            if (dataType == null || target.getColumnType().startsWith(dataType.toLowerCase()))
+                continue;
+
+            String expression = target == UuidStorage.BINARY
+                    ? "UNHEX(REPLACE(`" + column + "`, '-', ''))"
+                    : "LOWER(INSERT(INSERT(INSERT(INSERT(HEX(`" + column + "`), 9, 0, '-'), 14, 0, '-'), 19, 0, '-'), 24, 0, '-'))";
+
+            execute(session, "ALTER TABLE `" + table + "` MODIFY `" + column + "` varbinary(36) NOT NULL;");
+            // 36 characters of text, or 16 bytes of binary
+            int sourceLength = target == UuidStorage.BINARY ? 36 : 16;
+            execute(session, "UPDATE `" + table + "` SET `" + column + "` = " + expression
+                    + " WHERE LENGTH(`" + column + "`) = " + sourceLength + ";");
+            execute(session, "ALTER TABLE `" + table + "` MODIFY `" + column + "` "
+                    + target.getColumnType() + " NOT NULL;");
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * SQLite does not enforce the column type, so only the values are converted. Only the rows still in
+     * the other storage are selected, so the conversion can be resumed if it was interrupted.
+     */
+    private static boolean convertSqlite(SQLSession session,
+                                         String table,
+                                         String primaryKey,
+                                         List<String> columns,
+                                         UuidStorage target) {
+        String sourceType = target == UuidStorage.BINARY ? "text" : "blob";
+        String condition = columns.stream()
+                .map(column -> "typeof(`" + column + "`) = '" + sourceType + "'")
+                .reduce((a, b) -> a + " OR " + b)
+                .orElseThrow(RuntimeException::new);
+
+        List<Pair<Long, List<UUID>>> rows = session.query("SELECT * FROM `" + table + "` WHERE " + condition + ";",
+                pstmt -> {
+                }, rs -> {
+                    try {
+                        List<UUID> values = new ArrayList<>();
+                        for (String column : columns) {
+                            values.add(read(rs, column));
+                        }
+                        return Pair.of(rs.getLong(primaryKey), values);
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                        return null;
+                    }
+                });
+
+        String update = "UPDATE `" + table + "` SET " + columns.stream()
+                .map(column -> "`" + column + "` = ?")
+                .reduce((a, b) -> a + ", " + b)
+                .orElseThrow(RuntimeException::new) + " WHERE `" + primaryKey + "` = ?;";
+        rows.stream().filter(Objects::nonNull).forEach(row -> session.execute(update, pstmt -> {
+            try {
+                for (int i = 0; i < row.value.size(); i++) {
+                    target.set(pstmt, i + 1, row.value.get(i));
+                }
+                pstmt.setLong(row.value.size() + 1, row.key);
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        }));
+
+        return !rows.isEmpty();
+    }
+
+    // the value can be in either storage while converting
+    private static UUID read(ResultSet rs, String column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof byte[])
+            return UuidStorage.fromBytes((byte[]) value);
+        return UUID.fromString(String.valueOf(value));
+    }
+
+    private static void execute(SQLSession session, String sql) {
+        session.execute(sql, pstmt -> {
+        }, key -> {
+        });
+    }
+}
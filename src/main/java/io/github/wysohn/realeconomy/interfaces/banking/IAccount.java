@@ -1,6 +1,7 @@
 package io.github.wysohn.realeconomy.interfaces.banking;
 
 import io.github.wysohn.rapidframework3.interfaces.entity.IEntitySnapshot;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 
 import java.math.BigDecimal;
 import java.util.Map;
@@ -9,11 +10,11 @@ import java.util.UUID;
 public interface IAccount extends IEntitySnapshot {
     IBankingType getType();
 
-    Map<UUID, BigDecimal> getCurrencyMap();
+    Map<UUID, Money> getCurrencyMap();
 
 //    IAccount clone();
 
     default BigDecimal minimumBalance() {
-        return BigDecimal.valueOf(0.0);
+        return BigDecimal.ZERO;
     }
 }
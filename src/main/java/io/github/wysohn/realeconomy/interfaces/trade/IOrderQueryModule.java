@@ -8,13 +8,19 @@ import io.github.wysohn.realeconomy.manager.listing.*;
 
 import java.sql.SQLException;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.function.Consumer;
 
 /**
  * The helper to process various order transactions.
  * <p>
  * Methods must be implemented in a thread-safe way, yet they are expected to be blocking operation.
+ * <p>
+ * The resting orders are kept in the in-memory order books, so the order lookups and the matching
+ * do not have to query the SQL tables. The SQL tables are the durable copy of the books.
  */
 public interface IOrderQueryModule {
 
@@ -45,16 +51,30 @@ public interface IOrderQueryModule {
      * @param currency    currency of price
      * @param stock       number of stocks
      * @param temp  mark this order as temporary; flag will be set for this record
+     * @return id of the new order; 0 if the id was not generated
      * @throws SQLException if some unexpected SQL error occurs.
      */
-    void addOrder(UUID listingUuid,
-                  String category,
-                  OrderType type,
-                  IOrderIssuer issuer,
-                  double price,
-                  Currency currency,
-                  int stock,
-                  boolean temp) throws SQLException;
+    int addOrder(UUID listingUuid,
+                 String category,
+                 OrderType type,
+                 IOrderIssuer issuer,
+                 double price,
+                 Currency currency,
+                 int stock,
+                 boolean temp) throws SQLException;
+
+    /**
+     * Same as {@link #addOrder(UUID, String, OrderType, IOrderIssuer, double, Currency, int, boolean)}, but
+     * the requests of each order type are inserted by a few multi-row INSERTs while holding the session only
+     * once. The generated order ids are given to {@link IOrderIssuer#addOrderId(OrderType, int)} of each issuer
+     * in the same order as the requests of the type.
+     * {@link #commitOrders()} must be invoked to finalize the transaction, so a single commit is enough
+     * no matter how many orders there are.
+     *
+     * @param requests the orders to add
+     * @throws SQLException if some unexpected SQL error occurs.
+     */
+    void addOrders(Collection<OrderRequest> requests) throws SQLException;
 
     /**
      * Get current order info. This is merely a snapshot of the order, so the order may or may not be valid
@@ -68,6 +88,17 @@ public interface IOrderQueryModule {
     OrderInfo getInfo(int orderId,
                       OrderType type) throws SQLException;
 
+    /**
+     * Same as {@link #getInfo(int, OrderType)}, but for many orders at once.
+     *
+     * @param orderIds order ids
+     * @param type     type of order to search for
+     * @return the infos in the order of the given ids. Ids with no order are skipped.
+     * @throws SQLException if some unexpected SQL error occurs.
+     */
+    List<OrderInfo> getInfos(Collection<Integer> orderIds,
+                             OrderType type) throws SQLException;
+
     /**
      * Edit the current amount of the order. This can be useful when the order is not fully consumed, yet the order of
      * id must be maintained to give fair opportunity (cause if we just delete the order and then add the
@@ -132,6 +163,21 @@ public interface IOrderQueryModule {
      */
     void clearTemporarySellOrders() throws SQLException;
 
+    /**
+     * Run the task as the only owner of the order transaction. The other callers of this method wait until
+     * the task is done, so no one commits or rolls back the operations of the others in the middle.
+     * The task must finalize its operations using {@link #commitOrders()} or {@link #rollbackOrders()}
+     * before it returns.
+     * <p>
+     * The owner may hand the operations over to other threads, like the broker does with its workers,
+     * as long as it waits for them before it finalizes.
+     *
+     * @param task the task
+     * @return result of the task
+     * @throws Exception whatever the task throws
+     */
+    <T> T withOrderTransaction(Callable<T> task) throws Exception;
+
     /**
      * Commit the scheduled order operations invoked by
      * {@link #addOrder(UUID, OrderType, IOrderIssuer, double, Currency, int)} and
@@ -148,7 +194,30 @@ public interface IOrderQueryModule {
     void rollbackOrders() throws SQLException;
 
     /**
-     * Get the best buy/sell order pair so that they can be matched up.
+     * Mark the current point of the uncommitted order operations. The operations made after the mark
+     * can be reverted alone using {@link #rollbackOrdersToMark()}, so a batch of operations can be
+     * finalized by a single {@link #commitOrders()} without losing the ability to revert only the failed one.
+     * <p>
+     * Only one mark is kept at a time. The mark is cleared by {@link #releaseOrdersMark()},
+     * {@link #rollbackOrdersToMark()}, {@link #commitOrders()}, and {@link #rollbackOrders()}.
+     */
+    void markOrders() throws SQLException;
+
+    /**
+     * Keep the operations made after {@link #markOrders()} as part of the current transaction
+     * and clear the mark.
+     */
+    void releaseOrdersMark() throws SQLException;
+
+    /**
+     * Revert only the operations made after {@link #markOrders()} and clear the mark. This does nothing
+     * if there is no mark, which is the case when the transaction was already finalized after the mark.
+     */
+    void rollbackOrdersToMark() throws SQLException;
+
+    /**
+     * Get the best buy/sell order pair so that they can be matched up. Out of all bids that can afford
+     * the lowest ask of the same market, the oldest bid is chosen.
      * <p>
      * For simplicity, this method must be thread-safe, so the callers do not have to worry about
      * the SQL concurrency issue.
@@ -157,6 +226,26 @@ public interface IOrderQueryModule {
      */
     void peekMatchingOrders(Consumer<TradeInfo> consumer);
 
+    /**
+     * Same as {@link #peekMatchingOrders(Consumer)}, but only the given market is searched.
+     * Markets do not share any order, so different markets can be matched at the same time.
+     *
+     * @param market the market to search
+     * @param consumer
+     */
+    void peekMatchingOrders(MarketKey market, Consumer<TradeInfo> consumer);
+
+    /**
+     * @return all markets that have at least one order
+     */
+    Set<MarketKey> getMarkets();
+
+    /**
+     * @param listingUuids uuids of listings
+     * @return markets of the given listings that have at least one order
+     */
+    Set<MarketKey> getMarkets(Collection<UUID> listingUuids);
+
     /**
      * Get name of all existing category names
      *
@@ -258,6 +347,18 @@ public interface IOrderQueryModule {
      */
     PricePoint getLowestPoint(int daysPeriod, UUID currencyUuid, UUID listingUuid);
 
+    /**
+     * Get all the trades made in the given time range, including the ones already moved to the archive.
+     * This reads the archive files, so it's better not called in server thread.
+     *
+     * @param currencyUuid uuid of currency
+     * @param listingUuid  uuid of listing
+     * @param from         epoch millis, inclusive
+     * @param to           epoch millis, exclusive
+     * @return the trades in the order they were made
+     */
+    List<PricePoint> getTradeHistory(UUID currencyUuid, UUID listingUuid, long from, long to);
+
     /**
      * Get DataProvider for the currently listed selling orders.
      * <p>
@@ -272,4 +373,10 @@ public interface IOrderQueryModule {
     default DataProvider<OrderInfo> getListedOrderProvider(OrderType type) {
         return getListedOrderProvider(type, null);
     }
+
+    /**
+     * Close the connections used for reading the prices and the listings. Only for the shutdown; the reads
+     * made after this return nothing.
+     */
+    void closeReadSessions();
 }
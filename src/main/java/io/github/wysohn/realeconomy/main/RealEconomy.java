@@ -34,7 +34,7 @@ import io.github.wysohn.realeconomy.interfaces.business.IBusiness;
 import io.github.wysohn.realeconomy.interfaces.business.tiers.ITier;
 import io.github.wysohn.realeconomy.manager.CustomTypeAdapters;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
-import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
 import io.github.wysohn.realeconomy.manager.banking.CentralBankingManager;
 import io.github.wysohn.realeconomy.manager.banking.TransactionManager;
@@ -59,8 +59,9 @@ import java.lang.ref.Reference;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class RealEconomy extends AbstractBukkitPlugin {
     // just an arbitrary large number that exceeds the maximum capacity of player inventory
@@ -94,6 +95,7 @@ public class RealEconomy extends AbstractBukkitPlugin {
                 MarketSimulationManager.class,
                 VisitingBankManager.class,
                 TransactionManager.class,
+                AssetSignaturePool.class,
 
                 MiningBusinessManager.class
         ));
@@ -118,9 +120,11 @@ public class RealEconomy extends AbstractBukkitPlugin {
                 CustomTypeAdapters.ACCOUNT,
                 CustomTypeAdapters.BANKING_TYPE,
                 CustomTypeAdapters.ASSET,
-                CustomTypeAdapters.ASSET_SIGNATURE,
+                CustomTypeAdapters.assetSignature(() -> getMain().getManager(AssetSignaturePool.class)),
                 CustomTypeAdapters.ORE_INFO,
-                CustomTypeAdapters.I_TIER
+                CustomTypeAdapters.I_TIER,
+                CustomTypeAdapters.MONEY,
+                CustomTypeAdapters.ASSET_STORE
         ));
         pluginMainBuilder.addModule(new TypeAsserterModule());
         pluginMainBuilder.addModule(new CapitalLimitModule());
@@ -578,30 +582,97 @@ public class RealEconomy extends AbstractBukkitPlugin {
 
                     getMain().getMediator(TradeMediator.class).ifPresent(tradeMediator ->
                             getUser(sender).ifPresent(user -> {
-                                if (tradeMediator.bidAsset(user,
+                                if (!tradeMediator.hasTradingAccount(user, bank.getBaseCurrency())) {
+                                    String nameTrading = getMain().lang().parseFirst(RealEconomyLangs.BankingType_Trading);
+                                    getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_NoAccount, (l, m) ->
+                                            m.addString(nameTrading).addString(nameTrading));
+                                    return;
+                                }
+
+                                // show reminder if the account doesn't have enough currency
+                                if (bank.balanceOfAccount(user, BankingTypeRegistry.TRADING)
+                                        .compareTo(BigDecimal.valueOf(price)) < 0) {
+                                    getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Buy_NotEnoughCurrency);
+                                } else {
+                                    getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_Adding);
+                                }
+
+                                tradeMediator.bidAsset(user,
                                         orderId,
                                         price,
                                         bank.getBaseCurrency(),
-                                        amount)) {
-                                    // show reminder if the account doesn't have enough currency
-                                    if (bank.balanceOfAccount(user, BankingTypeRegistry.TRADING)
-                                            .compareTo(BigDecimal.valueOf(price)) < 0) {
-                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Buy_NotEnoughCurrency);
+                                        amount).whenComplete((id, ex) -> getMain().task().sync(() -> {
+                                    if (ex != null) {
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_OrderFailed);
+                                    } else if (id > 0) {
+                                        getMain().comm().runSubCommand(sender, "orders");
                                     } else {
-                                        // process one seconds later since order listing have some delays
-                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_Adding);
-                                        Bukkit.getScheduler().runTaskLater(getMain().getPlatform(),
-                                                () -> {
-                                                    getMain().comm().runSubCommand(sender, "orders");
-                                                    getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Buy_FailNotice);
-                                                },
-                                                20L);
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Buy_FailNotice);
                                     }
-                                } else {
+                                }));
+                            }));
+
+                    return true;
+                }));
+        list.add(new SubCommand.Builder("buynow", -1)
+                .withDescription(RealEconomyLangs.Command_BuyNow_Desc)
+                .addUsage(RealEconomyLangs.Command_BuyNow_Usage)
+                .addTabCompleter(0, TabCompleters.hint("<order id>"))
+                .addTabCompleter(1, TabCompleters.hint("<amount>"))
+                .addTabCompleter(2, TabCompleters.hint("[max price]"))
+                .addArgumentMapper(0, mapOrderId())
+                .addArgumentMapper(1, ArgumentMappers.INTEGER)
+                .addArgumentMapper(2, mapPrice())
+                .action((sender, args) -> {
+                    int orderId = args.get(0).map(Integer.class::cast).orElse(-1);
+                    int amount = args.get(1).map(Integer.class::cast)
+                            .filter(val -> val > 0 && val < 65536)
+                            .orElse(1);
+                    // no price means buying at whatever the asks are
+                    double price = args.get(2).map(Double.class::cast).orElse(Double.MAX_VALUE);
+
+                    if (orderId < 0 || price < 0.0)
+                        return false;
+
+                    AbstractBank bank = getMain().getManager(VisitingBankManager.class)
+                            .flatMap(manager -> getUser(sender).map(manager::getUsingBank))
+                            .orElse(null);
+
+                    if (bank == null) {
+                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_NotInABank);
+                        return true;
+                    }
+
+                    getMain().getMediator(TradeMediator.class).ifPresent(tradeMediator ->
+                            getUser(sender).ifPresent(user -> {
+                                if (!tradeMediator.hasTradingAccount(user, bank.getBaseCurrency())) {
                                     String nameTrading = getMain().lang().parseFirst(RealEconomyLangs.BankingType_Trading);
                                     getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_NoAccount, (l, m) ->
                                             m.addString(nameTrading).addString(nameTrading));
+                                    return;
                                 }
+
+                                tradeMediator.buyImmediate(user,
+                                        orderId,
+                                        price,
+                                        bank.getBaseCurrency(),
+                                        amount).whenComplete((fill, ex) -> getMain().task().sync(() -> {
+                                    if (ex != null) {
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_OrderFailed);
+                                    } else if (fill.getResult() == TradeMediator.TradeResult.INVALID_INFO
+                                            && fill.getFilled() == 0) {
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Buy_FailNotice);
+                                    } else if (fill.getFilled() > 0) {
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_BuyNow_Filled, (l, m) ->
+                                                m.addInteger(fill.getFilled())
+                                                        .addDouble(fill.getPaid().doubleValue())
+                                                        .addString(bank.getBaseCurrency().toString()));
+                                    } else if (fill.getResult() == TradeMediator.TradeResult.WITHDRAW_REFUSED) {
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Buy_NotEnoughCurrency);
+                                    } else {
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_BuyNow_NotFilled);
+                                    }
+                                }));
                             }));
 
                     return true;
@@ -641,7 +712,7 @@ public class RealEconomy extends AbstractBukkitPlugin {
                                     return;
                                 }
 
-                                AssetSignature signature = new ItemStackSignature(itemStack);
+                                AssetSignature signature = itemSignature(itemStack);
                                 int amount = args.get(1).map(Integer.class::cast)
                                         .filter(val -> val == -1 || val > 0)
                                         .orElse(itemStack.getAmount());
@@ -650,50 +721,62 @@ public class RealEconomy extends AbstractBukkitPlugin {
                                     return;
                                 }
 
+                                if (!tradeMediator.hasTradingAccount(user, bank.getBaseCurrency())) {
+                                    String nameTrading = getMain().lang().parseFirst(RealEconomyLangs.BankingType_Trading);
+                                    getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_NoAccount, (l, m) ->
+                                            m.addString(nameTrading).addString(nameTrading));
+                                    return;
+                                }
+
+                                AtomicInteger taken = new AtomicInteger();
                                 boolean result = FailSensitiveTask.of(() -> {
-                                    int taken;
                                     if (amount == -1) {
-                                        taken = MAX_INVENTORY_AMOUNT - user.take(itemStack, MAX_INVENTORY_AMOUNT);
+                                        taken.set(MAX_INVENTORY_AMOUNT - user.take(itemStack, MAX_INVENTORY_AMOUNT));
                                     } else if (amount > 0) {
-                                        taken = amount - user.take(itemStack, amount);
-                                    } else {
-                                        taken = 0;
+                                        taken.set(amount - user.take(itemStack, amount));
                                     }
 
                                     // this is impossible since player is holding it, but just in case
-                                    if (taken < 1) {
-                                        sender.sendMessageRaw("taken < 1 : " + taken);
-                                        return true;
+                                    if (taken.get() < 1) {
+                                        sender.sendMessageRaw("taken < 1 : " + taken.get());
+                                        return false;
                                     }
 
-                                    boolean sellResult = tradeMediator.sellAsset(user,
-                                            signature,
-                                            price,
-                                            bank.getBaseCurrency(),
-                                            taken,
-                                            () -> bank.addAccountAsset(user, signature.asset((double) taken)));
-
-                                    // if failed, return the items taken
-                                    if (!sellResult)
-                                        user.give(itemStack, taken);
-
-                                    return sellResult;
+                                    return true;
                                 }).handleException(Throwable::printStackTrace)
                                         .addStateSupplier("user", user::saveState)
                                         .addStateConsumer("user", user::restoreState)
                                         .run();
 
-                                if (result) {
-                                    // process seconds later since order listing have some delays
-                                    getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_Adding);
-                                    Bukkit.getScheduler().runTaskLater(getMain().getPlatform(),
-                                            () -> getMain().comm().runSubCommand(sender, "orders"),
-                                            20L);
-                                } else {
-                                    String nameTrading = getMain().lang().parseFirst(RealEconomyLangs.BankingType_Trading);
-                                    getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_NoAccount, (l, m) ->
-                                            m.addString(nameTrading).addString(nameTrading));
-                                }
+                                if (!result)
+                                    return;
+
+                                // the order and the asset in the account are added together, so the items are
+                                // returned only if the asset never reached the account
+                                AtomicBoolean deposited = new AtomicBoolean();
+                                getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_Adding);
+                                tradeMediator.sellAsset(user,
+                                        signature,
+                                        price,
+                                        bank.getBaseCurrency(),
+                                        taken.get(),
+                                        () -> {
+                                            bank.addAccountAsset(user, signature.asset((double) taken.get()));
+                                            deposited.set(true);
+                                        }).whenComplete((id, ex) -> getMain().task().sync(() -> {
+                                    if (!deposited.get())
+                                        user.give(itemStack, taken.get());
+
+                                    if (ex != null) {
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_OrderFailed);
+                                    } else if (id > 0) {
+                                        getMain().comm().runSubCommand(sender, "orders");
+                                    } else {
+                                        String nameTrading = getMain().lang().parseFirst(RealEconomyLangs.BankingType_Trading);
+                                        getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_NoAccount, (l, m) ->
+                                                m.addString(nameTrading).addString(nameTrading));
+                                    }
+                                }));
                             }));
 
                     return true;
@@ -734,7 +817,7 @@ public class RealEconomy extends AbstractBukkitPlugin {
                                         return;
                                     }
 
-                                    AssetSignature signature = new ItemStackSignature(itemStack);
+                                    AssetSignature signature = itemSignature(itemStack);
                                     sendItemInfo(tradeMediator, sender, signature, bank.getBaseCurrency());
                                 }));
 
@@ -747,10 +830,11 @@ public class RealEconomy extends AbstractBukkitPlugin {
                                               Currency currency) {
                         getMain().getManager(ManagerLanguage.class).ifPresent(lang -> {
                             getMain().task().async(() -> {
-                                OrderInfo lowestAsk = mediator.getLowestAsk(signature, currency);
-                                OrderInfo highestBid = mediator.getHighestBid(signature, currency);
-                                PricePoint lastPrice = mediator.getLastPrice(signature, currency);
-                                double avgPrice = mediator.getAveragePrice(signature, currency);
+                                MarketQuote quote = mediator.getQuote(signature, currency);
+                                OrderInfo lowestAsk = quote.getBestAsk();
+                                OrderInfo highestBid = quote.getBestBid();
+                                PricePoint lastPrice = quote.getLastPrice();
+                                double avgPrice = quote.getAveragePrice();
 
                                 getMain().task().sync(() -> {
                                     lang.sendMessage(sender, DefaultLangs.General_Line);
@@ -797,16 +881,30 @@ public class RealEconomy extends AbstractBukkitPlugin {
 
                     //TODO use GUI
                     getUser(sender).ifPresent(user -> {
-                        Pagination.list(getMain().lang(),
-                                Stream.concat(user.getOrderIds(OrderType.BUY).stream()
-                                                .map(id -> Pair.of(id, OrderType.BUY)),
-                                        user.getOrderIds(OrderType.SELL).stream()
-                                                .map(id -> Pair.of(id, OrderType.SELL)))
-                                        .collect(Collectors.toList()),
-                                7,
-                                "Orders",
-                                "/realeconomy orders")
-                                .show(sender, page, (s, pair, i) -> toOrderDetail(user, pair, i));
+                        List<Integer> buyIds = new ArrayList<>(user.getOrderIds(OrderType.BUY));
+                        List<Integer> sellIds = new ArrayList<>(user.getOrderIds(OrderType.SELL));
+                        Collections.sort(buyIds);
+                        Collections.sort(sellIds);
+
+                        getMain().getManager(AssetListingManager.class).ifPresent(assetListingManager ->
+                                getMain().task().async(() -> {
+                                    List<Pair<OrderInfo, OrderType>> orders = new ArrayList<>();
+                                    try {
+                                        assetListingManager.getInfos(buyIds, OrderType.BUY)
+                                                .forEach(info -> orders.add(Pair.of(info, OrderType.BUY)));
+                                        assetListingManager.getInfos(sellIds, OrderType.SELL)
+                                                .forEach(info -> orders.add(Pair.of(info, OrderType.SELL)));
+                                    } catch (SQLException ex) {
+                                        ex.printStackTrace();
+                                    }
+
+                                    getMain().task().sync(() -> Pagination.list(getMain().lang(),
+                                            orders,
+                                            7,
+                                            "Orders",
+                                            "/realeconomy orders")
+                                            .show(sender, page, (s, pair, i) -> toOrderDetail(user, pair, i)));
+                                }));
                     });
                     return true;
                 }));
@@ -834,8 +932,12 @@ public class RealEconomy extends AbstractBukkitPlugin {
                         }
 
                         getMain().getMediator(TradeMediator.class).ifPresent(tradeMediator ->
-                                tradeMediator.cancelOrder(user, orderId, type));
-                        getMain().comm().runSubCommand(sender, "orders");
+                                tradeMediator.cancelOrder(user, orderId, type)
+                                        .whenComplete((id, ex) -> getMain().task().sync(() -> {
+                                            if (ex != null)
+                                                getMain().lang().sendMessage(sender, RealEconomyLangs.Command_Common_OrderFailed);
+                                            getMain().comm().runSubCommand(sender, "orders");
+                                        })));
                     });
 
                     return true;
@@ -1110,6 +1212,7 @@ public class RealEconomy extends AbstractBukkitPlugin {
         getMain().comm().linkMainCommand("items", "realeconomy", "items");
         getMain().comm().linkMainCommand("shop", "realeconomy", "items");
         getMain().comm().linkMainCommand("buy", "realeconomy", "buy");
+        getMain().comm().linkMainCommand("buynow", "realeconomy", "buynow");
         getMain().comm().linkMainCommand("sell", "realeconomy", "sell");
         getMain().comm().linkMainCommand("cancel", "realeconomy", "cancel");
         getMain().comm().linkMainCommand("orders", "realeconomy", "orders");
@@ -1117,15 +1220,7 @@ public class RealEconomy extends AbstractBukkitPlugin {
         getMain().comm().linkMainCommand("business", "realeconomy", "business");
     }
 
-    /**
-     * SQL Overhead
-     *
-     * @param sender
-     * @param orderPair
-     * @param i
-     * @return
-     */
-    private Message[] toOrderDetail(User sender, Pair<Integer, OrderType> orderPair, int i) {
+    private Message[] toOrderDetail(User sender, Pair<OrderInfo, OrderType> orderPair, int i) {
         RealEconomyLangs lang;
         if (orderPair.value == OrderType.BUY) {
             lang = RealEconomyLangs.Command_Orders_Buys;
@@ -1135,45 +1230,38 @@ public class RealEconomy extends AbstractBukkitPlugin {
             throw new RuntimeException("Unknown order type " + orderPair.value);
         }
 
-        OrderInfo orderInfo = getMain().getManager(AssetListingManager.class).map(assetListingManager -> {
-            try {
-                return assetListingManager.getInfo(orderPair.key, orderPair.value);
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                return null;
-            }
-        }).orElse(null);
-
-        if (orderInfo == null) {
-            return null;
-        } else {
-            return Message.concat(MessageBuilder.forMessage(getMain().lang().parseFirst(lang, (s, m) ->
-                            m.addInteger(orderPair.key)
-                                    .addDouble(orderInfo.getPrice())
-                                    .addString(Objects.toString(getCurrency(orderInfo.getCurrencyUuid()).orElse(null)))
-                                    .addInteger(orderInfo.getAmount())))
-                            .append(" &f[")
-                            .build(),
-                    Optional.of(orderInfo.getListingUuid())
-                            .map(this::getSignature)
-                            .map(signature -> signature.toMessage(getMain().lang(), sender))
-                            .orElse(MessageBuilder.forMessage("?").build()),
-                    MessageBuilder.forMessage("]").build(),
-                    MessageBuilder.forMessage(" ").append("&c[\u2718]")
-                            .withHoverShowText("/eco cancel " + orderPair.value.name() + " " + orderInfo.getOrderId())
-                            .withClickRunCommand("/eco cancel " + orderPair.value.name() + " " + orderInfo.getOrderId())
-                            .build());
-        }
+        OrderInfo orderInfo = orderPair.key;
+
+        return Message.concat(MessageBuilder.forMessage(getMain().lang().parseFirst(lang, (s, m) ->
+                        m.addInteger(orderInfo.getOrderId())
+                                .addDouble(orderInfo.getPrice())
+                                .addString(Objects.toString(getCurrency(orderInfo.getCurrencyUuid()).orElse(null)))
+                                .addInteger(orderInfo.getAmount())))
+                        .append(" &f[")
+                        .build(),
+                Optional.of(orderInfo.getListingUuid())
+                        .map(this::getSignature)
+                        .map(signature -> signature.toMessage(getMain().lang(), sender))
+                        .orElse(MessageBuilder.forMessage("?").build()),
+                MessageBuilder.forMessage("]").build(),
+                MessageBuilder.forMessage(" ").append("&c[\u2718]")
+                        .withHoverShowText("/eco cancel " + orderPair.value.name() + " " + orderInfo.getOrderId())
+                        .withClickRunCommand("/eco cancel " + orderPair.value.name() + " " + orderInfo.getOrderId())
+                        .build());
     }
 
     private AssetSignature getSignature(UUID listingUuid) {
         return getMain().getManager(AssetListingManager.class)
-                .flatMap(assetListingManager -> assetListingManager.get(listingUuid))
-                .map(Reference::get)
-                .map(AssetListing::getSignature)
+                .map(assetListingManager -> assetListingManager.uuidToSignature(listingUuid))
                 .orElse(null);
     }
 
+    private AssetSignature itemSignature(ItemStack itemStack) {
+        return getMain().getManager(AssetSignaturePool.class)
+                .map(pool -> pool.itemStack(itemStack))
+                .orElseThrow(RuntimeException::new);
+    }
+
     private CentralBank getCentralBank(String name) {
         return getMain().getManager(CentralBankingManager.class)
                 .flatMap(centralBankingManager -> centralBankingManager.get(name))
@@ -66,6 +66,7 @@ public enum RealEconomyLangs implements ILang {
     Command_Common_InvalidAccountType("&6${string} &cis not a valid account type!"),
     Command_Common_DeniedTradeType("&cThis item cannot be traded."),
     Command_Common_Adding("&7Adding the order..."),
+    Command_Common_OrderFailed("&cThe order could not be processed. &7Please try again later."),
 
     Command_Wallet_Desc("Check your wallet to see how much currency you have. &cThis doesn't" +
             " show your currency in your bank accounts."),
@@ -125,8 +126,15 @@ public enum RealEconomyLangs implements ILang {
     Command_Buy_NotEnoughCurrency("&cNot enough currency in your account.",
             "&7Remember that you are paying &6after &7the deals are matched by the system, so your &6TRADING &7account" +
                     " must be filled with enough currency in it beforehand. Otherwise, order will be canceled automatically."),
-    Command_Buy_FailNotice("&7Your order is submitted. If your order is not visible in the order list," +
-            " it may means that you have typed the wrong orderId, or the target item is no longer valid."),
+    Command_Buy_FailNotice("&cYour order is not submitted. &7You may have typed the wrong orderId," +
+            " or the target item is no longer valid."),
+
+    Command_BuyNow_Desc("Buy a listed item right away. Nothing is left as a bid."),
+    Command_BuyNow_Usage("&d/eco buynow <order id> <amount> [max price] &8- &7Buy the given asset at once.",
+            "&7Only the listed orders at or below the max price are bought, and the rest is dropped.",
+            "&7Without the max price, it buys at whatever price the cheapest listed orders are."),
+    Command_BuyNow_Filled("&aBought &6${integer} &afor &6${double} ${string}&a."),
+    Command_BuyNow_NotFilled("&cNothing could be bought at the price."),
 
     Command_Sell_Desc("Sell an item using the item in your hand."),
     Command_Sell_Usage("&d/eco sell <price> &8- &7sell the item in hand for specified price.",
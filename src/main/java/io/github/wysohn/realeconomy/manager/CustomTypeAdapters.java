@@ -8,14 +8,19 @@ import io.github.wysohn.realeconomy.interfaces.banking.IBankingType;
 import io.github.wysohn.realeconomy.interfaces.business.tiers.ITier;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
+import io.github.wysohn.realeconomy.manager.banking.AssetStore;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.business.tiers.TierRegistry;
 import io.github.wysohn.realeconomy.manager.business.types.mining.OreInfo;
 import org.bukkit.Material;
 
 import java.lang.reflect.Type;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 public class CustomTypeAdapters {
     private static final String PACKAGE_NAME_ACCOUNT = "io.github.wysohn.realeconomy.manager.banking.account";
@@ -99,32 +104,49 @@ public class CustomTypeAdapters {
         }
     });
 
-    public static final Pair<Class<?>, CustomAdapter<?>> ASSET_SIGNATURE = Pair.of(AssetSignature.class, new CustomAdapter<AssetSignature>() {
-        @Override
-        public AssetSignature deserialize(
-                JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            JsonObject obj = json.getAsJsonObject();
-            String className = obj.get(KEY_CLASS).getAsString();
-            try {
-                Class<?> clazz = Class.forName(PACKAGE_NAME_ASSET_SIGNATURE + "." + className);
-                return context.deserialize(obj.get(KEY_VALUE), clazz);
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
+    public static final Pair<Class<?>, CustomAdapter<?>> ASSET_SIGNATURE = assetSignature(Optional::empty);
+
+    /**
+     * The same signature is saved with every asset, so the loaded signatures are shared through the pool if
+     * it's available.
+     *
+     * @param pool the pool to intern the loaded signatures
+     * @return the adapter of the signatures
+     */
+    public static Pair<Class<?>, CustomAdapter<?>> assetSignature(Supplier<Optional<AssetSignaturePool>> pool) {
+        return Pair.of(AssetSignature.class, new CustomAdapter<AssetSignature>() {
+            @Override
+            public AssetSignature deserialize(
+                    JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+                JsonObject obj = json.getAsJsonObject();
+                String className = obj.get(KEY_CLASS).getAsString();
+                try {
+                    Class<?> clazz = Class.forName(PACKAGE_NAME_ASSET_SIGNATURE + "." + className);
+                    AssetSignature signature = context.deserialize(obj.get(KEY_VALUE), clazz);
+                    if (signature == null)
+                        return null;
+
+                    return pool.get()
+                            .map(signaturePool -> signaturePool.intern(signature))
+                            .orElse(signature);
+                } catch (ClassNotFoundException e) {
+                    e.printStackTrace();
+                }
+                return null;
             }
-            return null;
-        }
 
-        @Override
-        public JsonElement serialize(AssetSignature src, Type typeOfSrc, JsonSerializationContext context) {
-            String className = src.getClass().getSimpleName();
-            JsonElement serializedValue = context.serialize(src);
+            @Override
+            public JsonElement serialize(AssetSignature src, Type typeOfSrc, JsonSerializationContext context) {
+                String className = src.getClass().getSimpleName();
+                JsonElement serializedValue = context.serialize(src);
 
-            JsonObject obj = new JsonObject();
-            obj.addProperty(KEY_CLASS, className);
-            obj.add(KEY_VALUE, serializedValue);
-            return obj;
-        }
-    });
+                JsonObject obj = new JsonObject();
+                obj.addProperty(KEY_CLASS, className);
+                obj.add(KEY_VALUE, serializedValue);
+                return obj;
+            }
+        });
+    }
 
     public static final String KEY_BREAT_AT = "breakAt";
     public static final String KEY_MATERIAL = "material";
@@ -166,4 +188,45 @@ public class CustomTypeAdapters {
             return new JsonPrimitive(src.name());
         }
     });
+
+    // saved as a plain number, same as the balances were saved before
+    public static final Pair<Class<?>, CustomAdapter<?>> MONEY = Pair.of(Money.class, new CustomAdapter<Money>() {
+        @Override
+        public Money deserialize(JsonElement json,
+                                 Type typeOfT,
+                                 JsonDeserializationContext context) throws JsonParseException {
+            // the balance too large for a long is lowered to the largest one, so the account still loads
+            return Money.parse(json.getAsBigDecimal());
+        }
+
+        @Override
+        public JsonElement serialize(Money src, Type typeOfSrc, JsonSerializationContext context) {
+            return new JsonPrimitive(src.toBigDecimal());
+        }
+    });
+
+    // saved as a list of assets, same as the assets were saved before
+    public static final Pair<Class<?>, CustomAdapter<?>> ASSET_STORE = Pair.of(AssetStore.class, new CustomAdapter<AssetStore>() {
+        @Override
+        public AssetStore deserialize(JsonElement json,
+                                      Type typeOfT,
+                                      JsonDeserializationContext context) throws JsonParseException {
+            AssetStore store = new AssetStore();
+            for (JsonElement element : json.getAsJsonArray()) {
+                Asset asset = context.deserialize(element, Asset.class);
+                if (asset != null)
+                    store.add(asset);
+            }
+            return store;
+        }
+
+        @Override
+        public JsonElement serialize(AssetStore src, Type typeOfSrc, JsonSerializationContext context) {
+            JsonArray array = new JsonArray();
+            for (Asset asset : src) {
+                array.add(context.serialize(asset, Asset.class));
+            }
+            return array;
+        }
+    });
 }
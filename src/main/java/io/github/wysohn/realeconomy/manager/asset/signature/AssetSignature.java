@@ -43,6 +43,16 @@ public abstract class AssetSignature {
 
     public abstract Message[] toMessage(ManagerLanguage lang, ICommandSender sender);
 
+    /**
+     * Whether the assets of this signature are interchangeable, so they can be stacked into one asset
+     * instead of being kept one by one. False by default.
+     *
+     * @return true if fungible
+     */
+    public boolean isFungible() {
+        return false;
+    }
+
     @Override
     public int hashCode() {
         throw new RuntimeException();
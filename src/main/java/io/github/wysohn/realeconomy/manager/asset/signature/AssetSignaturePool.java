@@ -0,0 +1,152 @@
+package io.github.wysohn.realeconomy.manager.asset.signature;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.github.wysohn.rapidframework3.core.main.Manager;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of the signatures, so the equal signatures share the same instance. As the signatures are immutable,
+ * the shared instance can be used anywhere the new one would be, and comparing the same instance
+ * doesn't have to compare the contents.
+ * <p>
+ * The pool doesn't keep the signatures alive, so the signatures no longer used by anything are
+ * collected as usual. Only the signatures of plain materials are kept, as there are only as many of them
+ * as the materials.
+ * <p>
+ * The signatures without any attribute, such as {@link #DURATION}, are equal to each other anyway, so they are
+ * constants shared by every pool.
+ */
+@Singleton
+public class AssetSignaturePool extends Manager {
+    public static final DurationSignature DURATION = new DurationSignature();
+    public static final LabourSignature LABOUR = new LabourSignature();
+    public static final ElectricitySignature ELECTRICITY = new ElectricitySignature();
+
+    private final Map<AssetSignature, WeakReference<AssetSignature>> pool = new WeakHashMap<>();
+    private final Map<Material, ItemStackSignature> materials = new EnumMap<>(Material.class);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    @Inject
+    public AssetSignaturePool() {
+        pool(DURATION);
+        pool(LABOUR);
+        pool(ELECTRICITY);
+    }
+
+    @Override
+    public void enable() throws Exception {
+
+    }
+
+    @Override
+    public void load() throws Exception {
+
+    }
+
+    @Override
+    public void disable() throws Exception {
+
+    }
+
+    /**
+     * Get the shared instance equal to the signature. The signature itself becomes the shared instance
+     * if there is no equal one yet.
+     *
+     * @param signature the signature
+     * @return the shared instance
+     */
+    public <T extends AssetSignature> T intern(T signature) {
+        Objects.requireNonNull(signature);
+        requests.incrementAndGet();
+
+        T pooled = pool(signature);
+        if (pooled != signature)
+            hits.incrementAndGet();
+        return pooled;
+    }
+
+    /**
+     * @param material the material
+     * @return the shared signature of the plain item of the material
+     */
+    public ItemStackSignature itemStack(Material material) {
+        Objects.requireNonNull(material);
+        requests.incrementAndGet();
+
+        synchronized (materials) {
+            ItemStackSignature signature = materials.get(material);
+            if (signature != null) {
+                hits.incrementAndGet();
+                return signature;
+            }
+
+            signature = pool(new ItemStackSignature(material));
+            materials.put(material, signature);
+            return signature;
+        }
+    }
+
+    /**
+     * @param itemStack the item; its amount is ignored
+     * @return the shared signature of the item
+     */
+    @SuppressWarnings("deprecation")
+    public ItemStackSignature itemStack(ItemStack itemStack) {
+        Objects.requireNonNull(itemStack);
+
+        // most of the items are plain, so they don't even need a new signature to look up
+        if (itemStack.getDurability() == 0 && !itemStack.hasItemMeta())
+            return itemStack(itemStack.getType());
+
+        return intern(new ItemStackSignature(itemStack));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends AssetSignature> T pool(T signature) {
+        synchronized (pool) {
+            WeakReference<AssetSignature> ref = pool.get(signature);
+            AssetSignature pooled = ref == null ? null : ref.get();
+            if (pooled != null)
+                return (T) pooled;
+
+            pool.put(signature, new WeakReference<>(signature));
+            return signature;
+        }
+    }
+
+    /**
+     * @return number of the signatures in the pool, including the ones not collected yet
+     */
+    public int size() {
+        synchronized (pool) {
+            return pool.size();
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return ratio of the requests that found the shared instance; 0.0 if nothing was requested yet
+     */
+    public double getHitRate() {
+        long requested = requests.get();
+        return requested == 0L ? 0.0 : (double) hits.get() / requested;
+    }
+}
@@ -1,7 +1,6 @@
 package io.github.wysohn.realeconomy.manager.asset.signature;
 
 import io.github.wysohn.rapidframework3.bukkit.manager.common.message.BukkitMessageBuilder;
-import io.github.wysohn.rapidframework3.bukkit.utils.InventoryUtil;
 import io.github.wysohn.rapidframework3.core.language.ManagerLanguage;
 import io.github.wysohn.rapidframework3.core.message.Message;
 import io.github.wysohn.rapidframework3.interfaces.ICommandSender;
@@ -10,12 +9,11 @@ import io.github.wysohn.realeconomy.manager.asset.Item;
 import io.github.wysohn.realeconomy.manager.listing.AssetListing;
 import io.github.wysohn.realeconomy.mediator.TradeMediator;
 import org.bukkit.Material;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 /**
  * Unlike the original ItemStack, it does not keep track of the amount of items in stack.
@@ -24,10 +22,16 @@ import java.util.UUID;
  * As stated in {@link AssetSignature}, it should not contain any mutable attributes.
  * <p>
  * When creating Asset, {@link AssetSignature#KEY_NUMERIC_MEASURE} must be in meta info
+ * <p>
+ * Signatures are compared by their {@link Key}, which is computed only once, so using them as the keys of
+ * maps doesn't copy the ItemMeta every time.
  */
 public class ItemStackSignature extends PhysicalAssetSignature {
     private final ItemStack itemStack;
 
+    // not saved; computed again for the signatures loaded from the file
+    private transient volatile Key key;
+
     public ItemStackSignature(ItemStack itemStack) {
         this.itemStack = Objects.requireNonNull(itemStack).clone();
         this.itemStack.setAmount(1);
@@ -44,13 +48,13 @@ public class ItemStackSignature extends PhysicalAssetSignature {
     }
 
     /**
-     * The returned ItemStack will share the reference. Must copy it using {@link ItemStack#clone()}
-     * if necessary.
+     * The signature is shared through {@link AssetSignaturePool}, so the returned ItemStack is a copy.
+     * Changing it doesn't change the signature.
      *
-     * @return
+     * @return copy of the item, of which amount is 1
      */
     public ItemStack getItemStack() {
-        return itemStack == null ? new ItemStack(Material.AIR) : itemStack;
+        return itemStack == null ? new ItemStack(Material.AIR) : itemStack.clone();
     }
 
     @Override
@@ -76,30 +80,114 @@ public class ItemStackSignature extends PhysicalAssetSignature {
                 .build();
     }
 
+    /**
+     * The key is computed on the first use rather than in the constructor, as the ItemMeta needs the server
+     * to be ready, and the signatures loaded from the file skip the constructor.
+     *
+     * @return the key that identifies this signature
+     */
+    Key key() {
+        Key current = key;
+        if (current == null) {
+            // computing it twice is harmless, as the key is the same
+            current = new Key(itemStack);
+            key = current;
+        }
+        return current;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ItemStackSignature that = (ItemStackSignature) o;
-        return InventoryUtil.areSimilar(itemStack, that.itemStack);
+        return key().equals(that.key());
     }
 
     @Override
     public int hashCode() {
-        int hash = 1;
-
-        hash = hash * 31 + itemStack.getType().hashCode();
-        hash = hash * 31 + (itemStack.getDurability() & 0xffff);
-        hash = hash * 31 + Optional.of(itemStack)
-                .map(ItemStack::getItemMeta)
-                .map(Object::hashCode)
-                .orElse(0);
-
-        return hash;
+        return key().hash;
     }
 
     @Override
     public String toString() {
         return itemStack.getType().name();
     }
+
+    /**
+     * Canonical form of the ItemStack: the material, the durability, and the digest of the ItemMeta. The
+     * digest is the serialized ItemMeta with its maps sorted, so the same meta always has the same digest.
+     */
+    static final class Key {
+        private final Material material;
+        private final short durability;
+        private final String metaDigest;
+        private final int hash;
+
+        private Key(ItemStack itemStack) {
+            this.material = itemStack.getType();
+            this.durability = itemStack.getDurability();
+            this.metaDigest = digest(itemStack);
+
+            int hash = 1;
+            hash = hash * 31 + material.hashCode();
+            hash = hash * 31 + (durability & 0xffff);
+            hash = hash * 31 + (metaDigest == null ? 0 : metaDigest.hashCode());
+            this.hash = hash;
+        }
+
+        private static String digest(ItemStack itemStack) {
+            if (!itemStack.hasItemMeta())
+                return null;
+
+            ItemMeta meta = itemStack.getItemMeta();
+            if (meta == null)
+                return null;
+
+            Map<String, Object> serialized = meta.serialize();
+            if (serialized == null || serialized.isEmpty())
+                return null;
+
+            return normalize(serialized).toString();
+        }
+
+        private static Object normalize(Object value) {
+            if (value instanceof ConfigurationSerializable) {
+                Map<String, Object> serialized = new TreeMap<>();
+                serialized.put("==", value.getClass().getName());
+                ((ConfigurationSerializable) value).serialize()
+                        .forEach((k, v) -> serialized.put(k, normalize(v)));
+                return serialized;
+            } else if (value instanceof Map) {
+                Map<String, Object> sorted = new TreeMap<>();
+                ((Map<?, ?>) value).forEach((k, v) -> sorted.put(String.valueOf(k), normalize(v)));
+                return sorted;
+            } else if (value instanceof Collection) {
+                // order of the list matters, such as the lore
+                List<Object> list = new ArrayList<>();
+                for (Object element : (Collection<?>) value) {
+                    list.add(normalize(element));
+                }
+                return list;
+            } else {
+                return value;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return hash == that.hash &&
+                    material == that.material &&
+                    durability == that.durability &&
+                    Objects.equals(metaDigest, that.metaDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package io.github.wysohn.realeconomy.manager.asset.signature;
 
 public abstract class PhysicalAssetSignature extends AssetSignature {
-
+    @Override
+    public boolean isFungible() {
+        return true;
+    }
 }
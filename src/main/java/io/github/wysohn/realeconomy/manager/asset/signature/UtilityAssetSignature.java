@@ -14,6 +14,11 @@ public abstract class UtilityAssetSignature extends AssetSignature {
         return "utility";
     }
 
+    @Override
+    public boolean isFungible() {
+        return true;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
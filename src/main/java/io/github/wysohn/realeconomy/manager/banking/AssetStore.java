@@ -0,0 +1,303 @@
+package io.github.wysohn.realeconomy.manager.banking;
+
+import io.github.wysohn.rapidframework3.interfaces.IMemento;
+import io.github.wysohn.realeconomy.manager.asset.Asset;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+
+import java.util.*;
+
+/**
+ * Assets kept by their signature. The assets of a fungible signature (see {@link AssetSignature#isFungible()})
+ * are stacked into a single asset, and the others are kept one by one under the same signature. The total
+ * amount of each signature is kept along, so counting, adding, and removing don't have to scan the other assets.
+ * <p>
+ * The signatures are iterated in the order they were first added, so the assets show up where they were
+ * in the GUIs.
+ */
+public class AssetStore implements Iterable<Asset> {
+    private final Map<AssetSignature, Lot> lots = new HashMap<>();
+    // order of the signature -> lot
+    private final NavigableMap<Long, Lot> ordered = new TreeMap<>();
+
+    private long nextOrder = 0L;
+    private int size = 0;
+
+    /**
+     * Add a copy of the asset. Assets with zero or negative amount are ignored.
+     * <p>
+     * The asset of a fungible signature is merged into the stack already there, which keeps its own
+     * uuid and issued date; those of the merged asset are dropped.
+     *
+     * @param asset the asset
+     */
+    public synchronized void add(Asset asset) {
+        // ignore meaningless assets
+        if (asset.getNumericalMeasure() <= 0.0)
+            return;
+
+        AssetSignature signature = asset.getSignature();
+        Lot lot = lots.get(signature);
+        if (lot == null) {
+            lot = new Lot(nextOrder++);
+            lots.put(signature, lot);
+            ordered.put(lot.order, lot);
+        }
+
+        if (signature.isFungible() && !lot.assets.isEmpty()) {
+            Asset stacked = lot.assets.get(0);
+            stacked.setNumericalMeasure(stacked.getNumericalMeasure() + asset.getNumericalMeasure());
+        } else {
+            lot.assets.add(asset.clone());
+            size++;
+        }
+        lot.total += asset.getNumericalMeasure();
+    }
+
+    /**
+     * @param signature the signature
+     * @return total amount of the assets of the signature
+     */
+    public synchronized double count(AssetSignature signature) {
+        Lot lot = lots.get(signature);
+        return lot == null ? 0.0 : lot.total;
+    }
+
+    /**
+     * Remove the given amount of the assets with the signature.
+     *
+     * @param signature the signature
+     * @param amount    amount to be removed
+     * @return the assets that were removed; the total may be less than the amount if there isn't enough.
+     */
+    public synchronized Collection<Asset> remove(AssetSignature signature, double amount) {
+        Collection<Asset> removed = new LinkedList<>();
+
+        Lot lot = lots.get(signature);
+        if (lot == null)
+            return removed;
+
+        double remove = amount;
+        Iterator<Asset> iterator = lot.assets.iterator();
+        while (iterator.hasNext() && remove > 0) {
+            Asset asset = iterator.next();
+            double currentAmount = asset.getNumericalMeasure();
+
+            if (currentAmount > remove) {
+                asset.setNumericalMeasure(currentAmount - remove);
+
+                // create the portion that was removed
+                Asset temp = asset.clone();
+                temp.setNumericalMeasure(remove);
+
+                lot.total -= remove;
+                removed.add(temp);
+                break;
+            } else {
+                iterator.remove();
+                size--;
+
+                lot.total -= currentAmount;
+                remove -= currentAmount;
+                removed.add(asset);
+            }
+        }
+
+        if (lot.assets.isEmpty())
+            removeLot(signature, lot);
+
+        return removed;
+    }
+
+    /**
+     * @param index index of the asset, in the order of {@link #iterator()}
+     * @return the asset at the index; null if out of bound
+     */
+    public synchronized Asset get(int index) {
+        if (index < 0 || index >= size)
+            return null;
+
+        int skipped = 0;
+        for (Lot lot : ordered.values()) {
+            if (index < skipped + lot.assets.size())
+                return lot.assets.get(index - skipped);
+            skipped += lot.assets.size();
+        }
+        return null;
+    }
+
+    /**
+     * Remove an asset at the index. It's treated as an empty slot if out of bound.
+     *
+     * @param index index of the asset, in the order of {@link #iterator()}
+     * @return the Asset removed; null if nothing was removed.
+     */
+    public synchronized Asset remove(int index) {
+        if (index < 0 || index >= size)
+            return null;
+
+        int skipped = 0;
+        for (Lot lot : ordered.values()) {
+            if (index >= skipped + lot.assets.size()) {
+                skipped += lot.assets.size();
+                continue;
+            }
+
+            Asset asset = lot.assets.remove(index - skipped);
+            lot.total -= asset.getNumericalMeasure();
+            size--;
+
+            if (lot.assets.isEmpty())
+                removeLot(asset.getSignature(), lot);
+            return asset;
+        }
+        return null;
+    }
+
+    private void removeLot(AssetSignature signature, Lot lot) {
+        lots.remove(signature);
+        ordered.remove(lot.order);
+    }
+
+    /**
+     * Copy the assets of the signature, so they can be put back by {@link #restore(AssetSignature, IMemento)}
+     * after they are changed. Only the assets of the signature are copied.
+     *
+     * @param signature the signature
+     * @return the copy
+     */
+    public synchronized IMemento copy(AssetSignature signature) {
+        Lot lot = lots.get(signature);
+        return new LotMemento(lot == null ? null : lot.copy());
+    }
+
+    /**
+     * Replace the assets of the signature with the copy made by {@link #copy(AssetSignature)}. They are put
+     * back at the same position they were.
+     *
+     * @param signature the signature
+     * @param copy      the copy
+     */
+    public synchronized void restore(AssetSignature signature, IMemento copy) {
+        Lot current = lots.get(signature);
+        if (current != null) {
+            removeLot(signature, current);
+            size -= current.assets.size();
+        }
+
+        Lot saved = ((LotMemento) copy).lot;
+        if (saved == null)
+            return;
+
+        Lot lot = saved.copy();
+        lots.put(signature, lot);
+        ordered.put(lot.order, lot);
+        size += lot.assets.size();
+    }
+
+    /**
+     * Replace everything with the copies of the assets of the other store.
+     *
+     * @param other the other store
+     */
+    public void restore(AssetStore other) {
+        List<Asset> assets = other.toList();
+        synchronized (this) {
+            clear();
+            assets.forEach(this::add);
+        }
+    }
+
+    public synchronized void clear() {
+        lots.clear();
+        ordered.clear();
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param index index of the first asset
+     * @param amount maximum number of assets
+     * @return copy of the list of assets in the range, in the order of {@link #iterator()}
+     */
+    public synchronized List<Asset> subList(int index, int amount) {
+        List<Asset> list = new ArrayList<>(Math.max(0, Math.min(amount, size - index)));
+
+        int skipped = 0;
+        for (Lot lot : ordered.values()) {
+            if (list.size() >= amount)
+                break;
+
+            int lotSize = lot.assets.size();
+            if (skipped + lotSize <= index) {
+                skipped += lotSize;
+                continue;
+            }
+
+            for (int i = Math.max(0, index - skipped); i < lotSize && list.size() < amount; i++) {
+                list.add(lot.assets.get(i));
+            }
+            skipped += lotSize;
+        }
+        return list;
+    }
+
+    /**
+     * Same as {@link #subList(int, int)}, but the assets are copied too, so the copies don't change along
+     * with the stacks in the store.
+     *
+     * @param index index of the first asset
+     * @param amount maximum number of assets
+     * @return copies of the assets in the range, in the order of {@link #iterator()}
+     */
+    public synchronized List<Asset> copyOf(int index, int amount) {
+        List<Asset> list = subList(index, amount);
+        list.replaceAll(Asset::clone);
+        return list;
+    }
+
+    /**
+     * @return copy of the list of all assets, in the order of {@link #iterator()}
+     */
+    public synchronized List<Asset> toList() {
+        return subList(0, size);
+    }
+
+    /**
+     * Iterate a copy of the assets, so the store can be changed while iterating.
+     */
+    @Override
+    public Iterator<Asset> iterator() {
+        return toList().iterator();
+    }
+
+    private static class Lot {
+        private final long order;
+        private final List<Asset> assets = new ArrayList<>(1);
+        private double total;
+
+        private Lot(long order) {
+            this.order = order;
+        }
+
+        private Lot copy() {
+            Lot lot = new Lot(order);
+            for (Asset asset : assets) {
+                Asset clone = asset.clone();
+                lot.assets.add(clone);
+                lot.total += clone.getNumericalMeasure();
+            }
+            return lot;
+        }
+    }
+
+    private static class LotMemento implements IMemento {
+        private final Lot lot;
+
+        private LotMemento(Lot lot) {
+            this.lot = lot;
+        }
+    }
+}
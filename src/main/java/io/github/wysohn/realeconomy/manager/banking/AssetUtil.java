@@ -5,86 +5,41 @@ import io.github.wysohn.rapidframework3.interfaces.paging.DataProvider;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
 
-import java.util.*;
+import java.util.Collection;
 
 public class AssetUtil {
 
     /**
-     * Add the asset to the target list.
-     * <p>
-     * TODO hopefully, we can stack the same assets as one
+     * Add the asset to the target store. Assets of the same fungible signature are
+     * stacked as one.
      *
      * @param ownedAssets
      * @param asset
      */
-    public static void addAsset(List<Asset> ownedAssets, Asset asset) {
-        // ignore meaningless assets
-        if (asset.getNumericalMeasure() <= 0.0)
-            return;
-
-        ownedAssets.add(asset.clone());
+    public static void addAsset(AssetStore ownedAssets, Asset asset) {
+        ownedAssets.add(asset);
     }
 
     /**
-     * Count total amount of assets it has. O(n)
+     * Count total amount of assets it has. O(1)
      * @param ownedAssets
      * @param sign asset signature
      * @return total amount of asset
      */
-    public static double countAsset(List<Asset> ownedAssets, AssetSignature sign){
-        double count = 0;
-        for (Asset ownedAsset : ownedAssets) {
-            if(!Objects.equals(sign, ownedAsset.getSignature()))
-                continue;
-
-            count += ownedAsset.getNumericalMeasure();
-        }
-        return count;
+    public static double countAsset(AssetStore ownedAssets, AssetSignature sign){
+        return ownedAssets.count(sign);
     }
 
     /**
-     * Remove the target asset from the list.
+     * Remove the target asset from the store.
      *
-     * @param ownedAssets target list
+     * @param ownedAssets target store
      * @param signature   the signature. Any Asset that has the same signature will be removed.
      * @param amount      amount to be removed.
      * @return the list of Assets that were removed
      */
-    public static Collection<Asset> removeAsset(List<Asset> ownedAssets, AssetSignature signature, double amount) {
-        double remove = amount;
-        Collection<Asset> removed = new LinkedList<>();
-
-        ListIterator<Asset> assetListIterator = ownedAssets.listIterator();
-        while (assetListIterator.hasNext() && remove > 0) {
-            Asset asset = assetListIterator.next();
-            if (!Objects.equals(asset.getSignature(), signature))
-                continue;
-
-            double currentAmount = asset.getNumericalMeasure();
-
-            if (currentAmount > remove) {
-                asset.setNumericalMeasure(currentAmount - remove);
-
-                // create the portion that was removed
-                Asset temp = asset.clone();
-                temp.setNumericalMeasure(remove);
-
-                removed.add(temp);
-                break;
-            } else if (currentAmount == remove) {
-                assetListIterator.remove();
-
-                removed.add(asset);
-                break;
-            } else {
-                assetListIterator.remove();
-
-                remove -= currentAmount;
-                removed.add(asset);
-            }
-        }
-
-        return removed;
+    public static Collection<Asset> removeAsset(AssetStore ownedAssets, AssetSignature signature, double amount) {
+        return ownedAssets.remove(signature, amount);
     }
 
     /**
@@ -92,27 +47,24 @@ public class AssetUtil {
      * out of bound, it will treat it as of trying to accessing the slot
      * that is empty (in other words, it will return null if index is out of bound).
      *
-     * @param ownedAssets the assets list
+     * @param ownedAssets the assets store
      * @param index       target index
      * @return the Asset removed at the specified index; null if nothing was removed.
      */
-    public static Asset removeAsset(List<Asset> ownedAssets, int index) {
-        if (index < 0 || index >= ownedAssets.size())
-            return null;
-
+    public static Asset removeAsset(AssetStore ownedAssets, int index) {
         return ownedAssets.remove(index);
     }
 
     /**
-     * Create a new DataProvider for the target Asset list.
-     * This internally utilizes cache, so by using the same instance, it will
-     * query the list only once per second. In other words, it has less overhead,
-     * but it may not have the latest information.
+     * Create a new DataProvider for the target Asset store.
+     * Each page is read from the store when it's requested, and holds copies of the assets,
+     * so the stacks merged with the assets added later don't change the page already shown.
      *
      * @param ownedAssets
      * @return
      */
-    public static DataProvider<Asset> assetDataProvider(List<Asset> ownedAssets) {
-        return new DataProviderProxy<>(ownedAssets, 1000L);
+    public static DataProvider<Asset> assetDataProvider(AssetStore ownedAssets) {
+        return new DataProviderProxy<>(range -> ownedAssets.copyOf(range.index, range.size),
+                ownedAssets::size);
     }
 }
@@ -1,76 +1,136 @@
 package io.github.wysohn.realeconomy.manager.banking;
 
-import io.github.wysohn.rapidframework3.core.caching.CachedElement;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 
 import java.math.BigDecimal;
 import java.util.Map;
-import java.util.Optional;
 import java.util.UUID;
 
 public class CapitalManagementUtil {
 
-    public static BigDecimal balance(Map<UUID, BigDecimal> capitals, Currency currency) {
-        return Optional.of(currency)
-                .map(CachedElement::getKey)
-                .map(capitals::get)
-                .orElse(BigDecimal.valueOf(0.0));
+    public static BigDecimal balance(Map<UUID, Money> capitals, Currency currency) {
+        Money money = find(capitals, currency);
+        return money == null ? BigDecimal.valueOf(0.0) : money.toBigDecimal();
+    }
+
+    /**
+     * Same as {@link #balance(Map, Currency)}, but doesn't allocate anything.
+     */
+    public static double balanceAsDouble(Map<UUID, Money> capitals, Currency currency) {
+        Money money = find(capitals, currency);
+        return money == null ? 0.0 : money.toDouble();
     }
 
     public static boolean deposit(BigDecimal maximum,
-                                  Map<UUID, BigDecimal> capitals,
+                                  Map<UUID, Money> capitals,
                                   BigDecimal value,
                                   Currency currency) {
         if (value.signum() < 0)
             throw new RuntimeException("Cannot use negative value.");
 
-        final boolean aBoolean = Optional.of(currency)
-                .map(CachedElement::getKey)
-                .map(uuid -> {
-                    BigDecimal current = capitals.getOrDefault(uuid, BigDecimal.valueOf(0.0));
-                    BigDecimal added = current.add(value);
+        long units;
+        try {
+            units = Money.toUnits(value, currency.getScale());
+        } catch (ArithmeticException ex) {
+            // more than any balance can hold
+            return false;
+        }
+        return deposit(maximum, capitals, units, currency);
+    }
+
+    /**
+     * @param units the value in the scale of the currency. See {@link Money}
+     */
+    public static boolean deposit(BigDecimal maximum,
+                                  Map<UUID, Money> capitals,
+                                  long units,
+                                  Currency currency) {
+        if (units < 0L)
+            throw new RuntimeException("Cannot use negative value.");
 
-                    if (added.compareTo(maximum) > 0)
-                        return false;
+        Money money = findOrCreate(capitals, currency);
+        if (money == null)
+            return false;
 
-                    capitals.put(uuid, added);
-                    return true;
-                })
-                .orElse(false);
-        return aBoolean;
+        int scale = currency.getScale();
+        return money.add(units, scale, Money.toLimit(maximum, scale));
     }
 
     public static boolean withdraw(BigDecimal minimum,
-                                   Map<UUID, BigDecimal> capitals,
+                                   Map<UUID, Money> capitals,
                                    BigDecimal value,
                                    Currency currency,
                                    boolean allowNegative) {
         if (value.signum() < 0)
             throw new RuntimeException("Cannot use negative value.");
 
-        final boolean aBoolean = Optional.of(currency)
-                .map(CachedElement::getKey)
-                .map(uuid -> {
-                    BigDecimal current = capitals.getOrDefault(uuid, BigDecimal.valueOf(0.0));
-                    BigDecimal subtracted = current.subtract(value);
+        long units;
+        try {
+            units = Money.toUnits(value, currency.getScale());
+        } catch (ArithmeticException ex) {
+            // more than any balance can hold
+            return false;
+        }
+        return withdraw(minimum, capitals, units, currency, allowNegative);
+    }
 
-                    if (!allowNegative && subtracted.signum() < 0)
-                        return false;
+    /**
+     * @param units the value in the scale of the currency. See {@link Money}
+     */
+    public static boolean withdraw(BigDecimal minimum,
+                                   Map<UUID, Money> capitals,
+                                   long units,
+                                   Currency currency,
+                                   boolean allowNegative) {
+        if (units < 0L)
+            throw new RuntimeException("Cannot use negative value.");
 
-                    if (subtracted.compareTo(minimum) < 0)
-                        return false;
+        Money money = findOrCreate(capitals, currency);
+        if (money == null)
+            return false;
 
-                    capitals.put(uuid, subtracted);
-                    return true;
-                })
-                .orElse(false);
-        return aBoolean;
+        int scale = currency.getScale();
+        long minUnits = Money.toLimit(minimum, scale);
+        if (!allowNegative)
+            minUnits = Math.max(0L, minUnits);
+        return money.subtract(units, scale, minUnits);
     }
 
     public static boolean withdraw(BigDecimal minimum,
-                                   Map<UUID, BigDecimal> capitals,
+                                   Map<UUID, Money> capitals,
                                    BigDecimal value,
                                    Currency currency) {
         return withdraw(minimum, capitals, value, currency, false);
     }
+
+    /**
+     * Copy the balances, so the copies can be changed without affecting the original.
+     *
+     * @param from the balances to copy
+     * @param to   the copies are put here
+     */
+    public static void copy(Map<UUID, Money> from, Map<UUID, Money> to) {
+        from.forEach((uuid, money) -> to.put(uuid, money.copy()));
+    }
+
+    private static Money find(Map<UUID, Money> capitals, Currency currency) {
+        UUID uuid = currency.getKey();
+        return uuid == null ? null : capitals.get(uuid);
+    }
+
+    private static Money findOrCreate(Map<UUID, Money> capitals, Currency currency) {
+        UUID uuid = currency.getKey();
+        if (uuid == null)
+            return null;
+
+        // the balance is created only once, and changed in place from then on
+        Money money = capitals.get(uuid);
+        if (money == null) {
+            Money created = new Money(currency.getScale());
+            money = capitals.putIfAbsent(uuid, created);
+            if (money == null)
+                money = created;
+        }
+        return money;
+    }
 }
@@ -0,0 +1,281 @@
+package io.github.wysohn.realeconomy.manager.banking;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.logging.Logger;
+
+/**
+ * Balance of a currency kept as a long, which is the amount multiplied by 10^scale. The scale is the
+ * number of decimal places of the currency, so 12.34 of a currency with the scale 2 is kept as 1234.
+ * <p>
+ * Depositing and withdrawing change the value in place, so the balances don't allocate anything unless
+ * the value is read as {@link BigDecimal}. A result too large for a long is refused instead of overflowing.
+ * <p>
+ * The balance remembers its own scale, so the balances saved before the scale of the currency is changed
+ * are rescaled on their next use. A long can't hold every balance the capital limit allows, so a balance
+ * loaded or rescaled beyond what its scale can hold is lowered to the largest (or the smallest) one with a
+ * warning, rather than leaving the account unusable.
+ */
+public final class Money {
+    // 4 decimal places still hold balances up to about 9.2 * 10^14
+    public static final int DEFAULT_SCALE = 4;
+    public static final int MAX_SCALE = 18;
+
+    private static final Logger LOGGER = Logger.getLogger(Money.class.getName());
+
+    private static final long[] POWERS = new long[MAX_SCALE + 1];
+    private static final BigDecimal[] LIMITS = new BigDecimal[MAX_SCALE + 1];
+    private static final BigDecimal[] NEGATIVE_LIMITS = new BigDecimal[MAX_SCALE + 1];
+    // doubles are exact integers only up to 2^53, so leave some room for the rounding
+    private static final double EXACT_DOUBLE = 1L << 52;
+
+    static {
+        long power = 1L;
+        for (int i = 0; i <= MAX_SCALE; i++) {
+            POWERS[i] = power;
+            LIMITS[i] = BigDecimal.valueOf(Long.MAX_VALUE, i);
+            NEGATIVE_LIMITS[i] = BigDecimal.valueOf(Long.MIN_VALUE, i);
+            power *= 10L;
+        }
+    }
+
+    private long units;
+    private int scale;
+
+    public Money(int scale) {
+        validateScale(scale);
+
+        this.scale = scale;
+    }
+
+    private Money(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+
+    /**
+     * @param value the amount
+     * @param scale the scale of the currency
+     * @return the balance; the value is rounded to the scale
+     * @throws ArithmeticException if the value doesn't fit in the scale
+     */
+    public static Money of(BigDecimal value, int scale) {
+        return new Money(toUnits(value, scale), scale);
+    }
+
+    /**
+     * Read the balance saved as a plain number. Its scale is kept as is, up to {@link #MAX_SCALE}.
+     * The balance larger than even the scale 0 can hold is lowered to the largest one.
+     */
+    public static Money parse(BigDecimal value) {
+        int scale = Math.max(0, Math.min(MAX_SCALE, value.stripTrailingZeros().scale()));
+        try {
+            return of(value, scale);
+        } catch (ArithmeticException ex) {
+            // too many digits for the scale; give up the decimal places needed to fit
+            for (int lower = scale - 1; lower >= 0; lower--) {
+                if (value.abs().compareTo(LIMITS[lower]) <= 0)
+                    return of(value, lower);
+            }
+
+            Money clamped = new Money(value.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE, 0);
+            LOGGER.warning("The balance " + value.toPlainString() + " is beyond what any scale can hold,"
+                    + " so it is lowered to " + clamped + ".");
+            return clamped;
+        }
+    }
+
+    /**
+     * @return the largest balance the scale can hold. The smallest is about the same, but negative.
+     */
+    public static BigDecimal maxValue(int scale) {
+        validateScale(scale);
+
+        return LIMITS[scale];
+    }
+
+    public static void validateScale(int scale) {
+        Validation.validate(scale, s -> s >= 0 && s <= MAX_SCALE, "Scale must be between 0 and " + MAX_SCALE);
+    }
+
+    /**
+     * @throws ArithmeticException if the value doesn't fit in the scale
+     */
+    public static long toUnits(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Same as {@link #toUnits(BigDecimal, int)}, but doesn't allocate anything unless the value is
+     * larger than a double can represent exactly in the scale.
+     *
+     * @throws ArithmeticException if the value is not finite or doesn't fit in the scale
+     */
+    public static long toUnits(double value, int scale) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw new ArithmeticException("Not a finite number: " + value);
+
+        double scaled = value * POWERS[scale];
+        if (Math.abs(scaled) < EXACT_DOUBLE)
+            return Math.round(scaled);
+
+        return toUnits(BigDecimal.valueOf(value), scale);
+    }
+
+    /**
+     * Convert the limit of balances into the scale. The limit beyond what a long can hold becomes the
+     * largest (or the smallest) long, so it doesn't restrict anything.
+     */
+    public static long toLimit(BigDecimal limit, int scale) {
+        if (limit.signum() == 0)
+            return 0L;
+        if (limit.compareTo(LIMITS[scale]) >= 0)
+            return Long.MAX_VALUE;
+        if (limit.compareTo(NEGATIVE_LIMITS[scale]) <= 0)
+            return Long.MIN_VALUE;
+
+        return limit.setScale(scale, RoundingMode.DOWN).unscaledValue().longValue();
+    }
+
+    /**
+     * Multiply the units by the count, such as the price of each by the number of items.
+     *
+     * @return the product; {@link Long#MAX_VALUE} or {@link Long#MIN_VALUE} if it overflows, which
+     * no balance can afford
+     */
+    public static long multiply(long units, int count) {
+        try {
+            return Math.multiplyExact(units, (long) count);
+        } catch (ArithmeticException ex) {
+            return (units < 0L) != (count < 0) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @param units    amount to add, in the given scale
+     * @param scale    the scale of the currency
+     * @param maxUnits the balance can't be more than this
+     * @return true if added; false if the result is over the limit, or doesn't fit in a long
+     */
+    public synchronized boolean add(long units, int scale, long maxUnits) {
+        rescale(scale);
+
+        long result = this.units + units;
+        // overflow if both operands have the sign different from the result
+        if (((this.units ^ result) & (units ^ result)) < 0L)
+            return false;
+        if (result > maxUnits)
+            return false;
+
+        this.units = result;
+        return true;
+    }
+
+    /**
+     * @param units    amount to subtract, in the given scale
+     * @param scale    the scale of the currency
+     * @param minUnits the balance can't be less than this
+     * @return true if subtracted; false if the result is under the limit, or doesn't fit in a long
+     */
+    public synchronized boolean subtract(long units, int scale, long minUnits) {
+        rescale(scale);
+
+        long result = this.units - units;
+        // overflow if the operands have different signs, and the result has the sign of the subtrahend
+        if (((this.units ^ units) & (this.units ^ result)) < 0L)
+            return false;
+        if (result < minUnits)
+            return false;
+
+        this.units = result;
+        return true;
+    }
+
+    private void rescale(int scale) {
+        if (this.scale == scale)
+            return;
+
+        validateScale(scale);
+        if (scale > this.scale) {
+            try {
+                this.units = Math.multiplyExact(this.units, POWERS[scale - this.scale]);
+            } catch (ArithmeticException ex) {
+                // refusing every use would lock the balance up for good
+                LOGGER.warning("The balance " + this + " is larger than " + LIMITS[scale].toPlainString()
+                        + ", which is the most the scale " + scale + " can hold, so it is lowered to that.");
+                this.units = this.units < 0L ? Long.MIN_VALUE : Long.MAX_VALUE;
+            }
+        } else {
+            this.units = BigDecimal.valueOf(this.units, this.scale)
+                    .setScale(scale, RoundingMode.HALF_UP)
+                    .unscaledValue()
+                    .longValue();
+        }
+        this.scale = scale;
+    }
+
+    public synchronized long getUnits() {
+        return units;
+    }
+
+    public synchronized int getScale() {
+        return scale;
+    }
+
+    public synchronized void set(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+
+    public synchronized Money copy() {
+        return new Money(units, scale);
+    }
+
+    public synchronized boolean isZero() {
+        return units == 0L;
+    }
+
+    public synchronized double toDouble() {
+        return (double) units / POWERS[scale];
+    }
+
+    /**
+     * The trailing zeros are dropped, but at least one decimal place is kept, so the value reads the same
+     * as {@link BigDecimal#valueOf(double)} of the same amount.
+     */
+    public synchronized BigDecimal toBigDecimal() {
+        long value = units;
+        int digits = scale;
+        while (digits > 1 && value % 10L == 0L) {
+            value /= 10L;
+            digits--;
+        }
+        if (digits == 0) {
+            // not Math.abs(), which stays negative for Long.MIN_VALUE
+            if (value <= Long.MAX_VALUE / 10L && value >= Long.MIN_VALUE / 10L)
+                return BigDecimal.valueOf(value * 10L, 1);
+            return BigDecimal.valueOf(value).setScale(1, RoundingMode.UNNECESSARY);
+        }
+        return BigDecimal.valueOf(value, digits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Money money = (Money) o;
+        return toBigDecimal().compareTo(money.toBigDecimal()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return toBigDecimal().stripTrailingZeros().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
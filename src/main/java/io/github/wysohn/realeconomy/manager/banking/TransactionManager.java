@@ -4,6 +4,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.github.wysohn.rapidframework3.core.main.Manager;
 import io.github.wysohn.rapidframework3.interfaces.IMemento;
+import io.github.wysohn.rapidframework3.interfaces.IPluginObject;
 import io.github.wysohn.rapidframework3.interfaces.paging.DataProvider;
 import io.github.wysohn.rapidframework3.utils.FailSensitiveTaskGeneric;
 import io.github.wysohn.rapidframework3.utils.Validation;
@@ -19,17 +20,35 @@ import io.github.wysohn.realeconomy.manager.currency.Currency;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
+/**
+ * Transfers are locked only by the two entities involved, so the transfers between different entities
+ * run at the same time. The locks are striped by the uuid of the entity, and the two stripes are always
+ * acquired in the same order, so two transfers in the opposite directions never deadlock.
+ */
 @Singleton
 public class TransactionManager extends Manager {
+    private static final int TRANSFER_LOCK_STRIPES = 64;
+
     private final VisitingBankManager visitingBankManager;
 
+    private final Object[] transferLocks = new Object[TRANSFER_LOCK_STRIPES];
+    private final AtomicLong transfers = new AtomicLong();
+    private final AtomicLong failedTransfers = new AtomicLong();
+    private final AtomicLong transferNanos = new AtomicLong();
+
     @Inject
     public TransactionManager(VisitingBankManager visitingBankManager) {
         this.visitingBankManager = visitingBankManager;
 
+        for (int i = 0; i < transferLocks.length; i++) {
+            transferLocks[i] = new Object();
+        }
+
         dependsOn(VisitingBankManager.class);
     }
 
@@ -55,7 +74,7 @@ public class TransactionManager extends Manager {
      * @param currency
      * @return
      */
-    public synchronized Result send(
+    public Result send(
             IFinancialEntity from,
             IFinancialEntity to,
             BigDecimal amount,
@@ -76,7 +95,8 @@ public class TransactionManager extends Manager {
 
         IFinancialEntity finalFrom = from;
         IFinancialEntity finalTo = to;
-        return FailSensitiveTaskResult.of(() -> {
+        long start = System.nanoTime();
+        Result result = withTransferLocks(finalFrom, finalTo, () -> FailSensitiveTaskResult.of(() -> {
             if (!finalFrom.withdraw(amount, currency))
                 return Result.FROM_WITHDRAW_REFUSED;
 
@@ -85,14 +105,21 @@ public class TransactionManager extends Manager {
 
             return Result.OK;
         }, Result.OK).handleException(Throwable::printStackTrace)
-                .addStateSupplier("from", finalFrom::saveState)
-                .addStateConsumer("from", finalFrom::restoreState)
-                .addStateSupplier("to", finalTo::saveState)
-                .addStateConsumer("to", finalTo::restoreState)
-                .run();
+                .addStateSupplier("from", () -> saveState(finalFrom))
+                .addStateConsumer("from", state -> restoreState(finalFrom, state))
+                .addStateSupplier("to", () -> saveState(finalTo))
+                .addStateConsumer("to", state -> restoreState(finalTo, state))
+                .run());
+
+        transferNanos.addAndGet(System.nanoTime() - start);
+        if (result == Result.OK)
+            transfers.incrementAndGet();
+        else
+            failedTransfers.incrementAndGet();
+        return result;
     }
 
-    public synchronized Result send(
+    public Result send(
             IBankUser from,
             IBankingType type,
             IFinancialEntity to,
@@ -101,7 +128,7 @@ public class TransactionManager extends Manager {
         return send(new BankAccountWrapper(visitingBankManager.getUsingBank(from), from, type), to, amount, currency);
     }
 
-    public synchronized Result send(
+    public Result send(
             IFinancialEntity from,
             IBankUser to,
             IBankingType type,
@@ -110,7 +137,7 @@ public class TransactionManager extends Manager {
         return send(from, new BankAccountWrapper(visitingBankManager.getUsingBank(to), to, type), amount, currency);
     }
 
-    public synchronized Result send(
+    public Result send(
             IBankUser from,
             IBankingType from_type,
             IBankUser to,
@@ -123,6 +150,75 @@ public class TransactionManager extends Manager {
                 currency);
     }
 
+    /**
+     * @return number of transfers completed
+     */
+    public long getTransfers() {
+        return transfers.get();
+    }
+
+    /**
+     * @return number of transfers refused or reverted
+     */
+    public long getFailedTransfers() {
+        return failedTransfers.get();
+    }
+
+    /**
+     * @return total time spent by the transfers in nanoseconds, including the time waiting for the locks
+     */
+    public long getTransferNanos() {
+        return transferNanos.get();
+    }
+
+    /**
+     * @return transfers (both completed and failed) per second of the time spent by them; 0.0 if none
+     */
+    public double getThroughput() {
+        long nanos = transferNanos.get();
+        if (nanos == 0L)
+            return 0.0;
+
+        return (transfers.get() + failedTransfers.get()) * 1_000_000_000.0 / nanos;
+    }
+
+    private <T> T withTransferLocks(IFinancialEntity from, IFinancialEntity to, Supplier<T> task) {
+        int fromStripe = lockStripe(from);
+        int toStripe = lockStripe(to);
+
+        // always lock the lower stripe first to avoid deadlock
+        synchronized (transferLocks[Math.min(fromStripe, toStripe)]) {
+            synchronized (transferLocks[Math.max(fromStripe, toStripe)]) {
+                return task.get();
+            }
+        }
+    }
+
+    private int lockStripe(IFinancialEntity entity) {
+        Object key = entity;
+        if (entity instanceof BankAccountWrapper)
+            key = ((BankAccountWrapper) entity).user.getUuid();
+        else if (entity instanceof IPluginObject)
+            key = ((IPluginObject) entity).getUuid();
+
+        return Math.floorMod(Objects.hashCode(key), transferLocks.length);
+    }
+
+    private static IMemento saveState(IFinancialEntity entity) {
+        // the accounts of the users are not locked by the transfer, so only the bank's own capitals are saved
+        if (entity instanceof AbstractBank)
+            return ((AbstractBank) entity).saveCapitalState();
+
+        return entity.saveState();
+    }
+
+    private static void restoreState(IFinancialEntity entity, IMemento state) {
+        if (entity instanceof AbstractBank)
+            ((AbstractBank) entity).restoreCapitalState(state);
+        else
+            entity.restoreState(state);
+    }
+
     public BankAccountWrapper wrapAccount(AbstractBank bank, IBankUser user, IBankingType type) {
         return new BankAccountWrapper(bank, user, type);
     }
@@ -188,12 +284,12 @@ public class TransactionManager extends Manager {
 
         @Override
         public IMemento saveState() {
-            return user.saveState();
+            return bank.saveAccountState(user);
         }
 
         @Override
         public void restoreState(IMemento iMemento) {
-            user.restoreState(iMemento);
+            bank.restoreAccountState(user, iMemento);
         }
     }
 
@@ -233,12 +329,12 @@ public class TransactionManager extends Manager {
 
         @Override
         public IMemento saveState() {
-            return bank.saveState();
+            return bank.saveAccountState(user);
         }
 
         @Override
         public void restoreState(IMemento savedState) {
-            bank.restoreState(savedState);
+            bank.restoreAccountState(user, savedState);
         }
     }
 
@@ -4,18 +4,19 @@ import io.github.wysohn.rapidframework3.interfaces.IMemento;
 import io.github.wysohn.realeconomy.interfaces.banking.IAccount;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankingType;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.banking.CapitalManagementUtil;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class CheckingAccount implements IAccount {
-    public final Map<UUID, BigDecimal> balances = new ConcurrentHashMap<>();
+    public final Map<UUID, Money> balances = new ConcurrentHashMap<>();
 
     @Override
-    public Map<UUID, BigDecimal> getCurrencyMap() {
+    public Map<UUID, Money> getCurrencyMap() {
         return balances;
     }
 
@@ -34,14 +35,15 @@ public class CheckingAccount implements IAccount {
         Memento memento = (Memento) iMemento;
 
         balances.clear();
-        balances.putAll(memento.balances);
+        CapitalManagementUtil.copy(memento.balances, balances);
     }
 
     private static class Memento implements IMemento {
-        private final Map<UUID, BigDecimal> balances = new HashMap<>();
+        private final Map<UUID, Money> balances = new HashMap<>();
 
         public Memento(CheckingAccount original) {
-            balances.putAll(original.balances);
+            // the balances are changed in place, so they must be copied
+            CapitalManagementUtil.copy(original.balances, balances);
         }
     }
 
@@ -7,16 +7,21 @@ import io.github.wysohn.realeconomy.interfaces.banking.IAssetHolder;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankingType;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+import io.github.wysohn.realeconomy.manager.banking.AssetStore;
 import io.github.wysohn.realeconomy.manager.banking.AssetUtil;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.banking.CapitalManagementUtil;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 
-import java.math.BigDecimal;
-import java.util.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class TradingAccount implements IAccount, IAssetHolder {
-    public final Map<UUID, BigDecimal> balances = new ConcurrentHashMap<>();
-    private final List<Asset> ownedAssets = Collections.synchronizedList(new ArrayList<>());
+    public final Map<UUID, Money> balances = new ConcurrentHashMap<>();
+    private final AssetStore ownedAssets = new AssetStore();
 
     @Override
     public void addAsset(Asset asset) {
@@ -30,10 +35,7 @@ public class TradingAccount implements IAccount, IAssetHolder {
 
     @Override
     public Collection<Asset> removeAsset(AssetSignature signature, double amount) {
-        // TODO temporary solution
-        synchronized (ownedAssets) {
-            return AssetUtil.removeAsset(ownedAssets, signature, amount);
-        }
+        return AssetUtil.removeAsset(ownedAssets, signature, amount);
     }
 
     @Override
@@ -41,13 +43,34 @@ public class TradingAccount implements IAccount, IAssetHolder {
         return AssetUtil.removeAsset(ownedAssets, index);
     }
 
+    /**
+     * @return the asset at the index; null if out of bound
+     */
+    public Asset getAsset(int index) {
+        return ownedAssets.get(index);
+    }
+
+    /**
+     * {@link AssetStore#copy(AssetSignature)}
+     */
+    public IMemento copyAssets(AssetSignature signature) {
+        return ownedAssets.copy(signature);
+    }
+
+    /**
+     * {@link AssetStore#restore(AssetSignature, IMemento)}
+     */
+    public void restoreAssets(AssetSignature signature, IMemento copy) {
+        ownedAssets.restore(signature, copy);
+    }
+
     @Override
     public DataProvider<Asset> assetDataProvider() {
         return AssetUtil.assetDataProvider(ownedAssets);
     }
 
     @Override
-    public Map<UUID, BigDecimal> getCurrencyMap() {
+    public Map<UUID, Money> getCurrencyMap() {
         return balances;
     }
 
@@ -75,27 +98,19 @@ public class TradingAccount implements IAccount, IAssetHolder {
         Memento memento = (Memento) savedState;
 
         balances.clear();
-        balances.putAll(memento.balances);
+        CapitalManagementUtil.copy(memento.balances, balances);
 
-        ownedAssets.clear();
-        memento.ownedAssets.stream()
-                .map(Asset::clone)
-                .forEach(ownedAssets::add);
+        ownedAssets.restore(memento.ownedAssets);
     }
 
     private static class Memento implements IMemento {
-        private final Map<UUID, BigDecimal> balances = new HashMap<>();
-        private final List<Asset> ownedAssets = new ArrayList<>();
+        private final Map<UUID, Money> balances = new HashMap<>();
+        private final AssetStore ownedAssets = new AssetStore();
 
         public Memento(TradingAccount tradingAccount) {
-            balances.putAll(tradingAccount.balances);
-            deepCopy(tradingAccount.ownedAssets, ownedAssets);
-        }
-
-        private void deepCopy(List<Asset> from, List<Asset> to) {
-            for (Asset asset : from) {
-                to.add(asset.clone());
-            }
+            // the balances are changed in place, so they must be copied
+            CapitalManagementUtil.copy(tradingAccount.balances, balances);
+            ownedAssets.restore(tradingAccount.ownedAssets);
         }
     }
 }
@@ -14,9 +14,11 @@ import io.github.wysohn.realeconomy.interfaces.banking.*;
 import io.github.wysohn.realeconomy.main.RealEconomyLangs;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+import io.github.wysohn.realeconomy.manager.banking.AssetStore;
 import io.github.wysohn.realeconomy.manager.banking.AssetUtil;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
 import io.github.wysohn.realeconomy.manager.banking.CapitalManagementUtil;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.account.TradingAccount;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.currency.CurrencyManager;
@@ -27,14 +29,17 @@ import java.math.BigDecimal;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
- * Represents a bank where transactions occur. This instance is used
- * for synchronization, so if multiple transactions must happen at the same time,
- * the caller may acquire monitor, which is the instance itself.
+ * Represents a bank where transactions occur. Accounts are guarded by striped locks rather than
+ * the bank itself, so the accounts of different users can be used in parallel. If multiple
+ * transactions must happen at the same time, the caller may hold the locks of the accounts
+ * involved using {@link #withAccountLocks(IBankUser, IBankUser, Supplier)}.
  */
 public abstract class AbstractBank extends CachedElement<UUID> implements IPluginObject, IFinancialEntity, IAssetHolder {
     public static final String BANK_MARK = "\u2608";
+    private static final int ACCOUNT_LOCK_STRIPES = 64;
 
     @Inject
     private Set<IBankOwnerProvider> ownerProviders;
@@ -48,17 +53,26 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
     protected BigDecimal maximum;
 
     // Currency uuid -> value
-    private final Map<UUID, BigDecimal> capitals = new ConcurrentHashMap<>();
+    private final Map<UUID, Money> capitals = new ConcurrentHashMap<>();
     private final Map<UUID, Map<IBankingType, IAccount>> accounts = new ConcurrentHashMap<>();
-    private final List<Asset> ownedAssets = Collections.synchronizedList(new ArrayList<>());
+    private final AssetStore ownedAssets = new AssetStore();
 
     private UUID bankOwnerUuid;
     private UUID baseCurrencyUuid;
 
     private boolean operating = true;
 
+    // each user's accounts are guarded by one of the stripes
+    private transient final Object[] accountLocks = new Object[ACCOUNT_LOCK_STRIPES];
+    // undo logs of the changes in progress, by the thread making the changes
+    private transient final Map<Thread, BankJournal> journals = new ConcurrentHashMap<>();
+
     public AbstractBank(UUID key) {
         super(key);
+
+        for (int i = 0; i < accountLocks.length; i++) {
+            accountLocks[i] = new Object();
+        }
     }
 
     public IBankOwner getBankOwner() {
@@ -135,8 +149,8 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
     }
 
     /**
-     * execute 'accountConsumer' while acquiring the lock for the specific user
-     * node and its account node.
+     * execute 'accountConsumer' while acquiring the lock of the user's accounts.
+     * Nothing happens if the user doesn't have the account.
      *
      * @param user
      * @param type
@@ -148,18 +162,79 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         Validation.assertNotNull(visitor);
         Validation.assertNotNull(visitor.function);
 
-        accounts.computeIfPresent(user.getUuid(), (key, accountMap) -> {
-            synchronized (accountMap) {
-                accountMap.computeIfPresent(type, (t, account) -> {
-                    visitor.result = visitor.function.apply(account);
-                    return account;
-                });
+        synchronized (accountLock(user.getUuid())) {
+            Map<IBankingType, IAccount> accountMap = accounts.get(user.getUuid());
+            if (accountMap == null)
+                return;
+
+            IAccount account = accountMap.get(type);
+            if (account == null)
+                return;
+
+            visitor.result = visitor.function.apply(account);
+        }
+    }
+
+    private Object accountLock(UUID userUuid) {
+        return accountLocks[Math.floorMod(Objects.hashCode(userUuid), accountLocks.length)];
+    }
+
+    /**
+     * Run the task while holding the locks of the accounts of both users, so no other thread can use
+     * their accounts in the middle. The locks are always acquired in the same order no matter which user
+     * comes first, so two of these never deadlock with each other.
+     *
+     * @param first  one user
+     * @param second the other user; may be the same user
+     * @param task   the task
+     * @return result of the task
+     */
+    public <T> T withAccountLocks(IBankUser first, IBankUser second, Supplier<T> task) {
+        Validation.assertNotNull(first);
+        Validation.assertNotNull(second);
+        Validation.assertNotNull(task);
+
+        int firstStripe = Math.floorMod(Objects.hashCode(first.getUuid()), accountLocks.length);
+        int secondStripe = Math.floorMod(Objects.hashCode(second.getUuid()), accountLocks.length);
+
+        // always lock the lower stripe first to avoid deadlock
+        synchronized (accountLocks[Math.min(firstStripe, secondStripe)]) {
+            synchronized (accountLocks[Math.max(firstStripe, secondStripe)]) {
+                return task.get();
             }
-            return accountMap;
-        });
+        }
     }
 
-    public synchronized boolean hasAccount(IBankUser user, IBankingType type) {
+    /**
+     * Same as {@link #withAccountLocks(IBankUser, IBankUser, Supplier)}, but for the accounts of all the users.
+     * The locks are acquired in the same order, so this never deadlocks with the other either.
+     *
+     * @param users the users
+     * @param task  the task
+     * @return result of the task
+     */
+    public <T> T withAccountLocks(Collection<? extends IBankUser> users, Supplier<T> task) {
+        Validation.assertNotNull(users);
+        Validation.assertNotNull(task);
+
+        int[] stripes = users.stream()
+                .mapToInt(user -> Math.floorMod(Objects.hashCode(user.getUuid()), accountLocks.length))
+                .distinct()
+                .sorted()
+                .toArray();
+        return withStripeLocks(stripes, 0, task);
+    }
+
+    private <T> T withStripeLocks(int[] stripes, int index, Supplier<T> task) {
+        if (index == stripes.length)
+            return task.get();
+
+        synchronized (accountLocks[stripes[index]]) {
+            return withStripeLocks(stripes, index + 1, task);
+        }
+    }
+
+    public boolean hasAccount(IBankUser user, IBankingType type) {
         AccountVisitor<Boolean> visitor = new AccountVisitor<>((account) -> true, false);
         synchronousAccountTask(user, type, visitor);
         return visitor.result;
@@ -170,17 +245,17 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
      * @param type the account type to be added to this bank.
      * @return true if newly created; false if the account type already exist
      */
-    public synchronized boolean putAccount(IBankUser user, IBankingType type) {
+    public boolean putAccount(IBankUser user, IBankingType type) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
         Validation.assertNotNull(user);
         Validation.assertNotNull(type);
 
-        Map<IBankingType, IAccount> accountMap = accounts.computeIfAbsent(user.getUuid(),
-                key -> new HashMap<>());
+        synchronized (accountLock(user.getUuid())) {
+            Map<IBankingType, IAccount> accountMap = accounts.computeIfAbsent(user.getUuid(),
+                    key -> new HashMap<>());
 
-        synchronized (accountMap) {
             if (accountMap.containsKey(type))
                 return false;
 
@@ -198,24 +273,24 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
      * @param type the account type to be added to this bank.
      * @return true if deleted; false if account didn't exist in the first place.
      */
-    public synchronized boolean removeAccount(IBankUser user, IBankingType type) {
+    public boolean removeAccount(IBankUser user, IBankingType type) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
         Validation.assertNotNull(user);
 
-        Map<IBankingType, IAccount> accountMap = accounts.get(user.getUuid());
-        if (accountMap == null)
-            return false;
+        synchronized (accountLock(user.getUuid())) {
+            Map<IBankingType, IAccount> accountMap = accounts.get(user.getUuid());
+            if (accountMap == null)
+                return false;
 
-        synchronized (accountMap) {
             final boolean deleted = accountMap.remove(type) != null;
             if (deleted) notifyObservers();
             return deleted;
         }
     }
 
-    public synchronized void addAccountAsset(IBankUser user, Asset asset) {
+    public void addAccountAsset(IBankUser user, Asset asset) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
@@ -227,6 +302,7 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
                 throw new RuntimeException("Account of " + user + " does not exist.");
 
             TradingAccount tradingAccount = (TradingAccount) account;
+            recordAssets(tradingAccount, asset.getSignature());
             tradingAccount.addAsset(asset);
             return null;
         });
@@ -234,7 +310,7 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         notifyObservers();
     }
 
-    public synchronized double countAccountAsset(IBankUser user, AssetSignature signature) {
+    public double countAccountAsset(IBankUser user, AssetSignature signature) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
@@ -253,7 +329,7 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         return visitor.result == null ? 0.0 : visitor.result;
     }
 
-    public synchronized Collection<Asset> removeAccountAsset(IBankUser user, AssetSignature signature, double amount) {
+    public Collection<Asset> removeAccountAsset(IBankUser user, AssetSignature signature, double amount) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
@@ -266,6 +342,7 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
                 throw new RuntimeException("Account of " + user + " does not exist.");
 
             TradingAccount tradingAccount = (TradingAccount) account;
+            recordAssets(tradingAccount, signature);
             return tradingAccount.removeAsset(signature, amount);
         }, new LinkedList<>());
         synchronousAccountTask(user, BankingTypeRegistry.TRADING, visitor);
@@ -276,7 +353,7 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         return removed;
     }
 
-    public synchronized Asset removeAccountAsset(IBankUser user, int index) {
+    public Asset removeAccountAsset(IBankUser user, int index) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
@@ -288,6 +365,11 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
                 throw new RuntimeException("Account of " + user + " does not exist.");
 
             TradingAccount tradingAccount = (TradingAccount) account;
+            Asset asset = tradingAccount.getAsset(index);
+            if (asset == null)
+                return null;
+
+            recordAssets(tradingAccount, asset.getSignature());
             return tradingAccount.removeAsset(index);
         });
         synchronousAccountTask(user, BankingTypeRegistry.TRADING, visitor);
@@ -316,24 +398,57 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         return visitor.result;
     }
 
-    public synchronized boolean depositAccount(IBankUser user,
+    public boolean depositAccount(IBankUser user,
                                                IBankingType type,
                                                BigDecimal amount,
                                                Currency currency) {
+        Validation.assertNotNull(amount);
+        Validation.validate(amount, val -> val.signum() >= 0, "negative amount not allowed");
+        Validation.assertNotNull(currency);
+
+        long units;
+        try {
+            units = Money.toUnits(amount, currency.getScale());
+        } catch (ArithmeticException ex) {
+            // more than any balance can hold
+            return false;
+        }
+        return depositAccountUnits(user, type, units, currency);
+    }
+
+    public boolean depositAccount(IBankUser user, IBankingType type, double amount, Currency currency) {
+        if (amount < 0.0)
+            throw new RuntimeException("negative amount not allowed");
+        Validation.assertNotNull(currency);
+
+        long units;
+        try {
+            units = Money.toUnits(amount, currency.getScale());
+        } catch (ArithmeticException ex) {
+            return false;
+        }
+        return depositAccountUnits(user, type, units, currency);
+    }
+
+    /**
+     * @param units the amount in the scale of the currency. See {@link Money}
+     */
+    public boolean depositAccountUnits(IBankUser user, IBankingType type, long units, Currency currency) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
         Validation.assertNotNull(user);
         Validation.assertNotNull(type);
-        Validation.assertNotNull(amount);
-        Validation.validate(amount, val -> val.signum() >= 0, "negative amount not allowed");
         Validation.assertNotNull(currency);
+        if (units < 0L)
+            throw new RuntimeException("negative amount not allowed");
 
         AccountVisitor<Boolean> visitor = new AccountVisitor<>(account -> {
             if (account == null)
                 throw new RuntimeException("Account of " + user + " does not exist.");
 
-            return CapitalManagementUtil.deposit(maximum, account.getCurrencyMap(), amount, currency);
+            recordBalance(account, currency);
+            return CapitalManagementUtil.deposit(maximum, account.getCurrencyMap(), units, currency);
         }, false);
         synchronousAccountTask(user, type, visitor);
 
@@ -343,29 +458,58 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         return deposit;
     }
 
-    public synchronized boolean depositAccount(IBankUser user, IBankingType type, double amount, Currency currency) {
-        return depositAccount(user, type, BigDecimal.valueOf(amount), currency);
-    }
-
-    public synchronized boolean withdrawAccount(IBankUser user,
+    public boolean withdrawAccount(IBankUser user,
                                                 IBankingType type,
                                                 BigDecimal amount,
                                                 Currency currency) {
+        Validation.assertNotNull(amount);
+        Validation.validate(amount, val -> val.signum() >= 0, "negative amount not allowed");
+        Validation.assertNotNull(currency);
+
+        long units;
+        try {
+            units = Money.toUnits(amount, currency.getScale());
+        } catch (ArithmeticException ex) {
+            // more than any balance can hold
+            return false;
+        }
+        return withdrawAccountUnits(user, type, units, currency);
+    }
+
+    public boolean withdrawAccount(IBankUser user, IBankingType type, double amount, Currency currency) {
+        if (amount < 0.0)
+            throw new RuntimeException("negative amount not allowed");
+        Validation.assertNotNull(currency);
+
+        long units;
+        try {
+            units = Money.toUnits(amount, currency.getScale());
+        } catch (ArithmeticException ex) {
+            return false;
+        }
+        return withdrawAccountUnits(user, type, units, currency);
+    }
+
+    /**
+     * @param units the amount in the scale of the currency. See {@link Money}
+     */
+    public boolean withdrawAccountUnits(IBankUser user, IBankingType type, long units, Currency currency) {
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
         Validation.assertNotNull(user);
         Validation.assertNotNull(type);
-        Validation.assertNotNull(amount);
-        Validation.validate(amount, val -> val.signum() >= 0, "negative amount not allowed");
         Validation.assertNotNull(currency);
+        if (units < 0L)
+            throw new RuntimeException("negative amount not allowed");
 
         AccountVisitor<Boolean> visitor = new AccountVisitor<>(account -> {
             if (account == null)
                 throw new RuntimeException("Account of " + user + " does not exist.");
 
             BigDecimal accountMinimum = minimum.compareTo(account.minimumBalance()) > 0 ? minimum : account.minimumBalance();
-            return CapitalManagementUtil.withdraw(accountMinimum, account.getCurrencyMap(), amount, currency, true);
+            recordBalance(account, currency);
+            return CapitalManagementUtil.withdraw(accountMinimum, account.getCurrencyMap(), units, currency, true);
         }, false);
         synchronousAccountTask(user, type, visitor);
 
@@ -373,15 +517,11 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         return visitor.result;
     }
 
-    public synchronized boolean withdrawAccount(IBankUser user, IBankingType type, double amount, Currency currency) {
-        return withdrawAccount(user, type, BigDecimal.valueOf(amount), currency);
-    }
-
-    public synchronized BigDecimal balanceOfAccount(IBankUser user, IBankingType type) {
+    public BigDecimal balanceOfAccount(IBankUser user, IBankingType type) {
         return balanceOfAccount(user, type, getBaseCurrency());
     }
 
-    public synchronized BigDecimal balanceOfAccount(IBankUser user, IBankingType type, Currency currency) {
+    public BigDecimal balanceOfAccount(IBankUser user, IBankingType type, Currency currency) {
         Validation.assertNotNull(user);
         Validation.assertNotNull(type);
         Validation.assertNotNull(currency);
@@ -415,13 +555,10 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         if (!operating)
             throw new RuntimeException("Cannot use the bank that is closed. Bank: " + getStringKey());
 
-        // TODO temporary solution
-        synchronized (ownedAssets) {
-            Collection<Asset> assets = AssetUtil.removeAsset(ownedAssets, signature, amount);
-            if (assets.size() > 0)
-                notifyObservers();
-            return assets;
-        }
+        Collection<Asset> assets = AssetUtil.removeAsset(ownedAssets, signature, amount);
+        if (assets.size() > 0)
+            notifyObservers();
+        return assets;
     }
 
     @Override
@@ -470,6 +607,80 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         }
     }
 
+    /**
+     * Start recording the changes made to the balances and the assets of the accounts, so they can be
+     * reverted by {@link #rollbackJournal(BankJournal)}. Unlike {@link #saveState()}, nothing is copied
+     * up front, and only what is changed is saved as it's changed.
+     * <p>
+     * Only the changes made by the current thread are recorded. The caller must hold the locks of the
+     * accounts it changes, using {@link #withAccountLocks(IBankUser, IBankUser, Supplier)}, until
+     * {@link #closeJournal(BankJournal)}.
+     *
+     * @return the journal
+     */
+    public BankJournal openJournal() {
+        BankJournal journal = new BankJournal();
+        if (journals.putIfAbsent(Thread.currentThread(), journal) != null)
+            throw new RuntimeException("Journal is already open. Bank: " + getStringKey());
+
+        return journal;
+    }
+
+    /**
+     * Revert all the changes recorded in the journal so far.
+     *
+     * @param journal the journal opened by {@link #openJournal()}
+     */
+    public void rollbackJournal(BankJournal journal) {
+        Validation.assertNotNull(journal);
+
+        if (journal.size() > 0) {
+            journal.undo();
+            notifyObservers();
+        }
+    }
+
+    /**
+     * Stop recording. The changes made so far are kept.
+     *
+     * @param journal the journal opened by {@link #openJournal()}
+     */
+    public void closeJournal(BankJournal journal) {
+        journals.remove(Thread.currentThread(), journal);
+    }
+
+    private void recordBalance(IAccount account, Currency currency) {
+        BankJournal journal = journals.get(Thread.currentThread());
+        if (journal == null)
+            return;
+
+        Map<UUID, Money> balances = account.getCurrencyMap();
+        UUID currencyUuid = currency.getKey();
+        Money before = balances.get(currencyUuid);
+        if (before == null) {
+            journal.record(() -> balances.remove(currencyUuid));
+            return;
+        }
+
+        // the balance is changed in place, so only its value is kept
+        long units = before.getUnits();
+        int scale = before.getScale();
+        journal.record(() -> before.set(units, scale));
+    }
+
+    private void recordAssets(TradingAccount account, AssetSignature signature) {
+        BankJournal journal = journals.get(Thread.currentThread());
+        if (journal == null)
+            return;
+
+        IMemento before = account.copyAssets(signature);
+        journal.record(() -> account.restoreAssets(signature, before));
+    }
+
+    /**
+     * The accounts are locked one user at a time, so this is not a consistent snapshot if the accounts
+     * are in use at the same time. Use {@link #openJournal()} to revert the changes of a transaction.
+     */
     @Override
     public synchronized IMemento saveState() {
         return new AbstractMemento(this);
@@ -480,34 +691,104 @@ public abstract class AbstractBank extends CachedElement<UUID> implements IPlugi
         AbstractMemento mem = (AbstractMemento) memento;
 
         this.capitals.clear();
-        this.capitals.putAll(mem.capitals);
+        CapitalManagementUtil.copy(mem.capitals, this.capitals);
 
         this.accounts.forEach((uuid, accountMap) -> {
             Map<IBankingType, IMemento> statesMap = mem.accountStates.get(uuid);
             if (statesMap == null)
                 return;
 
-            synchronized (accountMap) {
+            synchronized (accountLock(uuid)) {
                 accountMap.forEach((type, account) -> account.restoreState(statesMap.get(type)));
             }
         });
     }
 
+    /**
+     * Save only the capitals of the bank itself, without the accounts of its users, so restoring it
+     * doesn't revert what other users did to their accounts in the meantime.
+     *
+     * @return the state
+     */
+    public IMemento saveCapitalState() {
+        return new CapitalMemento(this);
+    }
+
+    public void restoreCapitalState(IMemento memento) {
+        CapitalMemento mem = (CapitalMemento) memento;
+
+        this.capitals.clear();
+        CapitalManagementUtil.copy(mem.capitals, this.capitals);
+        notifyObservers();
+    }
+
+    /**
+     * Save only the accounts of the user, so restoring it doesn't revert the accounts of other users.
+     *
+     * @param user the owner of the accounts
+     * @return the state
+     */
+    public IMemento saveAccountState(IBankUser user) {
+        Validation.assertNotNull(user);
+
+        Map<IBankingType, IMemento> stateMap = new HashMap<>();
+        synchronized (accountLock(user.getUuid())) {
+            Optional.ofNullable(accounts.get(user.getUuid()))
+                    .ifPresent(accountMap -> accountMap.forEach((type, account) ->
+                            stateMap.put(type, account.saveState())));
+        }
+        return new AccountMemento(user.getUuid(), stateMap);
+    }
+
+    public void restoreAccountState(IBankUser user, IMemento memento) {
+        Validation.assertNotNull(user);
+        AccountMemento mem = (AccountMemento) memento;
+        Validation.validate(mem.userUuid, user.getUuid()::equals, "State of other user.");
+
+        synchronized (accountLock(user.getUuid())) {
+            Optional.ofNullable(accounts.get(user.getUuid()))
+                    .ifPresent(accountMap -> accountMap.forEach((type, account) -> {
+                        // the account opened after the state was saved is left as is
+                        if (mem.states.containsKey(type))
+                            account.restoreState(mem.states.get(type));
+                    }));
+        }
+        notifyObservers();
+    }
+
     protected static class AbstractMemento implements IMemento {
-        private final Map<UUID, BigDecimal> capitals = new HashMap<>();
+        private final Map<UUID, Money> capitals = new HashMap<>();
         private final Map<UUID, Map<IBankingType, IMemento>> accountStates = new HashMap<>();
 
         public AbstractMemento(AbstractBank bank) {
-            capitals.putAll(bank.capitals);
-            accountStates.putAll(createAccountStates(bank.accounts));
+            CapitalManagementUtil.copy(bank.capitals, capitals);
+            accountStates.putAll(bank.createAccountStates());
+        }
+    }
+
+    protected static class CapitalMemento implements IMemento {
+        private final Map<UUID, Money> capitals = new HashMap<>();
+
+        public CapitalMemento(AbstractBank bank) {
+            CapitalManagementUtil.copy(bank.capitals, capitals);
+        }
+    }
+
+    private static class AccountMemento implements IMemento {
+        private final UUID userUuid;
+        private final Map<IBankingType, IMemento> states;
+
+        private AccountMemento(UUID userUuid, Map<IBankingType, IMemento> states) {
+            this.userUuid = userUuid;
+            this.states = states;
         }
     }
 
-    private static Map<UUID, Map<IBankingType, IMemento>> createAccountStates(Map<UUID, Map<IBankingType, IAccount>> from) {
+    private Map<UUID, Map<IBankingType, IMemento>> createAccountStates() {
         Map<UUID, Map<IBankingType, IMemento>> mapParent = new HashMap<>();
-        from.forEach((uuid, accountMap) -> {
+        accounts.forEach((uuid, accountMap) -> {
             Map<IBankingType, IMemento> stateMap = new HashMap<>();
-            synchronized (accountMap) {
+            synchronized (accountLock(uuid)) {
                 accountMap.forEach((type, account) -> stateMap.put(type, account.saveState()));
             }
             mapParent.put(uuid, stateMap);
@@ -0,0 +1,40 @@
+package io.github.wysohn.realeconomy.manager.banking.bank;
+
+import io.github.wysohn.rapidframework3.interfaces.IMemento;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Undo log of the account changes made in a bank while it's open. Only the before-image of what is
+ * actually changed is kept, so reverting a trade costs as much as the trade itself, unlike
+ * {@link AbstractBank#saveState()} which copies every account of the bank.
+ * <p>
+ * Only the changes made by the thread which opened the journal are recorded, and they are reverted in
+ * the reverse order they were made. So the locks of the accounts must be held from
+ * {@link AbstractBank#openJournal()} to {@link AbstractBank#closeJournal(BankJournal)}, so no other
+ * thread can change the same accounts in the middle.
+ */
+public class BankJournal implements IMemento {
+    private final Deque<Runnable> undoLog = new ArrayDeque<>();
+
+    BankJournal() {
+    }
+
+    void record(Runnable undo) {
+        undoLog.push(undo);
+    }
+
+    void undo() {
+        while (!undoLog.isEmpty()) {
+            undoLog.pop().run();
+        }
+    }
+
+    /**
+     * @return number of changes recorded so far
+     */
+    public int size() {
+        return undoLog.size();
+    }
+}
@@ -136,6 +136,24 @@ public class CentralBank extends AbstractBank {
         notifyObservers();
     }
 
+    @Override
+    public IMemento saveCapitalState() {
+        synchronized (transactionLock) {
+            return new CentralCapitalMemento(this);
+        }
+    }
+
+    @Override
+    public void restoreCapitalState(IMemento memento) {
+        CentralCapitalMemento mem = (CentralCapitalMemento) memento;
+        synchronized (transactionLock) {
+            this.numPapers = mem.numPapers;
+            this.liquidity = mem.liquidity;
+
+            super.restoreCapitalState(mem);
+        }
+    }
+
     private static class Memento extends AbstractMemento {
         private final BigDecimal liquidity;
 
@@ -144,4 +162,15 @@ public class CentralBank extends AbstractBank {
             this.liquidity = bank.liquidity;
         }
     }
+
+    private static class CentralCapitalMemento extends CapitalMemento {
+        private final BigDecimal numPapers;
+        private final BigDecimal liquidity;
+
+        public CentralCapitalMemento(CentralBank bank) {
+            super(bank);
+            this.numPapers = bank.numPapers;
+            this.liquidity = bank.liquidity;
+        }
+    }
 }
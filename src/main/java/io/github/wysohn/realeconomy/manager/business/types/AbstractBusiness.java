@@ -14,7 +14,9 @@ import io.github.wysohn.realeconomy.interfaces.business.upgrades.IUpgrade;
 import io.github.wysohn.realeconomy.main.RealEconomyLangs;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.asset.signature.DurationSignature;
+import io.github.wysohn.realeconomy.manager.banking.AssetStore;
 import io.github.wysohn.realeconomy.manager.banking.AssetUtil;
 import io.github.wysohn.realeconomy.manager.business.upgrades.UpgradeRegistry;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
@@ -24,7 +26,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractBusiness extends CachedElement<UUID> implements IBusiness {
     private static final Random RANDOM = new Random();
-    public static final DurationSignature DURATION_SIGNATURE = new DurationSignature();
+    public static final DurationSignature DURATION_SIGNATURE = AssetSignaturePool.DURATION;
 
     @Inject
     private transient AssetListingManager assetListingManager;
@@ -33,7 +35,7 @@ public abstract class AbstractBusiness extends CachedElement<UUID> implements IB
     private transient Map<AssetSignature, Double> inputs;
     private transient Map<AssetSignature, Double> outputs;
 
-    private final List<Asset> ownedAssets = Collections.synchronizedList(new ArrayList<>());
+    private final AssetStore ownedAssets = new AssetStore();
     private final Map<AssetSignature, Double> currentProgress = new ConcurrentHashMap<>();
     private final Map<AssetSignature, Double> productionStorage = new ConcurrentHashMap<>();
     private final Map<UUID, Integer> upgrades = new ConcurrentHashMap<>();
@@ -121,13 +123,10 @@ public abstract class AbstractBusiness extends CachedElement<UUID> implements IB
 
     @Override
     public Collection<Asset> removeAsset(AssetSignature signature, double amount) {
-        // TODO temporary solution
-        synchronized (ownedAssets) {
-            Collection<Asset> assets = AssetUtil.removeAsset(ownedAssets, signature, amount);
-            if (assets.size() > 0)
-                notifyObservers();
-            return assets;
-        }
+        Collection<Asset> assets = AssetUtil.removeAsset(ownedAssets, signature, amount);
+        if (assets.size() > 0)
+            notifyObservers();
+        return assets;
     }
 
     @Override
@@ -389,15 +388,12 @@ public abstract class AbstractBusiness extends CachedElement<UUID> implements IB
             Double requiredAmount = entry.getValue();
             double current = destination.getOrDefault(sign, 0.0);
 
-            // TODO temporary solution
-            synchronized (ownedAssets) {
-                for (Asset removed : AssetUtil.removeAsset(ownedAssets, sign, requiredAmount - current)) {
-                    double updated = destination.getOrDefault(sign, 0.0) + removed.getNumericalMeasure();
-                    destination.put(sign, updated);
+            for (Asset removed : AssetUtil.removeAsset(ownedAssets, sign, requiredAmount - current)) {
+                double updated = destination.getOrDefault(sign, 0.0) + removed.getNumericalMeasure();
+                destination.put(sign, updated);
 
-                    if (current == updated) {
-                        update = true;
-                    }
+                if (current == updated) {
+                    update = true;
                 }
             }
         }
@@ -408,13 +404,13 @@ public abstract class AbstractBusiness extends CachedElement<UUID> implements IB
 
     private boolean handleDuration(Map<AssetSignature, Double> required, Map<AssetSignature, Double> destination) {
         // duration should be handled separately.
-        double requiredDuration = required.getOrDefault(new DurationSignature(), 0.0);
+        double requiredDuration = required.getOrDefault(DURATION_SIGNATURE, 0.0);
         if (requiredDuration > 0.0) {
-            double currentDuration = destination.getOrDefault(new DurationSignature(), 0.0);
-            destination.put(new DurationSignature(), currentDuration + 1.0); // add 1.0 per second
+            double currentDuration = destination.getOrDefault(DURATION_SIGNATURE, 0.0);
+            destination.put(DURATION_SIGNATURE, currentDuration + 1.0); // add 1.0 per second
         }
 
-        return destination.getOrDefault(new DurationSignature(), 0.0) >= requiredDuration;
+        return destination.getOrDefault(DURATION_SIGNATURE, 0.0) >= requiredDuration;
     }
 
     private void produceOutput() {
@@ -464,8 +460,7 @@ public abstract class AbstractBusiness extends CachedElement<UUID> implements IB
     public void restoreState(IMemento iMemento) {
         ParentMemento memento = (ParentMemento) iMemento;
 
-        ownedAssets.clear();
-        ownedAssets.addAll(memento.ownedAssets);
+        ownedAssets.restore(memento.ownedAssets);
 
         currentProgress.clear();
         currentProgress.putAll(memento.currentProgress);
@@ -485,7 +480,7 @@ public abstract class AbstractBusiness extends CachedElement<UUID> implements IB
     }
 
     protected class ParentMemento implements IMemento {
-        private final List<Asset> ownedAssets = new ArrayList<>();
+        private final AssetStore ownedAssets = new AssetStore();
         private final Map<AssetSignature, Double> currentProgress = new HashMap<>();
         private final Map<AssetSignature, Double> productionStorage = new HashMap<>();
         private final Map<UUID, Integer> upgrades = new ConcurrentHashMap<>();
@@ -498,9 +493,7 @@ public abstract class AbstractBusiness extends CachedElement<UUID> implements IB
         private long timeToLive = 0;
 
         public ParentMemento(AbstractBusiness business) {
-            business.ownedAssets.stream()
-                    .map(Asset::clone)
-                    .forEach(ownedAssets::add);
+            ownedAssets.restore(business.ownedAssets);
 
             currentProgress.putAll(business.currentProgress);
             productionStorage.putAll(business.productionStorage);
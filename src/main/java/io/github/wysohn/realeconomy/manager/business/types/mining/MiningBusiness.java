@@ -7,7 +7,7 @@ import io.github.wysohn.rapidframework3.interfaces.IMemento;
 import io.github.wysohn.realeconomy.interfaces.business.IBusinessContextHandler;
 import io.github.wysohn.realeconomy.interfaces.business.types.mining.IBlockGenerator;
 import io.github.wysohn.realeconomy.main.RealEconomyLangs;
-import io.github.wysohn.realeconomy.manager.asset.signature.LabourSignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.business.types.AbstractBusiness;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -116,7 +116,7 @@ public class MiningBusiness extends AbstractBusiness {
             }
 
             // increase labour points
-            addAsset(new LabourSignature().asset(labourPoints));
+            addAsset(AssetSignaturePool.LABOUR.asset(labourPoints));
         }
     }
 
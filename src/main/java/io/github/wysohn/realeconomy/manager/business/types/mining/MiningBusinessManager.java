@@ -11,10 +11,7 @@ import io.github.wysohn.rapidframework3.interfaces.serialize.ISerializer;
 import io.github.wysohn.rapidframework3.interfaces.serialize.ITypeAsserter;
 import io.github.wysohn.realeconomy.interfaces.business.IBusinessContextHandler;
 import io.github.wysohn.realeconomy.main.Metrics;
-import io.github.wysohn.realeconomy.manager.asset.signature.DurationSignature;
-import io.github.wysohn.realeconomy.manager.asset.signature.ElectricitySignature;
-import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
-import io.github.wysohn.realeconomy.manager.asset.signature.LabourSignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.business.types.AbstractBusinessManager;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
 import org.bukkit.Material;
@@ -22,7 +19,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
-import org.bukkit.inventory.ItemStack;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -34,6 +30,8 @@ import java.util.logging.Logger;
 public class MiningBusinessManager extends AbstractBusinessManager<MiningBusiness> implements Listener {
     public static final String TIER_NAME = "mining";
 
+    private final AssetSignaturePool signaturePool;
+
     @Inject
     public MiningBusinessManager(@Named("pluginName") String pluginName,
                                  @PluginLogger Logger logger,
@@ -44,9 +42,11 @@ public class MiningBusinessManager extends AbstractBusinessManager<MiningBusines
                                  ITypeAsserter asserter,
                                  Injector injector,
                                  AssetListingManager listingManager,
-                                 IBusinessContextHandler visitStateProvider) {
+                                 IBusinessContextHandler visitStateProvider,
+                                 AssetSignaturePool signaturePool) {
         super(pluginName, logger, config, pluginDir, shutdownHandle, serializer,
                 asserter, injector, MiningBusiness.class, listingManager, visitStateProvider);
+        this.signaturePool = signaturePool;
     }
 
     @Override
@@ -68,13 +68,13 @@ public class MiningBusinessManager extends AbstractBusinessManager<MiningBusines
     protected void addDefaultConfig(DefaultConfigBuilder defaultConfigBuilder) {
         // simple coal mine as default
         defaultConfigBuilder.name(TIER_NAME)
-                .putRequirement(new DurationSignature(), Metrics.DAY)
-                .putRequirement(new ItemStackSignature(new ItemStack(Material.SPRUCE_LOG)), 250.0)
-                .putRequirement(new ItemStackSignature(new ItemStack(Material.OAK_LOG)), 250.0)
-                .putInput(new ElectricitySignature(), 1000.0)
-                .putInput(new DurationSignature(), Metrics.HOUR)
-                .putInput(new LabourSignature(), 250.0)
-                .putOutput(new ItemStackSignature(new ItemStack(Material.COAL_ORE)), 50.0)
+                .putRequirement(AssetSignaturePool.DURATION, Metrics.DAY)
+                .putRequirement(signaturePool.itemStack(Material.SPRUCE_LOG), 250.0)
+                .putRequirement(signaturePool.itemStack(Material.OAK_LOG), 250.0)
+                .putInput(AssetSignaturePool.ELECTRICITY, 1000.0)
+                .putInput(AssetSignaturePool.DURATION, Metrics.HOUR)
+                .putInput(AssetSignaturePool.LABOUR, 250.0)
+                .putOutput(signaturePool.itemStack(Material.COAL_ORE), 50.0)
                 .setTimeToLiveMin((long) (8 * Metrics.DAY * 1000))
                 .setTimeToLiveMax((long) (35 * Metrics.DAY * 1000));
     }
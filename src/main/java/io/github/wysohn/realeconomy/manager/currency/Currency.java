@@ -3,6 +3,7 @@ package io.github.wysohn.realeconomy.manager.currency;
 import io.github.wysohn.rapidframework3.core.caching.CachedElement;
 import io.github.wysohn.rapidframework3.utils.Validation;
 import io.github.wysohn.realeconomy.manager.banking.CentralBankingManager;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
 
 import javax.inject.Inject;
@@ -17,6 +18,8 @@ public class Currency extends CachedElement<UUID> {
     private String code;
     private UUID centralBankUuid;
     private int useCount;
+    // null for the currencies saved before the scale existed
+    private Integer scale;
 
     private Currency() {
         super(null);
@@ -36,6 +39,21 @@ public class Currency extends CachedElement<UUID> {
         notifyObservers();
     }
 
+    /**
+     * @return number of decimal places of this currency, which the balances of this currency are kept in.
+     * See {@link Money}
+     */
+    public int getScale() {
+        return scale == null ? Money.DEFAULT_SCALE : scale;
+    }
+
+    void setScale(int scale) {
+        Money.validateScale(scale);
+        this.scale = scale;
+
+        notifyObservers();
+    }
+
     public CentralBank ownerBank() {
         return Optional.ofNullable(centralBankUuid)
                 .flatMap(centralBankingManager::get)
@@ -13,7 +13,9 @@ import io.github.wysohn.rapidframework3.interfaces.plugin.ITaskSupervisor;
 import io.github.wysohn.rapidframework3.interfaces.serialize.ISerializer;
 import io.github.wysohn.rapidframework3.interfaces.serialize.ITypeAsserter;
 import io.github.wysohn.rapidframework3.utils.Validation;
+import io.github.wysohn.realeconomy.inject.annotation.MaxCapital;
 import io.github.wysohn.realeconomy.interfaces.trade.IOrderQueryModule;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
 
 import javax.inject.Inject;
@@ -22,7 +24,7 @@ import javax.inject.Singleton;
 import java.io.File;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
-import java.sql.SQLException;
+import java.math.BigDecimal;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -30,9 +32,11 @@ import java.util.logging.Logger;
 public class CurrencyManager extends AbstractManagerElementCaching<UUID, Currency> {
     private final Map<String, UUID> codeMap = new HashMap<>();
 
+    private final Logger logger;
     private final ManagerConfig config;
     private final IOrderQueryModule orderPlacementHandler;
     private final ITaskSupervisor task;
+    private final BigDecimal maximum;
 
     private DataProvider<Currency> currenciesProvider;
 
@@ -47,11 +51,14 @@ public class CurrencyManager extends AbstractManagerElementCaching<UUID, Currenc
             ITypeAsserter asserter,
             Injector injector,
             IOrderQueryModule orderPlacementHandler,
-            ITaskSupervisor task) {
+            ITaskSupervisor task,
+            @MaxCapital BigDecimal maximum) {
         super(pluginName, logger, config, pluginDir, shutdownHandle, serializer, asserter, injector, Currency.class);
+        this.logger = logger;
         this.config = config;
         this.orderPlacementHandler = orderPlacementHandler;
         this.task = task;
+        this.maximum = maximum;
     }
 
     @Override
@@ -76,17 +83,17 @@ public class CurrencyManager extends AbstractManagerElementCaching<UUID, Currenc
         // remap code to UUID
         forEach(currency -> {
             codeMap.put(currency.getCode(), currency.getKey());
-            orderPlacementHandler.setCurrencyName(currency.getKey(), currency.getStringKey(), currency.getCode());
-            try {
-                orderPlacementHandler.commitOrders();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
+            setCurrencyName(currency.getKey(), currency.getStringKey(), currency.getCode());
+            checkRange(currency);
         });
 
         if (!config.get(KEY_MAX_LEN).isPresent()) {
             config.put(KEY_MAX_LEN, 3);
         }
+
+        if (!config.get(KEY_SCALE).isPresent()) {
+            config.put(KEY_SCALE, Money.DEFAULT_SCALE);
+        }
     }
 
     @Override
@@ -127,7 +134,9 @@ public class CurrencyManager extends AbstractManagerElementCaching<UUID, Currenc
         code = code.toUpperCase();
 
         int length_max = config.get(KEY_MAX_LEN)
-                .map(Integer.class::cast)
+                .filter(Number.class::isInstance)
+                .map(Number.class::cast)
+                .map(Number::intValue)
                 .orElse(3);
 
         if (code.length() > length_max)
@@ -148,16 +157,15 @@ public class CurrencyManager extends AbstractManagerElementCaching<UUID, Currenc
 
                     currency.setStringKey(name);
                     currency.setCode(finalCode);
+                    currency.setScale(config.get(KEY_SCALE)
+                            .filter(Number.class::isInstance)
+                            .map(Number.class::cast)
+                            .map(Number::intValue)
+                            .orElse(Money.DEFAULT_SCALE));
+                    checkRange(currency);
 
                     codeMap.put(finalCode, currency.getKey());
-                    task.async(() -> {
-                        orderPlacementHandler.setCurrencyName(currency.getKey(), name, finalCode);
-                        try {
-                            orderPlacementHandler.commitOrders();
-                        } catch (SQLException ex) {
-                            ex.printStackTrace();
-                        }
-                    });
+                    task.async(() -> setCurrencyName(currency.getKey(), name, finalCode));
                 });
         return Result.OK;
     }
@@ -182,20 +190,36 @@ public class CurrencyManager extends AbstractManagerElementCaching<UUID, Currenc
                     currency.setCode(newCode);
 
                     codeMap.put(newCode, currency.getKey());
-                    task.async(() -> {
-                        orderPlacementHandler.setCurrencyName(currency.getKey(), name, newCode);
-                        try {
-                            orderPlacementHandler.commitOrders();
-                        } catch (SQLException ex) {
-                            ex.printStackTrace();
-                        }
-                    });
+                    task.async(() -> setCurrencyName(currency.getKey(), name, newCode));
                     if (previousCode != null)
                         codeMap.remove(previousCode);
                 });
         return Result.OK;
     }
 
+    /**
+     * Change the number of decimal places of the currency. The balances already made are rounded to the
+     * new scale as they are used.
+     *
+     * @param name  name of the currency (not the code)
+     * @param scale new scale (refer to {@link Money})
+     * @return The result
+     */
+    public synchronized Result changeScale(String name, int scale) {
+        if (scale < 0 || scale > Money.MAX_SCALE)
+            return Result.INVALID_SCALE;
+
+        if (!get(name).isPresent())
+            return Result.NOT_EXIST;
+
+        get(name).map(Reference::get)
+                .ifPresent(currency -> {
+                    currency.setScale(scale);
+                    checkRange(currency);
+                });
+        return Result.OK;
+    }
+
     public DataProvider<Currency> currenciesPagination() {
         if (currenciesProvider == null) {
             currenciesProvider = new DataProviderProxy<>(range -> {
@@ -208,9 +232,37 @@ public class CurrencyManager extends AbstractManagerElementCaching<UUID, Currenc
         return currenciesProvider;
     }
 
+    /**
+     * A balance is a long in the scale of the currency, so the capital limit can be larger than what the
+     * balances can actually hold. The deposits over it are refused, and the balances loaded over it are lowered
+     * to it with a warning.
+     */
+    private void checkRange(Currency currency) {
+        BigDecimal range = Money.maxValue(currency.getScale());
+        if (maximum.compareTo(range) > 0) {
+            logger.warning("Balances of the currency " + currency.getCode() + " can't be more than "
+                    + range.toPlainString() + " with the scale " + currency.getScale()
+                    + ". Lower the scale to hold larger balances.");
+        }
+    }
+
+    private void setCurrencyName(UUID currencyUuid, String name, String code) {
+        try {
+            // the order transaction may be in use by the broker
+            orderPlacementHandler.withOrderTransaction(() -> {
+                orderPlacementHandler.setCurrencyName(currencyUuid, name, code);
+                orderPlacementHandler.commitOrders();
+                return null;
+            });
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
     public enum Result {
-        OK, DUP_NAME, DUP_CODE, CODE_LENGTH, NOT_EXIST
+        OK, DUP_NAME, DUP_CODE, CODE_LENGTH, NOT_EXIST, INVALID_SCALE
     }
 
     public static final String KEY_MAX_LEN = "currency.code.maxlen";
+    public static final String KEY_SCALE = "currency.scale";
 }
@@ -25,7 +25,9 @@ import java.io.File;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
@@ -40,9 +42,18 @@ import java.util.logging.Logger;
 @Singleton
 public class AssetListingManager extends AbstractManagerElementCaching<UUID, AssetListing> {
     private final IOrderQueryModule orderQueryModule;
-    private final Map<AssetSignature, UUID> signatureUUIDMap = new HashMap<>();
+    private final ListingRegistry listingRegistry = new ListingRegistry();
     private final ITaskSupervisor taskSupervisor;
 
+    // listings touched by the current transaction, and the ones committed but not yet taken by the broker
+    private final Set<UUID> pendingListings = new HashSet<>();
+    private final Set<UUID> changedListings = new HashSet<>();
+    // markets whose orders are changed, and markets traded in the current transaction
+    private final Set<MarketKey> pendingMarkets = new HashSet<>();
+    private final Set<MarketKey> pendingTrades = new HashSet<>();
+
+    private final QuoteCache quoteCache = new QuoteCache();
+
     @Inject
     public AssetListingManager(@Named("pluginName") String pluginName,
                                @PluginLogger Logger logger,
@@ -78,17 +89,20 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
     public void enable() throws Exception {
         super.enable();
 
-        orderQueryModule.clearTemporaryBuyOrders();
-        orderQueryModule.clearTemporarySellOrders();
-
-        forEach(listing -> {
-            signatureUUIDMap.put(listing.getSignature(), listing.getKey());
-            orderQueryModule.setListingName(listing.getKey(), listing.getSignature().toString());
-            try {
-                orderQueryModule.commitOrders();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
+        orderQueryModule.withOrderTransaction(() -> {
+            orderQueryModule.clearTemporaryBuyOrders();
+            orderQueryModule.clearTemporarySellOrders();
+
+            forEach(listing -> {
+                listingRegistry.put(listing.getSignature(), listing.getKey());
+                orderQueryModule.setListingName(listing.getKey(), listing.getSignature().toString());
+                try {
+                    orderQueryModule.commitOrders();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            });
+            return null;
         });
     }
 
@@ -96,8 +110,12 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
     public void disable() throws Exception {
         super.disable();
 
-        orderQueryModule.clearTemporaryBuyOrders();
-        orderQueryModule.clearTemporarySellOrders();
+        orderQueryModule.withOrderTransaction(() -> {
+            orderQueryModule.clearTemporaryBuyOrders();
+            orderQueryModule.clearTemporarySellOrders();
+            return null;
+        });
+        orderQueryModule.closeReadSessions();
     }
 
     /**
@@ -117,27 +135,34 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
      * @return
      */
     public boolean newListing(AssetSignature signature) {
-        if (signatureUUIDMap.containsKey(signature))
+        Validation.assertNotNull(signature);
+        if (listingRegistry.contains(signature))
             return false;
 
-        super.getOrNew(UUID.randomUUID())
+        boolean[] created = new boolean[1];
+        listingRegistry.computeIfAbsent(signature, sign -> super.getOrNew(UUID.randomUUID())
                 .map(Reference::get)
-                .ifPresent(listing -> {
-                    listing.setSignature(signature);
-                    signatureUUIDMap.put(signature, listing.getKey());
+                .map(listing -> {
+                    listing.setSignature(sign);
+                    created[0] = true;
 
                     // process blocking operation asynchronously
                     taskSupervisor.async(() -> {
-                        orderQueryModule.setListingName(listing.getKey(), listing.getSignature().toString());
                         try {
-                            orderQueryModule.commitOrders();
-                        } catch (SQLException ex) {
+                            orderQueryModule.withOrderTransaction(() -> {
+                                orderQueryModule.setListingName(listing.getKey(), listing.getSignature().toString());
+                                orderQueryModule.commitOrders();
+                                return null;
+                            });
+                        } catch (Exception ex) {
                             ex.printStackTrace();
                         }
                     });
-                });
+                    return listing.getKey();
+                })
+                .orElse(null));
 
-        return true;
+        return created[0];
     }
 
     /**
@@ -154,7 +179,18 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
 
     public UUID signatureToUuid(AssetSignature sign) {
         newListing(sign);
-        return signatureUUIDMap.get(sign);
+        return listingRegistry.getUuid(sign);
+    }
+
+    /**
+     * Reverse of {@link #signatureToUuid(AssetSignature)}. Unlike looking up the listing by {@link #get(Object)},
+     * this is a plain memory read.
+     *
+     * @param uuid uuid of the listing
+     * @return the signature; null if no listing has the uuid
+     */
+    public AssetSignature uuidToSignature(UUID uuid) {
+        return listingRegistry.getSignature(uuid);
     }
 
     /**
@@ -167,7 +203,7 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
      */
     public AssetListing fromSignature(AssetSignature signature) {
         return Optional.ofNullable(signature)
-                .map(signatureUUIDMap::get)
+                .map(listingRegistry::getUuid)
                 .flatMap(this::get)
                 .map(Reference::get)
                 .orElse(null);
@@ -189,25 +225,54 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
      * @param currency  currency of price
      * @param stock     amount to purchase/sell
      * @param temp      mark this order as temporary. Will be deleted when plugin disables.
+     * @return id of the new order; 0 if the id was not generated
      */
-    public void addOrder(AssetSignature signature,
-                         OrderType type,
-                         IOrderIssuer issuer,
-                         double price,
-                         Currency currency,
-                         int stock,
-                         boolean temp) throws SQLException {
-        Validation.assertNotNull(type);
-        Validation.assertNotNull(issuer);
-        Validation.validate(price, val -> val > 0.0, "Price cannot be 0 or less.");
-        Validation.assertNotNull(currency);
-        Validation.validate(stock, val -> val > 0, "Stock cannot be 0 or less.");
+    public int addOrder(AssetSignature signature,
+                        OrderType type,
+                        IOrderIssuer issuer,
+                        double price,
+                        Currency currency,
+                        int stock,
+                        boolean temp) throws SQLException {
+        OrderRequest request = orderRequest(signature, type, issuer, price, currency, stock, temp);
+
+        int orderId = orderQueryModule.addOrder(request.getListingUuid(),
+                request.getCategory(),
+                type,
+                issuer,
+                price,
+                currency,
+                stock,
+                temp);
+        touchMarket(MarketKey.of(request.getListingUuid(), currency.getKey()));
+        return orderId;
+    }
 
-        if (!signatureUUIDMap.containsKey(signature))
+    /**
+     * Create the request to be used with {@link #addOrders(Collection)}. The given signature must be listed
+     * already using {@link #newListing(AssetSignature)}
+     *
+     * @param signature asset signature
+     * @param type      trade type
+     * @param issuer    issuer
+     * @param price     price
+     * @param currency  currency of price
+     * @param stock     amount to purchase/sell
+     * @param temp      mark this order as temporary. Will be deleted when plugin disables.
+     * @return the request
+     */
+    public OrderRequest orderRequest(AssetSignature signature,
+                                     OrderType type,
+                                     IOrderIssuer issuer,
+                                     double price,
+                                     Currency currency,
+                                     int stock,
+                                     boolean temp) {
+        if (!listingRegistry.contains(signature))
             throw new RuntimeException("Invalid signature.");
         AssetListing listing = fromSignature(signature);
 
-        orderQueryModule.addOrder(listing.getKey(),
+        return OrderRequest.create(listing.getKey(),
                 signature.category(),
                 type,
                 issuer,
@@ -217,6 +282,29 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
                 temp);
     }
 
+    /**
+     * Add all the given orders at once. Prefer this over calling
+     * {@link #addOrder(AssetSignature, OrderType, IOrderIssuer, double, Currency, int, boolean)} repeatedly
+     * when there are many orders to submit, so they can be finalized by a single {@link #commitOrders()}.
+     * <p>
+     * this must be finalized using {@link #commitOrders()}
+     *
+     * @param requests the orders created by
+     *                 {@link #orderRequest(AssetSignature, OrderType, IOrderIssuer, double, Currency, int, boolean)}
+     * @throws SQLException something went wrong with SQL operation.
+     */
+    public void addOrders(Collection<OrderRequest> requests) throws SQLException {
+        Validation.assertNotNull(requests);
+        if (requests.isEmpty())
+            return;
+
+        orderQueryModule.addOrders(requests);
+        requests.stream()
+                .map(request -> MarketKey.of(request.getListingUuid(), request.getCurrency().getKey()))
+                .distinct()
+                .forEach(this::touchMarket);
+    }
+
     /**
      * {@link #addOrder(AssetSignature, OrderType, IOrderIssuer, double, Currency, int, boolean)}
      *
@@ -226,15 +314,16 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
      * @param price
      * @param currency
      * @param stock
+     * @return
      * @throws SQLException
      */
-    public void addOrder(AssetSignature signature,
-                         OrderType type,
-                         IOrderIssuer issuer,
-                         double price,
-                         Currency currency,
-                         int stock) throws SQLException {
-        addOrder(signature, type, issuer, price, currency, stock, false);
+    public int addOrder(AssetSignature signature,
+                        OrderType type,
+                        IOrderIssuer issuer,
+                        double price,
+                        Currency currency,
+                        int stock) throws SQLException {
+        return addOrder(signature, type, issuer, price, currency, stock, false);
     }
 
     public OrderInfo getInfo(int orderId, OrderType type) throws SQLException {
@@ -244,14 +333,25 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
         return orderQueryModule.getInfo(orderId, type);
     }
 
+    public List<OrderInfo> getInfos(Collection<Integer> orderIds, OrderType type) throws SQLException {
+        Validation.assertNotNull(orderIds);
+        Validation.assertNotNull(type);
+
+        return orderQueryModule.getInfos(orderIds, type);
+    }
+
     public void editOrder(int orderId, OrderType type, int newAmount) throws SQLException {
         Validation.validate(orderId, val -> val > 0, "orderId must be larger than 0.");
         Validation.assertNotNull(type);
         Validation.validate(newAmount, val -> val > 0, "amount must be larger than 0. Maybe delete instead?");
 
+        OrderInfo info = orderQueryModule.getInfo(orderId, type);
         orderQueryModule.editOrder(orderId,
                 type,
                 newAmount);
+        Optional.ofNullable(info)
+                .map(order -> MarketKey.of(order.getListingUuid(), order.getCurrencyUuid()))
+                .ifPresent(this::touchMarket);
     }
 
     /**
@@ -272,9 +372,13 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
         Validation.validate(orderId, val -> val > 0, "orderId must be larger than 0.");
         Validation.assertNotNull(type);
 
+        OrderInfo info = orderQueryModule.getInfo(orderId, type);
         orderQueryModule.cancelOrder(orderId,
                 type,
                 callback);
+        Optional.ofNullable(info)
+                .map(order -> MarketKey.of(order.getListingUuid(), order.getCurrencyUuid()))
+                .ifPresent(this::touchMarket);
     }
 
     /**
@@ -302,54 +406,144 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
                 info.getAsk(),
                 info.getCurrencyUuid(),
                 amount);
+        synchronized (changedListings) {
+            pendingTrades.add(MarketKey.of(info.getListingUuid(), info.getCurrencyUuid()));
+        }
     }
 
+    /**
+     * Finalize the order changes. The listings touched by {@link #addOrder(AssetSignature, OrderType, IOrderIssuer,
+     * double, Currency, int, boolean)}, {@link #editOrder(int, OrderType, int)}, or
+     * {@link #cancelOrder(int, OrderType, Consumer)} are signaled to {@link #awaitChangedListings()} at this point.
+     *
+     * @throws SQLException something went wrong with SQL operation.
+     */
     public void commitOrders() throws SQLException {
-        orderQueryModule.commitOrders();
+        synchronized (changedListings) {
+            orderQueryModule.commitOrders();
+
+            pendingTrades.forEach(quoteCache::invalidate);
+            pendingTrades.clear();
+            // only the markets changed in this transaction
+            quoteCache.updateBook(pendingMarkets,
+                    market -> orderQueryModule.getHighestBid(market.getCurrencyUuid(), market.getListingUuid()),
+                    market -> orderQueryModule.getLowestAsk(market.getCurrencyUuid(), market.getListingUuid()));
+            pendingMarkets.clear();
+
+            if (pendingListings.isEmpty())
+                return;
+
+            changedListings.addAll(pendingListings);
+            pendingListings.clear();
+            changedListings.notifyAll();
+        }
     }
 
+    /**
+     * Revert the order changes. The quotes of the touched markets are dropped, since the ones loaded in the
+     * meantime may have read the orders that are now reverted.
+     *
+     * @throws SQLException something went wrong with SQL operation.
+     */
     public void rollbackOrders() throws SQLException {
-        orderQueryModule.rollbackOrders();
+        synchronized (changedListings) {
+            try {
+                orderQueryModule.rollbackOrders();
+            } finally {
+                // the quote being loaded at the moment is not cached either, so it's never left behind
+                pendingMarkets.forEach(quoteCache::invalidate);
+                pendingTrades.forEach(quoteCache::invalidate);
+                pendingListings.clear();
+                pendingMarkets.clear();
+                pendingTrades.clear();
+            }
+        }
     }
 
-    public PricePoint getLastPrice(AssetSignature sign, Currency currency) {
-        newListing(sign);
-        UUID uuid = signatureUUIDMap.get(sign);
+    /**
+     * Run the task as the only owner of the order transaction. Anyone who adds, changes, or finalizes the orders
+     * must do so inside of this, so the uncommitted orders of one are never committed or rolled back by the
+     * other. See {@link IOrderQueryModule#withOrderTransaction(Callable)}
+     *
+     * @param task the task. It must finalize its orders using {@link #commitOrders()} or {@link #rollbackOrders()}
+     *             before it returns.
+     * @return result of the task
+     * @throws Exception whatever the task throws
+     */
+    public <T> T withOrderTransaction(Callable<T> task) throws Exception {
+        Validation.assertNotNull(task);
 
-        return orderQueryModule.getLastTradingPrice(7, currency.getKey(), uuid);
+        return orderQueryModule.withOrderTransaction(task);
     }
 
-    public double getAveragePrice(AssetSignature sign, Currency currency) {
-        newListing(sign);
-        UUID uuid = signatureUUIDMap.get(sign);
+    /**
+     * {@link IOrderQueryModule#markOrders()}
+     */
+    public void markOrders() throws SQLException {
+        orderQueryModule.markOrders();
+    }
 
-        return orderQueryModule.getLastTradingAverage(7, currency.getKey(), uuid);
+    /**
+     * {@link IOrderQueryModule#releaseOrdersMark()}
+     */
+    public void releaseOrdersMark() throws SQLException {
+        orderQueryModule.releaseOrdersMark();
     }
 
-    public OrderInfo getLowestAsk(AssetSignature sign, Currency currency) {
+    /**
+     * {@link IOrderQueryModule#rollbackOrdersToMark()}
+     */
+    public void rollbackOrdersToMark() throws SQLException {
+        orderQueryModule.rollbackOrdersToMark();
+    }
+
+    /**
+     * Get the quote of the market. This is a memory read unless the quote has to be loaded.
+     *
+     * @param sign     the signature
+     * @param currency currency of the market
+     * @return the quote
+     */
+    public MarketQuote getQuote(AssetSignature sign, Currency currency) {
         newListing(sign);
-        UUID uuid = signatureUUIDMap.get(sign);
+        UUID uuid = listingRegistry.getUuid(sign);
+
+        return quoteCache.get(MarketKey.of(uuid, currency.getKey()), LocalDate.now(), this::loadQuote);
+    }
+
+    public PricePoint getLastPrice(AssetSignature sign, Currency currency) {
+        return getQuote(sign, currency).getLastPrice();
+    }
+
+    public double getAveragePrice(AssetSignature sign, Currency currency) {
+        return getQuote(sign, currency).getAveragePrice();
+    }
 
-        return orderQueryModule.getLowestAsk(currency.getKey(), uuid);
+    public OrderInfo getLowestAsk(AssetSignature sign, Currency currency) {
+        return getQuote(sign, currency).getBestAsk();
     }
 
     public OrderInfo getHighestBid(AssetSignature sign, Currency currency) {
-        newListing(sign);
-        UUID uuid = signatureUUIDMap.get(sign);
+        return getQuote(sign, currency).getBestBid();
+    }
 
-        return orderQueryModule.getHighestBid(currency.getKey(), uuid);
+    /**
+     * @return the quote cache, mostly for its statistics
+     */
+    public QuoteCache getQuoteCache() {
+        return quoteCache;
     }
 
     public PricePoint getHighestPrice(AssetSignature sign, Currency currency) {
         newListing(sign);
-        UUID uuid = signatureUUIDMap.get(sign);
+        UUID uuid = listingRegistry.getUuid(sign);
 
         return orderQueryModule.getHighestPoint(7, currency.getKey(), uuid);
     }
 
     public PricePoint getLowestPrice(AssetSignature sign, Currency currency) {
         newListing(sign);
-        UUID uuid = signatureUUIDMap.get(sign);
+        UUID uuid = listingRegistry.getUuid(sign);
 
         return orderQueryModule.getLowestPoint(7, currency.getKey(), uuid);
     }
@@ -366,6 +560,105 @@ public class AssetListingManager extends AbstractManagerElementCaching<UUID, Ass
         orderQueryModule.peekMatchingOrders(consumer);
     }
 
+    /**
+     * Same as {@link #peekMatchingOrder(Consumer)}, but only the given market is searched.
+     *
+     * @param market the market to search
+     * @param consumer
+     */
+    public void peekMatchingOrder(MarketKey market, Consumer<TradeInfo> consumer) {
+        orderQueryModule.peekMatchingOrders(market, consumer);
+    }
+
+    /**
+     * The lowest ask of the market as it is in the book right now. Unlike
+     * {@link #getLowestAsk(AssetSignature, Currency)}, this is never served from the quote cache.
+     *
+     * @param market the market
+     * @return the lowest ask order; null if found none
+     */
+    public OrderInfo getLowestAsk(MarketKey market) {
+        Validation.assertNotNull(market);
+
+        return orderQueryModule.getLowestAsk(market.getCurrencyUuid(), market.getListingUuid());
+    }
+
+    /**
+     * {@link IOrderQueryModule#getMarkets()}
+     */
+    public Set<MarketKey> getMarkets() {
+        return orderQueryModule.getMarkets();
+    }
+
+    /**
+     * {@link IOrderQueryModule#getMarkets(Collection)}
+     */
+    public Set<MarketKey> getMarkets(Collection<UUID> listingUuids) {
+        return orderQueryModule.getMarkets(listingUuids);
+    }
+
+    /**
+     * Block the current thread until orders of at least one listing are changed and committed.
+     * The returned listings are consumed, so the next call will wait for the new changes.
+     *
+     * @return uuids of the changed listings
+     * @throws InterruptedException the thread is interrupted while waiting
+     */
+    public Set<UUID> awaitChangedListings() throws InterruptedException {
+        synchronized (changedListings) {
+            while (changedListings.isEmpty())
+                changedListings.wait();
+
+            return pollChangedListings();
+        }
+    }
+
+    /**
+     * Same as {@link #awaitChangedListings()}, but returns right away even if nothing was changed.
+     *
+     * @return uuids of the changed listings; empty if nothing was changed
+     */
+    public Set<UUID> pollChangedListings() {
+        synchronized (changedListings) {
+            Set<UUID> changed = new HashSet<>(changedListings);
+            changedListings.clear();
+            return changed;
+        }
+    }
+
+    /**
+     * Signal the listing to {@link #awaitChangedListings()} right away, without any order change. This is
+     * for the requests which must be handled by the broker, such as the immediate orders.
+     *
+     * @param listingUuid uuid of the listing
+     */
+    public void notifyChangedListing(UUID listingUuid) {
+        Validation.assertNotNull(listingUuid);
+
+        synchronized (changedListings) {
+            changedListings.add(listingUuid);
+            changedListings.notifyAll();
+        }
+    }
+
+    private MarketQuote loadQuote(MarketKey market) {
+        UUID currencyUuid = market.getCurrencyUuid();
+        UUID listingUuid = market.getListingUuid();
+
+        return MarketQuote.create(orderQueryModule.getHighestBid(currencyUuid, listingUuid),
+                orderQueryModule.getLowestAsk(currencyUuid, listingUuid),
+                orderQueryModule.getLastTradingPrice(7, currencyUuid, listingUuid),
+                orderQueryModule.getLastTradingAverage(7, currencyUuid, listingUuid),
+                LocalDate.now());
+    }
+
+    private void touchMarket(MarketKey market) {
+        synchronized (changedListings) {
+            pendingListings.add(market.getListingUuid());
+            pendingMarkets.add(market);
+        }
+    }
+
     public Collection<String> categoryNames() {
         return orderQueryModule.categoryNames();
     }
@@ -0,0 +1,98 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Signature to listing uuid, and the other way around. Lookups never block, so this is safe to be read
+ * from the server thread, the broker, and the simulation all at the same time.
+ * <p>
+ * A listing is registered only once per signature; if many threads try to register the same signature
+ * at once, only one of them creates the listing and the others get its uuid.
+ */
+public class ListingRegistry {
+    private final Map<AssetSignature, UUID> signatureToUuid = new ConcurrentHashMap<>();
+    private final Map<UUID, AssetSignature> uuidToSignature = new ConcurrentHashMap<>();
+
+    /**
+     * Register the listing that already exists, such as the ones loaded from the database.
+     *
+     * @param signature signature of the listing
+     * @param uuid      uuid of the listing
+     */
+    public void put(AssetSignature signature, UUID uuid) {
+        Validation.assertNotNull(signature);
+        Validation.assertNotNull(uuid);
+
+        signatureToUuid.put(signature, uuid);
+        uuidToSignature.put(uuid, signature);
+    }
+
+    /**
+     * Get the uuid of the signature, or create the listing if the signature is not yet registered.
+     * <p>
+     * The creator runs at most once per signature, and other threads registering the same signature wait until
+     * it's done. Lookups by {@link #getUuid(AssetSignature)} and {@link #getSignature(UUID)} are not blocked.
+     *
+     * @param signature signature of the listing
+     * @param creator   creates the listing and returns its uuid; null if failed to create one.
+     * @return the uuid of the listing; null if the creator failed.
+     */
+    public UUID computeIfAbsent(AssetSignature signature, Function<AssetSignature, UUID> creator) {
+        Validation.assertNotNull(signature);
+        Validation.assertNotNull(creator);
+
+        // fast path without locking the bin
+        UUID uuid = signatureToUuid.get(signature);
+        if (uuid != null)
+            return uuid;
+
+        return signatureToUuid.computeIfAbsent(signature, sign -> {
+            UUID created = creator.apply(sign);
+            // reverse entry goes in first, so anyone seeing the uuid can also see the signature
+            if (created != null)
+                uuidToSignature.put(created, sign);
+            return created;
+        });
+    }
+
+    /**
+     * @param signature the signature
+     * @return uuid of the listing; null if not listed
+     */
+    public UUID getUuid(AssetSignature signature) {
+        if (signature == null)
+            return null;
+
+        return signatureToUuid.get(signature);
+    }
+
+    /**
+     * @param uuid uuid of the listing
+     * @return signature of the listing; null if not listed
+     */
+    public AssetSignature getSignature(UUID uuid) {
+        if (uuid == null)
+            return null;
+
+        return uuidToSignature.get(uuid);
+    }
+
+    public boolean contains(AssetSignature signature) {
+        return signature != null && signatureToUuid.containsKey(signature);
+    }
+
+    public int size() {
+        return signatureToUuid.size();
+    }
+
+    public void clear() {
+        signatureToUuid.clear();
+        uuidToSignature.clear();
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+
+import java.util.Objects;
+
+/**
+ * One side of a listing summed up over all of its markets. This is what the listing pages show for
+ * each listing, so they don't have to look into the individual orders.
+ */
+public class ListingSummary {
+    private final OrderInfo best;
+    private final long depth;
+    private final int orders;
+
+    private ListingSummary(OrderInfo best, long depth, int orders) {
+        this.best = best;
+        this.depth = depth;
+        this.orders = orders;
+    }
+
+    /**
+     * @return the best order out of all markets of the listing. Lowest ask for sell orders, and highest bid
+     * for buy orders. The oldest one is chosen if there are more than one at the same price.
+     */
+    public OrderInfo getBest() {
+        return best;
+    }
+
+    /**
+     * @return sum of the remaining amounts of the orders
+     */
+    public long getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return number of orders
+     */
+    public int getOrders() {
+        return orders;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ListingSummary that = (ListingSummary) o;
+        return depth == that.depth &&
+                orders == that.orders &&
+                best.equals(that.best);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(best, depth, orders);
+    }
+
+    @Override
+    public String toString() {
+        return "ListingSummary{" +
+                "best=" + best +
+                ", depth=" + depth +
+                ", orders=" + orders +
+                '}';
+    }
+
+    public static ListingSummary create(OrderInfo best, long depth, int orders) {
+        Validation.assertNotNull(best);
+        Validation.validate(orders, val -> val > 0, "At least one order is required.");
+
+        return new ListingSummary(best, depth, orders);
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Identifies a single market, which is the pair of listing and currency. Orders of different markets
+ * never match each other.
+ */
+public class MarketKey {
+    private final UUID listingUuid;
+    private final UUID currencyUuid;
+
+    private MarketKey(UUID listingUuid, UUID currencyUuid) {
+        this.listingUuid = listingUuid;
+        this.currencyUuid = currencyUuid;
+    }
+
+    public UUID getListingUuid() {
+        return listingUuid;
+    }
+
+    public UUID getCurrencyUuid() {
+        return currencyUuid;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MarketKey marketKey = (MarketKey) o;
+        return listingUuid.equals(marketKey.listingUuid) &&
+                currencyUuid.equals(marketKey.currencyUuid);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(listingUuid, currencyUuid);
+    }
+
+    @Override
+    public String toString() {
+        return "MarketKey{" +
+                "listingUuid=" + listingUuid +
+                ", currencyUuid=" + currencyUuid +
+                '}';
+    }
+
+    public static MarketKey of(UUID listingUuid, UUID currencyUuid) {
+        Validation.assertNotNull(listingUuid);
+        Validation.assertNotNull(currencyUuid);
+
+        return new MarketKey(listingUuid, currencyUuid);
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import java.time.LocalDate;
+
+/**
+ * Snapshot of the top of the book and the recent trades of a market. This is immutable, so it can be
+ * shared between threads without locking.
+ */
+public class MarketQuote {
+    private final OrderInfo bestBid;
+    private final OrderInfo bestAsk;
+    private final PricePoint lastPrice;
+    private final double averagePrice;
+    private final LocalDate loadedDate;
+
+    private MarketQuote(OrderInfo bestBid,
+                        OrderInfo bestAsk,
+                        PricePoint lastPrice,
+                        double averagePrice,
+                        LocalDate loadedDate) {
+        this.bestBid = bestBid;
+        this.bestAsk = bestAsk;
+        this.lastPrice = lastPrice;
+        this.averagePrice = averagePrice;
+        this.loadedDate = loadedDate;
+    }
+
+    /**
+     * @return the highest bid; null if none
+     */
+    public OrderInfo getBestBid() {
+        return bestBid;
+    }
+
+    /**
+     * @return the lowest ask; null if none
+     */
+    public OrderInfo getBestAsk() {
+        return bestAsk;
+    }
+
+    /**
+     * @return the last trade; null if none
+     */
+    public PricePoint getLastPrice() {
+        return lastPrice;
+    }
+
+    /**
+     * @return the average price of the recent trades; less than 0.0 if not applicable
+     */
+    public double getAveragePrice() {
+        return averagePrice;
+    }
+
+    /**
+     * @return the date the trades were loaded. The average is computed over the days, so the quote
+     * is outdated once the date changes.
+     */
+    public LocalDate getLoadedDate() {
+        return loadedDate;
+    }
+
+    /**
+     * @return copy of this quote with the given top of the book
+     */
+    public MarketQuote withBook(OrderInfo bestBid, OrderInfo bestAsk) {
+        return new MarketQuote(bestBid, bestAsk, lastPrice, averagePrice, loadedDate);
+    }
+
+    @Override
+    public String toString() {
+        return "MarketQuote{" +
+                "bestBid=" + bestBid +
+                ", bestAsk=" + bestAsk +
+                ", lastPrice=" + lastPrice +
+                ", averagePrice=" + averagePrice +
+                ", loadedDate=" + loadedDate +
+                '}';
+    }
+
+    public static MarketQuote create(OrderInfo bestBid,
+                                     OrderInfo bestAsk,
+                                     PricePoint lastPrice,
+                                     double averagePrice,
+                                     LocalDate loadedDate) {
+        return new MarketQuote(bestBid, bestAsk, lastPrice, averagePrice, loadedDate);
+    }
+}
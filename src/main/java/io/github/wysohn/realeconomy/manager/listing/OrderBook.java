@@ -0,0 +1,161 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import java.util.*;
+
+/**
+ * Resting orders of a single market, which is the pair of listing and currency.
+ * <p>
+ * Orders are grouped by price level, and each level keeps its orders sorted by order id. Since the order id
+ * is auto incremented, the first order of a level is always the oldest order at that price.
+ * <p>
+ * This is not thread-safe. Use it through {@link OrderBookRegistry}.
+ */
+public class OrderBook {
+    private final UUID listingUuid;
+    private final UUID currencyUuid;
+
+    // lowest price first
+    private final NavigableMap<Double, NavigableMap<Integer, OrderInfo>> asks = new TreeMap<>();
+    // highest price first
+    private final NavigableMap<Double, NavigableMap<Integer, OrderInfo>> bids = new TreeMap<>(Comparator.reverseOrder());
+    // indexed by OrderType.ordinal()
+    private final int[] counts = new int[OrderType.values().length];
+    private final long[] depths = new long[OrderType.values().length];
+
+    OrderBook(UUID listingUuid, UUID currencyUuid) {
+        this.listingUuid = listingUuid;
+        this.currencyUuid = currencyUuid;
+    }
+
+    public UUID getListingUuid() {
+        return listingUuid;
+    }
+
+    public UUID getCurrencyUuid() {
+        return currencyUuid;
+    }
+
+    /**
+     * Put the order to its price level. If the order with same id already exist, it will be replaced
+     * without losing its place in the queue.
+     *
+     * @param type order type
+     * @param info the order
+     */
+    void put(OrderType type, OrderInfo info) {
+        OrderInfo previous = levels(type).computeIfAbsent(info.getPrice(), price -> new TreeMap<>())
+                .put(info.getOrderId(), info);
+
+        if (previous == null)
+            counts[type.ordinal()]++;
+        else
+            depths[type.ordinal()] -= previous.getAmount();
+        depths[type.ordinal()] += info.getAmount();
+    }
+
+    /**
+     * @param type order type
+     * @param info the order to remove
+     * @return the removed order; null if the order was not in this book
+     */
+    OrderInfo remove(OrderType type, OrderInfo info) {
+        NavigableMap<Double, NavigableMap<Integer, OrderInfo>> levels = levels(type);
+        NavigableMap<Integer, OrderInfo> level = levels.get(info.getPrice());
+        if (level == null)
+            return null;
+
+        OrderInfo removed = level.remove(info.getOrderId());
+        if (level.isEmpty())
+            levels.remove(info.getPrice());
+
+        if (removed != null) {
+            counts[type.ordinal()]--;
+            depths[type.ordinal()] -= removed.getAmount();
+        }
+
+        return removed;
+    }
+
+    /**
+     * Get the best order of the given side. For sell orders, it's the oldest order with the lowest ask,
+     * and for buy orders, it's the oldest order with the highest bid.
+     *
+     * @param type order type
+     * @return the best order; null if the side is empty
+     */
+    OrderInfo best(OrderType type) {
+        Map.Entry<Double, NavigableMap<Integer, OrderInfo>> entry = levels(type).firstEntry();
+        if (entry == null)
+            return null;
+
+        return entry.getValue().firstEntry().getValue();
+    }
+
+    /**
+     * @param type order type
+     * @return number of orders of the given side
+     */
+    int count(OrderType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * @param type order type
+     * @return sum of the remaining amounts of the given side
+     */
+    long depth(OrderType type) {
+        return depths[type.ordinal()];
+    }
+
+    /**
+     * Find the pair of orders that can be traded right now.
+     * <p>
+     * Buyers are prioritized by time, so the oldest bid that can afford the cheapest ask is chosen
+     * even if there are other higher bids. This is the same rule the broker has been using.
+     *
+     * @return the trade info; null if no bid can afford the lowest ask
+     */
+    TradeInfo peekMatch() {
+        OrderInfo ask = best(OrderType.SELL);
+        if (ask == null)
+            return null;
+
+        // every level from the highest bid down to the lowest ask is crossing the ask
+        OrderInfo bid = null;
+        for (NavigableMap<Integer, OrderInfo> level : bids.headMap(ask.getPrice(), true).values()) {
+            OrderInfo oldest = level.firstEntry().getValue();
+            if (bid == null || oldest.getOrderId() < bid.getOrderId())
+                bid = oldest;
+        }
+
+        if (bid == null)
+            return null;
+
+        return TradeInfo.create(ask.getOrderId(),
+                ask.getIssuer(),
+                ask.getPrice(),
+                ask.getAmount(),
+                bid.getOrderId(),
+                bid.getIssuer(),
+                bid.getPrice(),
+                bid.getAmount(),
+                currencyUuid,
+                listingUuid,
+                ask.getCategoryId());
+    }
+
+    boolean isEmpty() {
+        return asks.isEmpty() && bids.isEmpty();
+    }
+
+    private NavigableMap<Double, NavigableMap<Integer, OrderInfo>> levels(OrderType type) {
+        switch (type) {
+            case SELL:
+                return asks;
+            case BUY:
+                return bids;
+            default:
+                throw new RuntimeException("Unknown order type " + type);
+        }
+    }
+}
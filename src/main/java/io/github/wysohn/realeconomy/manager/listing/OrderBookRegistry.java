@@ -0,0 +1,345 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+
+import java.util.*;
+
+/**
+ * In-memory order books of all markets. This is the source of truth for the matching and the order lookups,
+ * and the SQL tables are only the durable copy of it.
+ * <p>
+ * The changes are recorded until {@link #commit()} is invoked, so {@link #rollback()} can revert the books
+ * along with the SQL transaction. Each thread keeps its own undo log and mark, so {@link #rollbackToMark()}
+ * reverts only what the calling thread did, even if other threads are changing the books of the same
+ * transaction at the same time. Such threads must work on different orders, as the broker workers do since
+ * each of them owns different markets.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class OrderBookRegistry {
+    // listing uuid -> currency uuid -> book
+    private final Map<UUID, Map<UUID, OrderBook>> books = new HashMap<>();
+    private final Map<OrderType, Map<Integer, OrderInfo>> orders = new EnumMap<>(OrderType.class);
+    private final Map<OrderType, Set<Integer>> temporaryOrders = new EnumMap<>(OrderType.class);
+
+    private final Map<Thread, UndoLog> undoLogs = new HashMap<>();
+
+    public OrderBookRegistry() {
+        for (OrderType type : OrderType.values()) {
+            orders.put(type, new HashMap<>());
+            temporaryOrders.put(type, new HashSet<>());
+        }
+    }
+
+    /**
+     * Add new order to the book.
+     *
+     * @param type order type
+     * @param info the order
+     * @param temp true if the order is temporary. See {@link #removeTemporary(OrderType)}
+     */
+    public synchronized void add(OrderType type, OrderInfo info, boolean temp) {
+        Validation.assertNotNull(type);
+        Validation.assertNotNull(info);
+
+        putOrder(type, info, temp);
+        record(() -> removeOrder(type, info));
+    }
+
+    /**
+     * @param type    order type
+     * @param orderId order id
+     * @return the order; null if not exist
+     */
+    public synchronized OrderInfo get(OrderType type, int orderId) {
+        return orders.get(type).get(orderId);
+    }
+
+    /**
+     * Same as {@link #get(OrderType, int)}, but for many orders at once.
+     *
+     * @param type     order type
+     * @param orderIds order ids
+     * @return the orders in the order of the given ids. Ids of the orders that don't exist are skipped.
+     */
+    public synchronized List<OrderInfo> getAll(OrderType type, Collection<Integer> orderIds) {
+        Map<Integer, OrderInfo> typeOrders = orders.get(type);
+        List<OrderInfo> infos = new ArrayList<>();
+        for (Integer orderId : orderIds) {
+            Optional.ofNullable(typeOrders.get(orderId)).ifPresent(infos::add);
+        }
+        return infos;
+    }
+
+    /**
+     * Change the remaining amount of the order. The order keeps its place in the queue.
+     *
+     * @param type      order type
+     * @param orderId   order id
+     * @param newAmount new amount
+     * @return the edited order; null if not exist
+     */
+    public synchronized OrderInfo edit(OrderType type, int orderId, int newAmount) {
+        OrderInfo previous = orders.get(type).get(orderId);
+        if (previous == null)
+            return null;
+
+        boolean temp = temporaryOrders.get(type).contains(orderId);
+        OrderInfo edited = previous.withAmount(newAmount);
+        putOrder(type, edited, temp);
+        record(() -> putOrder(type, previous, temp));
+
+        return edited;
+    }
+
+    /**
+     * @param type    order type
+     * @param orderId order id
+     * @return the removed order; null if not exist
+     */
+    public synchronized OrderInfo remove(OrderType type, int orderId) {
+        OrderInfo previous = orders.get(type).get(orderId);
+        if (previous == null)
+            return null;
+
+        boolean temp = temporaryOrders.get(type).contains(orderId);
+        removeOrder(type, previous);
+        record(() -> putOrder(type, previous, temp));
+
+        return previous;
+    }
+
+    /**
+     * Remove all orders that were added as temporary.
+     *
+     * @param type order type
+     * @return the removed orders
+     */
+    public synchronized List<OrderInfo> removeTemporary(OrderType type) {
+        List<OrderInfo> removed = new ArrayList<>();
+        for (Integer orderId : new ArrayList<>(temporaryOrders.get(type))) {
+            Optional.ofNullable(remove(type, orderId)).ifPresent(removed::add);
+        }
+        return removed;
+    }
+
+    /**
+     * Get the best order of the market. See {@link OrderBook#best(OrderType)}
+     *
+     * @param type         order type
+     * @param currencyUuid uuid of currency
+     * @param listingUuid  uuid of listing
+     * @return the best order; null if no order exist
+     */
+    public synchronized OrderInfo best(OrderType type, UUID currencyUuid, UUID listingUuid) {
+        return Optional.ofNullable(books.get(listingUuid))
+                .map(currencyMap -> currencyMap.get(currencyUuid))
+                .map(book -> book.best(type))
+                .orElse(null);
+    }
+
+    /**
+     * Sum up one side of the listing over all of its markets.
+     *
+     * @param type        order type
+     * @param listingUuid uuid of listing
+     * @return the summary; null if the listing has no order of the given type
+     */
+    public synchronized ListingSummary summary(OrderType type, UUID listingUuid) {
+        Map<UUID, OrderBook> currencyMap = books.get(listingUuid);
+        if (currencyMap == null)
+            return null;
+
+        OrderInfo best = null;
+        long depth = 0L;
+        int count = 0;
+        for (OrderBook book : currencyMap.values()) {
+            OrderInfo candidate = book.best(type);
+            if (candidate == null)
+                continue;
+
+            if (best == null || isBetter(type, candidate, best))
+                best = candidate;
+            depth += book.depth(type);
+            count += book.count(type);
+        }
+
+        return best == null ? null : ListingSummary.create(best, depth, count);
+    }
+
+    /**
+     * Find the best pair of orders out of all markets. The oldest bid is prioritized over the other bids
+     * regardless of the market. See {@link OrderBook#peekMatch()}
+     *
+     * @return the trade info; null if there is nothing to trade
+     */
+    public synchronized TradeInfo peekMatch() {
+        return peekMatch(books.keySet());
+    }
+
+    /**
+     * Same as {@link #peekMatch()}, but only the markets of the given listings are searched.
+     *
+     * @param listingUuids uuids of listings to search
+     * @return the trade info; null if there is nothing to trade
+     */
+    public synchronized TradeInfo peekMatch(Collection<UUID> listingUuids) {
+        TradeInfo best = null;
+        for (UUID listingUuid : listingUuids) {
+            Map<UUID, OrderBook> currencyMap = books.get(listingUuid);
+            if (currencyMap == null)
+                continue;
+
+            for (OrderBook book : currencyMap.values()) {
+                TradeInfo match = book.peekMatch();
+                if (match == null)
+                    continue;
+
+                if (best == null || match.getBuyId() < best.getBuyId())
+                    best = match;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Same as {@link #peekMatch()}, but only the given market is searched.
+     *
+     * @param market the market to search
+     * @return the trade info; null if there is nothing to trade
+     */
+    public synchronized TradeInfo peekMatch(MarketKey market) {
+        return Optional.ofNullable(books.get(market.getListingUuid()))
+                .map(currencyMap -> currencyMap.get(market.getCurrencyUuid()))
+                .map(OrderBook::peekMatch)
+                .orElse(null);
+    }
+
+    /**
+     * @return all markets that have at least one order
+     */
+    public synchronized Set<MarketKey> markets() {
+        return markets(books.keySet());
+    }
+
+    /**
+     * @param listingUuids uuids of listings
+     * @return markets of the given listings that have at least one order
+     */
+    public synchronized Set<MarketKey> markets(Collection<UUID> listingUuids) {
+        Set<MarketKey> markets = new HashSet<>();
+        for (UUID listingUuid : listingUuids) {
+            Optional.ofNullable(books.get(listingUuid))
+                    .ifPresent(currencyMap -> currencyMap.keySet().stream()
+                            .map(currencyUuid -> MarketKey.of(listingUuid, currencyUuid))
+                            .forEach(markets::add));
+        }
+        return markets;
+    }
+
+    /**
+     * @param type order type
+     * @return number of orders currently in the books
+     */
+    public synchronized int size(OrderType type) {
+        return orders.get(type).size();
+    }
+
+    /**
+     * Finalize the changes made so far by all threads.
+     */
+    public synchronized void commit() {
+        undoLogs.clear();
+    }
+
+    /**
+     * Revert all changes made by all threads after the last {@link #commit()}.
+     */
+    public synchronized void rollback() {
+        undoLogs.values().forEach(undoLog -> undoLog.undo(0));
+        undoLogs.clear();
+    }
+
+    /**
+     * Mark the current point of the calling thread, so the changes it made after it can be reverted by
+     * {@link #rollbackToMark()}.
+     */
+    public synchronized void mark() {
+        UndoLog undoLog = undoLogs.computeIfAbsent(Thread.currentThread(), thread -> new UndoLog());
+        undoLog.mark = undoLog.entries.size();
+    }
+
+    /**
+     * Keep the changes the calling thread made after {@link #mark()} and clear the mark.
+     */
+    public synchronized void releaseMark() {
+        Optional.ofNullable(undoLogs.get(Thread.currentThread()))
+                .ifPresent(undoLog -> undoLog.mark = -1);
+    }
+
+    /**
+     * Revert the changes the calling thread made after {@link #mark()} and clear the mark. Changes of the other
+     * threads are kept. Nothing happens if there is no mark.
+     */
+    public synchronized void rollbackToMark() {
+        UndoLog undoLog = undoLogs.get(Thread.currentThread());
+        if (undoLog == null || undoLog.mark < 0)
+            return;
+
+        undoLog.undo(undoLog.mark);
+        undoLog.mark = -1;
+    }
+
+    private void record(Runnable undo) {
+        undoLogs.computeIfAbsent(Thread.currentThread(), thread -> new UndoLog()).entries.push(undo);
+    }
+
+    private static boolean isBetter(OrderType type, OrderInfo candidate, OrderInfo best) {
+        int compare = Double.compare(candidate.getPrice(), best.getPrice());
+        if (compare == 0)
+            return candidate.getOrderId() < best.getOrderId();
+
+        return type == OrderType.SELL ? compare < 0 : compare > 0;
+    }
+
+    private void putOrder(OrderType type, OrderInfo info, boolean temp) {
+        orders.get(type).put(info.getOrderId(), info);
+        if (temp)
+            temporaryOrders.get(type).add(info.getOrderId());
+
+        books.computeIfAbsent(info.getListingUuid(), listingUuid -> new HashMap<>())
+                .computeIfAbsent(info.getCurrencyUuid(), currencyUuid ->
+                        new OrderBook(info.getListingUuid(), currencyUuid))
+                .put(type, info);
+    }
+
+    private void removeOrder(OrderType type, OrderInfo info) {
+        orders.get(type).remove(info.getOrderId());
+        temporaryOrders.get(type).remove(info.getOrderId());
+
+        Map<UUID, OrderBook> currencyMap = books.get(info.getListingUuid());
+        if (currencyMap == null)
+            return;
+
+        OrderBook book = currencyMap.get(info.getCurrencyUuid());
+        if (book == null)
+            return;
+
+        book.remove(type, info);
+        if (book.isEmpty())
+            currencyMap.remove(info.getCurrencyUuid());
+        if (currencyMap.isEmpty())
+            books.remove(info.getListingUuid());
+    }
+
+    private static class UndoLog {
+        private final Deque<Runnable> entries = new ArrayDeque<>();
+        private int mark = -1;
+
+        private void undo(int until) {
+            while (entries.size() > until) {
+                entries.pop().run();
+            }
+        }
+    }
+}
@@ -78,6 +78,10 @@ public class OrderInfo {
         return max;
     }
 
+    OrderInfo withAmount(int amount) {
+        return new OrderInfo(orderId, listingUuid, categoryId, issuer, price, currencyUuid, amount, max);
+    }
+
     public AssetSignature signature(AssetListingManager manager) {
         return manager.get(listingUuid)
                 .map(Reference::get)
@@ -126,22 +130,23 @@ public class OrderInfo {
 
     /**
      * @param rs
+     * @param uuidStorage how the uuid columns are stored
      * @return the order info; it can be null if the query contains aggregate function(s)
      * @throws SQLException
      */
-    public static OrderInfo read(ResultSet rs) throws SQLException {
+    public static OrderInfo read(ResultSet rs, OrderSQLModule.UuidStorage uuidStorage) throws SQLException {
         int orderId = rs.getInt(OrderSQLModule.ORDER_ID);
 
         // check null result before working on other stuff
         if (rs.wasNull())
             return null;
 
-        UUID listing_uuid = UUID.fromString(rs.getString("listing_uuid"));
+        UUID listing_uuid = uuidStorage.get(rs, "listing_uuid");
         //long timestamp = rs.getTimestamp("timestamp").getTime();
         int categoryId = rs.getInt("category_id");
-        UUID issuer = UUID.fromString(rs.getString("issuer"));
+        UUID issuer = uuidStorage.get(rs, "issuer");
         double price = rs.getDouble("price");
-        UUID currencyUuid = UUID.fromString(rs.getString("currency_uuid"));
+        UUID currencyUuid = uuidStorage.get(rs, "currency_uuid");
         int amount = rs.getInt("amount");
         int max = rs.getInt("maximum");
 
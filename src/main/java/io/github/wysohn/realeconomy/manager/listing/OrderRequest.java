@@ -0,0 +1,105 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+import io.github.wysohn.realeconomy.interfaces.banking.IOrderIssuer;
+import io.github.wysohn.realeconomy.manager.currency.Currency;
+
+import java.util.UUID;
+
+/**
+ * A new order waiting to be submitted. Used to submit many orders at once so they can be
+ * finalized by a single commit.
+ */
+public class OrderRequest {
+    private final UUID listingUuid;
+    private final String category;
+    private final OrderType type;
+    private final IOrderIssuer issuer;
+    private final double price;
+    private final Currency currency;
+    private final int stock;
+    private final boolean temp;
+
+    private OrderRequest(UUID listingUuid,
+                         String category,
+                         OrderType type,
+                         IOrderIssuer issuer,
+                         double price,
+                         Currency currency,
+                         int stock,
+                         boolean temp) {
+        this.listingUuid = listingUuid;
+        this.category = category;
+        this.type = type;
+        this.issuer = issuer;
+        this.price = price;
+        this.currency = currency;
+        this.stock = stock;
+        this.temp = temp;
+    }
+
+    public UUID getListingUuid() {
+        return listingUuid;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public OrderType getType() {
+        return type;
+    }
+
+    public IOrderIssuer getIssuer() {
+        return issuer;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public boolean isTemp() {
+        return temp;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderRequest{" +
+                "listingUuid=" + listingUuid +
+                ", category='" + category + '\'' +
+                ", type=" + type +
+                ", issuer=" + issuer +
+                ", price=" + price +
+                ", currency=" + currency +
+                ", stock=" + stock +
+                ", temp=" + temp +
+                '}';
+    }
+
+    public static OrderRequest create(UUID listingUuid,
+                                      String category,
+                                      OrderType type,
+                                      IOrderIssuer issuer,
+                                      double price,
+                                      Currency currency,
+                                      int stock,
+                                      boolean temp) {
+        Validation.assertNotNull(listingUuid);
+        Validation.assertNotNull(category);
+        Validation.assertNotNull(type);
+        Validation.assertNotNull(issuer);
+        Validation.validate(price, val -> val > 0.0, "Price cannot be 0 or less.");
+        Validation.assertNotNull(currency);
+        Validation.validate(stock, val -> val > 0, "Stock cannot be 0 or less.");
+
+        return new OrderRequest(listingUuid, category, type, issuer, price, currency, stock, temp);
+    }
+}
@@ -75,20 +75,32 @@ public class PricePoint {
         return amount;
     }
 
-    public static PricePoint read(ResultSet rs) throws SQLException {
+    public static PricePoint create(int orderId,
+                                    UUID listingUuid,
+                                    int categoryId,
+                                    Date timestamp,
+                                    UUID seller,
+                                    UUID buyer,
+                                    BigDecimal price,
+                                    UUID currencyUuid,
+                                    int amount) {
+        return new PricePoint(orderId, listingUuid, categoryId, timestamp, seller, buyer, price, currencyUuid, amount);
+    }
+
+    public static PricePoint read(ResultSet rs, OrderSQLModule.UuidStorage uuidStorage) throws SQLException {
         int orderId = rs.getInt(OrderSQLModule.ORDER_ID);
 
         // check null result before working on other stuff
         if (rs.wasNull())
             return null;
 
-        UUID listingUuid = UUID.fromString(rs.getString("listing_uuid"));
+        UUID listingUuid = uuidStorage.get(rs, "listing_uuid");
         int categoryId = rs.getInt("category_id");
         Date timestamp = rs.getDate("timestamp");
-        UUID seller = UUID.fromString(rs.getString("seller"));
-        UUID buyer = UUID.fromString(rs.getString("buyer"));
+        UUID seller = uuidStorage.get(rs, "seller");
+        UUID buyer = uuidStorage.get(rs, "buyer");
         BigDecimal price = rs.getBigDecimal("price");
-        UUID currencyUuid = UUID.fromString(rs.getString("currency_uuid"));
+        UUID currencyUuid = uuidStorage.get(rs, "currency_uuid");
         int amount = rs.getInt("amount");
 
         return new PricePoint(orderId, listingUuid, categoryId, timestamp, seller, buyer, price, currencyUuid, amount);
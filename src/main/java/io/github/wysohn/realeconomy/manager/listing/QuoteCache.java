@@ -0,0 +1,116 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import io.github.wysohn.rapidframework3.utils.Validation;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Quotes of the markets, so the price lookups are plain memory reads most of the time.
+ * <p>
+ * The top of the book is updated in place when the orders are committed. The trade related values are
+ * dropped instead when a trade is committed, or when the date changes, and loaded again on the next lookup.
+ * <p>
+ * The quote is loaded without locking the entry, since the loader may query the database. A quote whose market
+ * was updated or dropped while it was loading is returned, but not cached, as it may have read the orders from
+ * before the change.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class QuoteCache {
+    private final Map<MarketKey, MarketQuote> quotes = new ConcurrentHashMap<>();
+    // market -> number of times its quote was updated or dropped
+    private final Map<MarketKey, Long> changes = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param market the market
+     * @param today  current date
+     * @param loader loads the quote if not cached, or if the cached one is outdated
+     * @return the quote
+     */
+    public MarketQuote get(MarketKey market, LocalDate today, Function<MarketKey, MarketQuote> loader) {
+        Validation.assertNotNull(market);
+
+        MarketQuote quote = quotes.get(market);
+        if (quote != null && today.equals(quote.getLoadedDate())) {
+            hits.incrementAndGet();
+            return quote;
+        }
+
+        misses.incrementAndGet();
+        long before = changes.getOrDefault(market, 0L);
+        MarketQuote loaded = loader.apply(market);
+
+        MarketQuote[] result = {loaded};
+        quotes.compute(market, (key, previous) -> {
+            // loaded by the other in the meantime
+            if (previous != null && today.equals(previous.getLoadedDate())) {
+                result[0] = previous;
+                return previous;
+            }
+
+            return changes.getOrDefault(key, 0L) == before ? loaded : previous;
+        });
+        return result[0];
+    }
+
+    /**
+     * Replace the top of the book of the cached quotes of the markets. Nothing is cached for the markets that
+     * are not cached yet.
+     *
+     * @param markets the markets whose orders were changed
+     * @param bestBid provides the current best bid of the market. It's called while the entry is locked, so it
+     *                must be a memory read.
+     * @param bestAsk provides the current best ask of the market. Same as the bestBid.
+     */
+    public void updateBook(Collection<MarketKey> markets,
+                           Function<MarketKey, OrderInfo> bestBid,
+                           Function<MarketKey, OrderInfo> bestAsk) {
+        for (MarketKey market : markets) {
+            quotes.compute(market, (key, quote) -> {
+                changes.merge(key, 1L, Long::sum);
+                return quote == null ? null : quote.withBook(bestBid.apply(key), bestAsk.apply(key));
+            });
+        }
+    }
+
+    /**
+     * Drop the cached quote, so it will be loaded again on the next lookup.
+     *
+     * @param market the market
+     */
+    public void invalidate(MarketKey market) {
+        quotes.compute(market, (key, quote) -> {
+            changes.merge(key, 1L, Long::sum);
+            return null;
+        });
+    }
+
+    public void clear() {
+        quotes.keySet().forEach(this::invalidate);
+    }
+
+    public int size() {
+        return quotes.size();
+    }
+
+    /**
+     * @return number of lookups answered by the cached quote
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups that had to load the quote
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -1,7 +1,5 @@
 package io.github.wysohn.realeconomy.manager.listing;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -122,31 +120,6 @@ public class TradeInfo {
                 '}';
     }
 
-    /**
-     * @param rs
-     * @return the trade info; it can be null if the query contains aggregate function(s)
-     * @throws SQLException
-     */
-    public static TradeInfo read(ResultSet rs) throws SQLException {
-        int sellId = rs.getInt("sell_id");
-
-        // check null result before working on other stuff
-        if (rs.wasNull())
-            return null;
-
-        UUID sellerUuid = UUID.fromString(rs.getString("seller_uuid"));
-        double ask = rs.getDouble("ask");
-        int stock = rs.getInt("stock");
-        int buyId = rs.getInt("buy_id");
-        UUID buyerUuid = UUID.fromString(rs.getString("buyer_uuid"));
-        double bid = rs.getDouble("bid");
-        int amount = rs.getInt("amount");
-        UUID currencyUuid = UUID.fromString(rs.getString("currency"));
-        UUID listingUuid = UUID.fromString(rs.getString("listing_uuid"));
-        int categoryId = rs.getInt("category_id");
-        return new TradeInfo(sellId, sellerUuid, ask, stock, buyId, buyerUuid, bid, amount, currencyUuid, listingUuid, categoryId);
-    }
-
     public static TradeInfo create(int sellId, UUID seller, double ask, int stock,
                                    int buyId, UUID buyer, double bid, int amount,
                                    UUID currencyUuid, UUID listingUuid, int categoryId) {
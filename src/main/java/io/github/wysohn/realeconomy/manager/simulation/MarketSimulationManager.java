@@ -13,6 +13,7 @@ import io.github.wysohn.realeconomy.interfaces.banking.IBankUserProvider;
 import io.github.wysohn.realeconomy.interfaces.listing.IListingInfoProvider;
 import io.github.wysohn.realeconomy.interfaces.simulation.IAgentReloadObserver;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
 import org.bukkit.Bukkit;
@@ -40,6 +41,7 @@ public class MarketSimulationManager extends Manager {
 
     private final Logger logger;
     private final IListingInfoProvider assetInfoProvider;
+    private final AssetSignaturePool signaturePool;
 
     private final Set<IAgentReloadObserver> agentReloadObservers = new HashSet<>();
     private final IKeyValueStorage config;
@@ -49,9 +51,11 @@ public class MarketSimulationManager extends Manager {
     public MarketSimulationManager(@PluginLogger Logger logger,
                                    @PluginDirectory File pluginDir,
                                    IListingInfoProvider assetInfoProvider,
-                                   IStorageFactory storageFactory) {
+                                   IStorageFactory storageFactory,
+                                   AssetSignaturePool signaturePool) {
         this.logger = logger;
         this.assetInfoProvider = assetInfoProvider;
+        this.signaturePool = signaturePool;
 
         dependsOn(AssetListingManager.class);
 
@@ -558,7 +562,7 @@ public class MarketSimulationManager extends Manager {
         return provider;
     }
 
-    private static class AgentConfigBuilder {
+    private class AgentConfigBuilder {
         private final String agentName;
         private final UUID uuid;
         private final List<Pair<AssetSignature, Double>> needed = new LinkedList<>();
@@ -572,17 +576,13 @@ public class MarketSimulationManager extends Manager {
             this.uuid = UUID.randomUUID();
         }
 
-        public static AgentConfigBuilder of(String agentName) {
-            return new AgentConfigBuilder(agentName);
-        }
-
         public AgentConfigBuilder addNeededResource(AssetSignature signature, double amount) {
             needed.add(Pair.of(signature, amount));
             return this;
         }
 
         public AgentConfigBuilder addNeededResource(Material material, int amount) {
-            return addNeededResource(new ItemStackSignature(material), amount);
+            return addNeededResource(signaturePool.itemStack(material), amount);
         }
 
         public AgentConfigBuilder addOutput(AssetSignature signature, double amount) {
@@ -591,11 +591,11 @@ public class MarketSimulationManager extends Manager {
         }
 
         public AgentConfigBuilder addOutput(ItemStack itemStack, int amount) {
-            return addOutput(new ItemStackSignature(itemStack), amount);
+            return addOutput(signaturePool.itemStack(itemStack), amount);
         }
 
         public AgentConfigBuilder addOutput(Material material, int amount) {
-            return addOutput(new ItemStackSignature(material), amount);
+            return addOutput(signaturePool.itemStack(material), amount);
         }
 
         public Agent build(Logger logger,
@@ -655,13 +655,13 @@ public class MarketSimulationManager extends Manager {
                         if (need == null)
                             return;
 
-                        ItemStackSignature sign = new ItemStackSignature(need);
+                        ItemStackSignature sign = signaturePool.itemStack(need);
                         assetInfoProvide.newListing(sign);
                         needed.add(Pair.of(sign, (double) (need.getAmount() * amount)));
                     });
 
                     if (!needed.isEmpty()) {
-                        ItemStackSignature sign = new ItemStackSignature(result);
+                        ItemStackSignature sign = signaturePool.itemStack(result);
                         assetInfoProvide.newListing(sign);
                         production.add(Pair.of(sign, (double) (result.getAmount() * amount)));
 
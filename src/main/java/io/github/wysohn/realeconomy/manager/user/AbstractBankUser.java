@@ -10,6 +10,7 @@ import io.github.wysohn.realeconomy.inject.annotation.MinCapital;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankUser;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.banking.CapitalManagementUtil;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.listing.OrderType;
 import io.github.wysohn.realeconomy.manager.listing.TradeInfo;
@@ -21,7 +22,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser {
-    private final Map<UUID, BigDecimal> wallet = new ConcurrentHashMap<>();
+    private final Map<UUID, Money> wallet = new ConcurrentHashMap<>();
     private final Set<Integer> buyOrderIdSet = Collections.synchronizedSet(new HashSet<>());
     private final Set<Integer> sellOrderIdSet = Collections.synchronizedSet(new HashSet<>());
 
@@ -48,6 +49,13 @@ public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser
         return CapitalManagementUtil.balance(wallet, currency);
     }
 
+    /**
+     * Same as {@link #balance(Currency)}, but doesn't allocate anything.
+     */
+    public double balanceAsDouble(Currency currency) {
+        return CapitalManagementUtil.balanceAsDouble(wallet, currency);
+    }
+
     @Override
     public boolean deposit(BigDecimal value, Currency currency) {
         final boolean deposit = CapitalManagementUtil.deposit(maximum, wallet, value, currency);
@@ -55,6 +63,23 @@ public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser
         return deposit;
     }
 
+    @Override
+    public boolean deposit(double value, Currency currency) {
+        if (value < 0.0)
+            throw new RuntimeException("Cannot use negative value.");
+
+        long units;
+        try {
+            units = Money.toUnits(value, currency.getScale());
+        } catch (ArithmeticException ex) {
+            return false;
+        }
+
+        final boolean deposit = CapitalManagementUtil.deposit(maximum, wallet, units, currency);
+        notifyObservers();
+        return deposit;
+    }
+
     @Override
     public boolean withdraw(BigDecimal value, Currency currency) {
         final boolean withdraw = CapitalManagementUtil.withdraw(minimum, wallet, value, currency);
@@ -62,6 +87,23 @@ public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser
         return withdraw;
     }
 
+    @Override
+    public boolean withdraw(double value, Currency currency) {
+        if (value < 0.0)
+            throw new RuntimeException("Cannot use negative value.");
+
+        long units;
+        try {
+            units = Money.toUnits(value, currency.getScale());
+        } catch (ArithmeticException ex) {
+            return false;
+        }
+
+        final boolean withdraw = CapitalManagementUtil.withdraw(minimum, wallet, units, currency, false);
+        notifyObservers();
+        return withdraw;
+    }
+
     /**
      * Clear all wallet and return all of the content of the wallet.
      *
@@ -69,7 +111,7 @@ public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser
      */
     public List<Pair<UUID, BigDecimal>> clearWallet() {
         List<Pair<UUID, BigDecimal>> copy = new ArrayList<>();
-        wallet.forEach((uuid, bigDecimal) -> copy.add(Pair.of(uuid, bigDecimal)));
+        wallet.forEach((uuid, money) -> copy.add(Pair.of(uuid, money.toBigDecimal())));
         wallet.clear();
         notifyObservers();
         return copy;
@@ -87,7 +129,7 @@ public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser
         if (balanceProvider == null) {
             balanceProvider = new DataProviderProxy<>(range -> {
                 List<Pair<UUID, BigDecimal>> copy = new ArrayList<>();
-                wallet.forEach((uuid, bigDecimal) -> copy.add(Pair.of(uuid, bigDecimal)));
+                wallet.forEach((uuid, money) -> copy.add(Pair.of(uuid, money.toBigDecimal())));
                 copy.sort((a, b) -> b.value.compareTo(a.value));
                 return copy.subList(range.index, Math.min(copy.size(), range.index + range.size));
             }, wallet::size);
@@ -183,7 +225,7 @@ public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser
         Memento mem = (Memento) memento;
 
         wallet.clear();
-        wallet.putAll(mem.wallet);
+        CapitalManagementUtil.copy(mem.wallet, wallet);
 
         buyOrderIdSet.clear();
         buyOrderIdSet.addAll(mem.buyOrderIdSet);
@@ -195,13 +237,13 @@ public abstract class AbstractBankUser extends BukkitPlayer implements IBankUser
     }
 
     private static class Memento implements IMemento {
-        private final Map<UUID, BigDecimal> wallet = new HashMap<>();
+        private final Map<UUID, Money> wallet = new HashMap<>();
         private final Set<Integer> buyOrderIdSet = new HashSet<>();
         private final Set<Integer> sellOrderIdSet = new HashSet<>();
 
         public Memento(AbstractBankUser user) {
-            //UUID and BigDecimal are both immutable
-            wallet.putAll(user.wallet);
+            // the balances are changed in place, so they must be copied
+            CapitalManagementUtil.copy(user.wallet, wallet);
 
             buyOrderIdSet.addAll(user.buyOrderIdSet);
 
@@ -6,6 +6,7 @@ import io.github.wysohn.rapidframework3.core.inject.annotations.PluginLogger;
 import io.github.wysohn.rapidframework3.core.language.DefaultLangs;
 import io.github.wysohn.rapidframework3.core.language.ManagerLanguage;
 import io.github.wysohn.rapidframework3.core.main.Mediator;
+import io.github.wysohn.rapidframework3.utils.Validation;
 import io.github.wysohn.realeconomy.interfaces.simulation.IAgentReloadObserver;
 import io.github.wysohn.realeconomy.main.RealEconomyLangs;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
@@ -15,6 +16,8 @@ import io.github.wysohn.realeconomy.manager.banking.VisitingBankManager;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
+import io.github.wysohn.realeconomy.manager.listing.OrderInfo;
+import io.github.wysohn.realeconomy.manager.listing.OrderRequest;
 import io.github.wysohn.realeconomy.manager.listing.OrderType;
 import io.github.wysohn.realeconomy.manager.listing.PricePoint;
 import io.github.wysohn.realeconomy.manager.simulation.Agent;
@@ -23,10 +26,15 @@ import io.github.wysohn.realeconomy.manager.simulation.MarketSimulationManager;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 @Singleton
 public class SimulationMediator extends Mediator {
@@ -138,6 +146,9 @@ public class SimulationMediator extends Mediator {
         private final TradeMediator tradeMediator;
         private final TransactionManager transactionManager;
 
+        // agents are evaluated in parallel, yet one agent is never evaluated by two workers at once
+        private final ForkJoinPool pool;
+
         public MarketSimulator(ManagerLanguage lang,
                                AssetListingManager assetListingManager,
                                Logger logger,
@@ -145,6 +156,23 @@ public class SimulationMediator extends Mediator {
                                TradeMediator tradeMediator,
                                CentralBank centralBank,
                                TransactionManager transactionManager) {
+            this(lang, assetListingManager, logger, marketSimulationManager, tradeMediator, centralBank,
+                    transactionManager, Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * @param parallelism number of threads evaluating the agents in parallel
+         */
+        public MarketSimulator(ManagerLanguage lang,
+                               AssetListingManager assetListingManager,
+                               Logger logger,
+                               MarketSimulationManager marketSimulationManager,
+                               TradeMediator tradeMediator,
+                               CentralBank centralBank,
+                               TransactionManager transactionManager,
+                               int parallelism) {
+            Validation.validate(parallelism, val -> val > 0, "parallelism must be larger than 0.");
+
             this.lang = lang;
             this.centralBank = centralBank;
             this.assetListingManager = assetListingManager;
@@ -155,28 +183,45 @@ public class SimulationMediator extends Mediator {
 
             setPriority(NORM_PRIORITY - 1);
             setName("RealEconomy - MarketSimulator");
+
+            String name = getName();
+            this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName(name + " Worker #" + thread.getPoolIndex());
+                thread.setPriority(NORM_PRIORITY - 1);
+                return thread;
+            }, null, false);
         }
 
         @Override
         public void run() {
-            while (centralBank != null && !interrupted()) {
-                iterate();
+            try {
+                while (centralBank != null && !interrupted()) {
+                    iterate();
 
-                try {
-                    //Thread.sleep(1000L);
-                    Thread.sleep(ITERATION_PERIOD); // hourly
-                } catch (InterruptedException e) {
-                    logger.info(getName() + " is interrupted.");
-                    break;
+                    try {
+                        //Thread.sleep(1000L);
+                        Thread.sleep(ITERATION_PERIOD); // hourly
+                    } catch (InterruptedException e) {
+                        logger.info(getName() + " is interrupted.");
+                        break;
+                    }
                 }
+            } finally {
+                pool.shutdownNow();
             }
         }
 
         public void iterate() {
-            agentBid();
-            agentWithdraw();
-            agentProduce();
-            agentAsk();
+            List<Agent> agents = new ArrayList<>(marketSimulationManager.getAgents());
+            MarketSnapshot snapshot = MarketSnapshot.take(assetListingManager,
+                    centralBank.getBaseCurrency(),
+                    agents);
+
+            agentBid(agents, snapshot);
+            agentWithdraw(agents);
+            agentProduce(agents);
+            agentAsk(agents, snapshot);
 
             lang.broadcast(DefaultLangs.General_Line);
             lang.broadcast(RealEconomyLangs.Simulation_AgentPricesUpdated);
@@ -186,22 +231,16 @@ public class SimulationMediator extends Mediator {
         /**
          * Crate bids to purchase assets required to produce outcome
          */
-        private void agentBid() {
-            Currency currency = centralBank.getBaseCurrency();
+        private void agentBid(List<Agent> agents, MarketSnapshot snapshot) {
+            submitOrders(evaluate(agents, agent -> {
+                List<OrderIntent> intents = new ArrayList<>();
 
-            for (Agent agent : marketSimulationManager.getAgents()) {
                 // cancel previous bids first to not make duplicated orders
-                agent.getOrderIds(OrderType.BUY).forEach(orderId -> {
-                    // this is a failed buy order, so subtract the amount from the number of trades
-                    // the number being negative (agent not able to buy at the current price)
-                    //   will lead to decline in price and vice versa
-                    tradeMediator.getInfo(orderId, OrderType.BUY, orderInfo -> {
-                        UUID listingUuid = orderInfo.getListingUuid();
-                        agent.setTradeDemand(listingUuid,
-                                agent.getTradeDemand(listingUuid) - orderInfo.getAmount());
-                    });
-                    tradeMediator.cancelOrder(agent, orderId, OrderType.BUY);
-                });
+                // these are failed buy orders, so subtract the amount from the number of trades
+                // the number being negative (agent not able to buy at the current price)
+                //   will lead to decline in price and vice versa
+                cancelPrevious(agent, OrderType.BUY).forEach((listingUuid, amount) ->
+                        agent.setTradeDemand(listingUuid, agent.getTradeDemand(listingUuid) - amount));
 
                 // also, return the currency to the bank.
                 BigDecimal currentBalance = centralBank.balanceOfAccount(agent,
@@ -210,12 +249,12 @@ public class SimulationMediator extends Mediator {
                         BankingTypeRegistry.TRADING,
                         centralBank,
                         currentBalance,
-                        centralBank.getBaseCurrency());
+                        snapshot.getCurrency());
                 if (returnResult != TransactionManager.Result.OK) {
                     logger.fine("agent " + agent + " is unable to return currency to the bank.");
                     logger.fine("amount: " + currentBalance);
                     logger.fine("reason: " + returnResult);
-                    return;
+                    return intents;
                 }
 
                 agent.neededResources().forEach(pair -> {
@@ -230,7 +269,7 @@ public class SimulationMediator extends Mediator {
 
                     // if threshold passes the lower bound, we probably need to stop it
                     // this will prevent the case where the price will go sky-high indefinitely
-                    UUID listingUuid = assetListingManager.signatureToUuid(sign);
+                    UUID listingUuid = snapshot.getListingUuid(sign);
                     int currentDemand = agent.getTradeDemand(listingUuid);
                     agent.setTradeDemand(listingUuid, (int) Math.max(-INVENTORY_THRESHOLD, currentDemand));
 
@@ -240,17 +279,14 @@ public class SimulationMediator extends Mediator {
                         currentPricing = DEFAULT_PRICING_START;
 
                     // get current lowest market price
-                    BigDecimal lowestPricing = Optional.of(assetListingManager)
-                            .map(manager -> manager.getLowestPrice(sign, currency))
-                            .map(PricePoint::getPrice)
-                            .orElse(BigDecimal.ONE);
+                    BigDecimal lowestPricing = snapshot.getLowestPrice(sign);
 
                     // get (agent price + lowest price) / 2
                     BigDecimal midPoint = currentPricing.add(lowestPricing)
                             .divide(BigDecimal.valueOf(2.0), RoundingMode.HALF_UP);
 
                     // change the price according to the number of trades
-                    int demandLevel = agent.getTradeDemand(assetListingManager.signatureToUuid(sign));
+                    int demandLevel = agent.getTradeDemand(listingUuid);
                     double adjustment = 1.0 + Math.tanh(-demandLevel / INVENTORY_THRESHOLD) * MAXIMUM_ADJUST_PERCENTAGE;
                     midPoint = midPoint.multiply(BigDecimal.valueOf(adjustment));
                     midPoint = midPoint.setScale(SCALE_LIMIT, RoundingMode.CEILING);
@@ -265,7 +301,7 @@ public class SimulationMediator extends Mediator {
                             agent,
                             BankingTypeRegistry.TRADING,
                             totalPrice,
-                            centralBank.getBaseCurrency());
+                            snapshot.getCurrency());
                     if (sendResult != TransactionManager.Result.OK) {
                         logger.fine("agent " + agent + " is unable to borrow currency from the bank.");
                         logger.fine("amount: " + totalPrice);
@@ -274,29 +310,24 @@ public class SimulationMediator extends Mediator {
                     }
 
                     // make a new bid
-                    try {
-                        assetListingManager.addOrder(sign,
-                                OrderType.BUY,
-                                agent,
-                                Math.max(LOWEST_PRICE, midPoint.doubleValue()),
-                                currency,
-                                (int) Math.ceil(amount),
-                                true);
-                        assetListingManager.commitOrders();
-                    } catch (SQLException ex) {
-                        ex.printStackTrace();
-                    }
+                    intents.add(new OrderIntent(sign,
+                            OrderType.BUY,
+                            agent,
+                            Math.max(LOWEST_PRICE, midPoint.doubleValue()),
+                            amount));
                 });
-            }
+
+                return intents;
+            }), snapshot);
         }
 
         /**
          * Take needed resources from bank account
          */
-        private void agentWithdraw() {
+        private void agentWithdraw(List<Agent> agents) {
             Currency currency = centralBank.getBaseCurrency();
 
-            for (Agent agent : marketSimulationManager.getAgents()) {
+            evaluate(agents, agent -> {
                 agent.neededResources().forEach(pair -> {
                     AssetSignature sign = pair.key;
                     double value = pair.value;
@@ -305,45 +336,39 @@ public class SimulationMediator extends Mediator {
                             sign,
                             (int) Math.ceil(value)).forEach(agent::realizeAsset);
                 });
-            }
+                return Collections.emptyList();
+            });
         }
 
         /**
          * Assuming the trade was successful, we can now produce outcomes.
          * Produce them and add it to the bank account of the agent.
          */
-        private void agentProduce() {
-            Currency currency = centralBank.getBaseCurrency();
-
-            for (Agent agent : marketSimulationManager.getAgents()) {
+        private void agentProduce(List<Agent> agents) {
+            evaluate(agents, agent -> {
                 agent.produce(INVENTORY_THRESHOLD).forEach(pair -> {
                     AssetSignature sign = pair.key;
                     double amount = pair.value;
 
                     centralBank.addAccountAsset(agent, sign.asset(amount));
                 });
-            }
+                return Collections.emptyList();
+            });
         }
 
         /**
          * Since agent now have the outcomes, try selling it to the market
          */
-        private void agentAsk() {
-            Currency currency = centralBank.getBaseCurrency();
+        private void agentAsk(List<Agent> agents, MarketSnapshot snapshot) {
+            submitOrders(evaluate(agents, agent -> {
+                List<OrderIntent> intents = new ArrayList<>();
 
-            for (Agent agent : marketSimulationManager.getAgents()) {
                 // cancel previous asks first to not make duplicated orders
-                agent.getOrderIds(OrderType.SELL).forEach(orderId -> {
-                    // this is failed sell order so add amount to the number of trades
-                    // the number being positive (agent is unable to sell at the current price)
-                    //   will lead to the decline in price and vice versa
-                    tradeMediator.getInfo(orderId, OrderType.SELL, orderInfo -> {
-                        UUID listingUuid = orderInfo.getListingUuid();
-                        agent.setTradeDemand(listingUuid,
-                                agent.getTradeDemand(listingUuid) + orderInfo.getAmount());
-                    });
-                    tradeMediator.cancelOrder(agent, orderId, OrderType.SELL);
-                });
+                // these are failed sell orders so add amount to the number of trades
+                // the number being positive (agent is unable to sell at the current price)
+                //   will lead to the decline in price and vice versa
+                cancelPrevious(agent, OrderType.SELL).forEach((listingUuid, amount) ->
+                        agent.setTradeDemand(listingUuid, agent.getTradeDemand(listingUuid) + amount));
 
                 BigDecimal unitCost = agent.getFixedUnitCost();
                 agent.getProductionTypes().forEach(sign -> {
@@ -354,17 +379,14 @@ public class SimulationMediator extends Mediator {
                         return;
 
                     // get current highest market price
-                    BigDecimal highestPricing = Optional.of(assetListingManager)
-                            .map(manager -> manager.getHighestPrice(sign, currency))
-                            .map(PricePoint::getPrice)
-                            .orElse(BigDecimal.TEN);
+                    BigDecimal highestPricing = snapshot.getHighestPrice(sign);
 
                     // get (agent price + highest price) / 2
                     BigDecimal sellingPrice = unitCost.add(highestPricing)
                             .divide(BigDecimal.valueOf(2.0), RoundingMode.HALF_UP);
 
                     // change the price according to the number of trades
-                    int demandLevel = agent.getTradeDemand(assetListingManager.signatureToUuid(sign));
+                    int demandLevel = agent.getTradeDemand(snapshot.getListingUuid(sign));
                     double adjustment = 1.0 + Math.tanh(-demandLevel / INVENTORY_THRESHOLD) * MAXIMUM_ADJUST_PERCENTAGE;
                     sellingPrice = sellingPrice.multiply(BigDecimal.valueOf(adjustment));
                     sellingPrice = sellingPrice.setScale(SCALE_LIMIT, RoundingMode.CEILING);
@@ -379,20 +401,200 @@ public class SimulationMediator extends Mediator {
                     logger.fine("agent " + agent + " updating price (ask).");
                     logger.fine(sign + " : " + sellingPrice);
 
+                    intents.add(new OrderIntent(sign,
+                            OrderType.SELL,
+                            agent,
+                            Math.max(LOWEST_PRICE, sellingPrice.doubleValue()),
+                            currentStock));
+                });
+
+                return intents;
+            }), snapshot);
+        }
+
+        /**
+         * Cancel the orders of the agent made in the previous iteration.
+         * <p>
+         * The orders are read before they are cancelled, and this waits for them, so the caller can change
+         * the demand of the agent in its own worker instead of the trade thread changing it at the same time.
+         *
+         * @return amount left unfilled for each listing
+         */
+        private Map<UUID, Integer> cancelPrevious(Agent agent, OrderType type) {
+            List<Integer> orderIds = new ArrayList<>(agent.getOrderIds(type));
+            List<CompletableFuture<OrderInfo>> infos = orderIds.stream()
+                    .map(orderId -> tradeMediator.getInfo(orderId, type))
+                    .collect(Collectors.toList());
+
+            Map<UUID, Integer> amounts = new HashMap<>();
+            for (CompletableFuture<OrderInfo> info : infos) {
+                OrderInfo orderInfo;
+                try {
+                    orderInfo = info.join();
+                } catch (CompletionException ex) {
+                    // already logged by the trade mediator
+                    continue;
+                }
+
+                if (orderInfo != null)
+                    amounts.merge(orderInfo.getListingUuid(), orderInfo.getAmount(), Integer::sum);
+            }
+
+            orderIds.forEach(orderId -> tradeMediator.cancelOrder(agent, orderId, type));
+            return amounts;
+        }
+
+        /**
+         * Run the evaluation for each agent in parallel, and wait until all of them are done.
+         *
+         * @param agents     the agents
+         * @param evaluation evaluation of one agent. It only has to be thread-safe across the different agents.
+         * @return results of all the agents, in the order of the agents.
+         */
+        private <T> List<T> evaluate(List<Agent> agents, Function<Agent, Collection<T>> evaluation) {
+            try {
+                return pool.submit(() -> agents.parallelStream()
+                        .map(evaluation)
+                        .flatMap(Collection::stream)
+                        .collect(Collectors.toList())).get();
+            } catch (InterruptedException e) {
+                // let the simulator thread see it and stop
+                Thread.currentThread().interrupt();
+                return new ArrayList<>();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        /**
+         * Add all orders of this iteration, so they are finalized by a single commit instead of one per agent.
+         */
+        private void submitOrders(List<OrderIntent> intents, MarketSnapshot snapshot) {
+            List<OrderRequest> requests = new ArrayList<>();
+            for (OrderIntent intent : intents) {
+                requests.add(assetListingManager.orderRequest(intent.signature,
+                        intent.type,
+                        intent.agent,
+                        intent.price,
+                        snapshot.getCurrency(),
+                        intent.amount,
+                        true));
+            }
+
+            try {
+                assetListingManager.withOrderTransaction(() -> {
                     try {
-                        assetListingManager.addOrder(sign,
-                                OrderType.SELL,
-                                agent,
-                                Math.max(LOWEST_PRICE, sellingPrice.doubleValue()),
-                                currency,
-                                currentStock,
-                                true);
+                        assetListingManager.addOrders(requests);
                         assetListingManager.commitOrders();
                     } catch (SQLException ex) {
                         ex.printStackTrace();
+                        try {
+                            assetListingManager.rollbackOrders();
+                        } catch (SQLException ex2) {
+                            ex2.printStackTrace();
+                        }
                     }
+                    return null;
                 });
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Order an agent decided to make, yet not submitted.
+     */
+    private static class OrderIntent {
+        private final AssetSignature signature;
+        private final OrderType type;
+        private final Agent agent;
+        private final double price;
+        private final int amount;
+
+        private OrderIntent(AssetSignature signature, OrderType type, Agent agent, double price, int amount) {
+            this.signature = signature;
+            this.type = type;
+            this.agent = agent;
+            this.price = price;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Market information the agents need during one iteration. Everything is looked up once per signature
+     * before the agents are evaluated, so the agents don't have to query the same prices over and over, and
+     * the workers only read from it.
+     */
+    static class MarketSnapshot {
+        private final Currency currency;
+        private final Map<AssetSignature, UUID> listingUuids;
+        private final Map<AssetSignature, BigDecimal> lowestPrices;
+        private final Map<AssetSignature, BigDecimal> highestPrices;
+
+        private MarketSnapshot(Currency currency,
+                               Map<AssetSignature, UUID> listingUuids,
+                               Map<AssetSignature, BigDecimal> lowestPrices,
+                               Map<AssetSignature, BigDecimal> highestPrices) {
+            this.currency = currency;
+            this.listingUuids = listingUuids;
+            this.lowestPrices = lowestPrices;
+            this.highestPrices = highestPrices;
+        }
+
+        /**
+         * @param assetListingManager the listings
+         * @param currency            currency of the prices
+         * @param agents              agents to be evaluated. Their resources and productions are in the snapshot.
+         * @return the snapshot
+         */
+        static MarketSnapshot take(AssetListingManager assetListingManager,
+                                   Currency currency,
+                                   Collection<Agent> agents) {
+            Map<AssetSignature, UUID> listingUuids = new HashMap<>();
+            Map<AssetSignature, BigDecimal> lowestPrices = new HashMap<>();
+            Map<AssetSignature, BigDecimal> highestPrices = new HashMap<>();
+
+            for (Agent agent : agents) {
+                agent.neededResources().forEach(pair -> lowestPrices.computeIfAbsent(pair.key,
+                        sign -> Optional.of(assetListingManager)
+                                .map(manager -> manager.getLowestPrice(sign, currency))
+                                .map(PricePoint::getPrice)
+                                .orElse(BigDecimal.ONE)));
+                agent.getProductionTypes().forEach(sign -> highestPrices.computeIfAbsent(sign,
+                        key -> Optional.of(assetListingManager)
+                                .map(manager -> manager.getHighestPrice(key, currency))
+                                .map(PricePoint::getPrice)
+                                .orElse(BigDecimal.TEN)));
             }
+
+            lowestPrices.keySet().forEach(sign -> listingUuids.computeIfAbsent(sign,
+                    assetListingManager::signatureToUuid));
+            highestPrices.keySet().forEach(sign -> listingUuids.computeIfAbsent(sign,
+                    assetListingManager::signatureToUuid));
+
+            return new MarketSnapshot(currency,
+                    Collections.unmodifiableMap(listingUuids),
+                    Collections.unmodifiableMap(lowestPrices),
+                    Collections.unmodifiableMap(highestPrices));
+        }
+
+        public Currency getCurrency() {
+            return currency;
+        }
+
+        public UUID getListingUuid(AssetSignature sign) {
+            return listingUuids.get(sign);
+        }
+
+        public BigDecimal getLowestPrice(AssetSignature sign) {
+            return lowestPrices.getOrDefault(sign, BigDecimal.ONE);
+        }
+
+        public BigDecimal getHighestPrice(AssetSignature sign) {
+            return highestPrices.getOrDefault(sign, BigDecimal.TEN);
         }
     }
 }
@@ -12,7 +12,9 @@ import io.github.wysohn.realeconomy.interfaces.banking.IOrderIssuer;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.VisitingBankManager;
+import io.github.wysohn.realeconomy.manager.banking.bank.BankJournal;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.currency.CurrencyManager;
@@ -26,11 +28,11 @@ import java.lang.ref.Reference;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -40,8 +42,18 @@ public class TradeMediator extends Mediator {
     public static final String MATERIALS = "materials";
     public static final String MATERIAL_CATEGORY_DEFAULT = "item";
     public static final String DENY_LIST = "denyItemsList";
+    public static final String BROKER_CYCLE_FILLS = "trade.broker.cycleFills";
+    public static final String BROKER_CYCLE_MILLIS = "trade.broker.cycleMillis";
+    public static final String BROKER_WORKERS = "trade.broker.workers";
 
-    private final ExecutorService tradeExecutor = Executors.newSingleThreadExecutor();
+    public static final int MAX_PENDING_REQUESTS = 10000;
+
+    // requests are rejected rather than piling up without limit if the database can't keep up
+    private final ExecutorService tradeExecutor = new ThreadPoolExecutor(1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_PENDING_REQUESTS));
 
     private final Set<Material> itemDenySet = new HashSet<>();
 
@@ -78,12 +90,34 @@ public class TradeMediator extends Mediator {
 
     @Override
     public void load() throws Exception {
+        if (!config.get(BROKER_CYCLE_FILLS).isPresent()) {
+            config.put(BROKER_CYCLE_FILLS, TradeBroker.DEFAULT_CYCLE_FILLS);
+        }
+        if (!config.get(BROKER_CYCLE_MILLIS).isPresent()) {
+            config.put(BROKER_CYCLE_MILLIS, TradeBroker.DEFAULT_CYCLE_MILLIS);
+        }
+        if (!config.get(BROKER_WORKERS).isPresent()) {
+            config.put(BROKER_WORKERS, TradeBroker.DEFAULT_WORKERS);
+        }
+
         if (tradeBroker != null)
             tradeBroker.interrupt();
         tradeBroker = new TradeBroker(assetListingManager,
                 bankUserProviders,
                 currencyManager,
-                logger);
+                logger,
+                config.get(BROKER_CYCLE_FILLS)
+                        .map(Number.class::cast)
+                        .map(Number::intValue)
+                        .orElse(TradeBroker.DEFAULT_CYCLE_FILLS),
+                config.get(BROKER_CYCLE_MILLIS)
+                        .map(Number.class::cast)
+                        .map(Number::longValue)
+                        .orElse((long) TradeBroker.DEFAULT_CYCLE_MILLIS),
+                config.get(BROKER_WORKERS)
+                        .map(Number.class::cast)
+                        .map(Number::intValue)
+                        .orElse(TradeBroker.DEFAULT_WORKERS));
         tradeBroker.start();
 
         if (config.get(MATERIALS).isPresent()) {
@@ -166,6 +200,10 @@ public class TradeMediator extends Mediator {
         return assetListingManager.getListedOrderProvider(OrderType.BUY, category);
     }
 
+    public MarketQuote getQuote(AssetSignature sign, Currency currency) {
+        return assetListingManager.getQuote(sign, currency);
+    }
+
     public PricePoint getLastPrice(AssetSignature sign, Currency currency) {
         return assetListingManager.getLastPrice(sign, currency);
     }
@@ -194,6 +232,20 @@ public class TradeMediator extends Mediator {
         return itemDenySet.contains(material);
     }
 
+    /**
+     * @param issuer   the one issuing orders
+     * @param currency currency of the orders
+     * @return true if the issuer has {@link BankingTypeRegistry#TRADING} account in the currency owner bank,
+     * which is required to place any order.
+     */
+    public boolean hasTradingAccount(IBankUser issuer, Currency currency) {
+        Validation.assertNotNull(issuer);
+        Validation.assertNotNull(currency);
+        Validation.assertNotNull(currency.ownerBank());
+
+        return currency.ownerBank().hasAccount(issuer, BankingTypeRegistry.TRADING);
+    }
+
     /**
      * List new asset for sell. Upon successful listing, id of order will be automatically
      * added to the issuer's info.
@@ -203,52 +255,40 @@ public class TradeMediator extends Mediator {
      * @param price     offer price
      * @param currency  currency type of price
      * @param stock     number of stocks to sell
-     * @param after     what to do after order is added.
-     * @return true if success; false if issuer does not have {@link BankingTypeRegistry#TRADING} account in
-     * the currency owner bank.
+     * @param after     what to do after order is added. It runs in the same transaction as the order.
+     * @return id of the new order once it's committed; 0 if issuer does not have
+     * {@link BankingTypeRegistry#TRADING} account in the currency owner bank. Completes exceptionally if
+     * the order could not be added, and nothing is committed in that case.
      */
-    public boolean sellAsset(IBankUser issuer,
-                             AssetSignature signature,
-                             double price,
-                             Currency currency,
-                             int stock,
-                             Runnable after) {
+    public CompletableFuture<Integer> sellAsset(IBankUser issuer,
+                                                AssetSignature signature,
+                                                double price,
+                                                Currency currency,
+                                                int stock,
+                                                Runnable after) {
         Validation.assertNotNull(issuer);
         Validation.assertNotNull(signature);
         Validation.validate(price, p -> p > 0.0, "Negative or 0.0 price not allowed.");
         Validation.assertNotNull(currency);
         Validation.validate(stock, s -> s > 0, "Negative or 0 stock not allowed.");
 
-        Validation.assertNotNull(currency.ownerBank());
-
-        if (!currency.ownerBank().hasAccount(issuer, BankingTypeRegistry.TRADING)) {
-            return false;
+        if (!hasTradingAccount(issuer, currency)) {
+            return CompletableFuture.completedFuture(0);
         }
 
         assetListingManager.newListing(signature);
-        tradeExecutor.submit(() -> {
-            try {
-                assetListingManager.addOrder(signature,
-                        OrderType.SELL,
-                        issuer,
-                        price,
-                        currency,
-                        stock);
+        return submitOrders(() -> {
+            int orderId = assetListingManager.addOrder(signature,
+                    OrderType.SELL,
+                    issuer,
+                    price,
+                    currency,
+                    stock);
 
-                after.run();
+            after.run();
 
-                assetListingManager.commitOrders();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                try {
-                    assetListingManager.rollbackOrders();
-                } catch (SQLException ex2) {
-                    ex2.printStackTrace();
-                }
-            }
+            return orderId;
         });
-
-        return true;
     }
 
     /**
@@ -260,141 +300,603 @@ public class TradeMediator extends Mediator {
      * @param price    bidding price
      * @param currency currency of price
      * @param amount   goal number of assets to purchase
-     * @return true if success; false if issuer does not have {@link BankingTypeRegistry#TRADING} account in
-     * the currency owner bank.
+     * @return id of the new order once it's committed; 0 if issuer does not have
+     * {@link BankingTypeRegistry#TRADING} account in the currency owner bank, or if there is no valid sell
+     * order with the given id. Completes exceptionally if the order could not be added.
      */
-    public boolean bidAsset(IBankUser issuer,
-                            int orderId,
-                            double price,
-                            Currency currency,
-                            int amount) {
+    public CompletableFuture<Integer> bidAsset(IBankUser issuer,
+                                               int orderId,
+                                               double price,
+                                               Currency currency,
+                                               int amount) {
         Validation.assertNotNull(issuer);
         Validation.validate(orderId, id -> id > 0, "Negative or 0 is not allowed for order id.");
         Validation.validate(price, p -> p > 0.0, "Negative or 0.0 price not allowed.");
         Validation.assertNotNull(currency);
         Validation.validate(amount, s -> s > 0, "Negative or 0 amount not allowed.");
 
-        Validation.assertNotNull(currency.ownerBank());
-
-        if (!currency.ownerBank().hasAccount(issuer, BankingTypeRegistry.TRADING)) {
-            return false;
+        if (!hasTradingAccount(issuer, currency)) {
+            return CompletableFuture.completedFuture(0);
         }
 
-        tradeExecutor.submit(() -> {
-            try {
-                OrderInfo orderInfo = assetListingManager.getInfo(orderId, OrderType.SELL);
-                if (orderInfo == null)
-                    return;
-
-                UUID listingUuid = orderInfo.getListingUuid();
-                AssetListing assetListing = assetListingManager.get(listingUuid)
-                        .map(Reference::get)
-                        .orElse(null);
+        return submitOrders(() -> {
+            OrderInfo orderInfo = assetListingManager.getInfo(orderId, OrderType.SELL);
+            if (orderInfo == null)
+                return 0;
 
-                // obsolete item exist in the order list
-                // cancel it since it's not a valid order
-                if (assetListing == null) {
-                    cancelOrder(issuer, orderId, OrderType.BUY);
-                    return;
-                }
+            UUID listingUuid = orderInfo.getListingUuid();
+            AssetListing assetListing = assetListingManager.get(listingUuid)
+                    .map(Reference::get)
+                    .orElse(null);
 
-                assetListingManager.addOrder(assetListing.getSignature(),
-                        OrderType.BUY,
-                        issuer,
-                        price,
-                        currency,
-                        amount);
-
-                assetListingManager.commitOrders();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                try {
-                    assetListingManager.rollbackOrders();
-                } catch (SQLException ex2) {
-                    ex2.printStackTrace();
-                }
+            // obsolete item exist in the order list
+            // cancel it since it's not a valid order
+            if (assetListing == null) {
+                assetListingManager.cancelOrder(orderId, OrderType.SELL, id -> {
+                });
+                return 0;
             }
+
+            return assetListingManager.addOrder(assetListing.getSignature(),
+                    OrderType.BUY,
+                    issuer,
+                    price,
+                    currency,
+                    amount);
         });
+    }
+
+    /**
+     * Buy the specified asset right away from the asks at or below the given price (immediate-or-cancel).
+     * Unlike {@link #bidAsset(IBankUser, int, double, Currency, int)}, no order is left in the book; the part
+     * that can't be filled at once is simply dropped.
+     *
+     * @param issuer   the one want to buy asset
+     * @param orderId  the order id of selling asset, which decides the asset to buy
+     * @param price    highest price to pay for each
+     * @param currency currency of price
+     * @param amount   goal number of assets to purchase
+     * @return the fill once it's committed. {@link TradeResult#NO_ACCOUNT_BUYER} if issuer does not have
+     * {@link BankingTypeRegistry#TRADING} account in the currency owner bank, and {@link TradeResult#INVALID_INFO}
+     * if there is no valid sell order with the given id, without any fill. Completes exceptionally if the
+     * broker is not running.
+     */
+    public CompletableFuture<FillResult> buyImmediate(IBankUser issuer,
+                                                      int orderId,
+                                                      double price,
+                                                      Currency currency,
+                                                      int amount) {
+        Validation.assertNotNull(issuer);
+        Validation.validate(orderId, id -> id > 0, "Negative or 0 is not allowed for order id.");
+        Validation.validate(price, p -> p > 0.0, "Negative or 0.0 price not allowed.");
+        Validation.assertNotNull(currency);
+        Validation.validate(amount, s -> s > 0, "Negative or 0 amount not allowed.");
+
+        if (!hasTradingAccount(issuer, currency)) {
+            return CompletableFuture.completedFuture(FillResult.create(0, BigDecimal.ZERO,
+                    TradeResult.NO_ACCOUNT_BUYER));
+        }
+
+        OrderInfo orderInfo;
+        try {
+            orderInfo = assetListingManager.getInfo(orderId, OrderType.SELL);
+        } catch (SQLException ex) {
+            CompletableFuture<FillResult> future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+            return future;
+        }
 
-        return true;
+        if (orderInfo == null) {
+            return CompletableFuture.completedFuture(FillResult.create(0, BigDecimal.ZERO,
+                    TradeResult.INVALID_INFO));
+        }
+
+        return tradeBroker.fill(issuer, MarketKey.of(orderInfo.getListingUuid(), currency.getKey()), price, amount);
+    }
+
+    /**
+     * Same as {@link #buyImmediate(IBankUser, int, double, Currency, int)}, but at whatever the asks are.
+     */
+    public CompletableFuture<FillResult> buyMarket(IBankUser issuer,
+                                                   int orderId,
+                                                   Currency currency,
+                                                   int amount) {
+        return buyImmediate(issuer, orderId, Double.MAX_VALUE, currency, amount);
     }
 
-    public void cancelOrder(IOrderIssuer issuer, int orderId, OrderType type) {
+    /**
+     * @param issuer  the one issued the order
+     * @param orderId id of order
+     * @param type    order type
+     * @return id of the cancelled order once it's committed; 0 if there was no such order.
+     */
+    public CompletableFuture<Integer> cancelOrder(IOrderIssuer issuer, int orderId, OrderType type) {
         Validation.validate(orderId, id -> id > 0, "Negative or 0 is not allowed for order id.");
         Validation.assertNotNull(type);
         Validation.validate(orderId, id -> issuer.hasOrderId(type, id), "Issuer mismatch.");
 
-        tradeExecutor.submit(() -> {
-            try {
-                assetListingManager.cancelOrder(orderId, type, id -> issuer.removeOrderId(type, id));
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
+        return submitOrders(() -> {
+            AtomicInteger cancelled = new AtomicInteger();
+            assetListingManager.cancelOrder(orderId, type, id -> {
+                cancelled.set(id);
+                issuer.removeOrderId(type, id);
+            });
+            return cancelled.get();
         });
     }
 
-    public void getInfo(int orderId, OrderType type, Consumer<OrderInfo> consumer) {
+    /**
+     * Get the order after all the operations requested before this are done.
+     *
+     * @param orderId id of order
+     * @param type    order type
+     * @return the order; null if not exist
+     */
+    public CompletableFuture<OrderInfo> getInfo(int orderId, OrderType type) {
         Validation.validate(orderId, id -> id > 0, "Negative or 0 is not allowed for order id.");
         Validation.assertNotNull(type);
 
-        tradeExecutor.submit(() -> {
+        return submit(() -> assetListingManager.getInfo(orderId, type));
+    }
+
+    /**
+     * Run the task in the order transaction and commit it. The transaction is rolled back if the task fails.
+     * The broker may own the transaction at the moment, so this waits until its round is over.
+     */
+    private <T> CompletableFuture<T> submitOrders(Callable<T> task) {
+        return submit(() -> assetListingManager.withOrderTransaction(() -> {
             try {
-                Optional.ofNullable(assetListingManager.getInfo(orderId, type)).ifPresent(consumer);
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+                T result = task.call();
+                assetListingManager.commitOrders();
+                return result;
+            } catch (Exception ex) {
+                try {
+                    assetListingManager.rollbackOrders();
+                } catch (SQLException ex2) {
+                    ex.addSuppressed(ex2);
+                }
+                throw ex;
             }
-        });
+        }));
+    }
+
+    /**
+     * Tasks run one by one in the order they are submitted, so the requests of a user can be pipelined
+     * without waiting for each other.
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            tradeExecutor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable ex) {
+                    logger.log(Level.WARNING, "Order request failed.", ex);
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
     }
 
     static class TradeBroker extends Thread {
+        static final int DEFAULT_CYCLE_FILLS = 1000;
+        static final int DEFAULT_CYCLE_MILLIS = 500;
+        static final int DEFAULT_WORKERS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
         private final AssetListingManager assetListingManager;
         private final Set<IBankUserProvider> bankUserProviders;
         private final CurrencyManager currencyManager;
         private final Logger logger;
+        private final int cycleFills;
+        private final long cycleMillis;
+
+        // each market is always matched by the same worker, so orders of a market are never touched concurrently
+        private final ExecutorService[] workers;
+        // the broker owns the order transaction for the whole round, and the workers share it; this keeps the
+        // mark of one worker from being taken over by the other
+        private final Object orderLock = new Object();
+        // immediate orders waiting for the next round
+        private final Queue<FillRequest> pendingFills = new ConcurrentLinkedQueue<>();
+        private volatile boolean stopped = false;
 
         public TradeBroker(AssetListingManager assetListingManager,
                            Set<IBankUserProvider> bankUserProviders,
                            CurrencyManager currencyManager,
                            Logger logger) {
+            this(assetListingManager, bankUserProviders, currencyManager, logger,
+                    DEFAULT_CYCLE_FILLS, DEFAULT_CYCLE_MILLIS);
+        }
+
+        /**
+         * @param cycleFills  maximum number of matches to process in one cycle
+         * @param cycleMillis maximum time in milliseconds one cycle, or one round of the workers, can spend
+         */
+        public TradeBroker(AssetListingManager assetListingManager,
+                           Set<IBankUserProvider> bankUserProviders,
+                           CurrencyManager currencyManager,
+                           Logger logger,
+                           int cycleFills,
+                           long cycleMillis) {
+            this(assetListingManager, bankUserProviders, currencyManager, logger,
+                    cycleFills, cycleMillis, DEFAULT_WORKERS);
+        }
+
+        /**
+         * @param cycleFills  maximum number of matches to process in one cycle of a market
+         * @param cycleMillis maximum time in milliseconds one cycle of a market, or one round of the workers,
+         *                    can spend
+         * @param workers     number of threads matching the markets in parallel
+         */
+        public TradeBroker(AssetListingManager assetListingManager,
+                           Set<IBankUserProvider> bankUserProviders,
+                           CurrencyManager currencyManager,
+                           Logger logger,
+                           int cycleFills,
+                           long cycleMillis,
+                           int workers) {
+            Validation.validate(cycleFills, val -> val > 0, "cycleFills must be larger than 0.");
+            Validation.validate(cycleMillis, val -> val > 0L, "cycleMillis must be larger than 0.");
+            Validation.validate(workers, val -> val > 0, "workers must be larger than 0.");
+
             this.assetListingManager = assetListingManager;
             this.bankUserProviders = bankUserProviders;
             this.currencyManager = currencyManager;
             this.logger = logger;
+            this.cycleFills = cycleFills;
+            this.cycleMillis = cycleMillis;
 
             setPriority(NORM_PRIORITY - 1);
             setName("RealEconomy - TradeBroker");
+
+            this.workers = new ExecutorService[workers];
+            for (int i = 0; i < workers; i++) {
+                String name = getName() + " Worker #" + i;
+                this.workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setPriority(NORM_PRIORITY - 1);
+                    return thread;
+                });
+            }
         }
 
         @Override
         public void run() {
-            while (!interrupted()) {
-                processOrder();
+            try {
+                // search all the markets first, so the orders left from the last session are matched
+                Set<MarketKey> markets = assetListingManager.getMarkets();
+                while (!interrupted()) {
+                    Set<MarketKey> unfinished = dispatch(markets);
+
+                    Set<UUID> listings = unfinished.isEmpty() && pendingFills.isEmpty()
+                            // sleep until the orders are changed
+                            ? assetListingManager.awaitChangedListings()
+                            // budget ran out; keep going with the rest along with the new changes
+                            : assetListingManager.pollChangedListings();
+
+                    markets = new HashSet<>(unfinished);
+                    markets.addAll(assetListingManager.getMarkets(listings));
+                }
+            } catch (InterruptedException e) {
+                logger.info(getName() + " is interrupted.");
+            } finally {
+                // workers stop after finishing the trade in progress
+                for (ExecutorService worker : workers) {
+                    worker.shutdownNow();
+                }
+
+                stopped = true;
+                for (FillRequest fill = pendingFills.poll(); fill != null; fill = pendingFills.poll()) {
+                    fill.future.completeExceptionally(new RejectedExecutionException(getName() + " is stopped."));
+                }
+            }
+        }
+
+        /**
+         * Hand the markets over to the workers, and wait until all of them finish their cycle.
+         * A market is always assigned to the same worker. The immediate orders requested by
+         * {@link #fill(IBankUser, MarketKey, double, int)} since the last round are processed first by the
+         * worker of their market.
+         * <p>
+         * The trades of all the workers in this round are committed together once every worker is done,
+         * so the whole round costs a single commit no matter how many markets were matched. The broker owns
+         * the order transaction during the round, so the order requests of the users wait until it's committed.
+         * For that reason the whole round shares the time budget of one cycle, and the markets a worker couldn't
+         * reach in time are left for the next round. The markets of a worker are visited in random order, so the
+         * same markets don't always come last. The bank is settled right before the commit;
+         * see {@link #finish(Round)}.
+         * <p>
+         * If any worker fails, or if the thread is interrupted, the workers are told to stop and the round is
+         * rolled back once all of them are done, so nothing touches the orders after the rollback.
+         *
+         * @param markets markets to match
+         * @return markets that still have orders to match since the budget ran out; all the markets if the round
+         * is rolled back because a worker failed
+         * @throws InterruptedException the thread is interrupted while waiting for the workers. The round is
+         *                              rolled back.
+         */
+        Set<MarketKey> dispatch(Collection<MarketKey> markets) throws InterruptedException {
+            try {
+                return assetListingManager.withOrderTransaction(() -> dispatchRound(markets));
+            } catch (InterruptedException | RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private Set<MarketKey> dispatchRound(Collection<MarketKey> markets) throws InterruptedException {
+            List<FillRequest> fills = new ArrayList<>();
+            for (FillRequest fill = pendingFills.poll(); fill != null; fill = pendingFills.poll()) {
+                fills.add(fill);
+            }
+
+            Map<Integer, List<MarketKey>> partitions = markets.stream()
+                    .collect(Collectors.groupingBy(this::partition));
+            Map<Integer, List<FillRequest>> fillPartitions = fills.stream()
+                    .collect(Collectors.groupingBy(fill -> partition(fill.market)));
+            Set<Integer> indexes = new HashSet<>(partitions.keySet());
+            indexes.addAll(fillPartitions.keySet());
+
+            Round round = new Round(System.currentTimeMillis() + cycleMillis);
+            List<Future<List<MarketKey>>> futures = new ArrayList<>();
+            for (int index : indexes) {
+                List<MarketKey> partition = new ArrayList<>(partitions.getOrDefault(index, Collections.emptyList()));
+                List<FillRequest> partitionFills = fillPartitions.getOrDefault(index, Collections.emptyList());
+                Collections.shuffle(partition);
+                futures.add(workers[index].submit(() -> {
+                    // the issuers of the immediate orders are waiting, so they go first
+                    partitionFills.forEach(fill -> processFill(fill, round));
+
+                    return partition.stream()
+                            .filter(market -> !processCycle(market, round))
+                            .collect(Collectors.toList());
+                }));
+            }
+
+            Set<MarketKey> unfinished = new HashSet<>();
+            InterruptedException interrupted = null;
+            boolean failed = false;
+            for (Future<List<MarketKey>> future : futures) {
+                while (true) {
+                    try {
+                        unfinished.addAll(future.get());
+                        break;
+                    } catch (InterruptedException ex) {
+                        // keep waiting, as the worker may be in the middle of a trade
+                        round.cancelled = true;
+                        interrupted = ex;
+                    } catch (ExecutionException ex) {
+                        logger.log(Level.SEVERE, "A worker failed, so the round is rolled back.", ex.getCause());
+                        round.cancelled = true;
+                        failed = true;
+                        break;
+                    }
+                }
+            }
+
+            if (interrupted != null || failed) {
+                try {
+                    assetListingManager.rollbackOrders();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+                fills.forEach(fill -> fill.future.completeExceptionally(
+                        new RuntimeException("Trades of the round are rolled back.")));
+
+                if (interrupted != null)
+                    throw interrupted;
+                // the trades of the other workers are gone too, so all of them have to be matched again
+                return new HashSet<>(markets);
+            }
+
+            if (futures.isEmpty() || finish(round)) {
+                fills.forEach(FillRequest::complete);
+            } else {
+                fills.forEach(fill -> fill.future.completeExceptionally(
+                        new RuntimeException("Trades of the round are not committed.")));
+            }
+            return unfinished;
+        }
+
+        private int partition(MarketKey market) {
+            return Math.floorMod(market.hashCode(), workers.length);
+        }
+
+        /**
+         * Settle the trades of the round in the bank, and then commit the orders of the round.
+         * <p>
+         * The accounts of the trades stay locked from the settlement until the commit, so the bank can be
+         * reverted if anything fails on the way. If a trade can't be settled, for example because the assets or
+         * the currency were moved since it was matched, or if the commit fails, the bank is reverted and the
+         * orders are rolled back. Nothing of the round is kept then, and the orders are matched again in the
+         * next round against what the accounts actually have.
+         *
+         * @param round the round to finish
+         * @return true if committed; false if rolled back
+         */
+        private boolean finish(Round round) {
+            // banks in the order of their keys, so the locks are always taken in the same order
+            Map<CentralBank, Set<IBankUser>> parties = new TreeMap<>(Comparator.comparing(CentralBank::getKey));
+            for (Settlement settlement : round.settlements) {
+                Set<IBankUser> users = parties.computeIfAbsent(settlement.bank, bank -> new HashSet<>());
+                users.add(settlement.buyer);
+                users.add(settlement.seller);
+            }
+
+            boolean committed = withAccountLocks(new ArrayList<>(parties.entrySet()), 0,
+                    () -> settleAndCommit(round, parties.keySet()));
+            if (!committed)
+                return false;
+
+            for (Settlement settlement : round.settlements) {
+                if (settlement.fill != null) {
+                    // what the bank actually charged, rather than the price times the amount
+                    settlement.fill.add(settlement.amount,
+                            BigDecimal.valueOf(settlement.payUnits, settlement.currency.getScale()));
+                }
+
+                notifyResult(settlement.tradeInfo, settlement.buyer, settlement.seller, TradeResult.OK);
+            }
+            round.afterCommit.forEach(Runnable::run);
+            return true;
+        }
+
+        private <T> T withAccountLocks(List<Map.Entry<CentralBank, Set<IBankUser>>> parties,
+                                       int index,
+                                       Supplier<T> task) {
+            if (index == parties.size())
+                return task.get();
+
+            Map.Entry<CentralBank, Set<IBankUser>> entry = parties.get(index);
+            return entry.getKey().withAccountLocks(entry.getValue(),
+                    () -> withAccountLocks(parties, index + 1, task));
+        }
+
+        /**
+         * Only use it while holding the locks of all the accounts of the round.
+         */
+        private boolean settleAndCommit(Round round, Collection<CentralBank> banks) {
+            Map<CentralBank, BankJournal> journals = new LinkedHashMap<>();
+            try {
+                for (CentralBank bank : banks) {
+                    journals.put(bank, bank.openJournal());
+                }
+
+                for (Settlement settlement : round.settlements) {
+                    TradeResult result = settle(settlement);
+                    if (result != TradeResult.OK) {
+                        logger.warning("Failed to settle the trade, so the round is rolled back. Result: " + result);
+                        logger.warning("Trade Info: " + settlement.tradeInfo);
+                        rollback(journals);
+                        return false;
+                    }
+                }
+
+                try {
+                    assetListingManager.commitOrders();
+                } catch (SQLException ex) {
+                    logger.log(Level.SEVERE, "Failed to commit the trades. They are rolled back and not settled.", ex);
+                    rollback(journals);
+                    return false;
+                }
+                return true;
+            } finally {
+                journals.forEach((bank, journal) -> bank.closeJournal(journal));
+            }
+        }
+
+        private void rollback(Map<CentralBank, BankJournal> journals) {
+            journals.forEach((bank, journal) -> bank.rollbackJournal(journal));
+            try {
+                assetListingManager.rollbackOrders();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        /**
+         * {@link #processCycle(MarketKey)} for all the markets.
+         */
+        boolean processCycle() {
+            return processCycle(null);
+        }
 
+        /**
+         * Keep matching the orders until nothing is left to be matched, or until the fill/time budget
+         * of the cycle runs out. Trades in the cycle are committed all at once at the end of the cycle.
+         *
+         * @param market market to match; null to match all the markets
+         * @return true if nothing is left to be matched; false if the budget ran out first
+         */
+        boolean processCycle(MarketKey market) {
+            return inTransaction(() -> {
+                Round round = new Round(System.currentTimeMillis() + cycleMillis);
                 try {
-                    Thread.sleep(1000L);
-                } catch (InterruptedException e) {
-                    logger.info(getName() + " is interrupted.");
+                    return processCycle(market, round);
+                } finally {
+                    finish(round);
                 }
+            });
+        }
+
+        /**
+         * @param market market to match; null to match all the markets
+         * @param round  the round the trades belong to. The caller finishes it, so the cycles of
+         *               multiple markets can be committed at once. The cycle also stops once the round
+         *               runs out of time or is cancelled.
+         * @return see {@link #processCycle(MarketKey)}
+         */
+        boolean processCycle(MarketKey market, Round round) {
+            long start = System.currentTimeMillis();
+            int matches = 0;
+            int fills = 0;
+            boolean drained = false;
+
+            while (matches < cycleFills
+                    && System.currentTimeMillis() - start < cycleMillis
+                    && !round.isOver()
+                    && !isInterrupted()
+                    && !Thread.currentThread().isInterrupted()) {
+                TradeResult result = processOrder(market, round);
+                if (result == null) {
+                    drained = true;
+                    break;
+                }
+
+                matches++;
+                if (result == TradeResult.OK)
+                    fills++;
+            }
+
+            if (matches > 0) {
+                logger.fine(Thread.currentThread().getName() + " cycle of " + market + ": " + fills
+                        + " fills out of " + matches + " matches in " + (System.currentTimeMillis() - start) + "ms.");
             }
+
+            return drained;
         }
 
-        void processOrder() {
-            assetListingManager.peekMatchingOrder(tradeInfo -> {
+        /**
+         * Process one best matching pair, and commit and settle the trade right away.
+         *
+         * @return the result; null if there was nothing to match
+         */
+        TradeResult processOrder() {
+            return inTransaction(() -> {
+                Round round = new Round(System.currentTimeMillis() + cycleMillis);
+                try {
+                    return processOrder(null, round);
+                } finally {
+                    finish(round);
+                }
+            });
+        }
+
+        /**
+         * Process one best matching pair of the given market. Only the failed trade is reverted.
+         *
+         * @param market market to match; null to match all the markets
+         * @param round  the round the trade belongs to. The caller finishes it, so multiple trades
+         *               can be committed at once.
+         * @return the result; null if there was nothing to match
+         */
+        TradeResult processOrder(MarketKey market, Round round) {
+            TradeResult[] outcome = new TradeResult[1];
+
+            Consumer<TradeInfo> matcher = tradeInfo -> {
                 // skip if no matching orders
                 if(tradeInfo == null)
                     return;
 
+                // there was a pair to match. The result will be overridden if trade proceeds.
+                outcome[0] = TradeResult.INVALID_INFO;
+
                 // get buy/sell pair
-                IBankUser buyer = bankUserProviders.stream()
-                        .map(provider -> provider.get(tradeInfo.getBuyer()))
-                        .filter(Objects::nonNull)
-                        .findFirst()
-                        .orElse(null);
-                IBankUser seller = bankUserProviders.stream()
-                        .map(provider -> provider.get(tradeInfo.getSeller()))
-                        .filter(Objects::nonNull)
-                        .findFirst()
-                        .orElse(null);
+                IBankUser buyer = findUser(tradeInfo.getBuyer());
+                IBankUser seller = findUser(tradeInfo.getSeller());
 
                 // cannot proceed if either trading end is not found
                 if (buyer == null) {
@@ -408,192 +910,418 @@ public class TradeMediator extends Mediator {
                     return;
                 }
 
-                Currency currency = currencyManager.get(tradeInfo.getCurrencyUuid())
-                        .map(Reference::get)
-                        .orElse(null);
+                outcome[0] = processTrade(tradeInfo, buyer, seller, round, null);
+            };
 
-                // weird currency found.
-                CentralBank bank = null;
-                if (currency == null || (bank = currency.ownerBank()) == null) {
-                    cancelBoth(tradeInfo);
-                    logger.warning("Cannot proceed with unknown Currency or bank not found. Orders are deleted.");
-                    logger.warning("Trade Info: " + tradeInfo);
-                    return;
-                }
+            if (market == null)
+                assetListingManager.peekMatchingOrder(matcher);
+            else
+                assetListingManager.peekMatchingOrder(market, matcher);
+
+            return outcome[0];
+        }
+
+        /**
+         * Buy from the asks of the market right away. The request is processed in the next round by the worker
+         * of the market, so it never races with the cycles of the same market, and it is committed along with
+         * the other trades of the round. The buy side is never added to the book; whatever is not filled is
+         * simply dropped.
+         *
+         * @param buyer  the one buying
+         * @param market market to buy from
+         * @param limit  highest price to pay for each; {@link Double#MAX_VALUE} to take any price
+         * @param amount goal number of assets to purchase
+         * @return the result once the round is committed and settled. Completes exceptionally if the broker is
+         * stopped, or if the round failed to commit.
+         */
+        CompletableFuture<FillResult> fill(IBankUser buyer, MarketKey market, double limit, int amount) {
+            FillRequest fill = new FillRequest(buyer, market, limit, amount);
+            pendingFills.add(fill);
+            // no one would take it if the broker stopped in the meantime
+            if (stopped && pendingFills.remove(fill))
+                fill.future.completeExceptionally(new RejectedExecutionException(getName() + " is stopped."));
+
+            // wake up the broker, even if no order is changed
+            assetListingManager.notifyChangedListing(market.getListingUuid());
+            return fill.future;
+        }
 
-                // check if trading account exist
-                // usually, this is checked before the order has made, yet
-                // account may be deleted for some reason while order is pending
-                if (!bank.hasAccount(buyer, BankingTypeRegistry.TRADING)) {
+        /**
+         * Match the buyer against the lowest asks one by one until the goal amount is matched, or until
+         * the lowest ask is above the limit. At most {@link #cycleFills} asks are visited. The issuer is
+         * waiting for it, so only the cancellation of the round stops it early, not the time budget.
+         */
+        private void processFill(FillRequest fill, Round round) {
+            for (int i = 0; i < cycleFills && fill.matched < fill.amount && !round.cancelled; i++) {
+                OrderInfo ask = assetListingManager.getLowestAsk(fill.market);
+                if (ask == null || ask.getPrice() > fill.limit)
+                    break;
+
+                IBankUser seller = findUser(ask.getIssuer());
+                if (seller == null) {
                     // delete order so other orders can be processed.
-                    cancel(tradeInfo.getBuyId(), OrderType.BUY);
-                    return;
-                }
-                if (!bank.hasAccount(seller, BankingTypeRegistry.TRADING)) {
-                    // delete order so other orders can be processed.
-                    cancel(tradeInfo.getSellId(), OrderType.SELL);
-                    return;
+                    cancel(ask.getOrderId(), OrderType.SELL);
+                    continue;
                 }
 
-                // if something went wrong, there might be the order that's not owned by the buyer/seller
-                // delete them here if that's the case
-                if (!buyer.hasOrderId(OrderType.BUY, tradeInfo.getBuyId())) {
-                    cancel(tradeInfo.getBuyId(), OrderType.BUY);
-                    return;
-                }
-                if (!seller.hasOrderId(OrderType.SELL, tradeInfo.getSellId())) {
-                    cancel(tradeInfo.getSellId(), OrderType.SELL);
-                    return;
-                }
+                // 0 as the buy order id, since there is no resting order behind it
+                TradeInfo tradeInfo = TradeInfo.create(ask.getOrderId(),
+                        ask.getIssuer(),
+                        ask.getPrice(),
+                        ask.getAmount(),
+                        0,
+                        fill.buyer.getUuid(),
+                        fill.limit,
+                        fill.amount - fill.matched,
+                        fill.market.getCurrencyUuid(),
+                        fill.market.getListingUuid(),
+                        ask.getCategoryId());
+
+                TradeResult result = processTrade(tradeInfo, fill.buyer, seller, round, fill);
+                fill.result = result;
+
+                // other failures only take the ask out of the book, so try the next one
+                if (result == null
+                        || result == TradeResult.WITHDRAW_REFUSED
+                        || result == TradeResult.NO_ACCOUNT_BUYER)
+                    break;
+            }
+        }
 
-                // get listing info
-                AssetListing listing = assetListingManager.get(tradeInfo.getListingUuid())
-                        .map(Reference::get)
-                        .orElse(null);
-
-                CentralBank finalBank = bank;
-                TradeResult result = null;
-                synchronized (finalBank) {
-                    result = FailSensitiveTradeResult.of(() -> {
-                        // order exist but listing doesn't? Weird.
-                        if (listing == null) {
-                            logger.warning("Found broken orders. They are deleted.");
-                            logger.warning("Trade Info: " + tradeInfo);
-                            cancelBoth(tradeInfo);
-                            return TradeResult.INVALID_INFO;
-                        }
-                        AssetSignature signature = listing.getSignature();
-
-                        // amount, price
-                        int amount = Math.min(tradeInfo.getStock(), tradeInfo.getAmount()); // use smaller of buy/sell
-                        double price = tradeInfo.getAsk(); // use the seller defined price
-
-                        // take asset from seller account
-                        int amountsRemoved = finalBank.removeAccountAsset(seller, signature, amount).stream()
-                                .map(Asset::getNumericalMeasure)
-                                .reduce(Double::sum)
-                                .map(Number.class::cast)
-                                .map(Number::intValue)
-                                .orElse(0);
-
-                        // trade only if at least one asset is removed successfully
-                        if (amountsRemoved > 0) {
-                            BigDecimal payTotal = BigDecimal.valueOf(price).multiply(BigDecimal.valueOf(amountsRemoved));
-
-                            // take currency from buyer account
-                            if (!finalBank.withdrawAccount(buyer, BankingTypeRegistry.TRADING, payTotal, currency)) {
-                                // cancel it since this buyer is unable to pay the initially promised price
-                                // give other buyers chance to purchase
-                                cancel(tradeInfo.getBuyId(), OrderType.BUY);
-                                buyer.removeOrderId(OrderType.BUY, tradeInfo.getBuyId());
-                                return TradeResult.WITHDRAW_REFUSED;
-                            }
+        /**
+         * Match the pair, which is the common part of {@link #processOrder(MarketKey, Round)}
+         * and {@link #processFill(FillRequest, Round)}. The bank is settled later by {@link #finish(Round)}.
+         *
+         * @param fill the immediate order the trade is made for, which receives the amount traded and paid;
+         *             null if it's a trade of the resting orders
+         * @return the result; null if it's an un-handled case, and the broker is stopped in that case.
+         */
+        private TradeResult processTrade(TradeInfo tradeInfo,
+                                         IBankUser buyer,
+                                         IBankUser seller,
+                                         Round round,
+                                         FillRequest fill) {
+            Currency currency = currencyManager.get(tradeInfo.getCurrencyUuid())
+                    .map(Reference::get)
+                    .orElse(null);
+
+            // weird currency found.
+            CentralBank bank = null;
+            if (currency == null || (bank = currency.ownerBank()) == null) {
+                cancelBoth(tradeInfo);
+                logger.warning("Cannot proceed with unknown Currency or bank not found. Orders are deleted.");
+                logger.warning("Trade Info: " + tradeInfo);
+                return TradeResult.INVALID_INFO;
+            }
 
-                            // give currency to the seller account
-                            if (!finalBank.depositAccount(seller, BankingTypeRegistry.TRADING, payTotal, currency)) {
-                                // something wrong with this seller's account, so cancel it
-                                // give other listed items the chance to be sold
-                                cancel(tradeInfo.getSellId(), OrderType.SELL);
-                                seller.removeOrderId(OrderType.SELL, tradeInfo.getSellId());
-                                return TradeResult.DEPOSIT_REFUSED;
-                            }
+            // check if trading account exist
+            // usually, this is checked before the order has made, yet
+            // account may be deleted for some reason while order is pending
+            if (!bank.hasAccount(buyer, BankingTypeRegistry.TRADING)) {
+                // delete order so other orders can be processed.
+                cancel(tradeInfo.getBuyId(), OrderType.BUY);
+                return TradeResult.NO_ACCOUNT_BUYER;
+            }
+            if (!bank.hasAccount(seller, BankingTypeRegistry.TRADING)) {
+                // delete order so other orders can be processed.
+                cancel(tradeInfo.getSellId(), OrderType.SELL);
+                return TradeResult.NO_ACCOUNT_SELLER;
+            }
 
-                            // give asset to the buyer account
-                            finalBank.addAccountAsset(buyer, signature.asset((double) amountsRemoved));
+            // if something went wrong, there might be the order that's not owned by the buyer/seller
+            // delete them here if that's the case
+            if (isResting(tradeInfo.getBuyId()) && !buyer.hasOrderId(OrderType.BUY, tradeInfo.getBuyId())) {
+                cancel(tradeInfo.getBuyId(), OrderType.BUY);
+                return TradeResult.INVALID_INFO;
+            }
+            if (!seller.hasOrderId(OrderType.SELL, tradeInfo.getSellId())) {
+                cancel(tradeInfo.getSellId(), OrderType.SELL);
+                return TradeResult.INVALID_INFO;
+            }
 
-                            // adjust the removed amount
-                            try {
-                                int newStock = tradeInfo.getStock() - amountsRemoved;
-                                if (newStock == 0) {
-                                    assetListingManager.cancelOrder(tradeInfo.getSellId(), OrderType.SELL, index ->
-                                            seller.removeOrderId(OrderType.SELL, index));
-                                } else if (newStock > 0) {
-                                    assetListingManager.editOrder(tradeInfo.getSellId(),
-                                            OrderType.SELL,
-                                            newStock);
-                                } else {
-                                    throw new RuntimeException("new stock became negative. How?");
-                                }
-
-                                int newAmount = tradeInfo.getAmount() - amountsRemoved;
-                                if (newAmount == 0) {
-                                    assetListingManager.cancelOrder(tradeInfo.getBuyId(), OrderType.BUY, index ->
-                                            buyer.removeOrderId(OrderType.BUY, index));
-                                } else if (newAmount > 0) {
-                                    assetListingManager.editOrder(tradeInfo.getBuyId(),
-                                            OrderType.BUY,
-                                            newAmount);
-                                } else {
-                                    throw new RuntimeException("new amount became negative. How?");
-                                }
-
-                                // log results
-                                logTrade(tradeInfo, amountsRemoved);
-                            } catch (SQLException ex) {
-                                throw new RuntimeException("Trade Info: " + tradeInfo, ex);
-                            }
-                        } else {
-                            // No asset was removed from the seller
-                            // in this case, the seller is unable to deliver the promised asset to the buyer
-                            // cancel this order so other sellers can get chance to sell their assets.
-                            cancel(tradeInfo.getSellId(), OrderType.SELL);
-                            seller.removeOrderId(OrderType.SELL, tradeInfo.getSellId());
-                            return TradeResult.INSUFFICIENT_ASSETS;
-                        }
+            // get listing info
+            AssetListing listing = assetListingManager.get(tradeInfo.getListingUuid())
+                    .map(Reference::get)
+                    .orElse(null);
+
+            // lock order: accounts of the bank -> order transaction
+            TradeResult result = match(tradeInfo, buyer, seller, bank, currency, listing, round, fill);
+
+            // since this is an un-handled case, stop the broker
+            if (result == null) {
+                interrupt();
+            }
+
+            // the successful trade is reported once it's settled
+            if (result != TradeResult.OK)
+                round.afterCommit(() -> notifyResult(tradeInfo, buyer, seller, result));
+
+            return result;
+        }
+
+        private void notifyResult(TradeInfo tradeInfo, IBankUser buyer, IBankUser seller, TradeResult result) {
+            // the buyer of the immediate order gets the result directly
+            if (isResting(tradeInfo.getBuyId()))
+                buyer.handleTransactionResult(tradeInfo, OrderType.BUY, result);
+            seller.handleTransactionResult(tradeInfo, OrderType.SELL, result);
+        }
 
-                        // finalize SQL transaction
-                        try {
-                            assetListingManager.commitOrders();
-                        } catch (SQLException ex) {
-                            ex.printStackTrace();
+        /**
+         * Run the task as the owner of the order transaction.
+         */
+        private <T> T inTransaction(Callable<T> task) {
+            try {
+                return assetListingManager.withOrderTransaction(task);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private IBankUser findUser(UUID uuid) {
+            return bankUserProviders.stream()
+                    .map(provider -> provider.get(uuid))
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        /**
+         * @return false if the id is of the immediate order, which is never in the book
+         */
+        private static boolean isResting(int orderId) {
+            return orderId > 0;
+        }
+
+        /**
+         * Check if the bank can settle the trade on top of what the round already promised to settle, and
+         * adjust the orders if so. The trial is always reverted, and the trade is reserved in the round
+         * instead, so the bank is not changed until the round is committed.
+         */
+        private TradeResult match(TradeInfo tradeInfo,
+                                  IBankUser buyer,
+                                  IBankUser seller,
+                                  CentralBank bank,
+                                  Currency currency,
+                                  AssetListing listing,
+                                  Round round,
+                                  FillRequest fill) {
+            // only the accounts of this trade are locked, so trades of other users proceed in parallel
+            return bank.withAccountLocks(buyer, seller, () -> FailSensitiveTradeResult.of(() -> {
+                // order exist but listing doesn't? Weird.
+                if (listing == null) {
+                    logger.warning("Found broken orders. They are deleted.");
+                    logger.warning("Trade Info: " + tradeInfo);
+                    cancelBoth(tradeInfo);
+                    return TradeResult.INVALID_INFO;
+                }
+                AssetSignature signature = listing.getSignature();
+                Reservation buying = round.reservation(currency, buyer);
+                Reservation selling = round.reservation(currency, seller);
+
+                // amount, price
+                int amount = Math.min(tradeInfo.getStock(), tradeInfo.getAmount()); // use smaller of buy/sell
+                double price = tradeInfo.getAsk(); // use the seller defined price
+
+                // only what is not yet promised to the other trades of the round can be sold
+                int available = (int) bank.countAccountAsset(seller, signature) - selling.assets(signature);
+                int amountsRemoved = Math.max(0, Math.min(amount, available));
+                // kept in the scale of the currency, so settling allocates nothing
+                long payUnits = Money.multiply(Money.toUnits(price, currency.getScale()), amountsRemoved);
+
+                TradeResult result = amountsRemoved > 0
+                        ? tryPayment(bank, buyer, seller, currency, buying.withdrawUnits + payUnits,
+                        selling.depositUnits + payUnits)
+                        : TradeResult.INSUFFICIENT_ASSETS;
+                switch (result) {
+                    case WITHDRAW_REFUSED:
+                        // cancel it since this buyer is unable to pay the initially promised price
+                        // give other buyers chance to purchase
+                        if (isResting(tradeInfo.getBuyId())) {
+                            cancel(tradeInfo.getBuyId(), OrderType.BUY);
+                            round.afterCommit(() -> buyer.removeOrderId(OrderType.BUY, tradeInfo.getBuyId()));
                         }
+                        return result;
+                    case DEPOSIT_REFUSED:
+                        // something wrong with this seller's account, so cancel it
+                        // give other listed items the chance to be sold
+                    case INSUFFICIENT_ASSETS:
+                        // the seller is unable to deliver the promised asset to the buyer
+                        // cancel this order so other sellers can get chance to sell their assets.
+                        cancel(tradeInfo.getSellId(), OrderType.SELL);
+                        round.afterCommit(() -> seller.removeOrderId(OrderType.SELL, tradeInfo.getSellId()));
+                        return result;
+                }
 
-                        return TradeResult.OK;
-                    }).handleException(Throwable::printStackTrace)
-                            .addStateSupplier("buyer", buyer::saveState)
-                            .addStateConsumer("buyer", buyer::restoreState)
-                            .addStateSupplier("seller", seller::saveState)
-                            .addStateConsumer("seller", seller::restoreState)
-                            .addStateSupplier("bank", bank::saveState)
-                            .addStateConsumer("bank", bank::restoreState)
-                            .onFail(() -> {
-                                try {
-                                    assetListingManager.rollbackOrders();
-                                } catch (SQLException ex) {
-                                    ex.printStackTrace();
-                                }
-                            }).run();
+                // adjust the traded amount
+                try {
+                    adjustOrders(tradeInfo, buyer, seller, amountsRemoved, round);
+                } catch (SQLException ex) {
+                    throw new RuntimeException("Trade Info: " + tradeInfo, ex);
                 }
 
-                // since this is an un-handled case, stop the broker
-                if (result == null) {
-                    interrupt();
+                // promise it, so the other trades of the round cannot use it
+                selling.reserveAssets(signature, amountsRemoved);
+                buying.withdrawUnits += payUnits;
+                selling.depositUnits += payUnits;
+                round.settlements.add(new Settlement(tradeInfo, buyer, seller, bank, currency, signature,
+                        amountsRemoved, payUnits, fill));
+                if (fill != null)
+                    fill.matched += amountsRemoved;
+
+                return TradeResult.OK;
+            }).handleException(Throwable::printStackTrace)
+                    .run());
+        }
+
+        /**
+         * Try the payment and revert it right away. Only the changes of the trial are reverted, rather than
+         * all the accounts of the bank.
+         */
+        private TradeResult tryPayment(CentralBank bank,
+                                       IBankUser buyer,
+                                       IBankUser seller,
+                                       Currency currency,
+                                       long withdrawUnits,
+                                       long depositUnits) {
+            BankJournal journal = bank.openJournal();
+            try {
+                if (!bank.withdrawAccountUnits(buyer, BankingTypeRegistry.TRADING, withdrawUnits, currency))
+                    return TradeResult.WITHDRAW_REFUSED;
+                if (!bank.depositAccountUnits(seller, BankingTypeRegistry.TRADING, depositUnits, currency))
+                    return TradeResult.DEPOSIT_REFUSED;
+                return TradeResult.OK;
+            } finally {
+                bank.rollbackJournal(journal);
+                bank.closeJournal(journal);
+            }
+        }
+
+        /**
+         * Move the assets and the currency of the trade. The changes are recorded in the journal of the round,
+         * so they are reverted along with the rest of the round if any of it fails.
+         */
+        private TradeResult settle(Settlement settlement) {
+            CentralBank bank = settlement.bank;
+            IBankUser buyer = settlement.buyer;
+            IBankUser seller = settlement.seller;
+
+            return FailSensitiveTradeResult.of(() -> {
+                // take asset from seller account
+                int amountsRemoved = bank.removeAccountAsset(seller, settlement.signature, settlement.amount)
+                        .stream()
+                        .map(Asset::getNumericalMeasure)
+                        .reduce(Double::sum)
+                        .map(Number.class::cast)
+                        .map(Number::intValue)
+                        .orElse(0);
+                if (amountsRemoved != settlement.amount)
+                    return TradeResult.INSUFFICIENT_ASSETS;
+
+                // take currency from buyer account
+                if (!bank.withdrawAccountUnits(buyer,
+                        BankingTypeRegistry.TRADING,
+                        settlement.payUnits,
+                        settlement.currency))
+                    return TradeResult.WITHDRAW_REFUSED;
+
+                // give currency to the seller account
+                if (!bank.depositAccountUnits(seller,
+                        BankingTypeRegistry.TRADING,
+                        settlement.payUnits,
+                        settlement.currency))
+                    return TradeResult.DEPOSIT_REFUSED;
+
+                // give asset to the buyer account
+                bank.addAccountAsset(buyer, settlement.signature.asset((double) settlement.amount));
+                return TradeResult.OK;
+            }).handleException(Throwable::printStackTrace)
+                    .run();
+        }
+
+        /**
+         * Reflect the traded amount to the orders. The order transaction is shared by all the workers,
+         * so this is done while holding the order lock, and only the changes of this trade are reverted
+         * if something goes wrong.
+         */
+        private void adjustOrders(TradeInfo tradeInfo,
+                                  IBankUser buyer,
+                                  IBankUser seller,
+                                  int amountsRemoved,
+                                  Round round) throws SQLException {
+            synchronized (orderLock) {
+                // so only this trade is reverted if it fails
+                assetListingManager.markOrders();
+
+                try {
+                    int newStock = tradeInfo.getStock() - amountsRemoved;
+                    if (newStock == 0) {
+                        assetListingManager.cancelOrder(tradeInfo.getSellId(), OrderType.SELL, index ->
+                                round.afterCommit(() -> seller.removeOrderId(OrderType.SELL, index)));
+                    } else if (newStock > 0) {
+                        assetListingManager.editOrder(tradeInfo.getSellId(),
+                                OrderType.SELL,
+                                newStock);
+                    } else {
+                        throw new RuntimeException("new stock became negative. How?");
+                    }
+
+                    int newAmount = tradeInfo.getAmount() - amountsRemoved;
+                    if (newAmount < 0) {
+                        throw new RuntimeException("new amount became negative. How?");
+                    } else if (!isResting(tradeInfo.getBuyId())) {
+                        // the immediate order is not in the book, so there is nothing to adjust
+                    } else if (newAmount == 0) {
+                        assetListingManager.cancelOrder(tradeInfo.getBuyId(), OrderType.BUY, index ->
+                                round.afterCommit(() -> buyer.removeOrderId(OrderType.BUY, index)));
+                    } else {
+                        assetListingManager.editOrder(tradeInfo.getBuyId(),
+                                OrderType.BUY,
+                                newAmount);
+                    }
+
+                    // log results
+                    logTrade(tradeInfo, amountsRemoved);
+                } catch (SQLException | RuntimeException ex) {
+                    assetListingManager.rollbackOrdersToMark();
+                    throw ex;
                 }
 
-                buyer.handleTransactionResult(tradeInfo, OrderType.BUY, result);
-                seller.handleTransactionResult(tradeInfo, OrderType.SELL, result);
-            });
+                // the round commits it along with the other trades
+                try {
+                    assetListingManager.releaseOrdersMark();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
         }
 
         private void cancelBoth(TradeInfo tradeInfo) {
-            try {
-                assetListingManager.cancelOrder(tradeInfo.getBuyId(), OrderType.BUY, index -> {
-                });
-                assetListingManager.cancelOrder(tradeInfo.getSellId(), OrderType.SELL, index -> {
-                });
-                assetListingManager.commitOrders();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            synchronized (orderLock) {
+                try {
+                    if (isResting(tradeInfo.getBuyId()))
+                        assetListingManager.cancelOrder(tradeInfo.getBuyId(), OrderType.BUY, index -> {
+                        });
+                    assetListingManager.cancelOrder(tradeInfo.getSellId(), OrderType.SELL, index -> {
+                    });
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
             }
         }
 
         private void cancel(int orderId, OrderType type) {
-            try {
-                assetListingManager.cancelOrder(orderId, type, index -> {
-                });
-                assetListingManager.commitOrders();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            if (!isResting(orderId))
+                return;
+
+            synchronized (orderLock) {
+                try {
+                    assetListingManager.cancelOrder(orderId, type, index -> {
+                    });
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
             }
         }
 
@@ -604,6 +1332,132 @@ public class TradeMediator extends Mediator {
                 ex.printStackTrace();
             }
         }
+
+        /**
+         * Trades matched by the workers in one round, which are settled when the round is committed.
+         */
+        private static class Round {
+            private final Queue<Settlement> settlements = new ConcurrentLinkedQueue<>();
+            private final Queue<Runnable> afterCommit = new ConcurrentLinkedQueue<>();
+            // currency -> user -> what the settlements of this round take from or give to the user
+            private final Map<UUID, Map<UUID, Reservation>> reservations = new ConcurrentHashMap<>();
+            // time in milliseconds the workers stop matching, so the round doesn't hold the orders for too long
+            private final long deadline;
+            // the round is going to be rolled back, so the workers stop as soon as possible
+            private volatile boolean cancelled = false;
+
+            private Round(long deadline) {
+                this.deadline = deadline;
+            }
+
+            private boolean isOver() {
+                return cancelled || System.currentTimeMillis() >= deadline;
+            }
+
+            /**
+             * Only use it while holding the account locks of the user, as the reservation itself is not
+             * thread safe.
+             */
+            private Reservation reservation(Currency currency, IBankUser user) {
+                return reservations.computeIfAbsent(currency.getKey(), uuid -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(user.getUuid(), uuid -> new Reservation());
+            }
+
+            /**
+             * Run the task only if the round is committed, such as the changes to the users, which are not
+             * reverted along with the orders.
+             */
+            private void afterCommit(Runnable task) {
+                afterCommit.add(task);
+            }
+        }
+
+        private static class Reservation {
+            private final Map<AssetSignature, Integer> assets = new HashMap<>();
+            private long withdrawUnits = 0L;
+            private long depositUnits = 0L;
+
+            private int assets(AssetSignature signature) {
+                return assets.getOrDefault(signature, 0);
+            }
+
+            private void reserveAssets(AssetSignature signature, int amount) {
+                assets.merge(signature, amount, Integer::sum);
+            }
+        }
+
+        /**
+         * The trade to be settled in the bank when the round is committed.
+         */
+        private static class Settlement {
+            private final TradeInfo tradeInfo;
+            private final IBankUser buyer;
+            private final IBankUser seller;
+            private final CentralBank bank;
+            private final Currency currency;
+            private final AssetSignature signature;
+            private final int amount;
+            private final long payUnits;
+            private final FillRequest fill;
+
+            private Settlement(TradeInfo tradeInfo,
+                               IBankUser buyer,
+                               IBankUser seller,
+                               CentralBank bank,
+                               Currency currency,
+                               AssetSignature signature,
+                               int amount,
+                               long payUnits,
+                               FillRequest fill) {
+                this.tradeInfo = tradeInfo;
+                this.buyer = buyer;
+                this.seller = seller;
+                this.bank = bank;
+                this.currency = currency;
+                this.signature = signature;
+                this.amount = amount;
+                this.payUnits = payUnits;
+                this.fill = fill;
+            }
+        }
+
+        /**
+         * The immediate order waiting for its round. Only the worker of the market touches it until the round
+         * is over.
+         */
+        private static class FillRequest {
+            private final IBankUser buyer;
+            private final MarketKey market;
+            private final double limit;
+            private final int amount;
+            private final CompletableFuture<FillResult> future = new CompletableFuture<>();
+
+            // matched in the round so far, and what is actually settled once the round is committed
+            private int matched = 0;
+            private int filled = 0;
+            private BigDecimal paid = BigDecimal.ZERO;
+            private TradeResult result = null;
+
+            private FillRequest(IBankUser buyer, MarketKey market, double limit, int amount) {
+                this.buyer = buyer;
+                this.market = market;
+                this.limit = limit;
+                this.amount = amount;
+            }
+
+            private void add(int traded, BigDecimal cost) {
+                filled += traded;
+                paid = paid.add(cost);
+            }
+
+            private FillResult toResult() {
+                return FillResult.create(filled, paid, result);
+            }
+
+            private void complete() {
+                future.complete(toResult());
+            }
+        }
     }
 
     public static class FailSensitiveTradeResult extends FailSensitiveTaskGeneric<FailSensitiveTradeResult, TradeResult> {
@@ -617,6 +1471,58 @@ public class TradeMediator extends Mediator {
         }
     }
 
+    /**
+     * Outcome of the immediate order.
+     */
+    public static class FillResult {
+        private final int filled;
+        private final BigDecimal paid;
+        private final TradeResult result;
+
+        private FillResult(int filled, BigDecimal paid, TradeResult result) {
+            this.filled = filled;
+            this.paid = paid;
+            this.result = result;
+        }
+
+        /**
+         * @return number of assets bought
+         */
+        public int getFilled() {
+            return filled;
+        }
+
+        /**
+         * @return total currency paid for the assets bought
+         */
+        public BigDecimal getPaid() {
+            return paid;
+        }
+
+        /**
+         * @return result of the last trade tried; null if there was no ask to trade with
+         */
+        public TradeResult getResult() {
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "FillResult{" +
+                    "filled=" + filled +
+                    ", paid=" + paid +
+                    ", result=" + result +
+                    '}';
+        }
+
+        public static FillResult create(int filled, BigDecimal paid, TradeResult result) {
+            Validation.validate(filled, val -> val >= 0, "Negative fill not allowed.");
+            Validation.assertNotNull(paid);
+
+            return new FillResult(filled, paid, result);
+        }
+    }
+
     public enum OrderResult {
 
     }
@@ -0,0 +1,3 @@
+delete from market_summary
+where order_type = ?
+    and listing_uuid = ?
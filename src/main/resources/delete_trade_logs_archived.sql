@@ -0,0 +1,8 @@
+delete from trade_logs
+where order_id <= ? -- last archived trade
+    and `timestamp` < ? -- end of the hot window
+    -- the price points of the day candles and the last trade of each market are still looked up
+    and order_id not in (select high_trade_id from candles_day where high_trade_id is not null)
+    and order_id not in (select low_trade_id from candles_day where low_trade_id is not null)
+    and order_id not in (select last_trade_id from (select MAX(order_id) as last_trade_id from trade_logs
+        group by listing_uuid, currency_uuid) as last_trades)
\ No newline at end of file
@@ -0,0 +1,26 @@
+insert into %s(listing_uuid,
+  currency_uuid,
+  bucket,
+  open,
+  high,
+  low,
+  close,
+  volume,
+  turnover,
+  price_sum,
+  trades,
+  high_trade_id,
+  low_trade_id)
+values (?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  1,
+  ?,
+  ?);
\ No newline at end of file
@@ -0,0 +1,4 @@
+insert into candles_backfill(last_trade_id,
+  until_trade_id)
+values (?,
+  ?);
\ No newline at end of file
@@ -0,0 +1,12 @@
+insert into trade_archives(file,
+  first_trade_id,
+  last_trade_id,
+  first_timestamp,
+  last_timestamp,
+  trades)
+values (?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?);
\ No newline at end of file
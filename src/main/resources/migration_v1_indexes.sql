@@ -0,0 +1,17 @@
+-- the markets are searched by listing and currency, and the orders in a market are sorted by price and order id
+CREATE INDEX idx_buy_orders_market ON buy_orders (listing_uuid, currency_uuid, price, order_id);
+CREATE INDEX idx_sell_orders_market ON sell_orders (listing_uuid, currency_uuid, price, order_id);
+
+-- listing pages filter by category and pick the best price per listing
+CREATE INDEX idx_buy_orders_category ON buy_orders (category_id, listing_uuid, price);
+CREATE INDEX idx_sell_orders_category ON sell_orders (category_id, listing_uuid, price);
+
+CREATE INDEX idx_buy_orders_issuer ON buy_orders (issuer);
+CREATE INDEX idx_sell_orders_issuer ON sell_orders (issuer);
+
+-- temporary orders are deleted on every startup/shutdown
+CREATE INDEX idx_buy_orders_temp ON buy_orders (temp);
+CREATE INDEX idx_sell_orders_temp ON sell_orders (temp);
+
+-- price trends of a market within the time range
+CREATE INDEX idx_trade_logs_market ON trade_logs (listing_uuid, currency_uuid, `timestamp`);
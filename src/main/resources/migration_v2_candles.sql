@@ -0,0 +1,2 @@
+-- one candle per market and period
+CREATE UNIQUE INDEX idx_candles_day_market ON candles_day (listing_uuid, currency_uuid, bucket);
\ No newline at end of file
@@ -0,0 +1,8 @@
+-- one summary per side of a listing
+CREATE UNIQUE INDEX idx_market_summary_listing ON market_summary (order_type, listing_uuid);
+
+-- listing pages seek by the sort key, within a category or over all categories
+CREATE INDEX idx_market_summary_category_page ON market_summary (order_type, category_id, sort_key);
+CREATE INDEX idx_market_summary_page ON market_summary (order_type, sort_key);
+
+CREATE UNIQUE INDEX idx_market_summary_counts ON market_summary_counts (order_type, category_id);
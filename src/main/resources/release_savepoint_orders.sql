@@ -0,0 +1 @@
+RELEASE SAVEPOINT order_mark;
\ No newline at end of file
@@ -0,0 +1 @@
+ROLLBACK TO SAVEPOINT order_mark;
\ No newline at end of file
@@ -0,0 +1 @@
+SAVEPOINT order_mark;
\ No newline at end of file
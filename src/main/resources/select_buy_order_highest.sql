@@ -1,5 +0,0 @@
-select * from buy_orders
-where currency_uuid = ?
-    and listing_uuid = ?
-order by price desc
-limit 1
\ No newline at end of file
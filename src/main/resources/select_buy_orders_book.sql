@@ -0,0 +1,4 @@
+/*load order book*/
+SELECT order_id, listing_uuid, category_id, timestamp, issuer, price, currency_uuid, amount, maximum, temp
+FROM buy_orders
+ORDER BY order_id;
@@ -0,0 +1,4 @@
+select id from %s
+where listing_uuid = ?
+    and currency_uuid = ?
+    and bucket = ?
\ No newline at end of file
@@ -0,0 +1 @@
+select * from candles_backfill
\ No newline at end of file
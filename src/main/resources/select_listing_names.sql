@@ -0,0 +1 @@
+select listing_uuid, name from listing_names
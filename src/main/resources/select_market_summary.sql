@@ -0,0 +1,3 @@
+select category_id from market_summary
+where order_type = ?
+    and listing_uuid = ?
@@ -0,0 +1,6 @@
+/*only when the page is not right after the one already read*/
+select sort_key, order_id, listing_uuid, category_id, issuer, price, currency_uuid, amount, maximum
+from market_summary
+where order_type = ?
+order by sort_key
+LIMIT ?, ?;
@@ -0,0 +1,7 @@
+/*seek to the row after the last one of the previous page*/
+select sort_key, order_id, listing_uuid, category_id, issuer, price, currency_uuid, amount, maximum
+from market_summary
+where order_type = ?
+    and sort_key > ?
+order by sort_key
+LIMIT ?;
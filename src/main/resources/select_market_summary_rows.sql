@@ -0,0 +1,3 @@
+select listings as rows_count from market_summary_counts
+where order_type = ?
+    and category_id = ?
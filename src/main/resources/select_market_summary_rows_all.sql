@@ -0,0 +1,2 @@
+select coalesce(sum(listings), 0) as rows_count from market_summary_counts
+where order_type = ?
@@ -1,4 +1,4 @@
-select AVG(price) as average from trade_logs
-where DATEDIFF(CURDATE(), `timestamp`) < ? -- last N days
+select SUM(price_sum) / SUM(trades) as average from candles_day
+where bucket >= ? -- start of the first day
     and currency_uuid = ? -- target currency
     and listing_uuid = ? -- target listing
\ No newline at end of file
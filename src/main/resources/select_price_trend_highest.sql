@@ -1,7 +1,8 @@
 select * from trade_logs
-where DATEDIFF(CURDATE(), `timestamp`) < ?
-    and currency_uuid = ?
-    and listing_uuid = ?
-    and buyer != seller
-order by price desc
-LIMIT 1
\ No newline at end of file
+where order_id = (select high_trade_id from candles_day
+    where bucket >= ? -- start of the first day
+        and currency_uuid = ? -- target currency
+        and listing_uuid = ? -- target listing
+        and high_trade_id is not null
+    order by high desc
+    limit 1)
\ No newline at end of file
@@ -1,7 +1,8 @@
 select * from trade_logs
-where DATEDIFF(CURDATE(), `timestamp`) < ? -- last N days
-    and currency_uuid = ? -- target currency
-    and listing_uuid = ? -- target listing
-    and buyer != seller
-order by price asc
-LIMIT 1
\ No newline at end of file
+where order_id = (select low_trade_id from candles_day
+    where bucket >= ? -- start of the first day
+        and currency_uuid = ? -- target currency
+        and listing_uuid = ? -- target listing
+        and low_trade_id is not null
+    order by low asc
+    limit 1)
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT MAX(version) AS version FROM schema_version;
\ No newline at end of file
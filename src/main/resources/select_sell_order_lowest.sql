@@ -1,5 +0,0 @@
-select * from sell_orders
-where currency_uuid = ?
-    and listing_uuid = ?
-order by price asc
-limit 1
\ No newline at end of file
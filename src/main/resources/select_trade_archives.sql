@@ -0,0 +1,4 @@
+select * from trade_archives
+where last_timestamp >= ? -- from
+    and first_timestamp < ? -- to
+order by first_trade_id
\ No newline at end of file
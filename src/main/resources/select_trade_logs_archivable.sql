@@ -0,0 +1,4 @@
+select * from trade_logs
+where order_id > ? -- last archived trade
+order by order_id
+limit ?
\ No newline at end of file
@@ -0,0 +1,5 @@
+select * from trade_logs
+where order_id > ? -- last trade of the previous batch
+    and order_id <= ? -- last trade when the backfill began
+order by order_id
+limit ?
\ No newline at end of file
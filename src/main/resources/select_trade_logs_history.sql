@@ -0,0 +1,7 @@
+select * from trade_logs
+where order_id > (select COALESCE(MAX(last_trade_id), 0) from trade_archives) -- not archived
+    and listing_uuid = ? -- target listing
+    and currency_uuid = ? -- target currency
+    and `timestamp` >= ? -- from
+    and `timestamp` < ? -- to
+order by order_id
\ No newline at end of file
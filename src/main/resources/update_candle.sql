@@ -0,0 +1,7 @@
+update %s
+set close = ?,
+    volume = volume + ?,
+    turnover = turnover + ?,
+    price_sum = price_sum + ?,
+    trades = trades + 1
+where id = ?
\ No newline at end of file
@@ -0,0 +1,7 @@
+-- the trade ids come first since MySQL evaluates the assignments from left to right
+update %s
+set high_trade_id = CASE WHEN high IS NULL OR ? > high THEN ? ELSE high_trade_id END,
+    high = CASE WHEN high IS NULL OR ? > high THEN ? ELSE high END,
+    low_trade_id = CASE WHEN low IS NULL OR ? < low THEN ? ELSE low_trade_id END,
+    low = CASE WHEN low IS NULL OR ? < low THEN ? ELSE low END
+where id = ?
\ No newline at end of file
@@ -0,0 +1,2 @@
+update candles_backfill
+set last_trade_id = ?
\ No newline at end of file
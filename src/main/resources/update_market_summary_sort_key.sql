@@ -0,0 +1,4 @@
+update market_summary
+set sort_key = ?
+where order_type = ?
+    and listing_uuid = ?
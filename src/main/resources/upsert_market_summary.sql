@@ -0,0 +1,25 @@
+/*one row per side of a listing by idx_market_summary_listing, so the row is replaced rather than added*/
+REPLACE INTO market_summary(order_type,
+  listing_uuid,
+  category_id,
+  sort_key,
+  order_id,
+  issuer,
+  price,
+  currency_uuid,
+  amount,
+  maximum,
+  depth,
+  orders)
+values (?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?);
@@ -0,0 +1,5 @@
+/*counted again rather than added up, so the writers racing on the same category still end up right*/
+REPLACE INTO market_summary_counts(order_type, category_id, listings)
+select ?, ?, count(*) from market_summary
+where order_type = ?
+    and category_id = ?;
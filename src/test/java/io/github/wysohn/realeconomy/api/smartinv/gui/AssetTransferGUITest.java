@@ -11,6 +11,7 @@ import io.github.wysohn.realeconomy.interfaces.banking.IAssetHolder;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankingType;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.Item;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignaturePool;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
 import io.github.wysohn.realeconomy.manager.banking.bank.AbstractBank;
 import io.github.wysohn.realeconomy.manager.user.User;
@@ -78,6 +79,7 @@ public class AssetTransferGUITest {
 
         assetTransferGUI = new AssetTransferGUI(language,
                 tradeMediator,
+                new AssetSignaturePool(),
                 function,
                 assetHolder,
                 financialEntity,
@@ -2,6 +2,8 @@ package io.github.wysohn.realeconomy.inject.module;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Module;
 import com.google.inject.Provides;
 import io.github.wysohn.rapidframework3.core.inject.annotations.PluginDirectory;
@@ -9,14 +11,19 @@ import io.github.wysohn.rapidframework3.interfaces.IMemento;
 import io.github.wysohn.rapidframework3.interfaces.io.IPluginResourceProvider;
 import io.github.wysohn.rapidframework3.interfaces.paging.DataProvider;
 import io.github.wysohn.rapidframework3.testmodules.MockConfigModule;
+import io.github.wysohn.rapidframework3.testmodules.MockLoggerModule;
 import io.github.wysohn.rapidframework3.testmodules.MockShutdownModule;
 import io.github.wysohn.rapidframework3.utils.Pair;
+import io.github.wysohn.rapidframework3.utils.sql.SQLSession;
+import io.github.wysohn.realeconomy.inject.annotation.OrderSQL;
 import io.github.wysohn.realeconomy.interfaces.banking.IOrderIssuer;
 import io.github.wysohn.realeconomy.interfaces.trade.IOrderQueryModule;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.listing.OrderInfo;
+import io.github.wysohn.realeconomy.manager.listing.OrderRequest;
 import io.github.wysohn.realeconomy.manager.listing.OrderType;
+import io.github.wysohn.realeconomy.manager.listing.PricePoint;
 import io.github.wysohn.realeconomy.manager.listing.TradeInfo;
 import io.github.wysohn.realeconomy.mediator.TradeMediator;
 import org.junit.Before;
@@ -26,11 +33,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.*;
@@ -42,6 +54,7 @@ public class OrderQueryModuleTest {
     public void init() {
         moduleList.add(new OrderQueryModule());
         moduleList.add(new OrderSQLModule());
+        moduleList.add(new MockLoggerModule());
         moduleList.add(new MockConfigModule(Pair.of("database.type", "sqlite")));
         moduleList.add(new MockShutdownModule(() -> {
 
@@ -87,23 +100,23 @@ public class OrderQueryModuleTest {
 
         when(currency.getKey()).thenReturn(currencyUuid);
 
-        orderPlacementHandler.addOrder(uuid1,
+        assertEquals(1, orderPlacementHandler.addOrder(uuid1,
                 "item1",
                 OrderType.BUY,
                 orderIssuer,
                 1023.22,
                 currency,
                 10,
-                false);
+                false));
 
-        orderPlacementHandler.addOrder(uuid2,
+        assertEquals(2, orderPlacementHandler.addOrder(uuid2,
                 "item1",
                 OrderType.BUY,
                 orderIssuer,
                 20304.55,
                 currency,
                 20,
-                false);
+                false));
 
         assertEquals(OrderInfo.create(1,
                 uuid1,
@@ -190,6 +203,119 @@ public class OrderQueryModuleTest {
         assertNull(orderPlacementHandler.getInfo(22, OrderType.BUY));
     }
 
+    @Test
+    public void addOrders() throws Exception {
+        File folder = new File("build/tmp/addorders/");
+        folder.mkdir();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+        new File(folder, "orders.db").delete();
+        IOrderQueryModule orderPlacementHandler = Guice.createInjector(moduleList)
+                .getInstance(IOrderQueryModule.class);
+
+        UUID issuerUuid1 = UUID.randomUUID();
+        UUID issuerUuid2 = UUID.randomUUID();
+        IOrderIssuer orderIssuer1 = new OrderIssuer(issuerUuid1);
+        IOrderIssuer orderIssuer2 = new OrderIssuer(issuerUuid2);
+        Currency currency = mock(Currency.class);
+        UUID currencyUuid = UUID.randomUUID();
+
+        UUID uuid1 = UUID.randomUUID();
+        UUID uuid2 = UUID.randomUUID();
+
+        when(currency.getKey()).thenReturn(currencyUuid);
+
+        orderPlacementHandler.addOrders(Arrays.asList(
+                OrderRequest.create(uuid1, "item1", OrderType.BUY, orderIssuer1, 10.0, currency, 5, false),
+                OrderRequest.create(uuid2, "item1", OrderType.SELL, orderIssuer2, 20.0, currency, 7, true),
+                OrderRequest.create(uuid2, "item1", OrderType.BUY, orderIssuer2, 30.0, currency, 9, false)));
+        orderPlacementHandler.commitOrders();
+
+        assertEquals(OrderInfo.create(1,
+                uuid1,
+                1,
+                issuerUuid1,
+                10.0,
+                currencyUuid,
+                5,
+                5), orderPlacementHandler.getInfo(1, OrderType.BUY));
+        assertEquals(OrderInfo.create(1,
+                uuid2,
+                1,
+                issuerUuid2,
+                20.0,
+                currencyUuid,
+                7,
+                7), orderPlacementHandler.getInfo(1, OrderType.SELL));
+        assertEquals(OrderInfo.create(2,
+                uuid2,
+                1,
+                issuerUuid2,
+                30.0,
+                currencyUuid,
+                9,
+                9), orderPlacementHandler.getInfo(2, OrderType.BUY));
+
+        assertTrue(orderIssuer1.hasOrderId(OrderType.BUY, 1));
+        assertTrue(orderIssuer2.hasOrderId(OrderType.SELL, 1));
+        assertTrue(orderIssuer2.hasOrderId(OrderType.BUY, 2));
+    }
+
+    @Test
+    public void addOrdersChunks() throws Exception {
+        File folder = new File("build/tmp/addorderschunks/");
+        folder.mkdir();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+        new File(folder, "orders.db").delete();
+        IOrderQueryModule orderPlacementHandler = Guice.createInjector(moduleList)
+                .getInstance(IOrderQueryModule.class);
+
+        IOrderIssuer orderIssuer = new OrderIssuer(UUID.randomUUID());
+        Currency currency = mock(Currency.class);
+        UUID currencyUuid = UUID.randomUUID();
+        UUID listingUuid = UUID.randomUUID();
+        when(currency.getKey()).thenReturn(currencyUuid);
+
+        // an order added on its own first, so the ids of the batch don't start from 1
+        assertEquals(1, orderPlacementHandler.addOrder(listingUuid, "item1", OrderType.SELL, orderIssuer,
+                1.0, currency, 1, false));
+
+        int orders = OrderQueryModule.INSERT_ORDERS_CHUNK * 2 + 5;
+        List<OrderRequest> requests = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            requests.add(OrderRequest.create(listingUuid, "item1", OrderType.SELL, orderIssuer,
+                    10.0 + i, currency, i + 1, false));
+        }
+        orderPlacementHandler.addOrders(requests);
+        orderPlacementHandler.commitOrders();
+
+        // the ids follow the order of the requests over all the chunks
+        for (int i = 0; i < orders; i++) {
+            int orderId = i + 2;
+            assertEquals(OrderInfo.create(orderId,
+                    listingUuid,
+                    1,
+                    orderIssuer.getUuid(),
+                    10.0 + i,
+                    currencyUuid,
+                    i + 1,
+                    i + 1), orderPlacementHandler.getInfo(orderId, OrderType.SELL));
+            assertTrue(orderIssuer.hasOrderId(OrderType.SELL, orderId));
+        }
+        assertNull(orderPlacementHandler.getInfo(orders + 2, OrderType.SELL));
+    }
+
     @Test
     public void editOrder() throws Exception {
         File folder = new File("build/tmp/editorder/");
@@ -734,6 +860,359 @@ public class OrderQueryModuleTest {
         assertEquals(expected2, actual2);
     }
 
+    @Test
+    public void getListedOrderProviderPages() throws Exception {
+        File folder = new File("build/tmp/orderproviderpages/");
+        folder.mkdir();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+        new File(folder, "orders.db").delete();
+        Injector injector = Guice.createInjector(moduleList);
+        IOrderQueryModule orderPlacementHandler = injector.getInstance(IOrderQueryModule.class);
+        OrderReadSessions readSessions = injector.getInstance(OrderReadSessions.class);
+
+        IOrderIssuer orderIssuer = new OrderIssuer(UUID.randomUUID());
+        Currency currency = mock(Currency.class);
+        when(currency.getKey()).thenReturn(UUID.randomUUID());
+
+        // sorted by the reversed name, so the same kinds are next to each other
+        List<String> names = Arrays.asList("a_stone", "b_log", "c_stone", "d_log", "e_dirt");
+        Map<String, UUID> listings = new HashMap<>();
+        for (String name : names) {
+            UUID listingUuid = UUID.randomUUID();
+            listings.put(name, listingUuid);
+            orderPlacementHandler.setListingName(listingUuid, name);
+            orderPlacementHandler.addOrder(listingUuid,
+                    name.endsWith("log") ? "log" : "block",
+                    OrderType.SELL,
+                    orderIssuer,
+                    10.0,
+                    currency,
+                    5,
+                    false);
+        }
+        orderPlacementHandler.addOrder(listings.get("a_stone"),
+                "block",
+                OrderType.SELL,
+                orderIssuer,
+                5.0,
+                currency,
+                5,
+                false);
+        orderPlacementHandler.commitOrders();
+
+        DataProvider<OrderInfo> provider = orderPlacementHandler.getListedOrderProvider(OrderType.SELL);
+        List<UUID> actual = new ArrayList<>();
+        for (int index = 0; index < names.size(); index += 2) {
+            provider.get(index, 2).stream()
+                    .map(OrderInfo::getListingUuid)
+                    .forEach(actual::add);
+        }
+
+        assertEquals(5, provider.size());
+        assertEquals(Arrays.asList(listings.get("a_stone"),
+                listings.get("c_stone"),
+                listings.get("b_log"),
+                listings.get("d_log"),
+                listings.get("e_dirt")), actual);
+        assertEquals(6, provider.get(0, 1).get(0).getOrderId());
+        assertEquals(2, orderPlacementHandler.getListedOrderProvider(OrderType.SELL, "log").size());
+        assertEquals(0, orderPlacementHandler.getListedOrderProvider(OrderType.BUY).size());
+
+        // the summary follows the orders
+        orderPlacementHandler.cancelOrder(4, OrderType.SELL, mock(Consumer.class));
+        orderPlacementHandler.cancelOrder(6, OrderType.SELL, mock(Consumer.class));
+        orderPlacementHandler.commitOrders();
+
+        assertEquals(Collections.singletonList(1), readSessions.query("SELECT order_id FROM market_summary " +
+                "WHERE order_type = " + OrderType.SELL.ordinal() + " AND sort_key LIKE 'enots_a#%';", pstmt -> {
+        }, rs -> {
+            try {
+                return rs.getInt("order_id");
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }));
+        // block, then log
+        assertEquals(Arrays.asList(3, 1), readSessions.query("SELECT listings FROM market_summary_counts " +
+                "WHERE order_type = " + OrderType.SELL.ordinal() + " ORDER BY category_id;", pstmt -> {
+        }, rs -> {
+            try {
+                return rs.getInt("listings");
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }));
+    }
+
+    @Test
+    public void priceTrend() throws Exception {
+        File folder = new File("build/tmp/pricetrend/");
+        folder.mkdir();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+        new File(folder, "orders.db").delete();
+        IOrderQueryModule orderPlacementHandler = Guice.createInjector(moduleList)
+                .getInstance(IOrderQueryModule.class);
+
+        UUID listingUuid = UUID.randomUUID();
+        UUID currencyUuid = UUID.randomUUID();
+        UUID seller = UUID.randomUUID();
+        UUID buyer = UUID.randomUUID();
+
+        assertNull(orderPlacementHandler.getHighestPoint(7, currencyUuid, listingUuid));
+        assertEquals(-1.0, orderPlacementHandler.getLastTradingAverage(7, currencyUuid, listingUuid), 0.0001);
+
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 10.0, currencyUuid, 2);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 30.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 5.0, currencyUuid, 4);
+        // trade with oneself does not make the high or low
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, seller, 100.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, seller, 1.0, currencyUuid, 1);
+        orderPlacementHandler.commitOrders();
+
+        assertEquals(2, orderPlacementHandler.getHighestPoint(7, currencyUuid, listingUuid).getOrderId());
+        assertEquals(30.0, orderPlacementHandler.getHighestPoint(7, currencyUuid, listingUuid)
+                .getPrice().doubleValue(), 0.0001);
+        assertEquals(3, orderPlacementHandler.getLowestPoint(7, currencyUuid, listingUuid).getOrderId());
+        assertEquals(5.0, orderPlacementHandler.getLowestPoint(7, currencyUuid, listingUuid)
+                .getPrice().doubleValue(), 0.0001);
+        assertEquals((10.0 + 30.0 + 5.0 + 100.0 + 1.0) / 5,
+                orderPlacementHandler.getLastTradingAverage(7, currencyUuid, listingUuid), 0.0001);
+
+        assertNull(orderPlacementHandler.getHighestPoint(7, currencyUuid, UUID.randomUUID()));
+    }
+
+    @Test
+    public void backfillCandles() throws Exception {
+        File folder = new File("build/tmp/backfillcandles/");
+        folder.mkdir();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+        new File(folder, "orders.db").delete();
+        Injector injector = Guice.createInjector(moduleList);
+        IOrderQueryModule orderPlacementHandler = injector.getInstance(IOrderQueryModule.class);
+        OrderReadSessions readSessions = injector.getInstance(OrderReadSessions.class);
+        SQLSession session = injector.getInstance(Key.get(SQLSession.class, OrderSQL.class));
+
+        UUID listingUuid = UUID.randomUUID();
+        UUID currencyUuid = UUID.randomUUID();
+        UUID seller = UUID.randomUUID();
+        UUID buyer = UUID.randomUUID();
+
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 10.0, currencyUuid, 2);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 30.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 5.0, currencyUuid, 4);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 20.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 15.0, currencyUuid, 1);
+        orderPlacementHandler.commitOrders();
+
+        // as if the trades were logged before the candles existed
+        session.execute("DELETE FROM candles_day;", pstmt -> {
+        }, key -> {
+        });
+        session.execute("DELETE FROM " + OrderCandles.BACKFILL_TABLE + ";", pstmt -> {
+        }, key -> {
+        });
+        session.commit();
+
+        OrderCandles candles = new OrderCandles(session,
+                injector.getInstance(OrderSQLModule.UuidStorage.class),
+                ZoneId.systemDefault(),
+                injector.getInstance(IPluginResourceProvider.class));
+        assertEquals(5, candles.backfill(2));
+        assertEquals(0, candles.backfill(2));
+        assertEquals(Collections.singletonList(5), readSessions.query("SELECT trades FROM candles_day;", pstmt -> {
+        }, rs -> {
+            try {
+                return rs.getInt("trades");
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }));
+
+        // stopped after the batch of the first 3 trades was committed
+        session.execute("DELETE FROM candles_day;", pstmt -> {
+        }, key -> {
+        });
+        session.execute("UPDATE " + OrderCandles.BACKFILL_TABLE + " SET last_trade_id = 3;", pstmt -> {
+        }, key -> {
+        });
+        session.commit();
+
+        assertEquals(2, candles.backfill(2));
+        assertEquals(Collections.singletonList(2), readSessions.query("SELECT trades FROM candles_day;", pstmt -> {
+        }, rs -> {
+            try {
+                return rs.getInt("trades");
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }));
+    }
+
+    @Test
+    public void archiveTradeLogs() throws Exception {
+        File folder = new File("build/tmp/archivetradelogs/");
+        folder.mkdir();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+        new File(folder, "orders.db").delete();
+        Injector injector = Guice.createInjector(moduleList);
+        IOrderQueryModule orderPlacementHandler = injector.getInstance(IOrderQueryModule.class);
+        OrderReadSessions readSessions = injector.getInstance(OrderReadSessions.class);
+        SQLSession session = injector.getInstance(Key.get(SQLSession.class, OrderSQL.class));
+
+        UUID listingUuid = UUID.randomUUID();
+        UUID currencyUuid = UUID.randomUUID();
+        UUID seller = UUID.randomUUID();
+        UUID buyer = UUID.randomUUID();
+
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 10.0, currencyUuid, 2);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 30.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 5.0, currencyUuid, 4);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 20.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 15.0, currencyUuid, 1);
+        orderPlacementHandler.commitOrders();
+
+        // all but the last trade become cold
+        long now = System.currentTimeMillis();
+        long past = now - 30 * 24 * 60 * 60 * 1000L;
+        session.execute("UPDATE trade_logs SET timestamp = ? WHERE order_id < 5;", pstmt -> {
+            try {
+                pstmt.setTimestamp(1, new Timestamp(past));
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+        session.commit();
+
+        OrderTradeArchive archive = new OrderTradeArchive(session,
+                injector.getInstance(OrderSQLModule.UuidStorage.class),
+                ZoneId.systemDefault(),
+                new File(folder, OrderQueryModule.TRADE_ARCHIVE_FOLDER),
+                injector.getInstance(IPluginResourceProvider.class));
+        assertEquals(4, archive.archive(now - 1000L, 3));
+        assertEquals(0, archive.archive(now - 1000L, 3));
+
+        // the high and the low of the day candle, and the last trade stay
+        assertEquals(Arrays.asList(2, 3, 5), readSessions.query("SELECT order_id FROM trade_logs ORDER BY order_id;",
+                pstmt -> {
+                }, rs -> {
+                    try {
+                        return rs.getInt("order_id");
+                    } catch (SQLException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }));
+        assertEquals(2, orderPlacementHandler.getHighestPoint(7, currencyUuid, listingUuid).getOrderId());
+
+        List<PricePoint> history = orderPlacementHandler.getTradeHistory(currencyUuid, listingUuid, 0L, now + 1000L);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), history.stream()
+                .map(PricePoint::getOrderId)
+                .collect(Collectors.toList()));
+        assertEquals(20.0, history.get(3).getPrice().doubleValue(), 0.0001);
+        assertEquals(past, history.get(3).getTimestamp().getTime());
+
+        assertEquals(Collections.singletonList(5), orderPlacementHandler.getTradeHistory(currencyUuid,
+                listingUuid, past + 1, now + 1000L).stream()
+                .map(PricePoint::getOrderId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void archiveTradeLogsTimeRange() throws Exception {
+        File folder = new File("build/tmp/archivetradelogstimerange/");
+        folder.mkdir();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+        new File(folder, "orders.db").delete();
+        Injector injector = Guice.createInjector(moduleList);
+        IOrderQueryModule orderPlacementHandler = injector.getInstance(IOrderQueryModule.class);
+        OrderReadSessions readSessions = injector.getInstance(OrderReadSessions.class);
+        SQLSession session = injector.getInstance(Key.get(SQLSession.class, OrderSQL.class));
+
+        UUID listingUuid = UUID.randomUUID();
+        UUID currencyUuid = UUID.randomUUID();
+        UUID seller = UUID.randomUUID();
+        UUID buyer = UUID.randomUUID();
+
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 20.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 30.0, currencyUuid, 1);
+        orderPlacementHandler.logOrder(listingUuid, 1, seller, buyer, 10.0, currencyUuid, 1);
+        orderPlacementHandler.commitOrders();
+
+        // the first trade by id is the latest one of the archived trades
+        long now = System.currentTimeMillis();
+        long past = now - 30 * 24 * 60 * 60 * 1000L;
+        session.execute("UPDATE trade_logs SET timestamp = ? WHERE order_id = 1;", pstmt -> {
+            try {
+                pstmt.setTimestamp(1, new Timestamp(past + 5000L));
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+        session.execute("UPDATE trade_logs SET timestamp = ? WHERE order_id = 2;", pstmt -> {
+            try {
+                pstmt.setTimestamp(1, new Timestamp(past));
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        }, key -> {
+        });
+        session.commit();
+
+        OrderTradeArchive archive = new OrderTradeArchive(session,
+                injector.getInstance(OrderSQLModule.UuidStorage.class),
+                ZoneId.systemDefault(),
+                new File(folder, OrderQueryModule.TRADE_ARCHIVE_FOLDER),
+                injector.getInstance(IPluginResourceProvider.class));
+        assertEquals(2, archive.archive(now - 1000L, 10));
+
+        assertEquals(Collections.singletonList(Arrays.asList(past, past + 5000L)), readSessions.query(
+                "SELECT first_timestamp, last_timestamp FROM " + OrderTradeArchive.TABLE + ";", pstmt -> {
+                }, rs -> {
+                    try {
+                        return Arrays.asList(rs.getLong("first_timestamp"), rs.getLong("last_timestamp"));
+                    } catch (SQLException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }));
+
+        // the first trade is only in the archive now
+        assertEquals(Collections.singletonList(1), orderPlacementHandler.getTradeHistory(currencyUuid,
+                listingUuid, past + 4000L, past + 6000L).stream()
+                .map(PricePoint::getOrderId)
+                .collect(Collectors.toList()));
+    }
+
     private static class OrderIssuer implements IOrderIssuer {
         private final Map<OrderType, Set<Integer>> orderMap = new EnumMap<>(OrderType.class);
 
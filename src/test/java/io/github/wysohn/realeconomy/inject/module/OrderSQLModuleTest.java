@@ -0,0 +1,167 @@
+package io.github.wysohn.realeconomy.inject.module;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provides;
+import io.github.wysohn.rapidframework3.core.inject.annotations.PluginDirectory;
+import io.github.wysohn.rapidframework3.interfaces.io.IPluginResourceProvider;
+import io.github.wysohn.rapidframework3.testmodules.MockConfigModule;
+import io.github.wysohn.rapidframework3.testmodules.MockLoggerModule;
+import io.github.wysohn.rapidframework3.testmodules.MockShutdownModule;
+import io.github.wysohn.rapidframework3.utils.Pair;
+import io.github.wysohn.rapidframework3.utils.sql.SQLSession;
+import io.github.wysohn.realeconomy.inject.annotation.OrderSQL;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class OrderSQLModuleTest {
+    List<Module> moduleList = new LinkedList<>();
+    IPluginResourceProvider resourceProvider;
+
+    @Before
+    public void init() {
+        File resources = new File("src/main/resources/");
+        resourceProvider = name -> {
+            try {
+                return new FileInputStream(new File(resources, name));
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+            }
+            return null;
+        };
+
+        File folder = new File("build/tmp/migration/");
+        folder.mkdirs();
+        new File(folder, "orders.db").delete();
+
+        moduleList.add(new OrderSQLModule());
+        moduleList.add(new MockLoggerModule());
+        moduleList.add(new MockConfigModule(Pair.of("database.type", "sqlite"),
+                Pair.of(OrderSQLModule.UUID_STORAGE, "text")));
+        moduleList.add(new MockShutdownModule(() -> {
+
+        }));
+        moduleList.add(new AbstractModule() {
+            @Provides
+            IPluginResourceProvider resourceProvider() {
+                return resourceProvider;
+            }
+
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return folder;
+            }
+        });
+    }
+
+    @Test
+    public void migrate() throws Exception {
+        SQLSession session = Guice.createInjector(moduleList)
+                .getInstance(Key.get(SQLSession.class, OrderSQL.class));
+
+        // already migrated by the provider, so nothing happens the second time
+        assertEquals(OrderSQLModule.MIGRATIONS.size(), OrderSQLModule.migrate(session, resourceProvider));
+        assertEquals(OrderSQLModule.MIGRATIONS.size(), OrderSQLModule.migrate(session, resourceProvider));
+    }
+
+    @Test
+    public void statements() {
+        assertEquals(Arrays.asList("CREATE INDEX a ON t (x);", "CREATE INDEX b\nON t (y, z);"),
+                OrderSQLModule.statements("-- comment; with separator\n" +
+                        "CREATE INDEX a ON t (x); -- trailing\n" +
+                        "\n" +
+                        "CREATE INDEX b\n" +
+                        "ON t (y, z);\n"));
+    }
+
+    @Test
+    public void convertUuid() throws Exception {
+        SQLSession session = Guice.createInjector(moduleList)
+                .getInstance(Key.get(SQLSession.class, OrderSQL.class));
+        UUID listingUuid = UUID.randomUUID();
+
+        session.execute("INSERT INTO listing_names (listing_uuid, name) VALUES (?, ?);", pstmt -> {
+            try {
+                OrderSQLModule.UuidStorage.TEXT.set(pstmt, 1, listingUuid);
+                pstmt.setString(2, "test");
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, key -> {
+
+        });
+        session.commit();
+
+        assertEquals(1, OrderUuidConverter.convert(session, false, OrderSQLModule.UuidStorage.BINARY));
+        assertEquals(0, OrderUuidConverter.convert(session, false, OrderSQLModule.UuidStorage.BINARY));
+        assertEquals(Arrays.asList(listingUuid), session.query("SELECT * FROM listing_names;", pstmt -> {
+
+        }, rs -> {
+            try {
+                return OrderSQLModule.UuidStorage.BINARY.get(rs, OrderSQLModule.LISTING_UUID);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
+        }));
+    }
+
+    @Test
+    public void readSessions() throws Exception {
+        Injector injector = Guice.createInjector(moduleList);
+        SQLSession session = injector.getInstance(Key.get(SQLSession.class, OrderSQL.class));
+        OrderReadSessions readSessions = injector.getInstance(OrderReadSessions.class);
+
+        session.execute("INSERT INTO category (category_value) VALUES (?);", pstmt -> {
+            try {
+                pstmt.setString(1, "test");
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, key -> {
+
+        });
+
+        // uncommitted change is not visible to the readers
+        assertEquals(0, readSessions.query("SELECT * FROM category;", pstmt -> {
+
+        }, rs -> rs).size());
+
+        session.commit();
+
+        assertEquals(1, readSessions.query("SELECT * FROM category;", pstmt -> {
+
+        }, rs -> rs).size());
+        assertEquals(OrderSQLModule.DEFAULT_READ_CONNECTIONS, readSessions.size());
+
+        readSessions.close();
+
+        assertEquals(0, readSessions.query("SELECT * FROM category;", pstmt -> {
+
+        }, rs -> rs).size());
+    }
+
+    @Test
+    public void uuidBytes() {
+        UUID uuid = UUID.randomUUID();
+
+        assertEquals(uuid, OrderSQLModule.UuidStorage.fromBytes(OrderSQLModule.UuidStorage.toBytes(uuid)));
+        assertEquals(new UUID(-1L, 1L), OrderSQLModule.UuidStorage.fromBytes(OrderSQLModule.UuidStorage.toBytes(new UUID(-1L, 1L))));
+        assertNull(OrderSQLModule.UuidStorage.fromBytes(null));
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.wysohn.realeconomy.inject.module;
+
+import io.github.wysohn.realeconomy.manager.listing.PricePoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrderTradeArchiveTest {
+    private File folder;
+
+    @Before
+    public void init() {
+        folder = new File("build/tmp/tradearchive/");
+        folder.mkdirs();
+    }
+
+    @Test
+    public void writeRead() throws Exception {
+        UUID listingUuid = UUID.randomUUID();
+        UUID currencyUuid = UUID.randomUUID();
+        UUID seller = UUID.randomUUID();
+        UUID buyer = UUID.randomUUID();
+        long time = 1614556800000L;
+
+        List<PricePoint> trades = Arrays.asList(
+                PricePoint.create(3, listingUuid, 1, new Date(time), seller, buyer,
+                        BigDecimal.valueOf(10.25), currencyUuid, 5),
+                PricePoint.create(4, listingUuid, 1, new Date(time + 1500L), buyer, seller,
+                        BigDecimal.valueOf(9.5), currencyUuid, 64),
+                // clock went backwards
+                PricePoint.create(900, listingUuid, 2, new Date(time - 20L), seller, seller,
+                        BigDecimal.valueOf(1234567.891), currencyUuid, 100000));
+
+        File file = new File(folder, "trades-2021-03-3.gz");
+        OrderTradeArchive.write(file, trades);
+        List<PricePoint> read = OrderTradeArchive.read(file);
+
+        assertEquals(trades.size(), read.size());
+        for (int i = 0; i < trades.size(); i++) {
+            assertSame(trades.get(i), read.get(i));
+        }
+    }
+
+    private static void assertSame(PricePoint expected, PricePoint actual) {
+        assertEquals(expected.getOrderId(), actual.getOrderId());
+        assertEquals(expected.getListingUuid(), actual.getListingUuid());
+        assertEquals(expected.getCategoryId(), actual.getCategoryId());
+        assertEquals(expected.getTimestamp().getTime(), actual.getTimestamp().getTime());
+        assertEquals(expected.getSeller(), actual.getSeller());
+        assertEquals(expected.getBuyer(), actual.getBuyer());
+        assertEquals(0, expected.getPrice().compareTo(actual.getPrice()));
+        assertEquals(expected.getCurrencyUuid(), actual.getCurrencyUuid());
+        assertEquals(expected.getAmount(), actual.getAmount());
+    }
+}
@@ -7,6 +7,7 @@ import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.Item;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.account.TradingAccount;
 import io.github.wysohn.realeconomy.manager.user.User;
 import org.bukkit.Bukkit;
@@ -35,6 +36,8 @@ public class CustomTypeAdaptersTest {
                 .registerTypeAdapter(CustomTypeAdapters.ASSET.key, CustomTypeAdapters.ASSET.value)
                 .registerTypeAdapter(CustomTypeAdapters.ACCOUNT.key, CustomTypeAdapters.ACCOUNT.value)
                 .registerTypeAdapter(CustomTypeAdapters.BANKING_TYPE.key, CustomTypeAdapters.BANKING_TYPE.value)
+                .registerTypeAdapter(CustomTypeAdapters.MONEY.key, CustomTypeAdapters.MONEY.value)
+                .registerTypeAdapter(CustomTypeAdapters.ASSET_STORE.key, CustomTypeAdapters.ASSET_STORE.value)
                 .create();
 
         TradingAccount account = new TradingAccount();
@@ -42,15 +45,18 @@ public class CustomTypeAdaptersTest {
         asset.setAmount(1423);
         account.addAsset(asset);
         UUID currencyUuid = UUID.randomUUID();
-        account.balances.put(currencyUuid, BigDecimal.valueOf(3020504.55));
+        account.balances.put(currencyUuid, Money.parse(BigDecimal.valueOf(3020504.55)));
 
         String serialized = gson.toJson(account, IAccount.class);
+        // balances are saved as plain numbers
+        assertTrue(serialized.contains("3020504.55"));
         IAccount restored = gson.fromJson(serialized, IAccount.class);
 
         assertEquals(BankingTypeRegistry.TRADING, restored.getType());
-        assertEquals(BigDecimal.valueOf(3020504.55), restored.getCurrencyMap().get(currencyUuid));
+        assertEquals(BigDecimal.valueOf(3020504.55), restored.getCurrencyMap().get(currencyUuid).toBigDecimal());
         assertEquals(1, account.assetDataProvider().size());
         assertEquals(asset, account.assetDataProvider().get(0, 1).get(0));
+        assertEquals(1423.0, ((TradingAccount) restored).countAsset(asset.getSignature()), 0.000001);
     }
 
     @Test
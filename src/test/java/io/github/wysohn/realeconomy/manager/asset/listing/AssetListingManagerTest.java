@@ -41,6 +41,7 @@ import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -192,6 +193,46 @@ public class AssetListingManagerTest {
         assertEquals(0, orderIssuer.getOrderIds(OrderType.BUY).size());
     }
 
+    @Test
+    public void rollbackQuote() throws Exception {
+        File dir = new File("build/tmp/rollbackquote/");
+        dir.mkdirs();
+        new File(dir, "orders.db").delete();
+        moduleList.add(new AbstractModule() {
+            @Provides
+            @PluginDirectory
+            File directory() {
+                return dir;
+            }
+        });
+
+        AssetListingManager assetListingManager = Guice.createInjector(moduleList)
+                .getInstance(AssetListingManager.class);
+        assetListingManager.enable();
+
+        AssetSignature signature = mock(AssetSignature.class);
+        IOrderIssuer orderIssuer = new OrderIssuer(UUID.randomUUID());
+        Currency currency = mock(Currency.class);
+
+        when(currency.getKey()).thenReturn(UUID.randomUUID());
+        when(signature.category()).thenReturn(TradeMediator.MATERIAL_CATEGORY_DEFAULT);
+
+        assetListingManager.newListing(signature);
+        assetListingManager.addOrder(signature,
+                OrderType.SELL,
+                orderIssuer,
+                10.0,
+                currency,
+                5);
+
+        // loaded while the order is not yet committed
+        assertNotNull(assetListingManager.getLowestAsk(signature, currency));
+
+        assetListingManager.rollbackOrders();
+
+        assertNull(assetListingManager.getLowestAsk(signature, currency));
+    }
+
     private static class OrderIssuer implements IOrderIssuer {
         private final Map<OrderType, Set<Integer>> orderMap = new EnumMap<>(OrderType.class);
         private final Map<UUID, BigDecimal> wallet = new HashMap<>();
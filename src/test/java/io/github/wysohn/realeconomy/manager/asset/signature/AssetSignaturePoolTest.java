@@ -0,0 +1,83 @@
+package io.github.wysohn.realeconomy.manager.asset.signature;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AssetSignaturePoolTest {
+    private AssetSignaturePool pool;
+
+    @Before
+    public void init() throws Exception {
+        Server server = mock(Server.class);
+        Field field = Bukkit.class.getDeclaredField("server");
+        field.setAccessible(true);
+        field.set(null, server);
+
+        ItemFactory itemFactory = mock(ItemFactory.class);
+        when(server.getItemFactory()).thenReturn(itemFactory);
+        when(itemFactory.equals(any(ItemMeta.class), any(ItemMeta.class))).thenReturn(true);
+
+        pool = new AssetSignaturePool();
+    }
+
+    @Test
+    public void intern() {
+        assertSame(AssetSignaturePool.DURATION, pool.intern(new DurationSignature()));
+        assertSame(AssetSignaturePool.LABOUR, pool.intern(new LabourSignature()));
+        assertEquals(2, pool.getHits());
+
+        ItemStackSignature signature = new ItemStackSignature(new ItemStack(Material.EMERALD, 3));
+        assertSame(signature, pool.intern(signature));
+        assertSame(signature, pool.intern(new ItemStackSignature(Material.EMERALD)));
+
+        // each pool has its own signatures
+        assertNotSame(signature, new AssetSignaturePool().intern(new ItemStackSignature(Material.EMERALD)));
+    }
+
+    @Test
+    public void itemStack() {
+        ItemStackSignature signature = pool.itemStack(Material.GOLD_INGOT);
+
+        assertSame(signature, pool.itemStack(new ItemStack(Material.GOLD_INGOT, 64)));
+        assertSame(signature, pool.intern(new ItemStackSignature(Material.GOLD_INGOT)));
+        assertNotSame(signature, pool.itemStack(Material.IRON_INGOT));
+    }
+
+    @Test
+    public void itemStackCopy() {
+        ItemStackSignature signature = pool.itemStack(Material.GOLD_INGOT);
+
+        ItemStack itemStack = signature.getItemStack();
+        itemStack.setType(Material.IRON_INGOT);
+        itemStack.setAmount(64);
+
+        assertEquals(Material.GOLD_INGOT, signature.getItemStack().getType());
+        assertEquals(1, signature.getItemStack().getAmount());
+        assertSame(signature, pool.itemStack(Material.GOLD_INGOT));
+    }
+
+    @Test
+    public void stats() {
+        pool.itemStack(Material.COAL);
+        pool.itemStack(Material.COAL);
+        pool.itemStack(Material.COAL);
+
+        assertEquals(3, pool.getRequests());
+        assertEquals(2, pool.getHits());
+        assertEquals(4, pool.size());
+        assertEquals(2.0 / 3.0, pool.getHitRate(), 0.0001);
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.wysohn.realeconomy.manager.asset.signature;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Map lookups keyed by the signatures, like the listings and the prices of the simulation do. Compare the
+ * lookups by the signatures against the lookups by the legacy signatures, which copied the ItemMeta to compute
+ * the hash every time.
+ */
+@BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5)
+public class ItemStackSignatureBenchmark {
+    private static final int LOOKUPS = 10000;
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private List<ItemStack> itemStacks;
+
+    @Before
+    public void init() throws Exception {
+        Server server = mock(Server.class);
+        Field field = Bukkit.class.getDeclaredField("server");
+        field.setAccessible(true);
+        field.set(null, server);
+
+        ItemFactory itemFactory = mock(ItemFactory.class);
+        ItemMeta meta = mock(ItemMeta.class);
+        when(server.getItemFactory()).thenReturn(itemFactory);
+        when(itemFactory.getItemMeta(any(Material.class))).thenReturn(meta);
+        when(itemFactory.equals(any(ItemMeta.class), any(ItemMeta.class))).thenReturn(true);
+
+        itemStacks = new ArrayList<>();
+        for (Material material : Material.values()) {
+            if (material.isItem())
+                itemStacks.add(new ItemStack(material));
+        }
+    }
+
+    @Test
+    public void signatureLookup() {
+        Map<AssetSignature, Integer> map = new HashMap<>();
+        for (int i = 0; i < itemStacks.size(); i++) {
+            map.put(new ItemStackSignature(itemStacks.get(i)), i);
+        }
+
+        // equal signatures, but not the same instances, so the lookups compare them
+        List<AssetSignature> keys = new ArrayList<>();
+        for (ItemStack itemStack : itemStacks) {
+            keys.add(new ItemStackSignature(itemStack));
+        }
+        long found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (map.containsKey(keys.get(i % keys.size())))
+                found++;
+        }
+        assertEquals(LOOKUPS, found);
+    }
+
+    @Test
+    public void legacySignatureLookup() {
+        Map<LegacySignature, Integer> map = new HashMap<>();
+        for (int i = 0; i < itemStacks.size(); i++) {
+            map.put(new LegacySignature(itemStacks.get(i)), i);
+        }
+
+        List<LegacySignature> keys = new ArrayList<>();
+        for (ItemStack itemStack : itemStacks) {
+            keys.add(new LegacySignature(itemStack));
+        }
+        long found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (map.containsKey(keys.get(i % keys.size())))
+                found++;
+        }
+        assertEquals(LOOKUPS, found);
+    }
+
+    /**
+     * How the signature was compared before it had the key.
+     */
+    private static class LegacySignature {
+        private final ItemStack itemStack;
+
+        private LegacySignature(ItemStack itemStack) {
+            this.itemStack = itemStack.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            LegacySignature that = (LegacySignature) o;
+            return itemStack.isSimilar(that.itemStack);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 1;
+
+            hash = hash * 31 + itemStack.getType().hashCode();
+            hash = hash * 31 + (itemStack.getDurability() & 0xffff);
+            hash = hash * 31 + Optional.of(itemStack)
+                    .map(ItemStack::getItemMeta)
+                    .map(Object::hashCode)
+                    .orElse(0);
+
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.wysohn.realeconomy.manager.asset.signature;
+
+import copy.com.google.gson.Gson;
+import copy.com.google.gson.GsonBuilder;
+import io.github.wysohn.realeconomy.manager.CustomTypeAdapters;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemStackSignatureTest {
+
+    @Before
+    public void init() throws Exception {
+        Server server = mock(Server.class);
+        Field field = Bukkit.class.getDeclaredField("server");
+        field.setAccessible(true);
+        field.set(null, server);
+
+        ItemFactory itemFactory = mock(ItemFactory.class);
+        when(server.getItemFactory()).thenReturn(itemFactory);
+        when(itemFactory.equals(any(ItemMeta.class), any(ItemMeta.class))).thenReturn(true);
+    }
+
+    @Test
+    public void keyMapOrder() {
+        Map<String, Object> enchants = new LinkedHashMap<>();
+        enchants.put("DURABILITY", 3);
+        enchants.put("DAMAGE_ALL", 5);
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("display-name", "Sword");
+        meta.put("enchants", enchants);
+
+        Map<String, Object> reversedEnchants = new LinkedHashMap<>();
+        reversedEnchants.put("DAMAGE_ALL", 5);
+        reversedEnchants.put("DURABILITY", 3);
+        Map<String, Object> reversedMeta = new LinkedHashMap<>();
+        reversedMeta.put("enchants", reversedEnchants);
+        reversedMeta.put("display-name", "Sword");
+
+        ItemStackSignature signature = new ItemStackSignature(itemStack(Material.DIAMOND_SWORD, 0, meta));
+        ItemStackSignature reversed = new ItemStackSignature(itemStack(Material.DIAMOND_SWORD, 0, reversedMeta));
+
+        // same meta, only serialized in the other order
+        assertEquals(signature.key(), reversed.key());
+        assertEquals(signature.key().hashCode(), reversed.key().hashCode());
+        assertEquals(signature, reversed);
+        assertEquals(signature.hashCode(), reversed.hashCode());
+    }
+
+    @Test
+    public void keyLoreOrder() {
+        Map<String, Object> meta = new HashMap<>();
+        meta.put("lore", Arrays.asList("first", "second"));
+        Map<String, Object> reversedMeta = new HashMap<>();
+        reversedMeta.put("lore", Arrays.asList("second", "first"));
+
+        ItemStackSignature signature = new ItemStackSignature(itemStack(Material.PAPER, 0, meta));
+        ItemStackSignature reversed = new ItemStackSignature(itemStack(Material.PAPER, 0, reversedMeta));
+
+        assertNotEquals(signature.key(), reversed.key());
+        assertNotEquals(signature, reversed);
+        assertEquals(signature, new ItemStackSignature(itemStack(Material.PAPER, 0, new HashMap<>(meta))));
+    }
+
+    @Test
+    public void keyDurability() {
+        ItemStackSignature signature = new ItemStackSignature(itemStack(Material.IRON_PICKAXE, 3, null));
+
+        assertEquals(signature, new ItemStackSignature(itemStack(Material.IRON_PICKAXE, 3, null)));
+        assertEquals(signature.hashCode(), new ItemStackSignature(itemStack(Material.IRON_PICKAXE, 3, null)).hashCode());
+        assertNotEquals(signature, new ItemStackSignature(itemStack(Material.IRON_PICKAXE, 0, null)));
+        assertNotEquals(signature, new ItemStackSignature(itemStack(Material.STONE_PICKAXE, 3, null)));
+    }
+
+    @Test
+    public void keyEmptyMeta() {
+        ItemStackSignature signature = new ItemStackSignature(itemStack(Material.STONE, 0, null));
+
+        // empty meta is the same as no meta
+        assertEquals(signature, new ItemStackSignature(itemStack(Material.STONE, 0, new HashMap<>())));
+        assertNotEquals(signature, new ItemStackSignature(itemStack(Material.STONE, 0,
+                Collections.singletonMap("display-name", "Stone"))));
+    }
+
+    @Test
+    public void keyAfterDeserialization() throws Exception {
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(CustomTypeAdapters.ASSET_SIGNATURE.key, CustomTypeAdapters.ASSET_SIGNATURE.value)
+                .create();
+
+        ItemStackSignature signature = new ItemStackSignature(new ItemStack(Material.DIAMOND, 5));
+        Map<AssetSignature, Integer> map = new HashMap<>();
+        map.put(signature, 1);
+
+        AssetSignature restored = gson.fromJson(gson.toJson(signature, AssetSignature.class), AssetSignature.class);
+
+        // the key is not saved, so it's computed on the first use
+        Field keyField = ItemStackSignature.class.getDeclaredField("key");
+        keyField.setAccessible(true);
+        assertNull(keyField.get(restored));
+
+        assertEquals(signature.hashCode(), restored.hashCode());
+        assertNotNull(keyField.get(restored));
+        assertEquals(signature, restored);
+        assertEquals(restored, signature);
+        assertEquals(Integer.valueOf(1), map.get(restored));
+    }
+
+    @SuppressWarnings("deprecation")
+    private ItemStack itemStack(Material material, int durability, Map<String, Object> serializedMeta) {
+        ItemStack itemStack = mock(ItemStack.class);
+        when(itemStack.clone()).thenReturn(itemStack);
+        when(itemStack.getType()).thenReturn(material);
+        when(itemStack.getDurability()).thenReturn((short) durability);
+
+        if (serializedMeta != null) {
+            ItemMeta meta = mock(ItemMeta.class);
+            when(meta.serialize()).thenReturn(serializedMeta);
+            when(itemStack.hasItemMeta()).thenReturn(true);
+            when(itemStack.getItemMeta()).thenReturn(meta);
+        }
+        return itemStack;
+    }
+}
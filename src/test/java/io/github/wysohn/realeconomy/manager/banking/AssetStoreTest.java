@@ -0,0 +1,99 @@
+package io.github.wysohn.realeconomy.manager.banking;
+
+import io.github.wysohn.rapidframework3.interfaces.IMemento;
+import io.github.wysohn.realeconomy.manager.asset.Asset;
+import io.github.wysohn.realeconomy.manager.asset.signature.ElectricitySignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.LabourSignature;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AssetStoreTest {
+
+    @Test
+    public void stacking() {
+        AssetStore store = new AssetStore();
+        ElectricitySignature electricity = new ElectricitySignature();
+        LabourSignature labour = new LabourSignature();
+
+        store.add(electricity.asset(10.0));
+        store.add(labour.asset(240.0));
+        store.add(electricity.asset(5.0));
+        store.add(labour.asset(120.0));
+
+        // fungible assets are stacked, and others are kept one by one
+        assertEquals(3, store.size());
+        assertEquals(15.0, store.count(electricity), 0.000001);
+        assertEquals(360.0, store.count(labour), 0.000001);
+
+        List<Asset> assets = store.toList();
+        assertEquals(electricity, assets.get(0).getSignature());
+        assertEquals(240.0, assets.get(1).getNumericalMeasure(), 0.000001);
+        assertEquals(120.0, assets.get(2).getNumericalMeasure(), 0.000001);
+        assertEquals(assets.subList(1, 3), store.subList(1, 45));
+    }
+
+    @Test
+    public void copyOfStack() {
+        AssetStore store = new AssetStore();
+        ElectricitySignature electricity = new ElectricitySignature();
+
+        store.add(electricity.asset(10.0));
+        List<Asset> page = store.copyOf(0, 45);
+        store.add(electricity.asset(5.0));
+
+        // the page already read doesn't change along with the stack
+        assertEquals(10.0, page.get(0).getNumericalMeasure(), 0.000001);
+        assertEquals(15.0, store.copyOf(0, 45).get(0).getNumericalMeasure(), 0.000001);
+        assertEquals(page.get(0), store.get(0));
+    }
+
+    @Test
+    public void removeIndex() {
+        AssetStore store = new AssetStore();
+        ElectricitySignature electricity = new ElectricitySignature();
+        LabourSignature labour = new LabourSignature();
+
+        store.add(labour.asset(240.0));
+        store.add(labour.asset(120.0));
+        store.add(electricity.asset(10.0));
+
+        assertEquals(120.0, store.remove(1).getNumericalMeasure(), 0.000001);
+        assertEquals(240.0, store.count(labour), 0.000001);
+        assertEquals(10.0, store.remove(1).getNumericalMeasure(), 0.000001);
+        assertEquals(0.0, store.count(electricity), 0.000001);
+        assertNull(store.remove(1));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void copyAndRestore() {
+        AssetStore store = new AssetStore();
+        ElectricitySignature electricity = new ElectricitySignature();
+        LabourSignature labour = new LabourSignature();
+
+        store.add(electricity.asset(10.0));
+        store.add(labour.asset(240.0));
+
+        IMemento copy = store.copy(electricity);
+        store.remove(electricity, 10.0);
+        store.add(electricity.asset(3.0));
+        assertEquals(labour, store.get(0).getSignature());
+
+        // back to where it was, in front of the labour
+        store.restore(electricity, copy);
+        assertEquals(2, store.size());
+        assertEquals(electricity, store.get(0).getSignature());
+        assertEquals(10.0, store.count(electricity), 0.000001);
+
+        // nothing was there
+        store.remove(electricity, 10.0);
+        IMemento empty = store.copy(electricity);
+        store.add(electricity.asset(1.0));
+        store.restore(electricity, empty);
+        assertEquals(1, store.size());
+        assertEquals(0.0, store.count(electricity), 0.000001);
+    }
+}
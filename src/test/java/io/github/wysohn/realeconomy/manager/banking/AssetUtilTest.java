@@ -1,6 +1,5 @@
 package io.github.wysohn.realeconomy.manager.banking;
 
-import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
 import io.github.wysohn.realeconomy.manager.asset.signature.ElectricitySignature;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
@@ -13,9 +12,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.lang.reflect.Field;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -36,7 +33,7 @@ public class AssetUtilTest {
 
     @Test
     public void addAsset() {
-        List<Asset> ownedAssets = new ArrayList<>();
+        AssetStore ownedAssets = new AssetStore();
 
         ItemStackSignature itemStackSignature = new ItemStackSignature(new ItemStack(Material.DIAMOND));
         ElectricitySignature electricitySignature = new ElectricitySignature();
@@ -61,7 +58,9 @@ public class AssetUtilTest {
         AssetUtil.addAsset(ownedAssets, electricitySignature.asset(new HashMap<String, Object>() {{
             put(AssetSignature.KEY_NUMERIC_MEASURE, 10000.0);
         }}));
-        assertEquals(4, AssetUtil.assetDataProvider(ownedAssets).size());
+        // stacked into the existing ones
+        assertEquals(2, AssetUtil.assetDataProvider(ownedAssets).size());
+        assertEquals(33.0 - 15.0 + 64, ownedAssets.get(0).getNumericalMeasure(), 0.00001);
 
         AssetUtil.removeAsset(ownedAssets, new ItemStackSignature(new ItemStack(Material.DIAMOND)), 48);
         AssetUtil.removeAsset(ownedAssets, new ElectricitySignature(), 3000.0);
@@ -76,7 +75,7 @@ public class AssetUtilTest {
 
     @Test
     public void countAsset() {
-        List<Asset> ownedAssets = new ArrayList<>();
+        AssetStore ownedAssets = new AssetStore();
 
         ItemStackSignature itemStackSignature = new ItemStackSignature(new ItemStack(Material.DIAMOND));
         ElectricitySignature electricitySignature = new ElectricitySignature();
@@ -86,7 +85,7 @@ public class AssetUtilTest {
         AssetUtil.addAsset(ownedAssets, itemStackSignature.asset(55.0));
         AssetUtil.addAsset(ownedAssets, itemStackSignature.asset(88.0));
         AssetUtil.addAsset(ownedAssets, electricitySignature.asset(2058.43));
-        assertEquals(5, AssetUtil.assetDataProvider(ownedAssets).size());
+        assertEquals(2, AssetUtil.assetDataProvider(ownedAssets).size());
 
         assertEquals(33.0+55.0+88.0, AssetUtil.countAsset(ownedAssets, itemStackSignature), 0.00001);
         assertEquals(1088.443+2058.43, AssetUtil.countAsset(ownedAssets, electricitySignature), 0.00001);
@@ -17,7 +17,7 @@ import static org.mockito.Mockito.when;
 public class CapitalManagementUtilTest extends AbstractBukkitManagerTest {
     private BigDecimal maximum;
     private BigDecimal minimum;
-    private Map<UUID, BigDecimal> capitals;
+    private Map<UUID, Money> capitals;
     private Currency currency;
     private UUID currencyUuid;
 
@@ -27,6 +27,7 @@ public class CapitalManagementUtilTest extends AbstractBukkitManagerTest {
         minimum = BigDecimal.valueOf(-Double.MAX_VALUE);
         capitals = new HashMap<>();
         currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         currencyUuid = UUID.randomUUID();
         when(currency.getKey()).thenReturn(currencyUuid);
     }
@@ -34,8 +35,9 @@ public class CapitalManagementUtilTest extends AbstractBukkitManagerTest {
     @Test
     public void balance() {
         Currency otherCurrency = mock(Currency.class);
+        when(otherCurrency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         assertEquals(BigDecimal.valueOf(0.0), CapitalManagementUtil.balance(capitals, otherCurrency));
-        capitals.put(currencyUuid, BigDecimal.valueOf(14235.33));
+        capitals.put(currencyUuid, Money.parse(BigDecimal.valueOf(14235.33)));
         assertEquals(BigDecimal.valueOf(14235.33), CapitalManagementUtil.balance(capitals, currency));
     }
 
@@ -0,0 +1,102 @@
+package io.github.wysohn.realeconomy.manager.banking;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+    @Test
+    public void add() {
+        Money money = new Money(2);
+        assertTrue(money.add(Money.toUnits(BigDecimal.valueOf(12.34), 2), 2, Long.MAX_VALUE));
+        assertEquals(1234L, money.getUnits());
+        assertEquals(BigDecimal.valueOf(12.34), money.toBigDecimal());
+
+        // over the limit
+        assertFalse(money.add(1L, 2, 1234L));
+        assertEquals(1234L, money.getUnits());
+    }
+
+    @Test
+    public void addOverflow() {
+        Money money = new Money(0);
+        assertTrue(money.add(Long.MAX_VALUE - 1L, 0, Long.MAX_VALUE));
+        assertFalse(money.add(2L, 0, Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE - 1L, money.getUnits());
+    }
+
+    @Test
+    public void subtract() {
+        Money money = new Money(2);
+        assertFalse(money.subtract(100L, 2, 0L));
+        assertTrue(money.subtract(100L, 2, Long.MIN_VALUE));
+        assertEquals(BigDecimal.valueOf(-1.0), money.toBigDecimal());
+
+        money.set(Long.MIN_VALUE + 1L, 0);
+        assertFalse(money.subtract(2L, 0, Long.MIN_VALUE));
+        assertEquals(Long.MIN_VALUE + 1L, money.getUnits());
+    }
+
+    @Test
+    public void rescale() {
+        Money money = Money.of(BigDecimal.valueOf(3.25), 2);
+
+        // the balance follows the scale of the currency once it's changed
+        assertTrue(money.add(0L, 1, Long.MAX_VALUE));
+        assertEquals(1, money.getScale());
+        assertEquals(33L, money.getUnits());
+
+        assertTrue(money.add(0L, 4, Long.MAX_VALUE));
+        assertEquals(33000L, money.getUnits());
+    }
+
+    @Test
+    public void rescaleOverflow() {
+        // loaded from the balance saved before, larger than the scale of the currency can hold
+        Money money = Money.parse(Money.maxValue(Money.DEFAULT_SCALE).add(BigDecimal.ONE));
+        assertTrue(money.getScale() < Money.DEFAULT_SCALE);
+
+        // lowered to the largest balance, rather than locking the account up
+        assertTrue(money.add(0L, Money.DEFAULT_SCALE, Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, money.getUnits());
+        assertEquals(Money.DEFAULT_SCALE, money.getScale());
+        assertTrue(money.subtract(1L, Money.DEFAULT_SCALE, Long.MIN_VALUE));
+    }
+
+    @Test
+    public void parseOversized() {
+        // such as the balance saved as a double before, up to the capital limit
+        Money money = Money.parse(new BigDecimal("1E100"));
+        assertEquals(0, Money.maxValue(0).compareTo(money.toBigDecimal()));
+
+        Money negative = Money.parse(new BigDecimal("-1E100"));
+        assertEquals(Long.MIN_VALUE, negative.getUnits());
+        assertEquals(0, negative.getScale());
+        assertEquals(0, Money.maxValue(0).negate().subtract(BigDecimal.ONE).compareTo(negative.toBigDecimal()));
+    }
+
+    @Test
+    public void toUnits() {
+        assertEquals(1235L, Money.toUnits(BigDecimal.valueOf(12.345), 2));
+        assertEquals(1235L, Money.toUnits(12.345, 2));
+        assertEquals(-50L, Money.toUnits(-0.5, 2));
+        assertEquals(Long.MAX_VALUE, Money.toLimit(BigDecimal.valueOf(Double.MAX_VALUE), 8));
+        assertEquals(Long.MIN_VALUE, Money.toLimit(BigDecimal.valueOf(-Double.MAX_VALUE), 8));
+        assertEquals(Long.MAX_VALUE, Money.multiply(Long.MAX_VALUE / 2L, 3));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void toUnitsOverflow() {
+        Money.toUnits(BigDecimal.valueOf(Double.MAX_VALUE), 8);
+    }
+
+    @Test
+    public void parse() {
+        assertEquals(BigDecimal.valueOf(3020504.55), Money.parse(BigDecimal.valueOf(3020504.55)).toBigDecimal());
+        assertEquals(BigDecimal.valueOf(700.0), Money.parse(new BigDecimal("700")).toBigDecimal());
+        assertEquals(0, new BigDecimal("123456789012.5")
+                .compareTo(Money.parse(new BigDecimal("123456789012.5")).toBigDecimal()));
+    }
+}
@@ -46,6 +46,7 @@ public class TransactionManagerTest extends AbstractBukkitManagerTest {
     public void init() {
         visitingBankManager = mock(VisitingBankManager.class);
         currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         currencyUuid = UUID.randomUUID();
         currencyManager = mock(CurrencyManager.class);
         serverBank = new CentralBank(UUID.randomUUID());
@@ -210,6 +211,41 @@ public class TransactionManagerTest extends AbstractBukkitManagerTest {
         verify(to, never()).restoreState(eq(toState));
     }
 
+    @Test
+    public void sendRevertAccount() {
+        TransactionManager mediator = new TransactionManager(visitingBankManager);
+
+        Injector injector = Guice.createInjector(moduleList);
+
+        TempUser user1 = new TempUser(UUID.randomUUID());
+        injector.injectMembers(user1);
+        addFakeObserver(user1);
+        TempUser user2 = new TempUser(UUID.randomUUID());
+        injector.injectMembers(user2);
+        addFakeObserver(user2);
+
+        serverBank.putAccount(user1, BankingTypeRegistry.TRADING);
+        serverBank.putAccount(user2, BankingTypeRegistry.TRADING);
+        serverBank.depositAccount(user1, BankingTypeRegistry.TRADING, 100.0, currency);
+        serverBank.depositAccount(user2, BankingTypeRegistry.TRADING, 50.0, currency);
+
+        IFinancialEntity to = mock(IFinancialEntity.class);
+        when(to.saveState()).thenReturn(mock(IMemento.class));
+
+        assertEquals(TransactionManager.Result.TO_DEPOSIT_REFUSED,
+                mediator.send(user1, BankingTypeRegistry.TRADING, to, BigDecimal.valueOf(30.0), currency));
+        assertEquals(TransactionManager.Result.OK,
+                mediator.send(user2, BankingTypeRegistry.TRADING, serverBank, BigDecimal.valueOf(20.0), currency));
+
+        // only the account of user1 is reverted
+        assertEquals(0, BigDecimal.valueOf(100.0).compareTo(
+                serverBank.balanceOfAccount(user1, BankingTypeRegistry.TRADING, currency)));
+        assertEquals(0, BigDecimal.valueOf(30.0).compareTo(
+                serverBank.balanceOfAccount(user2, BankingTypeRegistry.TRADING, currency)));
+        assertEquals(1, mediator.getTransfers());
+        assertEquals(1, mediator.getFailedTransfers());
+    }
+
     @Test
     public void testConcurrency() throws Exception {
         TransactionManager mediator = new TransactionManager(visitingBankManager);
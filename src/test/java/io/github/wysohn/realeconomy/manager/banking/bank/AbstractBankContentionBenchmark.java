@@ -0,0 +1,161 @@
+package io.github.wysohn.realeconomy.manager.banking.bank;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.ProvidesIntoSet;
+import io.github.wysohn.rapidframework3.bukkit.testutils.manager.AbstractBukkitManagerTest;
+import io.github.wysohn.realeconomy.inject.annotation.MaxCapital;
+import io.github.wysohn.realeconomy.inject.annotation.MinCapital;
+import io.github.wysohn.realeconomy.interfaces.banking.IBankOwnerProvider;
+import io.github.wysohn.realeconomy.interfaces.banking.IBankUser;
+import io.github.wysohn.realeconomy.manager.asset.Asset;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
+import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.currency.Currency;
+import io.github.wysohn.realeconomy.manager.currency.CurrencyManager;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Many threads using the accounts of one bank at once, like the balance checks, the asset moves, and
+ * the trades of the players do. Compare the time of the independent accounts against the single account,
+ * which is how every call performed when the whole bank was a single lock.
+ */
+@BenchmarkOptions(benchmarkRounds = 20, warmupRounds = 5, concurrency = 8)
+public class AbstractBankContentionBenchmark extends AbstractBukkitManagerTest {
+    private static final int USERS = 64;
+    private static final int OPERATIONS = 2000;
+    private static final BigDecimal INITIAL = BigDecimal.valueOf(1000000.0);
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private AbstractBank bank;
+    private Currency currency;
+    private AssetSignature signature;
+    private List<IBankUser> users;
+
+    @Before
+    public void init() {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        when(currencyManager.get(any(UUID.class))).thenReturn(Optional.empty());
+
+        bank = new AbstractBankTest.TempBank(UUID.randomUUID());
+        addFakeObserver(bank);
+        Guice.createInjector(new AbstractModule() {
+            @Provides
+            CurrencyManager currencyManager() {
+                return currencyManager;
+            }
+
+            @Provides
+            @MaxCapital
+            BigDecimal max() {
+                return BigDecimal.valueOf(Double.MAX_VALUE);
+            }
+
+            @Provides
+            @MinCapital
+            BigDecimal min() {
+                return BigDecimal.valueOf(-Double.MAX_VALUE);
+            }
+
+            @ProvidesIntoSet
+            IBankOwnerProvider bankOwnerProvider() {
+                return mock(IBankOwnerProvider.class);
+            }
+        }).injectMembers(bank);
+
+        currency = mock(Currency.class);
+        when(currency.getKey()).thenReturn(UUID.randomUUID());
+        signature = new ItemStackSignature(new ItemStack(Material.DIAMOND));
+
+        users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            IBankUser user = mock(IBankUser.class);
+            when(user.getUuid()).thenReturn(UUID.randomUUID());
+            bank.putAccount(user, BankingTypeRegistry.TRADING);
+            bank.depositAccount(user, BankingTypeRegistry.TRADING, INITIAL, currency);
+            bank.addAccountAsset(user, signature.asset(10.0));
+            users.add(user);
+        }
+    }
+
+    @After
+    public void verify() {
+        // every operation is reverted by the next one, so nothing should be lost in the middle
+        for (IBankUser user : users) {
+            assertEquals(0, INITIAL.compareTo(bank.balanceOfAccount(user, BankingTypeRegistry.TRADING, currency)));
+            assertEquals(10.0, bank.countAccountAsset(user, signature), 0.000001);
+        }
+    }
+
+    @Test
+    public void independentAccounts() {
+        IBankUser user = users.get(ThreadLocalRandom.current().nextInt(USERS));
+        for (int i = 0; i < OPERATIONS; i++) {
+            useAccount(user);
+        }
+    }
+
+    @Test
+    public void sameAccount() {
+        IBankUser user = users.get(0);
+        for (int i = 0; i < OPERATIONS; i++) {
+            useAccount(user);
+        }
+    }
+
+    @Test
+    public void twoPartyTransfers() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < OPERATIONS; i++) {
+            IBankUser from = users.get(random.nextInt(USERS));
+            IBankUser to = users.get(random.nextInt(USERS));
+
+            // the pairs come in both directions, so this deadlocks if the lock order is not fixed
+            bank.withAccountLocks(from, to, () -> {
+                bank.withdrawAccount(from, BankingTypeRegistry.TRADING, 1.0, currency);
+                bank.depositAccount(to, BankingTypeRegistry.TRADING, 1.0, currency);
+                for (Asset asset : bank.removeAccountAsset(from, signature, 1.0)) {
+                    bank.addAccountAsset(to, asset);
+                }
+                return null;
+            });
+            bank.withAccountLocks(to, from, () -> {
+                bank.withdrawAccount(to, BankingTypeRegistry.TRADING, 1.0, currency);
+                bank.depositAccount(from, BankingTypeRegistry.TRADING, 1.0, currency);
+                for (Asset asset : bank.removeAccountAsset(to, signature, 1.0)) {
+                    bank.addAccountAsset(from, asset);
+                }
+                return null;
+            });
+        }
+    }
+
+    private void useAccount(IBankUser user) {
+        bank.depositAccount(user, BankingTypeRegistry.TRADING, 1.0, currency);
+        bank.balanceOfAccount(user, BankingTypeRegistry.TRADING, currency);
+        bank.withdrawAccount(user, BankingTypeRegistry.TRADING, 1.0, currency);
+        bank.countAccountAsset(user, signature);
+    }
+}
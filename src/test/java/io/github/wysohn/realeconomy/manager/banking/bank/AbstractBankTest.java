@@ -19,6 +19,7 @@ import io.github.wysohn.realeconomy.manager.asset.Item;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.currency.CurrencyManager;
 import io.github.wysohn.realeconomy.manager.listing.OrderType;
@@ -112,6 +113,7 @@ public class AbstractBankTest extends AbstractBukkitManagerTest {
 
         UUID uuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(uuid);
         bank.setBaseCurrency(currency);
         bank.getBaseCurrency();
@@ -127,6 +129,7 @@ public class AbstractBankTest extends AbstractBukkitManagerTest {
 
         UUID uuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(uuid);
 
         assertTrue(bank.deposit(123246873.11212154, currency));
@@ -183,6 +186,7 @@ public class AbstractBankTest extends AbstractBukkitManagerTest {
         when(user.getUuid()).thenReturn(uuid);
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
 
@@ -205,6 +209,7 @@ public class AbstractBankTest extends AbstractBukkitManagerTest {
         when(user.getUuid()).thenReturn(uuid);
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
 
@@ -287,6 +292,56 @@ public class AbstractBankTest extends AbstractBukkitManagerTest {
                 .map(Asset::getNumericalMeasure).reduce(Double::sum).orElse(0.0), 0.000001);
     }
 
+    @Test
+    public void testBankJournal() {
+        AbstractBank bank = new TempBank();
+        addFakeObserver(bank);
+        Guice.createInjector(moduleList).injectMembers(bank);
+
+        IBankUser user = mock(IBankUser.class);
+        UUID uuid = UUID.randomUUID();
+        when(user.getUuid()).thenReturn(uuid);
+        Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
+        when(currency.getKey()).thenReturn(UUID.randomUUID());
+        AssetSignature diamond = new ItemStackSignature(new ItemStack(Material.DIAMOND));
+        AssetSignature dirt = new ItemStackSignature(new ItemStack(Material.DIRT));
+
+        bank.putAccount(user, BankingTypeRegistry.TRADING);
+        bank.depositAccount(user, BankingTypeRegistry.TRADING, 100.0, currency);
+        bank.addAccountAsset(user, diamond.asset(5.0));
+        bank.addAccountAsset(user, dirt.asset(3.0));
+        bank.addAccountAsset(user, diamond.asset(7.0));
+
+        BankJournal journal = bank.openJournal();
+        bank.withdrawAccount(user, BankingTypeRegistry.TRADING, 30.0, currency);
+        bank.depositAccount(user, BankingTypeRegistry.TRADING, 5.0, currency);
+        bank.removeAccountAsset(user, diamond, 8.0);
+        bank.addAccountAsset(user, diamond.asset(2.0));
+        bank.removeAccountAsset(user, 0);
+        assertEquals(5, journal.size());
+
+        bank.rollbackJournal(journal);
+        bank.closeJournal(journal);
+
+        assertEquals(0, BigDecimal.valueOf(100.0).compareTo(
+                bank.balanceOfAccount(user, BankingTypeRegistry.TRADING, currency)));
+        // diamonds are stacked, and put back in front of the dirt
+        List<Asset> assets = bank.accountAssetProvider(user).get(0, 45);
+        assertEquals(2, assets.size());
+        assertEquals(diamond, assets.get(0).getSignature());
+        assertEquals(12.0, assets.get(0).getNumericalMeasure(), 0.000001);
+        assertEquals(dirt, assets.get(1).getSignature());
+        assertEquals(3.0, assets.get(1).getNumericalMeasure(), 0.000001);
+
+        // nothing is recorded once closed
+        bank.withdrawAccount(user, BankingTypeRegistry.TRADING, 10.0, currency);
+        assertEquals(0, journal.size());
+        bank.rollbackJournal(journal);
+        assertEquals(0, BigDecimal.valueOf(90.0).compareTo(
+                bank.balanceOfAccount(user, BankingTypeRegistry.TRADING, currency)));
+    }
+
     @Test
     public void testConcurrency() throws Exception {
         AbstractBank bank = new TempBank();
@@ -294,6 +349,8 @@ public class AbstractBankTest extends AbstractBukkitManagerTest {
         Guice.createInjector(moduleList).injectMembers(bank);
 
         Currency currency = mock(Currency.class);
+
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         UUID currencyUuid = UUID.randomUUID();
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
@@ -11,6 +11,7 @@ import io.github.wysohn.realeconomy.inject.annotation.MinCapital;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankOwner;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankOwnerProvider;
 import io.github.wysohn.realeconomy.main.RealEconomyLangs;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.currency.CurrencyManager;
 import io.github.wysohn.realeconomy.manager.user.User;
@@ -76,6 +77,7 @@ public class CentralBankTest extends AbstractBukkitManagerTest {
 
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
         bank.setBaseCurrency(currency);
@@ -96,11 +98,13 @@ public class CentralBankTest extends AbstractBukkitManagerTest {
 
         UUID baseCurrencyUuid = UUID.randomUUID();
         Currency baseCurrency = mock(Currency.class);
+        when(baseCurrency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(baseCurrency.getKey()).thenReturn(baseCurrencyUuid);
         bank.setBaseCurrency(baseCurrency);
 
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
 
@@ -117,6 +121,7 @@ public class CentralBankTest extends AbstractBukkitManagerTest {
 
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
         bank.setBaseCurrency(currency);
@@ -140,11 +145,13 @@ public class CentralBankTest extends AbstractBukkitManagerTest {
 
         UUID baseCurrencyUuid = UUID.randomUUID();
         Currency baseCurrency = mock(Currency.class);
+        when(baseCurrency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(baseCurrency.getKey()).thenReturn(baseCurrencyUuid);
         bank.setBaseCurrency(baseCurrency);
 
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
 
@@ -165,6 +172,7 @@ public class CentralBankTest extends AbstractBukkitManagerTest {
 
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currency.getKey()).thenReturn(currencyUuid);
         when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
 
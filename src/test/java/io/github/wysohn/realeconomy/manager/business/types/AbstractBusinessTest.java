@@ -48,7 +48,9 @@ public class AbstractBusinessTest extends AbstractBukkitManagerTest {
                 CustomTypeAdapters.ACCOUNT,
                 CustomTypeAdapters.BANKING_TYPE,
                 CustomTypeAdapters.ASSET,
-                CustomTypeAdapters.ASSET_SIGNATURE
+                CustomTypeAdapters.ASSET_SIGNATURE,
+                CustomTypeAdapters.MONEY,
+                CustomTypeAdapters.ASSET_STORE
         ));
         moduleList.add(new TypeAsserterModule());
         moduleList.add(new AbstractModule() {
@@ -60,7 +60,9 @@ public class MiningBusinessTest extends AbstractBukkitManagerTest {
                 CustomTypeAdapters.BANKING_TYPE,
                 CustomTypeAdapters.ASSET,
                 CustomTypeAdapters.ASSET_SIGNATURE,
-                CustomTypeAdapters.ORE_INFO
+                CustomTypeAdapters.ORE_INFO,
+                CustomTypeAdapters.MONEY,
+                CustomTypeAdapters.ASSET_STORE
         ));
         moduleList.add(new TypeAsserterModule());
         moduleList.add(new AbstractModule() {
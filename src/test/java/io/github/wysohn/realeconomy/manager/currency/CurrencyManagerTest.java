@@ -11,6 +11,7 @@ import io.github.wysohn.rapidframework3.interfaces.plugin.ITaskSupervisor;
 import io.github.wysohn.rapidframework3.interfaces.serialize.ISerializer;
 import io.github.wysohn.rapidframework3.testmodules.*;
 import io.github.wysohn.rapidframework3.utils.Pair;
+import io.github.wysohn.realeconomy.inject.module.CapitalLimitModule;
 import io.github.wysohn.realeconomy.interfaces.trade.IOrderQueryModule;
 import io.github.wysohn.realeconomy.manager.banking.CentralBankingManager;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
@@ -46,6 +47,7 @@ public class CurrencyManagerTest extends AbstractBukkitManagerTest {
                 Pair.of("database.type", "sqlite")));
         moduleList.add(new MockPluginDirectoryModule());
         moduleList.add(new MockSerializerModule(mockSerializer));
+        moduleList.add(new CapitalLimitModule());
         moduleList.add(new MockShutdownModule(() -> {
 
         }));
@@ -0,0 +1,83 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import io.github.wysohn.realeconomy.manager.asset.signature.ElectricitySignature;
+import io.github.wysohn.realeconomy.manager.asset.signature.LabourSignature;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ListingRegistryTest {
+    private ListingRegistry registry;
+
+    @Before
+    public void init() {
+        registry = new ListingRegistry();
+    }
+
+    @Test
+    public void put() {
+        LabourSignature labour = new LabourSignature();
+        UUID uuid = UUID.randomUUID();
+
+        registry.put(labour, uuid);
+
+        assertTrue(registry.contains(labour));
+        assertEquals(uuid, registry.getUuid(new LabourSignature()));
+        assertEquals(labour, registry.getSignature(uuid));
+        assertNull(registry.getUuid(new ElectricitySignature()));
+        assertNull(registry.getSignature(UUID.randomUUID()));
+    }
+
+    @Test
+    public void computeIfAbsent() {
+        LabourSignature labour = new LabourSignature();
+        UUID uuid = UUID.randomUUID();
+
+        assertEquals(uuid, registry.computeIfAbsent(labour, sign -> uuid));
+        assertEquals(uuid, registry.computeIfAbsent(labour, sign -> UUID.randomUUID()));
+        assertEquals(labour, registry.getSignature(uuid));
+        assertEquals(1, registry.size());
+
+        // failed to create; nothing is registered
+        assertNull(registry.computeIfAbsent(new ElectricitySignature(), sign -> null));
+        assertFalse(registry.contains(new ElectricitySignature()));
+    }
+
+    @Test
+    public void computeIfAbsentConcurrent() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+
+        List<Future<UUID>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return registry.computeIfAbsent(new LabourSignature(), sign -> {
+                    created.incrementAndGet();
+                    return UUID.randomUUID();
+                });
+            }));
+        }
+        start.countDown();
+
+        Set<UUID> uuids = ConcurrentHashMap.newKeySet();
+        for (Future<UUID> future : futures) {
+            uuids.add(future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, created.get());
+        assertEquals(1, uuids.size());
+        assertEquals(new LabourSignature(), registry.getSignature(uuids.iterator().next()));
+    }
+}
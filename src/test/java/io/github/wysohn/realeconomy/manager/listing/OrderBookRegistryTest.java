@@ -0,0 +1,218 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OrderBookRegistryTest {
+    private OrderBookRegistry registry;
+    private UUID listingUuid;
+    private UUID currencyUuid;
+    private UUID issuerUuid;
+
+    @Before
+    public void init() {
+        registry = new OrderBookRegistry();
+        listingUuid = UUID.randomUUID();
+        currencyUuid = UUID.randomUUID();
+        issuerUuid = UUID.randomUUID();
+    }
+
+    @Test
+    public void peekMatch() {
+        registry.add(OrderType.SELL, order(1, listingUuid, 2000.55, 20), false);
+        registry.add(OrderType.SELL, order(2, listingUuid, 1034.55, 5), false);
+        registry.add(OrderType.SELL, order(3, listingUuid, 2050.55, 30), false);
+
+        assertNull(registry.peekMatch());
+
+        registry.add(OrderType.BUY, order(1, listingUuid, 1000.0, 30), false);
+        registry.add(OrderType.BUY, order(2, listingUuid, 3000.0, 30), false);
+        registry.add(OrderType.BUY, order(3, listingUuid, 5000.0, 30), false);
+
+        // cheapest ask, and the oldest bid that can afford it
+        assertEquals(TradeInfo.create(2,
+                issuerUuid,
+                1034.55,
+                5,
+                2,
+                issuerUuid,
+                3000.0,
+                30,
+                currencyUuid,
+                listingUuid,
+                1), registry.peekMatch());
+    }
+
+    @Test
+    public void peekMatchAcrossMarkets() {
+        UUID otherListing = UUID.randomUUID();
+
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.SELL, order(2, otherListing, 10.0, 5), false);
+        registry.add(OrderType.BUY, order(4, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.BUY, order(3, otherListing, 10.0, 5), false);
+
+        assertEquals(3, registry.peekMatch().getBuyId());
+    }
+
+    @Test
+    public void peekMatchListings() {
+        UUID otherListing = UUID.randomUUID();
+
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.SELL, order(2, otherListing, 10.0, 5), false);
+        registry.add(OrderType.BUY, order(4, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.BUY, order(3, otherListing, 10.0, 5), false);
+
+        assertEquals(4, registry.peekMatch(Collections.singleton(listingUuid)).getBuyId());
+        assertNull(registry.peekMatch(Collections.singleton(UUID.randomUUID())));
+    }
+
+    @Test
+    public void peekMatchMarket() {
+        UUID otherCurrency = UUID.randomUUID();
+
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.BUY, order(2, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.SELL, OrderInfo.create(3, listingUuid, 1, issuerUuid, 10.0, otherCurrency, 5, 5), false);
+        registry.add(OrderType.BUY, OrderInfo.create(1, listingUuid, 1, issuerUuid, 10.0, otherCurrency, 5, 5), false);
+
+        assertEquals(new HashSet<>(Arrays.asList(MarketKey.of(listingUuid, currencyUuid),
+                MarketKey.of(listingUuid, otherCurrency))), registry.markets(Collections.singleton(listingUuid)));
+        assertEquals(2, registry.peekMatch(MarketKey.of(listingUuid, currencyUuid)).getBuyId());
+        assertEquals(1, registry.peekMatch(MarketKey.of(listingUuid, otherCurrency)).getBuyId());
+
+        registry.remove(OrderType.SELL, 3);
+
+        assertNull(registry.peekMatch(MarketKey.of(listingUuid, otherCurrency)));
+        assertEquals(2, registry.markets().size());
+    }
+
+    @Test
+    public void editKeepsQueuePosition() {
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.SELL, order(2, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.BUY, order(1, listingUuid, 10.0, 5), false);
+
+        registry.edit(OrderType.SELL, 1, 2);
+
+        assertEquals(1, registry.peekMatch().getSellId());
+        assertEquals(2, registry.peekMatch().getStock());
+    }
+
+    @Test
+    public void rollback() {
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.BUY, order(1, listingUuid, 10.0, 5), false);
+        registry.commit();
+
+        registry.edit(OrderType.SELL, 1, 3);
+        registry.remove(OrderType.BUY, 1);
+        registry.add(OrderType.BUY, order(2, listingUuid, 20.0, 5), false);
+        registry.rollback();
+
+        assertEquals(order(1, listingUuid, 10.0, 5), registry.get(OrderType.SELL, 1));
+        assertEquals(order(1, listingUuid, 10.0, 5), registry.get(OrderType.BUY, 1));
+        assertNull(registry.get(OrderType.BUY, 2));
+        assertEquals(1, registry.peekMatch().getBuyId());
+    }
+
+    @Test
+    public void rollbackToMark() {
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.mark();
+        registry.add(OrderType.SELL, order(2, listingUuid, 10.0, 5), false);
+        registry.releaseMark();
+
+        registry.mark();
+        registry.remove(OrderType.SELL, 1);
+        registry.rollbackToMark();
+
+        // nothing happens without mark
+        registry.rollbackToMark();
+
+        assertNotNull(registry.get(OrderType.SELL, 1));
+        assertNotNull(registry.get(OrderType.SELL, 2));
+
+        registry.rollback();
+
+        assertEquals(0, registry.size(OrderType.SELL));
+    }
+
+    @Test
+    public void rollbackToMarkOtherThread() throws Exception {
+        registry.mark();
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+
+        // added by the other thread after the mark
+        Thread thread = new Thread(() -> registry.add(OrderType.SELL, order(2, listingUuid, 10.0, 5), false));
+        thread.start();
+        thread.join();
+
+        registry.rollbackToMark();
+
+        assertNull(registry.get(OrderType.SELL, 1));
+        assertNotNull(registry.get(OrderType.SELL, 2));
+
+        // but the whole transaction still reverts the changes of all threads
+        registry.rollback();
+
+        assertEquals(0, registry.size(OrderType.SELL));
+    }
+
+    @Test
+    public void removeTemporary() {
+        registry.add(OrderType.BUY, order(1, listingUuid, 10.0, 5), true);
+        registry.add(OrderType.BUY, order(2, listingUuid, 11.0, 5), false);
+
+        assertEquals(1, registry.removeTemporary(OrderType.BUY).size());
+        assertNull(registry.get(OrderType.BUY, 1));
+        assertEquals(2, registry.best(OrderType.BUY, currencyUuid, listingUuid).getOrderId());
+    }
+
+    @Test
+    public void getAll() {
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.SELL, order(2, listingUuid, 11.0, 5), false);
+        registry.add(OrderType.BUY, order(3, listingUuid, 9.0, 5), false);
+
+        assertEquals(Arrays.asList(order(2, listingUuid, 11.0, 5), order(1, listingUuid, 10.0, 5)),
+                registry.getAll(OrderType.SELL, Arrays.asList(2, 3, 1)));
+        assertTrue(registry.getAll(OrderType.BUY, Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void summary() {
+        UUID otherCurrency = UUID.randomUUID();
+        OrderInfo otherMarket = OrderInfo.create(3, listingUuid, 1, issuerUuid, 9.0, otherCurrency, 7, 7);
+
+        registry.add(OrderType.SELL, order(1, listingUuid, 10.0, 5), false);
+        registry.add(OrderType.SELL, order(2, listingUuid, 9.0, 4), false);
+        registry.add(OrderType.SELL, otherMarket, false);
+        registry.add(OrderType.BUY, order(4, listingUuid, 8.0, 1), false);
+
+        // same price in both markets, so the older one
+        assertEquals(ListingSummary.create(order(2, listingUuid, 9.0, 4), 16L, 3),
+                registry.summary(OrderType.SELL, listingUuid));
+
+        registry.edit(OrderType.SELL, 2, 1);
+        registry.remove(OrderType.SELL, 1);
+
+        assertEquals(ListingSummary.create(order(2, listingUuid, 9.0, 4).withAmount(1), 8L, 2),
+                registry.summary(OrderType.SELL, listingUuid));
+        assertEquals(1, registry.summary(OrderType.BUY, listingUuid).getOrders());
+
+        registry.remove(OrderType.BUY, 4);
+
+        assertNull(registry.summary(OrderType.BUY, listingUuid));
+        assertNull(registry.summary(OrderType.SELL, UUID.randomUUID()));
+    }
+
+    private OrderInfo order(int orderId, UUID listingUuid, double price, int amount) {
+        return OrderInfo.create(orderId, listingUuid, 1, issuerUuid, price, currencyUuid, amount, amount);
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.wysohn.realeconomy.manager.listing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class QuoteCacheTest {
+    private QuoteCache cache;
+    private MarketKey market;
+    private LocalDate today;
+    private AtomicInteger loads;
+    private Function<MarketKey, MarketQuote> loader;
+
+    @Before
+    public void init() {
+        cache = new QuoteCache();
+        market = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        today = LocalDate.of(2021, 3, 1);
+        loads = new AtomicInteger();
+        loader = key -> {
+            loads.incrementAndGet();
+            return MarketQuote.create(null, null, null, 10.0, today);
+        };
+    }
+
+    @Test
+    public void get() {
+        assertEquals(10.0, cache.get(market, today, loader).getAveragePrice(), 0.0001);
+        assertEquals(10.0, cache.get(market, today, loader).getAveragePrice(), 0.0001);
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void getNextDay() {
+        cache.get(market, today, loader);
+        cache.get(market, today.plusDays(1), key -> MarketQuote.create(null, null, null, 20.0, today.plusDays(1)));
+
+        assertEquals(20.0, cache.get(market, today.plusDays(1), loader).getAveragePrice(), 0.0001);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void updateBook() {
+        OrderInfo bid = OrderInfo.create(1, market.getListingUuid(), 1, UUID.randomUUID(), 5.0,
+                market.getCurrencyUuid(), 1, 1);
+        OrderInfo ask = OrderInfo.create(2, market.getListingUuid(), 1, UUID.randomUUID(), 6.0,
+                market.getCurrencyUuid(), 1, 1);
+        MarketKey other = MarketKey.of(UUID.randomUUID(), market.getCurrencyUuid());
+
+        cache.get(market, today, loader);
+        cache.get(other, today, loader);
+        cache.updateBook(Collections.singleton(market), key -> bid, key -> ask);
+
+        MarketQuote quote = cache.get(market, today, loader);
+        assertEquals(bid, quote.getBestBid());
+        assertEquals(ask, quote.getBestAsk());
+        assertEquals(10.0, quote.getAveragePrice(), 0.0001);
+        assertNull(cache.get(other, today, loader).getBestBid());
+        assertEquals(2, loads.get());
+
+        // not cached just by the update
+        MarketKey uncached = MarketKey.of(UUID.randomUUID(), market.getCurrencyUuid());
+        cache.updateBook(Collections.singleton(uncached), key -> bid, key -> ask);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void getChangedWhileLoading() {
+        // the orders are changed by the other while the quote is being loaded
+        MarketQuote quote = cache.get(market, today, key -> {
+            loads.incrementAndGet();
+            cache.invalidate(key);
+            return MarketQuote.create(null, null, null, 10.0, today);
+        });
+
+        // returned, but not cached
+        assertEquals(10.0, quote.getAveragePrice(), 0.0001);
+        assertEquals(0, cache.size());
+        cache.get(market, today, loader);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void invalidate() {
+        cache.get(market, today, loader);
+        cache.invalidate(market);
+        cache.get(market, today, loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getHits());
+    }
+}
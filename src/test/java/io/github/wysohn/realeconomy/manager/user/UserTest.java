@@ -13,6 +13,7 @@ import io.github.wysohn.rapidframework3.utils.Pair;
 import io.github.wysohn.realeconomy.inject.annotation.MaxCapital;
 import io.github.wysohn.realeconomy.inject.annotation.MinCapital;
 import io.github.wysohn.realeconomy.interfaces.currency.ICurrencyOwnerProvider;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
 import org.junit.Before;
@@ -82,14 +83,17 @@ public class UserTest extends AbstractBukkitManagerTest {
         Guice.createInjector(moduleList).injectMembers(user);
 
         Currency currency1 = mock(Currency.class);
+        when(currency1.getScale()).thenReturn(Money.DEFAULT_SCALE);
         UUID currency1Uuid = UUID.randomUUID();
         when(currency1.getKey()).thenReturn(currency1Uuid);
 
         Currency currency2 = mock(Currency.class);
+        when(currency2.getScale()).thenReturn(Money.DEFAULT_SCALE);
         UUID currency2Uuid = UUID.randomUUID();
         when(currency2.getKey()).thenReturn(currency2Uuid);
 
         Currency currency3 = mock(Currency.class);
+        when(currency3.getScale()).thenReturn(Money.DEFAULT_SCALE);
         UUID currency3Uuid = UUID.randomUUID();
         when(currency3.getKey()).thenReturn(currency3Uuid);
 
@@ -116,14 +120,17 @@ public class UserTest extends AbstractBukkitManagerTest {
         Guice.createInjector(moduleList).injectMembers(user);
 
         Currency currency1 = mock(Currency.class);
+        when(currency1.getScale()).thenReturn(Money.DEFAULT_SCALE);
         UUID currency1Uuid = UUID.randomUUID();
         when(currency1.getKey()).thenReturn(currency1Uuid);
 
         Currency currency2 = mock(Currency.class);
+        when(currency2.getScale()).thenReturn(Money.DEFAULT_SCALE);
         UUID currency2Uuid = UUID.randomUUID();
         when(currency2.getKey()).thenReturn(currency2Uuid);
 
         Currency currency3 = mock(Currency.class);
+        when(currency3.getScale()).thenReturn(Money.DEFAULT_SCALE);
         UUID currency3Uuid = UUID.randomUUID();
         when(currency3.getKey()).thenReturn(currency3Uuid);
 
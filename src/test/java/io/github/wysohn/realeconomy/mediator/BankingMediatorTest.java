@@ -15,6 +15,7 @@ import io.github.wysohn.realeconomy.interfaces.banking.IBankOwnerProvider;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankUser;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
 import io.github.wysohn.realeconomy.manager.banking.CentralBankingManager;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.VisitingBankManager;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
@@ -46,6 +47,7 @@ public class BankingMediatorTest extends AbstractBukkitManagerTest {
         serverCurrencyUuid = UUID.randomUUID();
         serverBank = new CentralBank(bankUuid);
         currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         currencyManager = mock(CurrencyManager.class);
         config = mock(ManagerConfig.class);
 
@@ -110,6 +112,7 @@ public class BankingMediatorTest extends AbstractBukkitManagerTest {
         UUID uuid = UUID.randomUUID();
         IGovernment government = mock(IGovernment.class);
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(government.getUuid()).thenReturn(uuid);
         when(currencyManager.get(anyString())).thenReturn(Optional.of(new WeakReference<>(currency)));
         when(centralBankingManager.get(any(UUID.class)))
@@ -129,6 +132,7 @@ public class BankingMediatorTest extends AbstractBukkitManagerTest {
         UUID uuid = UUID.randomUUID();
         IGovernment government = mock(IGovernment.class);
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(government.getUuid()).thenReturn(uuid);
         when(currencyManager.get(anyString())).thenReturn(Optional.of(new WeakReference<>(currency)));
         when(centralBankingManager.get(any(UUID.class))).thenReturn(Optional.empty());
@@ -180,6 +184,7 @@ public class BankingMediatorTest extends AbstractBukkitManagerTest {
         mediator.enable();
 
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         when(currencyManager.get(eq("other")))
                 .thenReturn(Optional.empty());
         when(currencyManager.get(eq(VisitingBankManager.SERVER_CURRENCY)))
@@ -201,7 +206,8 @@ public class BankingMediatorTest extends AbstractBukkitManagerTest {
         IBankUser user = mock(IBankUser.class);
         IAccount account = mock(IAccount.class);
         Currency currency = mock(Currency.class);
-        Map<UUID, BigDecimal> balances = mock(Map.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
+        Map<UUID, Money> balances = mock(Map.class);
 
         when(user.getUuid()).thenReturn(uuid);
         when(currency.getKey()).thenReturn(currencyUuid);
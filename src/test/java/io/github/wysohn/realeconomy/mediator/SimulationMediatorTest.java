@@ -4,14 +4,18 @@ import io.github.wysohn.rapidframework3.core.language.ManagerLanguage;
 import io.github.wysohn.rapidframework3.utils.Pair;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankUser;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankingType;
+import io.github.wysohn.realeconomy.interfaces.banking.IOrderIssuer;
 import io.github.wysohn.realeconomy.manager.asset.Asset;
 import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.TransactionManager;
 import io.github.wysohn.realeconomy.manager.banking.account.TradingAccount;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
+import io.github.wysohn.realeconomy.manager.listing.OrderInfo;
+import io.github.wysohn.realeconomy.manager.listing.OrderRequest;
 import io.github.wysohn.realeconomy.manager.listing.OrderType;
 import io.github.wysohn.realeconomy.manager.simulation.Agent;
 import io.github.wysohn.realeconomy.manager.simulation.MarketSimulationManager;
@@ -21,18 +25,22 @@ import org.bukkit.Server;
 import org.bukkit.inventory.ItemFactory;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class SimulationMediatorTest {
@@ -64,6 +72,8 @@ public class SimulationMediatorTest {
 
         lang = mock(ManagerLanguage.class);
         assetListingManager = mock(AssetListingManager.class);
+        when(assetListingManager.withOrderTransaction(any(Callable.class)))
+                .then(invocation -> ((Callable<?>) invocation.getArguments()[0]).call());
         marketSimulationManager = mock(MarketSimulationManager.class);
         logger = mock(Logger.class);
         tradeMediator = mock(TradeMediator.class);
@@ -71,6 +81,7 @@ public class SimulationMediatorTest {
 
         centralBank = mock(CentralBank.class);
         currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
 
         when(centralBank.getBaseCurrency()).thenReturn(currency);
         when(currency.ownerBank()).thenReturn(centralBank);
@@ -123,39 +134,109 @@ public class SimulationMediatorTest {
                 centralBank,
                 transactionManager);
 
+        Map<AssetSignature, UUID> listings = new HashMap<>();
+        when(assetListingManager.orderRequest(any(),
+                any(),
+                any(),
+                anyDouble(),
+                any(),
+                anyInt(),
+                anyBoolean())).then(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            return OrderRequest.create(listings.computeIfAbsent((AssetSignature) arguments[0],
+                    key -> UUID.randomUUID()),
+                    "item",
+                    (OrderType) arguments[1],
+                    (IOrderIssuer) arguments[2],
+                    (double) arguments[3],
+                    (Currency) arguments[4],
+                    (int) arguments[5],
+                    (boolean) arguments[6]);
+        });
+
         simulator.iterate();
 
-        verify(assetListingManager).addOrder(eq(WHEAT),
-                eq(OrderType.BUY),
-                eq(agent1),
-                eq(1.0),
-                eq(currency),
-                eq(200),
-                anyBoolean());
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(assetListingManager, atLeastOnce()).addOrders(captor.capture());
+        List<OrderRequest> requests = new ArrayList<>();
+        captor.getAllValues().forEach(requests::addAll);
+
+        assertRequest(requests, listings.get(WHEAT), agent1, 1.0, 200);
         assertEquals(BigDecimal.valueOf(1.0).setScale(SimulationMediator.SCALE_LIMIT, RoundingMode.CEILING),
                 agent1.getCurrentPricing(WHEAT));
 
-        verify(assetListingManager).addOrder(eq(COCOA),
-                eq(OrderType.BUY),
-                eq(agent1),
-                eq(1.0),
-                eq(currency),
-                eq(100),
-                anyBoolean());
+        assertRequest(requests, listings.get(COCOA), agent1, 1.0, 100);
         assertEquals(BigDecimal.valueOf(1.0).setScale(SimulationMediator.SCALE_LIMIT, RoundingMode.CEILING),
                 agent1.getCurrentPricing(COCOA));
 
-        verify(assetListingManager).addOrder(eq(WHEAT),
-                eq(OrderType.BUY),
-                eq(agent2),
-                eq(1.0),
-                eq(currency),
-                eq(300),
-                anyBoolean());
+        assertRequest(requests, listings.get(WHEAT), agent2, 1.0, 300);
         assertEquals(BigDecimal.valueOf(1.0).setScale(SimulationMediator.SCALE_LIMIT, RoundingMode.CEILING),
                 agent2.getCurrentPricing(WHEAT));
     }
 
+    @Test
+    public void testSimulatorDemandParallel() throws Exception {
+        SimulationMediator.MarketSimulator simulator = new SimulationMediator.MarketSimulator(
+                lang,
+                assetListingManager,
+                logger,
+                marketSimulationManager,
+                tradeMediator,
+                centralBank,
+                transactionManager,
+                4);
+
+        UUID listingUuid = UUID.randomUUID();
+        Map<Integer, OrderInfo> orders = new HashMap<>();
+        List<Agent> agents = new ArrayList<>();
+        for (int i = 1; i <= 32; i++) {
+            Agent agent = new Agent(logger,
+                    UUID.randomUUID(),
+                    "Pastry_" + i,
+                    new LinkedList<>(),
+                    new LinkedList<>());
+            agent.addOrderId(OrderType.BUY, i);
+            orders.put(i, OrderInfo.create(i, listingUuid, 1, agent.getUuid(), 1.0, UUID.randomUUID(), i, i));
+            agents.add(agent);
+        }
+        when(marketSimulationManager.getAgents()).thenReturn(agents);
+
+        // the orders are read by the trade thread, and arrive a bit later
+        ExecutorService tradeThread = Executors.newSingleThreadExecutor();
+        when(tradeMediator.getInfo(anyInt(), eq(OrderType.BUY))).then(invocation -> {
+            int orderId = (int) invocation.getArguments()[0];
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(5L);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                return orders.get(orderId);
+            }, tradeThread);
+        });
+
+        try {
+            simulator.iterate();
+        } finally {
+            tradeThread.shutdownNow();
+        }
+
+        // every unfilled amount is counted by the time the evaluation is over
+        for (int i = 1; i <= 32; i++) {
+            assertEquals(-i, agents.get(i - 1).getTradeDemand(listingUuid));
+        }
+        verify(tradeMediator, times(32)).cancelOrder(any(), anyInt(), eq(OrderType.BUY));
+    }
+
+    private void assertRequest(List<OrderRequest> requests, UUID listingUuid, Agent agent, double price, int stock) {
+        assertTrue(requests.stream().anyMatch(request -> request.getType() == OrderType.BUY
+                && request.getListingUuid().equals(listingUuid)
+                && request.getIssuer() == agent
+                && request.getPrice() == price
+                && request.getCurrency() == currency
+                && request.getStock() == stock));
+    }
+
     @Test
     public void testSimulatorWithdraw() throws Exception{
         SimulationMediator.MarketSimulator simulator = new SimulationMediator.MarketSimulator(
@@ -166,7 +247,8 @@ public class SimulationMediatorTest {
                 tradeMediator,
                 centralBank,
                 transactionManager);
-        Map<IBankUser, TradingAccount> accountMap = new HashMap<>();
+        // agents are evaluated in parallel
+        Map<IBankUser, TradingAccount> accountMap = new ConcurrentHashMap<>();
 
         when(centralBank.removeAccountAsset(any(), any(), anyDouble()))
                 .then(invocation -> {
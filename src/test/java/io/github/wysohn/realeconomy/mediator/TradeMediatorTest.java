@@ -7,7 +7,6 @@ import com.google.inject.Provides;
 import com.google.inject.multibindings.ProvidesIntoSet;
 import io.github.wysohn.rapidframework3.bukkit.testutils.manager.AbstractBukkitManagerTest;
 import io.github.wysohn.rapidframework3.core.main.ManagerConfig;
-import io.github.wysohn.rapidframework3.interfaces.IMemento;
 import io.github.wysohn.rapidframework3.testmodules.MockLoggerModule;
 import io.github.wysohn.rapidframework3.testmodules.MockShutdownModule;
 import io.github.wysohn.realeconomy.inject.annotation.MaxCapital;
@@ -15,14 +14,20 @@ import io.github.wysohn.realeconomy.inject.annotation.MinCapital;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankOwnerProvider;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankUser;
 import io.github.wysohn.realeconomy.interfaces.banking.IBankUserProvider;
+import io.github.wysohn.realeconomy.manager.asset.signature.AssetSignature;
 import io.github.wysohn.realeconomy.manager.asset.signature.ItemStackSignature;
 import io.github.wysohn.realeconomy.manager.banking.BankingTypeRegistry;
+import io.github.wysohn.realeconomy.manager.banking.Money;
 import io.github.wysohn.realeconomy.manager.banking.bank.CentralBank;
 import io.github.wysohn.realeconomy.manager.currency.Currency;
 import io.github.wysohn.realeconomy.manager.currency.CurrencyManager;
 import io.github.wysohn.realeconomy.manager.listing.AssetListing;
 import io.github.wysohn.realeconomy.manager.listing.AssetListingManager;
+import io.github.wysohn.realeconomy.manager.listing.MarketKey;
+import io.github.wysohn.realeconomy.manager.listing.OrderInfo;
+import io.github.wysohn.realeconomy.manager.listing.OrderType;
 import io.github.wysohn.realeconomy.manager.listing.TradeInfo;
+import io.github.wysohn.realeconomy.manager.simulation.MarketSimulationManager;
 import org.bukkit.Material;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -31,11 +36,18 @@ import org.junit.Test;
 
 import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -104,7 +116,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
     @Test
     public void testBrokerBuyerNotExist() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -137,10 +149,251 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         verify(assetListingManager, atLeast(1)).peekMatchingOrder(any(Consumer.class));
     }
 
+    @Test
+    public void testBrokerCycleBudget() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger,
+                5,
+                60 * 1000L);
+
+        doAnswer(invocation -> {
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
+
+            consumer.accept(TradeInfo.create(35,
+                    UUID.randomUUID(),
+                    3000.55,
+                    244,
+                    232,
+                    UUID.randomUUID(),
+                    3099.34,
+                    50,
+                    UUID.randomUUID(),
+                    UUID.randomUUID(),
+                    1));
+
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(any(Consumer.class));
+
+        // the match never goes away, so the cycle must stop at its budget
+        assertFalse(tradeBroker.processCycle());
+
+        verify(assetListingManager, times(5)).peekMatchingOrder(any(Consumer.class));
+    }
+
+    @Test
+    public void testBrokerCycleDrains() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger);
+
+        int[] remaining = {3};
+        doAnswer(invocation -> {
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
+
+            if (remaining[0]-- > 0) {
+                consumer.accept(TradeInfo.create(35,
+                        UUID.randomUUID(),
+                        3000.55,
+                        244,
+                        232,
+                        UUID.randomUUID(),
+                        3099.34,
+                        50,
+                        UUID.randomUUID(),
+                        UUID.randomUUID(),
+                        1));
+            } else {
+                consumer.accept(null);
+            }
+
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(any(Consumer.class));
+
+        assertTrue(tradeBroker.processCycle());
+
+        // 3 matches and the last one which found nothing
+        verify(assetListingManager, times(4)).peekMatchingOrder(any(Consumer.class));
+    }
+
+    @Test
+    public void testBrokerCycleMarket() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger);
+
+        MarketKey market = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        doAnswer(invocation -> {
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[1];
+            consumer.accept(null);
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(eq(market), any(Consumer.class));
+
+        assertTrue(tradeBroker.processCycle(market));
+
+        // only the given market is searched
+        verify(assetListingManager).peekMatchingOrder(eq(market), any(Consumer.class));
+        verify(assetListingManager, never()).peekMatchingOrder(any(Consumer.class));
+        verify(assetListingManager).commitOrders();
+    }
+
+    @Test
+    public void testBrokerDispatch() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger,
+                5,
+                60 * 1000L,
+                4);
+
+        MarketKey drained = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        MarketKey busy = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[1];
+            consumer.accept(null);
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(eq(drained), any(Consumer.class));
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[1];
+            consumer.accept(TradeInfo.create(35,
+                    UUID.randomUUID(),
+                    3000.55,
+                    244,
+                    232,
+                    UUID.randomUUID(),
+                    3099.34,
+                    50,
+                    busy.getCurrencyUuid(),
+                    busy.getListingUuid(),
+                    1));
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(eq(busy), any(Consumer.class));
+
+        // the busy market never drains, so it must be returned for the next round
+        assertEquals(Collections.singleton(busy), tradeBroker.dispatch(Arrays.asList(drained, busy)));
+
+        verify(assetListingManager).peekMatchingOrder(eq(drained), any(Consumer.class));
+        verify(assetListingManager, times(5)).peekMatchingOrder(eq(busy), any(Consumer.class));
+        assertFalse(threads.contains(Thread.currentThread()));
+        // the cycles of both markets are committed together
+        verify(assetListingManager, times(1)).commitOrders();
+    }
+
+    @Test
+    public void testBrokerDispatchRoundBudget() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger,
+                1000,
+                100L,
+                1);
+
+        MarketKey first = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        MarketKey second = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        AtomicInteger peeks = new AtomicInteger();
+        doAnswer(invocation -> {
+            peeks.incrementAndGet();
+            // the first match alone takes longer than the whole round
+            Thread.sleep(200L);
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[1];
+            consumer.accept(TradeInfo.create(35,
+                    UUID.randomUUID(),
+                    3000.55,
+                    244,
+                    232,
+                    UUID.randomUUID(),
+                    3099.34,
+                    50,
+                    UUID.randomUUID(),
+                    UUID.randomUUID(),
+                    1));
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(any(MarketKey.class), any(Consumer.class));
+
+        // both share the same worker, and the other market is left for the next round
+        assertEquals(new HashSet<>(Arrays.asList(first, second)),
+                tradeBroker.dispatch(Arrays.asList(first, second)));
+
+        assertEquals(1, peeks.get());
+        verify(assetListingManager, times(1)).commitOrders();
+    }
+
+    @Test
+    public void testBrokerDispatchWorkerFailed() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger,
+                5,
+                60 * 1000L,
+                4);
+
+        MarketKey drained = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        MarketKey broken = MarketKey.of(UUID.randomUUID(), UUID.randomUUID());
+        doAnswer(invocation -> {
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[1];
+            consumer.accept(null);
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(eq(drained), any(Consumer.class));
+        doThrow(new RuntimeException("broken")).when(assetListingManager)
+                .peekMatchingOrder(eq(broken), any(Consumer.class));
+
+        // the whole round is rolled back, so every market is matched again
+        assertEquals(new HashSet<>(Arrays.asList(drained, broken)),
+                tradeBroker.dispatch(Arrays.asList(drained, broken)));
+
+        verify(assetListingManager).rollbackOrders();
+        verify(assetListingManager, never()).commitOrders();
+    }
+
     @Test
     public void testBrokerSellerNotExist() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -180,7 +433,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
     @Test
     public void testBrokerCurrencyNotExist() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -225,7 +478,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
     @Test
     public void testBuyerAccountNotExist() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -239,6 +492,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         UUID sellerUuid = UUID.randomUUID();
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         doAnswer(invocation -> {
             Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
 
@@ -271,7 +525,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
     @Test
     public void testSellerAccountNotExist() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -287,6 +541,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         IBankUser seller = mock(IBankUser.class);
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         CentralBank bank = mock(CentralBank.class);
         doAnswer(invocation -> {
             Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
@@ -321,7 +576,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
     @Test
     public void testBuyerOrderIdFail() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -337,6 +592,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         IBankUser seller = mock(IBankUser.class);
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         CentralBank bank = mock(CentralBank.class);
         doAnswer(invocation -> {
             Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
@@ -372,7 +628,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
     @Test
     public void testSellerOrderIdFail() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -388,6 +644,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         IBankUser seller = mock(IBankUser.class);
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         CentralBank bank = mock(CentralBank.class);
         doAnswer(invocation -> {
             Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
@@ -424,7 +681,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
     @Test
     public void testTransactionNoAssets() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -440,14 +697,11 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         IBankUser seller = mock(IBankUser.class);
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         CentralBank bank = mock(CentralBank.class);
         AssetListing listing = mock(AssetListing.class);
         UUID listingUuid = UUID.randomUUID();
 
-        IMemento buyerState = mock(IMemento.class);
-        IMemento sellerState = mock(IMemento.class);
-        IMemento bankState = mock(IMemento.class);
-
         doAnswer(invocation -> {
             Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
 
@@ -475,22 +729,203 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         when(buyer.hasOrderId(any(), anyInt())).thenReturn(true);
         when(seller.hasOrderId(any(), anyInt())).thenReturn(true);
         when(assetListingManager.get(eq(listingUuid))).thenReturn(Optional.of(new WeakReference<>(listing)));
-        when(buyer.saveState()).thenReturn(buyerState);
-        when(seller.saveState()).thenReturn(sellerState);
-        when(bank.saveState()).thenReturn(bankState);
+        when(bank.withAccountLocks(any(IBankUser.class), any(IBankUser.class), any(Supplier.class)))
+                .then(invocation -> ((Supplier<?>) invocation.getArguments()[2]).get());
 
         tradeBroker.processOrder();
 
         verify(assetListingManager, atLeast(1)).peekMatchingOrder(any(Consumer.class));
-        verify(buyer).restoreState(eq(buyerState));
-        verify(seller).restoreState(eq(sellerState));
-        verify(bank).restoreState(eq(bankState));
+        // the seller cannot deliver, so the ask is taken out and nothing is moved
+        verify(assetListingManager).cancelOrder(eq(35), eq(OrderType.SELL), any(Consumer.class));
+        verify(assetListingManager).commitOrders();
+        verify(seller).removeOrderId(eq(OrderType.SELL), eq(35));
+        verify(seller).handleTransactionResult(any(), eq(OrderType.SELL),
+                eq(TradeMediator.TradeResult.INSUFFICIENT_ASSETS));
+        verify(bank, never()).removeAccountAsset(any(IBankUser.class), any(AssetSignature.class), anyDouble());
+        verify(bank, never()).withdrawAccountUnits(any(), any(), anyLong(), any());
+        verify(bank, never()).saveState();
+    }
+
+    @Test
+    public void testTransactionCommitFailed() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger);
+
+        UUID buyerUuid = UUID.randomUUID();
+        IBankUser buyer = mock(IBankUser.class);
+        UUID sellerUuid = UUID.randomUUID();
+        IBankUser seller = mock(IBankUser.class);
+        UUID currencyUuid = UUID.randomUUID();
+        Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
+        CentralBank bank = new CentralBank(UUID.randomUUID());
+        AssetListing listing = mock(AssetListing.class);
+        UUID listingUuid = UUID.randomUUID();
+        ItemStackSignature sign = new ItemStackSignature(Material.DIAMOND);
+
+        when(currency.getKey()).thenReturn(currencyUuid);
+        when(listing.getSignature()).thenReturn(sign);
+        when(buyer.getUuid()).thenReturn(buyerUuid);
+        when(seller.getUuid()).thenReturn(sellerUuid);
+        addFakeObserver(bank);
+        Guice.createInjector(moduleList).injectMembers(bank);
+
+        doAnswer(invocation -> {
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
+
+            consumer.accept(TradeInfo.create(35,
+                    sellerUuid,
+                    10.0,
+                    5,
+                    232,
+                    buyerUuid,
+                    10.0,
+                    5,
+                    currencyUuid,
+                    listingUuid,
+                    1));
+
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(any(Consumer.class));
+        doAnswer(invocation -> {
+            ((Consumer<Integer>) invocation.getArguments()[2]).accept((Integer) invocation.getArguments()[0]);
+            return null;
+        }).when(assetListingManager).cancelOrder(anyInt(), any(), any(Consumer.class));
+        doThrow(new SQLException()).when(assetListingManager).commitOrders();
+
+        bank.putAccount(buyer, BankingTypeRegistry.TRADING);
+        bank.putAccount(seller, BankingTypeRegistry.TRADING);
+        bank.addAccountAsset(seller, sign.asset(5.0));
+        bank.depositAccount(buyer, BankingTypeRegistry.TRADING, 50.0, currency);
+
+        when(bankUserProvider.get(eq(buyerUuid))).thenReturn(buyer);
+        when(bankUserProvider.get(eq(sellerUuid))).thenReturn(seller);
+        when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
+        when(currency.ownerBank()).thenReturn(bank);
+        when(buyer.hasOrderId(any(), anyInt())).thenReturn(true);
+        when(seller.hasOrderId(any(), anyInt())).thenReturn(true);
+        when(assetListingManager.get(eq(listingUuid))).thenReturn(Optional.of(new WeakReference<>(listing)));
+
+        assertEquals(TradeMediator.TradeResult.OK, tradeBroker.processOrder());
+
+        // the orders are filled in the transaction, yet it's never committed
+        verify(assetListingManager).cancelOrder(eq(35), eq(OrderType.SELL), any(Consumer.class));
+        verify(assetListingManager).cancelOrder(eq(232), eq(OrderType.BUY), any(Consumer.class));
+        verify(assetListingManager).rollbackOrders();
+
+        // so the settlement is reverted, and the trade can be made again without paying twice
+        assertEquals(0, BigDecimal.valueOf(50.0).compareTo(
+                bank.balanceOfAccount(buyer, BankingTypeRegistry.TRADING, currency)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                bank.balanceOfAccount(seller, BankingTypeRegistry.TRADING, currency)));
+        assertEquals(5.0, bank.countAccountAsset(seller, sign), 0.0);
+        assertEquals(0.0, bank.countAccountAsset(buyer, sign), 0.0);
+        verify(buyer, never()).removeOrderId(any(), anyInt());
+        verify(seller, never()).removeOrderId(any(), anyInt());
+        verify(buyer, never()).handleTransactionResult(any(), any(), any());
+        verify(seller, never()).handleTransactionResult(any(), any(), any());
+    }
+
+    @Test
+    public void testTransactionSettleFailed() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger);
+
+        UUID buyerUuid = UUID.randomUUID();
+        IBankUser buyer = mock(IBankUser.class);
+        UUID sellerUuid = UUID.randomUUID();
+        IBankUser seller = mock(IBankUser.class);
+        UUID currencyUuid = UUID.randomUUID();
+        Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
+        CentralBank bank = new CentralBank(UUID.randomUUID());
+        AssetListing listing = mock(AssetListing.class);
+        UUID listingUuid = UUID.randomUUID();
+        ItemStackSignature sign = new ItemStackSignature(Material.DIAMOND);
+
+        when(currency.getKey()).thenReturn(currencyUuid);
+        when(listing.getSignature()).thenReturn(sign);
+        when(buyer.getUuid()).thenReturn(buyerUuid);
+        when(seller.getUuid()).thenReturn(sellerUuid);
+        addFakeObserver(bank);
+        Guice.createInjector(moduleList).injectMembers(bank);
+
+        doAnswer(invocation -> {
+            Consumer<TradeInfo> consumer = (Consumer<TradeInfo>) invocation.getArguments()[0];
+
+            consumer.accept(TradeInfo.create(35,
+                    sellerUuid,
+                    10.0,
+                    5,
+                    232,
+                    buyerUuid,
+                    10.0,
+                    5,
+                    currencyUuid,
+                    listingUuid,
+                    1));
+
+            // the buyer spends the money after the match, yet before the settlement
+            bank.withdrawAccount(buyer, BankingTypeRegistry.TRADING, 50.0, currency);
+            return null;
+        }).when(assetListingManager).peekMatchingOrder(any(Consumer.class));
+        doAnswer(invocation -> {
+            ((Consumer<Integer>) invocation.getArguments()[2]).accept((Integer) invocation.getArguments()[0]);
+            return null;
+        }).when(assetListingManager).cancelOrder(anyInt(), any(), any(Consumer.class));
+
+        bank.putAccount(buyer, BankingTypeRegistry.TRADING);
+        bank.putAccount(seller, BankingTypeRegistry.TRADING);
+        bank.addAccountAsset(seller, sign.asset(5.0));
+        bank.depositAccount(buyer, BankingTypeRegistry.TRADING, 50.0, currency);
+
+        when(bankUserProvider.get(eq(buyerUuid))).thenReturn(buyer);
+        when(bankUserProvider.get(eq(sellerUuid))).thenReturn(seller);
+        when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
+        when(currency.ownerBank()).thenReturn(bank);
+        when(buyer.hasOrderId(any(), anyInt())).thenReturn(true);
+        when(seller.hasOrderId(any(), anyInt())).thenReturn(true);
+        when(assetListingManager.get(eq(listingUuid))).thenReturn(Optional.of(new WeakReference<>(listing)));
+
+        tradeBroker.processOrder();
+
+        // the orders are rolled back rather than committed
+        verify(assetListingManager).rollbackOrders();
+        verify(assetListingManager, never()).commitOrders();
+
+        // and the assets taken out of the seller before the payment failed are given back
+        assertEquals(5.0, bank.countAccountAsset(seller, sign), 0.0);
+        assertEquals(0.0, bank.countAccountAsset(buyer, sign), 0.0);
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                bank.balanceOfAccount(buyer, BankingTypeRegistry.TRADING, currency)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(
+                bank.balanceOfAccount(seller, BankingTypeRegistry.TRADING, currency)));
+        verify(buyer, never()).removeOrderId(any(), anyInt());
+        verify(seller, never()).removeOrderId(any(), anyInt());
+        verify(buyer, never()).handleTransactionResult(any(), any(), any());
+        verify(seller, never()).handleTransactionResult(any(), any(), any());
     }
 
     @Test
     public void testTransactionConcurrent() throws Exception {
         CurrencyManager currencyManager = mock(CurrencyManager.class);
-        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
         IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
 
         TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
@@ -506,6 +941,7 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         IBankUser seller = mock(IBankUser.class);
         UUID currencyUuid = UUID.randomUUID();
         Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
         CentralBank bank = new CentralBank(UUID.randomUUID());
         AssetListing listing = mock(AssetListing.class);
         UUID listingUuid = UUID.randomUUID();
@@ -513,8 +949,6 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
 
         when(currency.getKey()).thenReturn(currencyUuid);
         when(listing.getSignature()).thenReturn(sign);
-        IMemento buyerState = mock(IMemento.class);
-        IMemento sellerState = mock(IMemento.class);
         when(buyer.getUuid()).thenReturn(buyerUuid);
         when(seller.getUuid()).thenReturn(sellerUuid);
         addFakeObserver(bank);
@@ -551,8 +985,6 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         when(buyer.hasOrderId(any(), anyInt())).thenReturn(true);
         when(seller.hasOrderId(any(), anyInt())).thenReturn(true);
         when(assetListingManager.get(eq(listingUuid))).thenReturn(Optional.of(new WeakReference<>(listing)));
-        when(buyer.saveState()).thenReturn(buyerState);
-        when(seller.saveState()).thenReturn(sellerState);
 
         Thread thread1 = new Thread(() -> {
             // run it 100 times
@@ -590,4 +1022,156 @@ public class TradeMediatorTest extends AbstractBukkitManagerTest {
         assertEquals(BigDecimal.valueOf(12345.678 + 3000.55 * 5 + (45150 - 5050)),
                 bank.balanceOfAccount(seller, BankingTypeRegistry.TRADING, currency));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBrokerFill() throws Exception {
+        CurrencyManager currencyManager = mock(CurrencyManager.class);
+        AssetListingManager assetListingManager = mockListingManager();
+        IBankUserProvider bankUserProvider = mock(IBankUserProvider.class);
+
+        TradeMediator.TradeBroker tradeBroker = new TradeMediator.TradeBroker(assetListingManager,
+                new HashSet<IBankUserProvider>() {{
+                    add(bankUserProvider);
+                }},
+                currencyManager,
+                logger);
+
+        UUID buyerUuid = UUID.randomUUID();
+        IBankUser buyer = mock(IBankUser.class);
+        UUID sellerUuid = UUID.randomUUID();
+        IBankUser seller = mock(IBankUser.class);
+        UUID currencyUuid = UUID.randomUUID();
+        Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
+        CentralBank bank = new CentralBank(UUID.randomUUID());
+        AssetListing listing = mock(AssetListing.class);
+        UUID listingUuid = UUID.randomUUID();
+        ItemStackSignature sign = new ItemStackSignature(Material.DIAMOND);
+        MarketKey market = MarketKey.of(listingUuid, currencyUuid);
+
+        when(currency.getKey()).thenReturn(currencyUuid);
+        when(listing.getSignature()).thenReturn(sign);
+        when(buyer.getUuid()).thenReturn(buyerUuid);
+        when(seller.getUuid()).thenReturn(sellerUuid);
+        addFakeObserver(bank);
+        Guice.createInjector(moduleList).injectMembers(bank);
+
+        bank.putAccount(buyer, BankingTypeRegistry.TRADING);
+        bank.putAccount(seller, BankingTypeRegistry.TRADING);
+        bank.addAccountAsset(seller, sign.asset(100.0));
+        bank.depositAccount(buyer, BankingTypeRegistry.TRADING, 1000.0, currency);
+
+        // the second ask is above the limit
+        when(assetListingManager.getLowestAsk(eq(market))).thenReturn(
+                OrderInfo.create(1, listingUuid, 1, sellerUuid, 10.0, currencyUuid, 3, 3),
+                OrderInfo.create(2, listingUuid, 1, sellerUuid, 20.0, currencyUuid, 5, 5));
+        when(bankUserProvider.get(eq(buyerUuid))).thenReturn(buyer);
+        when(bankUserProvider.get(eq(sellerUuid))).thenReturn(seller);
+        when(currencyManager.get(eq(currencyUuid))).thenReturn(Optional.of(new WeakReference<>(currency)));
+        when(currency.ownerBank()).thenReturn(bank);
+        when(seller.hasOrderId(any(), anyInt())).thenReturn(true);
+        when(assetListingManager.get(eq(listingUuid))).thenReturn(Optional.of(new WeakReference<>(listing)));
+
+        CompletableFuture<TradeMediator.FillResult> future = tradeBroker.fill(buyer, market, 15.0, 5);
+        // waits for the next round of the broker
+        assertFalse(future.isDone());
+        verify(assetListingManager).notifyChangedListing(eq(listingUuid));
+
+        tradeBroker.dispatch(Collections.emptyList());
+        TradeMediator.FillResult fill = future.get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, fill.getFilled());
+        assertEquals(0, BigDecimal.valueOf(30.0).compareTo(fill.getPaid()));
+        assertEquals(TradeMediator.TradeResult.OK, fill.getResult());
+        assertEquals(0, BigDecimal.valueOf(970.0).compareTo(
+                bank.balanceOfAccount(buyer, BankingTypeRegistry.TRADING, currency)));
+
+        // only the ask is touched, and all the fills are committed at once along with the round
+        verify(assetListingManager).cancelOrder(eq(1), eq(OrderType.SELL), any(Consumer.class));
+        verify(assetListingManager, never()).cancelOrder(anyInt(), eq(OrderType.BUY), any(Consumer.class));
+        verify(assetListingManager, never()).editOrder(anyInt(), eq(OrderType.BUY), anyInt());
+        verify(assetListingManager).logOrder(any(TradeInfo.class), eq(3));
+        verify(assetListingManager).commitOrders();
+        verify(buyer, never()).handleTransactionResult(any(), any(), any());
+        verify(seller).handleTransactionResult(any(), eq(OrderType.SELL), eq(TradeMediator.TradeResult.OK));
+    }
+
+    @Test
+    public void sellAsset() throws Exception {
+        AssetListingManager assetListingManager = mockListingManager();
+        TradeMediator tradeMediator = new TradeMediator(logger,
+                config,
+                currencyManager,
+                assetListingManager,
+                mock(MarketSimulationManager.class),
+                new HashSet<>());
+
+        IBankUser issuer = mock(IBankUser.class);
+        AssetSignature signature = mock(AssetSignature.class);
+        Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
+        CentralBank bank = mock(CentralBank.class);
+        Runnable after = mock(Runnable.class);
+
+        when(currency.ownerBank()).thenReturn(bank);
+        when(bank.hasAccount(issuer, BankingTypeRegistry.TRADING)).thenReturn(true);
+        when(assetListingManager.addOrder(signature, OrderType.SELL, issuer, 10.0, currency, 5)).thenReturn(3);
+
+        assertEquals(3, tradeMediator.sellAsset(issuer, signature, 10.0, currency, 5, after)
+                .get(5, TimeUnit.SECONDS).intValue());
+
+        verify(after).run();
+        verify(assetListingManager).withOrderTransaction(any(Callable.class));
+        verify(assetListingManager).commitOrders();
+        verify(assetListingManager, never()).rollbackOrders();
+    }
+
+    @Test
+    public void sellAssetFailed() throws Exception {
+        AssetListingManager assetListingManager = mockListingManager();
+        TradeMediator tradeMediator = new TradeMediator(logger,
+                config,
+                currencyManager,
+                assetListingManager,
+                mock(MarketSimulationManager.class),
+                new HashSet<>());
+
+        IBankUser issuer = mock(IBankUser.class);
+        AssetSignature signature = mock(AssetSignature.class);
+        Currency currency = mock(Currency.class);
+        when(currency.getScale()).thenReturn(Money.DEFAULT_SCALE);
+        CentralBank bank = mock(CentralBank.class);
+        Runnable after = mock(Runnable.class);
+
+        when(currency.ownerBank()).thenReturn(bank);
+        when(bank.hasAccount(issuer, BankingTypeRegistry.TRADING)).thenReturn(true);
+        when(assetListingManager.addOrder(signature, OrderType.SELL, issuer, 10.0, currency, 5))
+                .thenThrow(new SQLException());
+
+        try {
+            tradeMediator.sellAsset(issuer, signature, 10.0, currency, 5, after).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof SQLException);
+        }
+
+        verify(after, never()).run();
+        verify(assetListingManager, never()).commitOrders();
+        verify(assetListingManager).rollbackOrders();
+
+        // no account, so nothing is submitted
+        when(bank.hasAccount(issuer, BankingTypeRegistry.TRADING)).thenReturn(false);
+        assertEquals(0, tradeMediator.sellAsset(issuer, signature, 10.0, currency, 5, after)
+                .get(5, TimeUnit.SECONDS).intValue());
+    }
+
+    /**
+     * Mocked AssetListingManager which runs the tasks given to withOrderTransaction() right away.
+     */
+    private AssetListingManager mockListingManager() throws Exception {
+        AssetListingManager assetListingManager = mock(AssetListingManager.class);
+        when(assetListingManager.withOrderTransaction(any(Callable.class)))
+                .then(invocation -> ((Callable<?>) invocation.getArguments()[0]).call());
+        return assetListingManager;
+    }
+}